@@ -0,0 +1,391 @@
+package org.ncibi.commons.collections;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.ncibi.commons.io.FileUtilities;
+import org.ncibi.commons.lang.HashUtils;
+
+/**
+ * A Bloom filter over String and long IDs, for skipping lines whose ID can't
+ * be in a large reference set before looking the ID up in the set itself.
+ * mightContain() never returns false for an added ID, and returns true for
+ * an ID that wasn't added with about the false positive rate the filter was
+ * sized for.
+ *
+ * The filter is blocked: all the bits of an ID fall in one 512 bit block, a
+ * cache line, so a check costs one cache miss however many hashes are used.
+ * Blocks fill unevenly, which raises the false positive rate, so the filter
+ * is sized from the blocked rate rather than the textbook one and uses a few
+ * percent more bits.
+ *
+ * add() is lock free, so several threads can fill a filter at once, and
+ * checks may run alongside adds. A filter can be saved and loaded, so it can
+ * be built once and reused by later jobs.
+ *
+ * @author gtarcea
+ *
+ */
+public final class BloomFilter
+{
+    /**
+     * Identifies a Bloom filter file ("NCBF").
+     */
+    private static final int MAGIC = 0x4e434246;
+
+    /**
+     * Version of the Bloom filter file format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Bits per block.
+     */
+    private static final int BLOCK_BITS = 512;
+
+    /**
+     * Longs per block.
+     */
+    private static final int BLOCK_LONGS = BLOCK_BITS / 64;
+
+    /**
+     * Most blocks, so the longs can be indexed by an int.
+     */
+    private static final int MAX_BLOCKS = Integer.MAX_VALUE / BLOCK_LONGS;
+
+    /**
+     * Bit positions in a block taken from each 64 bit hash, 9 bits apiece.
+     */
+    private static final int PROBES_PER_HASH = 7;
+
+    /**
+     * Most hashes per ID.
+     */
+    private static final int MAX_HASHES = 16;
+
+    /**
+     * The bits, block after block.
+     */
+    private final AtomicLongArray bits;
+
+    /**
+     * The number of blocks.
+     */
+    private final int blocks;
+
+    /**
+     * Bits set per ID.
+     */
+    private final int hashes;
+
+    /**
+     * Constructor.
+     *
+     * @param expectedItems
+     *            The number of IDs the filter will hold.
+     * @param falsePositiveRate
+     *            The false positive rate once that many IDs are added,
+     *            between 0 and 1 exclusive.
+     */
+    public BloomFilter(final long expectedItems, final double falsePositiveRate)
+    {
+        if (expectedItems < 0)
+        {
+            throw new IllegalArgumentException("expectedItems must not be negative: "
+                    + expectedItems);
+        }
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1))
+        {
+            throw new IllegalArgumentException("falsePositiveRate must be between 0 and 1: "
+                    + falsePositiveRate);
+        }
+
+        final double n = Math.max(1, expectedItems);
+        final double ln2 = Math.log(2);
+        this.hashes = Math.max(1, Math.min(MAX_HASHES, (int) Math.round(-Math.log(
+                falsePositiveRate) / ln2)));
+        // Start from the textbook size and grow it until the blocked rate is
+        // low enough.
+        double bitCount = -n * Math.log(falsePositiveRate) / (ln2 * ln2);
+        while (blockedFalsePositiveRate(n, bitCount, hashes) > falsePositiveRate
+                && bitCount / BLOCK_BITS < MAX_BLOCKS)
+        {
+            bitCount *= 1.02;
+        }
+        this.blocks = (int) Math.min(MAX_BLOCKS, Math.max(1, (long) Math.ceil(bitCount
+                / BLOCK_BITS)));
+        this.bits = new AtomicLongArray(blocks * BLOCK_LONGS);
+    }
+
+    private BloomFilter(final int blocks, final int hashes, final AtomicLongArray bits)
+    {
+        this.blocks = blocks;
+        this.hashes = hashes;
+        this.bits = bits;
+    }
+
+    /**
+     * Adds an ID.
+     *
+     * @param id
+     *            The ID.
+     * @return False if every bit of the ID was already set, so the filter
+     *         might already have held it.
+     */
+    public boolean add(final CharSequence id)
+    {
+        return addHash(HashUtils.hashChars(id));
+    }
+
+    /**
+     * Adds an ID.
+     *
+     * @param id
+     *            The ID.
+     * @return False if every bit of the ID was already set, so the filter
+     *         might already have held it.
+     */
+    public boolean add(final long id)
+    {
+        return addHash(HashUtils.mix(id));
+    }
+
+    /**
+     * Adds every ID of a collection.
+     *
+     * @param ids
+     *            The IDs.
+     */
+    public void addAll(final Iterable<? extends CharSequence> ids)
+    {
+        for (final CharSequence id : ids)
+        {
+            add(id);
+        }
+    }
+
+    /**
+     * Checks an ID.
+     *
+     * @param id
+     *            The ID.
+     * @return False if the ID was never added; true if it was added or is a
+     *         false positive.
+     */
+    public boolean mightContain(final CharSequence id)
+    {
+        return mightContainHash(HashUtils.hashChars(id));
+    }
+
+    /**
+     * Checks an ID.
+     *
+     * @param id
+     *            The ID.
+     * @return False if the ID was never added; true if it was added or is a
+     *         false positive.
+     */
+    public boolean mightContain(final long id)
+    {
+        return mightContainHash(HashUtils.mix(id));
+    }
+
+    /**
+     * @return The number of bits in the filter.
+     */
+    public long getBitCount()
+    {
+        return (long) blocks * BLOCK_BITS;
+    }
+
+    /**
+     * @return The number of bits set per ID.
+     */
+    public int getHashCount()
+    {
+        return hashes;
+    }
+
+    /**
+     * Estimates the false positive rate from the bits set in each block so
+     * far, which is more accurate than the configured rate when the filter
+     * holds more or fewer IDs than expected.
+     *
+     * @return The estimated false positive rate.
+     */
+    public double getFalsePositiveRate()
+    {
+        double rate = 0;
+        for (int block = 0; block < blocks; block++)
+        {
+            int set = 0;
+            for (int i = block * BLOCK_LONGS; i < (block + 1) * BLOCK_LONGS; i++)
+            {
+                set += Long.bitCount(bits.get(i));
+            }
+            rate += Math.pow((double) set / BLOCK_BITS, hashes);
+        }
+        return rate / blocks;
+    }
+
+    /**
+     * Saves the filter. It is written to a temporary file that is then
+     * renamed, so readers never see a partly written filter.
+     *
+     * @param file
+     *            The file to save to.
+     * @throws IOException
+     *             When the file can't be written.
+     */
+    public void save(final File file) throws IOException
+    {
+        final File tmp = new File(file.getPath() + ".tmp");
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(tmp)));
+        try
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(blocks);
+            out.writeInt(hashes);
+            for (int i = 0; i < bits.length(); i++)
+            {
+                out.writeLong(bits.get(i));
+            }
+        }
+        finally
+        {
+            out.close();
+        }
+
+        FileUtilities.replaceFile(tmp, file);
+    }
+
+    /**
+     * Loads a filter saved by save().
+     *
+     * @param file
+     *            The file to load.
+     * @return The filter, which can still be added to.
+     * @throws IOException
+     *             When the file can't be read or isn't a Bloom filter file.
+     */
+    public static BloomFilter load(final File file) throws IOException
+    {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file)));
+        try
+        {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+            {
+                throw new IOException("Not a Bloom filter file: " + file);
+            }
+
+            final int blocks = in.readInt();
+            final int hashes = in.readInt();
+            if (blocks < 1 || blocks > MAX_BLOCKS || hashes < 1 || hashes > MAX_HASHES)
+            {
+                throw new IOException("Corrupt Bloom filter file: " + file);
+            }
+            final AtomicLongArray bits = new AtomicLongArray(blocks * BLOCK_LONGS);
+            for (int i = 0; i < bits.length(); i++)
+            {
+                bits.set(i, in.readLong());
+            }
+            return new BloomFilter(blocks, hashes, bits);
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * Sets the bits of a hashed ID.
+     */
+    private boolean addHash(final long hash)
+    {
+        final int base = block(hash);
+        boolean changed = false;
+        long probes = HashUtils.mix(hash);
+        for (int i = 0; i < hashes; i++)
+        {
+            if (i % PROBES_PER_HASH == 0 && i > 0)
+            {
+                probes = HashUtils.mix(probes);
+            }
+            final int bit = (int) (probes >>> (i % PROBES_PER_HASH * 9));
+            final int word = base + ((bit >>> 6) & (BLOCK_LONGS - 1));
+            final long mask = 1L << bit;
+            long old = bits.get(word);
+            while ((old & mask) == 0)
+            {
+                if (bits.compareAndSet(word, old, old | mask))
+                {
+                    changed = true;
+                    break;
+                }
+                old = bits.get(word);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Checks the bits of a hashed ID.
+     */
+    private boolean mightContainHash(final long hash)
+    {
+        final int base = block(hash);
+        long probes = HashUtils.mix(hash);
+        for (int i = 0; i < hashes; i++)
+        {
+            if (i % PROBES_PER_HASH == 0 && i > 0)
+            {
+                probes = HashUtils.mix(probes);
+            }
+            final int bit = (int) (probes >>> (i % PROBES_PER_HASH * 9));
+            if ((bits.get(base + ((bit >>> 6) & (BLOCK_LONGS - 1))) & (1L << bit)) == 0)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the first long of a hash's block, chosen by the high 32 bits.
+     */
+    private int block(final long hash)
+    {
+        return (int) (((hash >>> 32) * blocks) >>> 32) * BLOCK_LONGS;
+    }
+
+    /**
+     * Computes the false positive rate of a blocked filter: the rate of a
+     * single block, averaged over the Poisson distributed number of IDs per
+     * block.
+     */
+    private static double blockedFalsePositiveRate(final double items, final double bitCount,
+            final int hashes)
+    {
+        final double perBlock = items * BLOCK_BITS / bitCount;
+        final int last = (int) (perBlock + 10 * Math.sqrt(perBlock) + 20);
+        double poisson = Math.exp(-perBlock);
+        double rate = 0;
+        for (int i = 0; i <= last; i++)
+        {
+            final double fill = 1 - Math.pow(1 - 1.0 / BLOCK_BITS, (double) i * hashes);
+            rate += poisson * Math.pow(fill, hashes);
+            poisson *= perBlock / (i + 1);
+        }
+        return rate;
+    }
+}
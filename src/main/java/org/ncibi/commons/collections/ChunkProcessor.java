@@ -0,0 +1,362 @@
+package org.ncibi.commons.collections;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.ncibi.commons.closure.F1;
+import org.ncibi.commons.closure.P1;
+
+/**
+ * Runs a function over the chunks of a list in parallel: the list is split
+ * with ListUtilities.splitIntoChunks() and each chunk (a subList view, so
+ * nothing is copied) is handed to a pool of threads, one per processor by
+ * default. This is the pattern of batch jobs that issue a database batch or a
+ * block of work per chunk.
+ *
+ * Results come back in chunk order, or in the order the chunks finish if
+ * ordering is turned off. At most maxChunksInFlight chunks are submitted but
+ * not yet consumed at any time, which bounds the memory held by chunks whose
+ * results are large: when results are passed to a consumer, a new chunk is
+ * only started once the consumer has taken an earlier result.
+ *
+ * The time spent on each chunk of the last run is recorded. A chunk that
+ * throws stops the run; the chunks not yet started are cancelled and the
+ * exception is rethrown.
+ *
+ * A ChunkProcessor runs one list at a time; it isn't safe to start runs on it
+ * from several threads at once.
+ *
+ * @author gtarcea
+ *
+ */
+public class ChunkProcessor
+{
+    /**
+     * Runs the chunks, or null to create a pool for each run.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Number of threads in the pool created for each run.
+     */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Are results returned in chunk order?
+     */
+    private boolean ordered = true;
+
+    /**
+     * Most chunks submitted but not yet consumed; 0 for twice the threads.
+     */
+    private int maxChunksInFlight = 0;
+
+    /**
+     * Nanoseconds spent on each chunk of the last run, by chunk.
+     */
+    private long[] chunkNanos = new long[0];
+
+    /**
+     * Nanoseconds the last run took.
+     */
+    private long elapsedNanos = 0;
+
+    /**
+     * Constructor for a processor that creates a pool of threads for each
+     * run.
+     */
+    public ChunkProcessor()
+    {
+        this.executor = null;
+    }
+
+    /**
+     * Constructor for a processor that runs chunks on an existing pool. The
+     * pool is not shut down.
+     *
+     * @param executor
+     *            The pool.
+     */
+    public ChunkProcessor(final ExecutorService executor)
+    {
+        this.executor = executor;
+    }
+
+    /**
+     * Sets the number of threads. The default is the number of processors.
+     * Ignored when the processor runs on an existing pool.
+     *
+     * @param threads
+     *            The number of threads.
+     */
+    public void setThreads(final int threads)
+    {
+        this.threads = threads;
+    }
+
+    /**
+     * Sets whether results are returned in chunk order (the default) or in
+     * the order chunks finish, which keeps every thread busy when chunks take
+     * uneven times.
+     *
+     * @param ordered
+     *            True for chunk order.
+     */
+    public void setOrdered(final boolean ordered)
+    {
+        this.ordered = ordered;
+    }
+
+    /**
+     * Sets the most chunks that are submitted but not yet consumed. The
+     * default is twice the number of threads.
+     *
+     * @param maxChunksInFlight
+     *            The most chunks in flight.
+     */
+    public void setMaxChunksInFlight(final int maxChunksInFlight)
+    {
+        this.maxChunksInFlight = maxChunksInFlight;
+    }
+
+    /**
+     * Applies a function to each chunk of a list.
+     *
+     * @param <T>
+     *            The type of the list's items.
+     * @param <R>
+     *            The type of the results.
+     * @param list
+     *            The list.
+     * @param chunkSize
+     *            The size of each chunk but the last.
+     * @param function
+     *            Applied to each chunk, from several threads.
+     * @return The results, in chunk order unless ordering is turned off.
+     */
+    public <T, R> List<R> map(final List<T> list, final int chunkSize,
+            final F1<R, List<T>> function)
+    {
+        final List<R> results = new ArrayList<R>();
+        map(list, chunkSize, function, new P1<R>()
+        {
+            public void apply(final R result)
+            {
+                results.add(result);
+            }
+        });
+        return results;
+    }
+
+    /**
+     * Applies a function to each chunk of a list and passes each result to a
+     * consumer as soon as it (and, if ordered, every earlier result) is ready.
+     * The consumer is called on the calling thread, so it needn't be thread
+     * safe, and new chunks wait for it when maxChunksInFlight are in flight.
+     *
+     * @param <T>
+     *            The type of the list's items.
+     * @param <R>
+     *            The type of the results.
+     * @param list
+     *            The list.
+     * @param chunkSize
+     *            The size of each chunk but the last.
+     * @param function
+     *            Applied to each chunk, from several threads.
+     * @param consumer
+     *            Called with each result.
+     */
+    public <T, R> void map(final List<T> list, final int chunkSize,
+            final F1<R, List<T>> function, final P1<R> consumer)
+    {
+        final List<List<T>> chunks = ListUtilities.splitIntoChunks(list, chunkSize);
+        final long[] nanos = new long[chunks.size()];
+        final long start = System.nanoTime();
+
+        final ExecutorService pool = executor != null ? executor : Executors
+                .newFixedThreadPool(Math.max(1, Math.min(threads, chunks.size())));
+        // Ordered runs wait on each future in turn; only unordered runs need
+        // the completion queue, which would otherwise hold every result.
+        final CompletionService<R> completions = ordered ? null
+                : new ExecutorCompletionService<R>(pool);
+        final Queue<Future<R>> inFlight = new LinkedList<Future<R>>();
+        final int window = maxChunksInFlight > 0 ? maxChunksInFlight : 2 * Math.max(1,
+                threads);
+        try
+        {
+            for (int i = 0; i < chunks.size(); i++)
+            {
+                if (inFlight.size() >= window)
+                {
+                    consumer.apply(next(inFlight, completions));
+                }
+                final Callable<R> task = chunkTask(chunks.get(i), i, nanos, function);
+                inFlight.add(ordered ? pool.submit(task) : completions.submit(task));
+            }
+            while (!inFlight.isEmpty())
+            {
+                consumer.apply(next(inFlight, completions));
+            }
+        }
+        finally
+        {
+            for (final Future<R> future : inFlight)
+            {
+                future.cancel(true);
+            }
+            if (executor == null)
+            {
+                pool.shutdownNow();
+            }
+            chunkNanos = nanos;
+            elapsedNanos = System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Runs a procedure on each chunk of a list.
+     *
+     * @param <T>
+     *            The type of the list's items.
+     * @param list
+     *            The list.
+     * @param chunkSize
+     *            The size of each chunk but the last.
+     * @param procedure
+     *            Run on each chunk, from several threads.
+     */
+    public <T> void forEach(final List<T> list, final int chunkSize,
+            final P1<List<T>> procedure)
+    {
+        map(list, chunkSize, new F1<Object, List<T>>()
+        {
+            public Object apply(final List<T> chunk)
+            {
+                procedure.apply(chunk);
+                return null;
+            }
+        }, new P1<Object>()
+        {
+            public void apply(final Object result)
+            {
+                // Nothing to collect.
+            }
+        });
+    }
+
+    /**
+     * Returns how long each chunk of the last run took, including chunks that
+     * failed. Chunks that never ran have a time of 0.
+     *
+     * @param unit
+     *            The unit to return the times in.
+     * @return The time of each chunk, by chunk.
+     */
+    public long[] getChunkTimes(final TimeUnit unit)
+    {
+        final long[] times = new long[chunkNanos.length];
+        for (int i = 0; i < times.length; i++)
+        {
+            times[i] = unit.convert(chunkNanos[i], TimeUnit.NANOSECONDS);
+        }
+        return times;
+    }
+
+    /**
+     * Returns the time threads spent on chunks in the last run. With several
+     * threads this can be more than the elapsed time.
+     *
+     * @param unit
+     *            The unit to return the time in.
+     * @return The total time of the chunks.
+     */
+    public long getTotalChunkTime(final TimeUnit unit)
+    {
+        long total = 0;
+        for (final long nanos : chunkNanos)
+        {
+            total += nanos;
+        }
+        return unit.convert(total, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param unit
+     *            The unit to return the time in.
+     * @return How long the last run took from start to finish.
+     */
+    public long getElapsedTime(final TimeUnit unit)
+    {
+        return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Wraps a chunk in a task that records its time.
+     */
+    private static <T, R> Callable<R> chunkTask(final List<T> chunk, final int index,
+            final long[] nanos, final F1<R, List<T>> function)
+    {
+        return new Callable<R>()
+        {
+            public R call()
+            {
+                final long start = System.nanoTime();
+                try
+                {
+                    return function.apply(chunk);
+                }
+                finally
+                {
+                    nanos[index] = System.nanoTime() - start;
+                }
+            }
+        };
+    }
+
+    /**
+     * Waits for the next result: the oldest chunk's if ordered, otherwise the
+     * first to finish.
+     */
+    private static <R> R next(final Queue<Future<R>> inFlight,
+            final CompletionService<R> completions)
+    {
+        try
+        {
+            if (completions == null)
+            {
+                return inFlight.remove().get();
+            }
+            final Future<R> future = completions.take();
+            inFlight.remove(future);
+            return future.get();
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while processing chunks", e);
+        }
+        catch (final ExecutionException e)
+        {
+            if (e.getCause() instanceof RuntimeException)
+            {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error)
+            {
+                throw (Error) e.getCause();
+            }
+            throw new RuntimeException("Error processing chunk", e.getCause());
+        }
+    }
+}
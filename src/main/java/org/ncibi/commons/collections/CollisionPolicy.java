@@ -0,0 +1,61 @@
+package org.ncibi.commons.collections;
+
+/**
+ * What the map builders in MapUtilities do when two items map to the same
+ * key. For anything else, such as summing or concatenating values, the
+ * builders also take an F2 merge function.
+ *
+ * @author gtarcea
+ *
+ */
+public enum CollisionPolicy
+{
+    /**
+     * Keep the value of the first item with the key.
+     */
+    FIRST_WINS
+    {
+        @Override
+        <V> V resolve(final Object key, final V existing, final V added)
+        {
+            return existing;
+        }
+    },
+
+    /**
+     * Keep the value of the last item with the key, as Map.put() does.
+     */
+    LAST_WINS
+    {
+        @Override
+        <V> V resolve(final Object key, final V existing, final V added)
+        {
+            return added;
+        }
+    },
+
+    /**
+     * Throw an IllegalArgumentException.
+     */
+    FAIL
+    {
+        @Override
+        <V> V resolve(final Object key, final V existing, final V added)
+        {
+            throw new IllegalArgumentException("Duplicate key: " + key);
+        }
+    };
+
+    /**
+     * Chooses the value to keep for a key.
+     *
+     * @param key
+     *            The key.
+     * @param existing
+     *            The value already mapped.
+     * @param added
+     *            The value of the later item.
+     * @return The value to keep.
+     */
+    abstract <V> V resolve(Object key, V existing, V added);
+}
@@ -0,0 +1,171 @@
+package org.ncibi.commons.collections;
+
+import java.util.Collection;
+
+import org.ncibi.commons.collections.primitive.Int2ObjectMap;
+
+/**
+ * An immutable map from int keys, such as gene or PubMed IDs, built on a
+ * minimal perfect hash of its keys. Keys are held in an int[] and looked up
+ * without boxing: a lookup hashes the key, finds its slot with a few bit
+ * operations and compares the one key stored there.
+ *
+ * @author gtarcea
+ *
+ * @param <V>
+ *            The value type.
+ */
+public final class IntPerfectHashMap<V>
+{
+    /**
+     * Gives each placed key its slot.
+     */
+    private final MinimalPerfectHash hash;
+
+    /**
+     * The placed keys, by slot.
+     */
+    private final int[] keys;
+
+    /**
+     * The values of the placed keys, by slot.
+     */
+    private final Object[] values;
+
+    /**
+     * Entries the perfect hash couldn't place.
+     */
+    private final Int2ObjectMap<V> fallback;
+
+    private IntPerfectHashMap(final MinimalPerfectHash hash, final int[] keys,
+            final Object[] values, final Int2ObjectMap<V> fallback)
+    {
+        this.hash = hash;
+        this.keys = keys;
+        this.values = values;
+        this.fallback = fallback;
+    }
+
+    /**
+     * Builds a map from a collection.
+     *
+     * @param <V>
+     *            The value type.
+     * @param <T>
+     *            The type of the items.
+     * @param items
+     *            The items to create the map from.
+     * @param mapper
+     *            Extracts the key and value of each item; neither may be null.
+     * @param threads
+     *            The most threads to build the hash with.
+     * @return The map.
+     * @throws IllegalArgumentException
+     *             When two items have the same key.
+     */
+    static <V, T> IntPerfectHashMap<V> build(final Collection<? extends T> items,
+            final Mapper<Integer, V, T> mapper, final int threads)
+    {
+        final int n = items.size();
+        final int[] itemKeys = new int[n];
+        final Object[] itemValues = new Object[n];
+        final long[] hashes = new long[n];
+        int i = 0;
+        for (final T item : items)
+        {
+            final Integer key = mapper.getKey(item);
+            final V value = mapper.getValue(item);
+            if (key == null || value == null)
+            {
+                throw new NullPointerException(
+                        "IntPerfectHashMap doesn't allow null keys or values");
+            }
+            itemKeys[i] = key;
+            itemValues[i] = value;
+            hashes[i] = MinimalPerfectHash.hash(itemKeys[i]);
+            i++;
+        }
+
+        final MinimalPerfectHash hash = MinimalPerfectHash.build(hashes, threads);
+        final int[] keys = new int[hash.getPlacedCount()];
+        final Object[] values = new Object[keys.length];
+        final Int2ObjectMap<V> fallback = new Int2ObjectMap<V>(4);
+        for (i = 0; i < n; i++)
+        {
+            final int slot = hash.index(hashes[i]);
+            if (slot >= 0)
+            {
+                keys[slot] = itemKeys[i];
+                values[slot] = itemValues[i];
+            }
+            else
+            {
+                // Int hashes are unique, so only duplicate keys (or keys the
+                // last level couldn't separate) end up here.
+                @SuppressWarnings("unchecked")
+                final V value = (V) itemValues[i];
+                if (fallback.put(itemKeys[i], value) != null)
+                {
+                    throw new IllegalArgumentException("Duplicate key: " + itemKeys[i]);
+                }
+            }
+        }
+        return new IntPerfectHashMap<V>(hash, keys, values, fallback);
+    }
+
+    /**
+     * @return The number of keys.
+     */
+    public int size()
+    {
+        return keys.length + fallback.size();
+    }
+
+    /**
+     * @return True if the map has no keys.
+     */
+    public boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    /**
+     * Returns a key's value.
+     *
+     * @param key
+     *            The key.
+     * @return Its value, or null if it isn't in the map.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(final int key)
+    {
+        final int slot = hash.index(MinimalPerfectHash.hash(key));
+        if (slot >= 0 && keys[slot] == key)
+        {
+            return (V) values[slot];
+        }
+        return fallback.isEmpty() ? null : fallback.get(key);
+    }
+
+    /**
+     * @param key
+     *            The key.
+     * @return True if the key is in the map.
+     */
+    public boolean containsKey(final int key)
+    {
+        return get(key) != null;
+    }
+
+    /**
+     * @return The keys, in no particular order.
+     */
+    public int[] keys()
+    {
+        final int[] fallbackKeys = fallback.keys();
+        final int[] all = new int[keys.length + fallbackKeys.length];
+        System.arraycopy(keys, 0, all, 0, keys.length);
+        System.arraycopy(fallbackKeys, 0, all, keys.length, fallbackKeys.length);
+        return all;
+    }
+}
@@ -6,7 +6,9 @@ import java.util.LinkedList;
 import java.util.List;
 
 import org.apache.commons.lang.math.NumberUtils;
+import org.ncibi.commons.collections.primitive.IntArrayList;
 import org.ncibi.commons.exception.ConstructorCalledError;
+import org.ncibi.commons.lang.FieldJoiner;
 import org.ncibi.commons.lang.StrUtils;
 
 import com.google.common.base.Function;
@@ -20,6 +22,13 @@ import com.google.common.collect.Iterables;
  */
 public final class ListUtilities
 {
+    /**
+     * Single quotes values, writing nulls as 'null' as the quoting transform
+     * does.
+     */
+    private static final FieldJoiner QUOTED_COMMA_JOINER = FieldJoiner.on(",")
+            .quoted(StrUtils.Quote.SINGLE_QUOTE).useForNull("null");
+
     /**
      * Constructor - Not callable.
      */
@@ -65,7 +74,7 @@ public final class ListUtilities
     
     public static String createQuotedCommaJoinedString(final Collection<String> items)
     {
-        return StrUtils.COMMA_JOINER.join(quoteStringsToQuotedStrings(items));
+        return QUOTED_COMMA_JOINER.join(items);
     }
 
     public static Iterable<String> quoteStringsToQuotedStrings(final Collection<String> items)
@@ -84,6 +93,27 @@ public final class ListUtilities
         return StrUtils.COMMA_JOINER.join(transformIntegersToStrings(items));
     }
 
+    /**
+     * Joins ints with commas without boxing them.
+     * 
+     * @param items
+     *            The values.
+     * @return The joined values, eg: "1,2,3"
+     */
+    public static String createCommaJoinedString(final IntArrayList items)
+    {
+        final StringBuilder sb = new StringBuilder(items.size() * 8);
+        for (int i = 0; i < items.size(); i++)
+        {
+            if (i > 0)
+            {
+                sb.append(',');
+            }
+            sb.append(items.get(i));
+        }
+        return sb.toString();
+    }
+
     public static Iterable<String> transformIntegersToStrings(final Collection<Integer> items)
     {
         return Iterables.transform(items, new Function<Integer, String>()
@@ -120,7 +150,21 @@ public final class ListUtilities
 
     public static List<Integer> csv2IntegersList(final String csv)
     {
-        final List<Integer> values = new LinkedList<Integer>();
+        return new LinkedList<Integer>(csv2IntArrayList(csv).asList());
+    }
+
+    /**
+     * Parses a comma separated list of numbers into ints without boxing them.
+     * Values that aren't numbers are skipped and values that aren't ints
+     * become 0, as in csv2IntegersList().
+     * 
+     * @param csv
+     *            The comma separated values.
+     * @return The values.
+     */
+    public static IntArrayList csv2IntArrayList(final String csv)
+    {
+        final IntArrayList values = new IntArrayList();
         for (final String value : StrUtils.COMMA_SPLITTER.omitEmptyStrings().trimResults().split(csv))
         {
             if (NumberUtils.isNumber(value))
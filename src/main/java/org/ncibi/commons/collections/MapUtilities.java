@@ -1,9 +1,16 @@
 package org.ncibi.commons.collections;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import org.ncibi.commons.closure.F1;
+import org.ncibi.commons.closure.F2;
 import org.ncibi.commons.exception.ConstructorCalledError;
 
 import com.google.common.collect.ImmutableMap;
@@ -15,6 +22,11 @@ import com.google.common.collect.ImmutableMap;
  */
 public final class MapUtilities
 {
+    /**
+     * Fewest items worth building a map with several threads.
+     */
+    private static final int PARALLEL_THRESHOLD = 256 * 1024;
+
     /**
      * Utility class - can't be instantiated.
      */
@@ -43,18 +55,309 @@ public final class MapUtilities
     public static <K, V, T> Map<K, V> toHashMap(
             final Collection<? extends T> items, final Mapper<K, V, T> mapper)
     {
-        final Map<K, V> map = new HashMap<K, V>();
+        return toHashMap(items, mapper, CollisionPolicy.LAST_WINS);
+    }
+
+    /**
+     * Creates a new mutable map from a collection, sized for the collection
+     * so it is never rehashed.
+     * 
+     * @param <K>
+     *            The key type for the map.
+     * @param <V>
+     *            The value type for the map.
+     * @param <T>
+     *            The type of entry in the collection.
+     * @param items
+     *            A collection of items to create a map from.
+     * @param mapper
+     *            A mapper for extracting key and value from each item in the
+     *            collection.
+     * @param policy
+     *            What to do when items have the same key.
+     * @return A mutable map containing keys and values created from the
+     *         collection and identified using the mapper.
+     * @throws IllegalArgumentException
+     *             When items have the same key and the policy is FAIL.
+     */
+    public static <K, V, T> Map<K, V> toHashMap(final Collection<? extends T> items,
+            final Mapper<K, V, T> mapper, final CollisionPolicy policy)
+    {
+        return fill(new HashMap<K, V>(hashMapCapacity(items.size())), items, mapper, policy, null);
+    }
+
+    /**
+     * Creates a new mutable map from a collection, sized for the collection,
+     * combining the values of items with the same key.
+     * 
+     * @param <K>
+     *            The key type for the map.
+     * @param <V>
+     *            The value type for the map.
+     * @param <T>
+     *            The type of entry in the collection.
+     * @param items
+     *            A collection of items to create a map from.
+     * @param mapper
+     *            A mapper for extracting key and value from each item in the
+     *            collection.
+     * @param merge
+     *            Given the value mapped so far and the value of a later item
+     *            with the same key, returns the value to keep.
+     * @return A mutable map containing keys and values created from the
+     *         collection and identified using the mapper.
+     */
+    public static <K, V, T> Map<K, V> toHashMap(final Collection<? extends T> items,
+            final Mapper<K, V, T> mapper, final F2<V, V, V> merge)
+    {
+        return fill(new HashMap<K, V>(hashMapCapacity(items.size())), items, mapper, null, merge);
+    }
 
+    /**
+     * Creates a new mutable map from a collection using several threads.
+     * Each thread maps a contiguous chunk of the collection into its own map
+     * and the maps are then merged in collection order, so the policy sees
+     * items with the same key in the same order as toHashMap() does.
+     * 
+     * @param <K>
+     *            The key type for the map.
+     * @param <V>
+     *            The value type for the map.
+     * @param <T>
+     *            The type of entry in the collection.
+     * @param items
+     *            A collection of items to create a map from.
+     * @param mapper
+     *            A mapper for extracting key and value from each item in the
+     *            collection. It is called from several threads.
+     * @param policy
+     *            What to do when items have the same key.
+     * @param threads
+     *            The most threads to use.
+     * @return A mutable map containing keys and values created from the
+     *         collection and identified using the mapper.
+     * @throws IllegalArgumentException
+     *             When items have the same key and the policy is FAIL.
+     */
+    public static <K, V, T> Map<K, V> toParallelHashMap(final Collection<? extends T> items,
+            final Mapper<K, V, T> mapper, final CollisionPolicy policy, final int threads)
+    {
+        return parallelFill(items, mapper, policy, null, threads);
+    }
+
+    /**
+     * Creates a new mutable map from a collection using several threads,
+     * combining the values of items with the same key. The merge function is
+     * applied within each thread's chunk and then across chunks, in
+     * collection order, so it must be associative.
+     * 
+     * @param <K>
+     *            The key type for the map.
+     * @param <V>
+     *            The value type for the map.
+     * @param <T>
+     *            The type of entry in the collection.
+     * @param items
+     *            A collection of items to create a map from.
+     * @param mapper
+     *            A mapper for extracting key and value from each item in the
+     *            collection. It is called from several threads.
+     * @param merge
+     *            Given the value mapped so far and the value of a later item
+     *            with the same key, returns the value to keep.
+     * @param threads
+     *            The most threads to use.
+     * @return A mutable map containing keys and values created from the
+     *         collection and identified using the mapper.
+     */
+    public static <K, V, T> Map<K, V> toParallelHashMap(final Collection<? extends T> items,
+            final Mapper<K, V, T> mapper, final F2<V, V, V> merge, final int threads)
+    {
+        return parallelFill(items, mapper, null, merge, threads);
+    }
+
+    /**
+     * Groups the values of a collection by key. Each list holds the values of
+     * the items with its key in collection order.
+     * 
+     * @param <K>
+     *            The key type for the map.
+     * @param <V>
+     *            The value type for the map.
+     * @param <T>
+     *            The type of entry in the collection.
+     * @param items
+     *            A collection of items to group.
+     * @param mapper
+     *            A mapper for extracting key and value from each item in the
+     *            collection.
+     * @return A mutable map from each key to the values of its items.
+     */
+    public static <K, V, T> Map<K, List<V>> groupBy(final Collection<? extends T> items,
+            final Mapper<K, V, T> mapper)
+    {
+        final Map<K, List<V>> groups = new HashMap<K, List<V>>();
         for (final T item : items)
         {
             final K key = mapper.getKey(item);
-            final V value = mapper.getValue(item);
-            map.put(key, value);
+            List<V> group = groups.get(key);
+            if (group == null)
+            {
+                group = new ArrayList<V>(2);
+                groups.put(key, group);
+            }
+            group.add(mapper.getValue(item));
         }
+        return groups;
+    }
+
+    /**
+     * Groups the values of a collection by key using several threads. Each
+     * list holds the values of the items with its key in collection order.
+     * 
+     * @param <K>
+     *            The key type for the map.
+     * @param <V>
+     *            The value type for the map.
+     * @param <T>
+     *            The type of entry in the collection.
+     * @param items
+     *            A collection of items to group.
+     * @param mapper
+     *            A mapper for extracting key and value from each item in the
+     *            collection. It is called from several threads.
+     * @param threads
+     *            The most threads to use.
+     * @return A mutable map from each key to the values of its items.
+     */
+    public static <K, V, T> Map<K, List<V>> groupBy(final Collection<? extends T> items,
+            final Mapper<K, V, T> mapper, final int threads)
+    {
+        final List<Map<K, List<V>>> chunkGroups = mapChunks(items, threads,
+                new F1<Map<K, List<V>>, List<T>>()
+                {
+                    public Map<K, List<V>> apply(final List<T> chunk)
+                    {
+                        return groupBy(chunk, mapper);
+                    }
+                });
 
+        final Map<K, List<V>> groups = chunkGroups.get(0);
+        for (int i = 1; i < chunkGroups.size(); i++)
+        {
+            for (final Map.Entry<K, List<V>> entry : chunkGroups.get(i).entrySet())
+            {
+                final List<V> group = groups.get(entry.getKey());
+                if (group == null)
+                {
+                    groups.put(entry.getKey(), entry.getValue());
+                }
+                else
+                {
+                    group.addAll(entry.getValue());
+                }
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * Returns the initial capacity for a HashMap that holds a number of
+     * entries without being rehashed.
+     * 
+     * @param expected
+     *            The number of entries.
+     * @return The capacity.
+     */
+    public static int hashMapCapacity(final int expected)
+    {
+        return expected < 3 ? expected + 1 : (int) (expected / 0.75f) + 1;
+    }
+
+    /**
+     * Adds the items of a collection to a map.
+     */
+    private static <K, V, T> Map<K, V> fill(final Map<K, V> map,
+            final Collection<? extends T> items, final Mapper<K, V, T> mapper,
+            final CollisionPolicy policy, final F2<V, V, V> merge)
+    {
+        for (final T item : items)
+        {
+            put(map, mapper.getKey(item), mapper.getValue(item), policy, merge);
+        }
         return map;
     }
 
+    /**
+     * Maps a value, resolving a collision with the policy or, if there is no
+     * policy, the merge function. A key mapped to null counts as absent.
+     */
+    private static <K, V> void put(final Map<K, V> map, final K key, final V value,
+            final CollisionPolicy policy, final F2<V, V, V> merge)
+    {
+        final V existing = map.put(key, value);
+        if (existing != null)
+        {
+            final V kept = policy == null ? merge.apply(existing, value) : policy.resolve(key,
+                    existing, value);
+            if (kept != value)
+            {
+                map.put(key, kept);
+            }
+        }
+    }
+
+    /**
+     * Maps chunks of a collection into maps on several threads and merges
+     * them in collection order.
+     */
+    private static <K, V, T> Map<K, V> parallelFill(final Collection<? extends T> items,
+            final Mapper<K, V, T> mapper, final CollisionPolicy policy, final F2<V, V, V> merge,
+            final int threads)
+    {
+        final List<Map<K, V>> maps = mapChunks(items, threads,
+                new F1<Map<K, V>, List<T>>()
+                {
+                    public Map<K, V> apply(final List<T> chunk)
+                    {
+                        return fill(new HashMap<K, V>(hashMapCapacity(chunk.size())), chunk,
+                                mapper, policy, merge);
+                    }
+                });
+
+        // Merge into a map sized for every item rather than rehashing the
+        // first chunk's map as it grows.
+        final Map<K, V> map = new HashMap<K, V>(hashMapCapacity(items.size()));
+        for (final Map<K, V> chunkMap : maps)
+        {
+            for (final Map.Entry<K, V> entry : chunkMap.entrySet())
+            {
+                put(map, entry.getKey(), entry.getValue(), policy, merge);
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Applies a function to contiguous chunks of a collection, one chunk per
+     * thread, and returns the results in collection order. There is always
+     * at least one chunk.
+     */
+    private static <T, R> List<R> mapChunks(final Collection<? extends T> items,
+            final int threads, final F1<R, List<T>> function)
+    {
+        final List<T> list = new ArrayList<T>(items);
+        final int chunks = Math.max(1, Math.min(threads, list.size()));
+        if (chunks == 1)
+        {
+            return Collections.singletonList(function.apply(list));
+        }
+
+        final ChunkProcessor processor = new ChunkProcessor();
+        processor.setThreads(chunks);
+        return processor.map(list, (list.size() + chunks - 1) / chunks, function);
+    }
+
     /**
      * Creates a new immutable map from a collection.
      * 
@@ -86,4 +389,168 @@ public final class MapUtilities
 
         return builder.build();
     }
+
+    /**
+     * Creates an immutable String map kept in a memory mapped file, for maps
+     * too large to load into the heap at every start. The file can be opened
+     * again later with MappedStringMap.open().
+     * 
+     * @param <T>
+     *            The type of entry in the collection.
+     * @param items
+     *            A collection of items to create a map from.
+     * @param mapper
+     *            A mapper for extracting key and value from each item in the
+     *            collection. Keys must be unique and neither may be null.
+     * @param file
+     *            The file to write the map to.
+     * @return A map reading its keys and values from the file.
+     * @throws IOException
+     *             When the file can't be written.
+     * @see MappedStringMap
+     */
+    public static <T> MappedStringMap toMappedMap(final Collection<? extends T> items,
+            final Mapper<String, String, T> mapper, final File file) throws IOException
+    {
+        return MappedStringMap.build(file, items, mapper);
+    }
+
+    /**
+     * Creates a new immutable map from a collection, built on a minimal
+     * perfect hash of the keys, for static lookup tables that are read far
+     * more than they are built. Large collections are hashed with a thread per
+     * processor.
+     * 
+     * @param <K>
+     *            The key type for the map.
+     * @param <V>
+     *            The value type for the map.
+     * @param <T>
+     *            The type of entry in the collection.
+     * @param items
+     *            A collection of items to create a map from.
+     * @param mapper
+     *            A mapper for extracting key and value from each item in the
+     *            collection. Keys must be unique and neither may be null.
+     * @return An immutable map containing keys and values created from the
+     *         collection and identified using the mapper.
+     * @see PerfectHashMap
+     */
+    public static <K, V, T> PerfectHashMap<K, V> toPerfectHashMap(
+            final Collection<? extends T> items, final Mapper<K, V, T> mapper)
+    {
+        return PerfectHashMap.build(items, mapper, defaultThreads(items), false);
+    }
+
+    /**
+     * Creates a new immutable map from a collection, built on a minimal
+     * perfect hash of the keys with a given number of threads.
+     * 
+     * @param <K>
+     *            The key type for the map.
+     * @param <V>
+     *            The value type for the map.
+     * @param <T>
+     *            The type of entry in the collection.
+     * @param items
+     *            A collection of items to create a map from.
+     * @param mapper
+     *            A mapper for extracting key and value from each item in the
+     *            collection. Keys must be unique and neither may be null.
+     * @param threads
+     *            The most threads to build with.
+     * @return An immutable map containing keys and values created from the
+     *         collection and identified using the mapper.
+     */
+    public static <K, V, T> PerfectHashMap<K, V> toPerfectHashMap(
+            final Collection<? extends T> items, final Mapper<K, V, T> mapper,
+            final int threads)
+    {
+        return PerfectHashMap.build(items, mapper, threads, false);
+    }
+
+    /**
+     * Creates a new immutable map with String keys from a collection, built on
+     * a minimal perfect hash of the keys' characters rather than their hash
+     * codes, so keys with equal hash codes don't end up in the fallback map.
+     * Lookups hash the whole key instead of using its cached hash code.
+     * 
+     * @param <V>
+     *            The value type for the map.
+     * @param <T>
+     *            The type of entry in the collection.
+     * @param items
+     *            A collection of items to create a map from.
+     * @param mapper
+     *            A mapper for extracting key and value from each item in the
+     *            collection. Keys must be unique and neither may be null.
+     * @return An immutable map containing keys and values created from the
+     *         collection and identified using the mapper.
+     * @see PerfectHashMap
+     */
+    public static <V, T> PerfectHashMap<String, V> toStringPerfectHashMap(
+            final Collection<? extends T> items, final Mapper<String, V, T> mapper)
+    {
+        return PerfectHashMap.build(items, mapper, defaultThreads(items), true);
+    }
+
+    /**
+     * Creates a new immutable map with String keys from a collection, built on
+     * a minimal perfect hash of the keys' characters with a given number of
+     * threads.
+     * 
+     * @param <V>
+     *            The value type for the map.
+     * @param <T>
+     *            The type of entry in the collection.
+     * @param items
+     *            A collection of items to create a map from.
+     * @param mapper
+     *            A mapper for extracting key and value from each item in the
+     *            collection. Keys must be unique and neither may be null.
+     * @param threads
+     *            The most threads to build with.
+     * @return An immutable map containing keys and values created from the
+     *         collection and identified using the mapper.
+     */
+    public static <V, T> PerfectHashMap<String, V> toStringPerfectHashMap(
+            final Collection<? extends T> items, final Mapper<String, V, T> mapper,
+            final int threads)
+    {
+        return PerfectHashMap.build(items, mapper, threads, true);
+    }
+
+    /**
+     * Creates a new immutable map with int keys from a collection, built on a
+     * minimal perfect hash of the keys. The keys are boxed by the mapper but
+     * held and looked up as ints.
+     * 
+     * @param <V>
+     *            The value type for the map.
+     * @param <T>
+     *            The type of entry in the collection.
+     * @param items
+     *            A collection of items to create a map from.
+     * @param mapper
+     *            A mapper for extracting key and value from each item in the
+     *            collection. Keys must be unique and neither may be null.
+     * @return An immutable map containing keys and values created from the
+     *         collection and identified using the mapper.
+     * @see IntPerfectHashMap
+     */
+    public static <V, T> IntPerfectHashMap<V> toIntPerfectHashMap(
+            final Collection<? extends T> items, final Mapper<Integer, V, T> mapper)
+    {
+        return IntPerfectHashMap.build(items, mapper, defaultThreads(items));
+    }
+
+    /**
+     * Returns the number of threads to build a map from a collection with:
+     * one per processor for large collections, otherwise one.
+     */
+    private static int defaultThreads(final Collection<?> items)
+    {
+        return items.size() < PARALLEL_THRESHOLD ? 1 : Runtime.getRuntime()
+                .availableProcessors();
+    }
 }
@@ -0,0 +1,409 @@
+package org.ncibi.commons.collections;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.ncibi.commons.io.FileUtilities;
+
+/**
+ * An immutable String to String map kept in a file and read through a memory
+ * mapping, for large reference maps (IDs to names, synonyms) that would take
+ * minutes and gigabytes of heap to load into a HashMap. Opening the map only
+ * maps the file; entries are decoded when they are looked up, and the pages
+ * are shared through the OS page cache by every JVM that opens the file.
+ *
+ * The file holds the entries sorted by the UTF-8 bytes of their keys (which
+ * is code point order) behind a table of entry offsets, so a lookup is a
+ * binary search over the mapping. Iteration is in key order. The file must be
+ * smaller than 2GB.
+ *
+ * A MappedStringMap can be shared between threads. The mapping is released
+ * when the map is garbage collected.
+ *
+ * @author gtarcea
+ *
+ */
+public final class MappedStringMap extends AbstractMap<String, String>
+{
+    /**
+     * Identifies a map file ("NCSM").
+     */
+    private static final int MAGIC = 0x4e43534d;
+
+    /**
+     * Version of the map file format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Bytes before the offset table: magic, version and entry count.
+     */
+    private static final int HEADER_SIZE = 12;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * The map file.
+     */
+    private final File file;
+
+    /**
+     * The mapped file. Only absolute gets are used on it, so it is never
+     * modified after construction.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * The number of entries.
+     */
+    private final int count;
+
+    /**
+     * The entries, created on first use.
+     */
+    private Set<Map.Entry<String, String>> entrySet = null;
+
+    private MappedStringMap(final File file, final ByteBuffer buffer, final int count)
+    {
+        this.file = file;
+        this.buffer = buffer;
+        this.count = count;
+    }
+
+    /**
+     * Writes a map file from a collection and opens it. The file is written
+     * under a temporary name and renamed, so readers never see a partly
+     * written map.
+     *
+     * @param <T>
+     *            The type of the items.
+     * @param file
+     *            The map file to write.
+     * @param items
+     *            The items to create the map from.
+     * @param mapper
+     *            Extracts the key and value of each item; neither may be null.
+     * @return The map.
+     * @throws IOException
+     *             When the file can't be written or would be 2GB or larger.
+     * @throws IllegalArgumentException
+     *             When two items have the same key.
+     */
+    public static <T> MappedStringMap build(final File file, final Collection<? extends T> items,
+            final Mapper<String, String, T> mapper) throws IOException
+    {
+        final byte[][][] entries = new byte[items.size()][][];
+        int n = 0;
+        for (final T item : items)
+        {
+            final String key = mapper.getKey(item);
+            final String value = mapper.getValue(item);
+            if (key == null || value == null)
+            {
+                throw new NullPointerException("MappedStringMap doesn't allow null keys or values");
+            }
+            entries[n++] = new byte[][] { key.getBytes(UTF8), value.getBytes(UTF8) };
+        }
+        Arrays.sort(entries, new Comparator<byte[][]>()
+        {
+            public int compare(final byte[][] a, final byte[][] b)
+            {
+                return compareBytes(a[0], b[0]);
+            }
+        });
+
+        final int[] offsets = new int[n + 1];
+        long offset = HEADER_SIZE + 4L * (n + 1);
+        for (int i = 0; i < n; i++)
+        {
+            if (i > 0 && compareBytes(entries[i - 1][0], entries[i][0]) == 0)
+            {
+                throw new IllegalArgumentException("Duplicate key: "
+                        + new String(entries[i][0], UTF8));
+            }
+            offsets[i] = (int) offset;
+            offset += 4 + entries[i][0].length + entries[i][1].length;
+            if (offset > Integer.MAX_VALUE)
+            {
+                throw new IOException("Map file " + file + " would be larger than 2GB");
+            }
+        }
+        offsets[n] = (int) offset;
+
+        final File tmp = new File(file.getPath() + ".tmp");
+        try
+        {
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(tmp)));
+            try
+            {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(n);
+                for (final int entryOffset : offsets)
+                {
+                    out.writeInt(entryOffset);
+                }
+                for (final byte[][] entry : entries)
+                {
+                    out.writeInt(entry[0].length);
+                    out.write(entry[0]);
+                    out.write(entry[1]);
+                }
+            }
+            finally
+            {
+                out.close();
+            }
+            FileUtilities.replaceFile(tmp, file);
+        }
+        catch (IOException e)
+        {
+            tmp.delete();
+            throw e;
+        }
+        catch (RuntimeException e)
+        {
+            tmp.delete();
+            throw e;
+        }
+
+        return open(file);
+    }
+
+    /**
+     * Opens a map file.
+     *
+     * @param file
+     *            The map file.
+     * @return The map.
+     * @throws IOException
+     *             When the file can't be read or isn't a map file.
+     */
+    public static MappedStringMap open(final File file) throws IOException
+    {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try
+        {
+            final FileChannel channel = raf.getChannel();
+            if (channel.size() > Integer.MAX_VALUE || channel.size() < HEADER_SIZE)
+            {
+                throw new IOException("Not a map file: " + file);
+            }
+            final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+            {
+                throw new IOException("Not a map file, or an unsupported version: " + file);
+            }
+            final int count = buffer.getInt(8);
+            if (count < 0 || HEADER_SIZE + 4L * (count + 1) > buffer.capacity()
+                    || buffer.getInt(HEADER_SIZE + 4 * count) != buffer.capacity())
+            {
+                throw new IOException("Map file is truncated: " + file);
+            }
+            return new MappedStringMap(file, buffer, count);
+        }
+        finally
+        {
+            // The mapping stays valid after the file is closed.
+            raf.close();
+        }
+    }
+
+    /**
+     * @return The map file.
+     */
+    public File getFile()
+    {
+        return file;
+    }
+
+    @Override
+    public int size()
+    {
+        return count;
+    }
+
+    @Override
+    public boolean containsKey(final Object key)
+    {
+        return find(key) >= 0;
+    }
+
+    @Override
+    public String get(final Object key)
+    {
+        final int entry = find(key);
+        return entry < 0 ? null : valueAt(entry);
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet()
+    {
+        if (entrySet == null)
+        {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    /**
+     * Finds a key with a binary search.
+     *
+     * @return The key's entry, or -1 if it isn't in the map.
+     */
+    private int find(final Object key)
+    {
+        if (!(key instanceof String))
+        {
+            return -1;
+        }
+        final byte[] bytes = ((String) key).getBytes(UTF8);
+        int low = 0;
+        int high = count - 1;
+        while (low <= high)
+        {
+            final int mid = (low + high) >>> 1;
+            final int cmp = compareKey(mid, bytes);
+            if (cmp < 0)
+            {
+                low = mid + 1;
+            }
+            else if (cmp > 0)
+            {
+                high = mid - 1;
+            }
+            else
+            {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compares an entry's key with a key as unsigned bytes.
+     */
+    private int compareKey(final int entry, final byte[] key)
+    {
+        final int start = entryOffset(entry);
+        final int length = buffer.getInt(start);
+        final int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++)
+        {
+            final int diff = (buffer.get(start + 4 + i) & 0xff) - (key[i] & 0xff);
+            if (diff != 0)
+            {
+                return diff;
+            }
+        }
+        return length - key.length;
+    }
+
+    private int entryOffset(final int entry)
+    {
+        return buffer.getInt(HEADER_SIZE + 4 * entry);
+    }
+
+    private String keyAt(final int entry)
+    {
+        final int start = entryOffset(entry);
+        return decode(start + 4, buffer.getInt(start));
+    }
+
+    private String valueAt(final int entry)
+    {
+        final int start = entryOffset(entry);
+        final int valueStart = start + 4 + buffer.getInt(start);
+        return decode(valueStart, entryOffset(entry + 1) - valueStart);
+    }
+
+    /**
+     * Decodes a range of the mapping, through a duplicate so the shared
+     * buffer's position is never changed.
+     */
+    private String decode(final int start, final int length)
+    {
+        final byte[] bytes = new byte[length];
+        final ByteBuffer view = buffer.duplicate();
+        view.position(start);
+        view.get(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    /**
+     * Compares two byte arrays as unsigned bytes. For UTF-8 this is the same
+     * as comparing code points.
+     */
+    private static int compareBytes(final byte[] a, final byte[] b)
+    {
+        final int length = Math.min(a.length, b.length);
+        for (int i = 0; i < length; i++)
+        {
+            final int diff = (a[i] & 0xff) - (b[i] & 0xff);
+            if (diff != 0)
+            {
+                return diff;
+            }
+        }
+        return a.length - b.length;
+    }
+
+    /**
+     * The entries, decoded as they are iterated.
+     */
+    private final class EntrySet extends AbstractSet<Map.Entry<String, String>>
+    {
+        @Override
+        public int size()
+        {
+            return count;
+        }
+
+        @Override
+        public Iterator<Map.Entry<String, String>> iterator()
+        {
+            return new Iterator<Map.Entry<String, String>>()
+            {
+                private int next = 0;
+
+                public boolean hasNext()
+                {
+                    return next < count;
+                }
+
+                public Map.Entry<String, String> next()
+                {
+                    if (next >= count)
+                    {
+                        throw new NoSuchElementException();
+                    }
+                    final int entry = next++;
+                    return new AbstractMap.SimpleImmutableEntry<String, String>(keyAt(entry),
+                            valueAt(entry));
+                }
+
+                public void remove()
+                {
+                    throw new UnsupportedOperationException("MappedStringMap is immutable");
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,410 @@
+package org.ncibi.commons.collections;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.ncibi.commons.collections.primitive.LongArrayList;
+import org.ncibi.commons.lang.HashUtils;
+
+/**
+ * A minimal perfect hash function over a static set of 64 bit key hashes,
+ * built the BBHash way. Each level is a bit array about GAMMA times larger
+ * than the keys left for it; a key that lands on a position no other key of
+ * its level lands on sets that bit, and the keys that collide move on to the
+ * next, smaller level. A key's index is the number of bits set before its
+ * bit, counted with a rank table, so the indexes of n placed keys are exactly
+ * 0 .. n - 1.
+ *
+ * Keys still colliding after the last level, including distinct keys with
+ * equal hashes, aren't placed; index() returns -1 for them and the maps
+ * built on this keep them in a fallback map. Like any perfect hash, index()
+ * returns an arbitrary index for a hash that wasn't in the set, so callers
+ * must compare the key stored at the index.
+ *
+ * Each level can be built by several threads, each handling a slice of the
+ * keys and setting bits with compare and set.
+ *
+ * @author gtarcea
+ *
+ */
+final class MinimalPerfectHash
+{
+    /**
+     * Bits per key in each level. Larger is faster to build and look up but
+     * uses more memory; 2 costs about 3.5 bits per key.
+     */
+    static final double GAMMA = 2.0;
+
+    /**
+     * Levels before the remaining keys are given up on.
+     */
+    private static final int MAX_LEVELS = 24;
+
+    /**
+     * Seeds that give each level its own position for a key.
+     */
+    private static final long[] LEVEL_SEEDS = new long[MAX_LEVELS];
+
+    static
+    {
+        for (int level = 0; level < MAX_LEVELS; level++)
+        {
+            LEVEL_SEEDS[level] = HashUtils.mix((level + 1) * 0x9E3779B97F4A7C15L);
+        }
+    }
+
+    /**
+     * Longs per block of the rank table.
+     */
+    private static final int RANK_BLOCK = 8;
+
+    /**
+     * Fewest keys per thread worth a parallel level.
+     */
+    private static final int MIN_KEYS_PER_THREAD = 64 * 1024;
+
+    /**
+     * The bits of every level, back to back.
+     */
+    private final long[] bits;
+
+    /**
+     * First bit of each level.
+     */
+    private final long[] levelStarts;
+
+    /**
+     * Bits in each level.
+     */
+    private final int[] levelSizes;
+
+    /**
+     * Bits set before each block of RANK_BLOCK longs.
+     */
+    private final int[] ranks;
+
+    /**
+     * The number of keys placed.
+     */
+    private final int placed;
+
+    private MinimalPerfectHash(final long[] bits, final long[] levelStarts,
+            final int[] levelSizes)
+    {
+        this.bits = bits;
+        this.levelStarts = levelStarts;
+        this.levelSizes = levelSizes;
+        this.ranks = new int[(bits.length + RANK_BLOCK - 1) / RANK_BLOCK];
+        int total = 0;
+        for (int i = 0; i < bits.length; i++)
+        {
+            if (i % RANK_BLOCK == 0)
+            {
+                ranks[i / RANK_BLOCK] = total;
+            }
+            total += Long.bitCount(bits[i]);
+        }
+        this.placed = total;
+    }
+
+    /**
+     * Builds the function for a set of key hashes.
+     *
+     * @param hashes
+     *            The hashes of the keys.
+     * @param threads
+     *            The most threads to build with; 1 builds on the calling
+     *            thread.
+     * @return The function.
+     */
+    static MinimalPerfectHash build(final long[] hashes, final int threads)
+    {
+        final ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads)
+                : null;
+        try
+        {
+            final List<long[]> levels = new ArrayList<long[]>();
+            long[] keys = hashes;
+            for (int level = 0; level < MAX_LEVELS && keys.length > 0; level++)
+            {
+                final int size = levelSize(keys.length);
+                final AtomicLongArray seen = new AtomicLongArray(size / 64);
+                final AtomicLongArray collided = new AtomicLongArray(size / 64);
+                final int slices = executor == null ? 1 : Math.max(1, Math.min(threads,
+                        keys.length / MIN_KEYS_PER_THREAD));
+
+                final long[] levelKeys = keys;
+                final int levelNumber = level;
+                runSlices(executor, slices, keys.length, new SliceTask()
+                {
+                    public LongArrayList run(final int from, final int to)
+                    {
+                        for (int i = from; i < to; i++)
+                        {
+                            final int position = position(levelKeys[i], levelNumber, size);
+                            if (!setBit(seen, position))
+                            {
+                                setBit(collided, position);
+                            }
+                        }
+                        return null;
+                    }
+                });
+                final List<LongArrayList> remaining = runSlices(executor, slices, keys.length,
+                        new SliceTask()
+                        {
+                            public LongArrayList run(final int from, final int to)
+                            {
+                                final LongArrayList next = new LongArrayList();
+                                for (int i = from; i < to; i++)
+                                {
+                                    final int position = position(levelKeys[i], levelNumber,
+                                            size);
+                                    if (getBit(collided, position))
+                                    {
+                                        next.add(levelKeys[i]);
+                                    }
+                                }
+                                return next;
+                            }
+                        });
+
+                final long[] levelBits = new long[size / 64];
+                for (int i = 0; i < levelBits.length; i++)
+                {
+                    levelBits[i] = seen.get(i) & ~collided.get(i);
+                }
+                levels.add(levelBits);
+
+                final LongArrayList next = new LongArrayList();
+                for (final LongArrayList slice : remaining)
+                {
+                    next.addAll(slice);
+                }
+                keys = next.toArray();
+            }
+            return assemble(levels);
+        }
+        finally
+        {
+            if (executor != null)
+            {
+                executor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Returns the index of a key hash.
+     *
+     * @param hash
+     *            The key's hash.
+     * @return An index from 0 to getPlacedCount() - 1, which is only the
+     *         key's if the key was in the set, or -1 if the key wasn't placed.
+     */
+    int index(final long hash)
+    {
+        for (int level = 0; level < levelSizes.length; level++)
+        {
+            final long bit = levelStarts[level] + position(hash, level, levelSizes[level]);
+            final int word = (int) (bit >>> 6);
+            if ((bits[word] & (1L << bit)) != 0)
+            {
+                return rank(word, (int) bit & 63);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return The number of keys given indexes.
+     */
+    int getPlacedCount()
+    {
+        return placed;
+    }
+
+    /**
+     * @return The number of bits used, including the rank table.
+     */
+    long getBitCount()
+    {
+        return 64L * bits.length + 32L * ranks.length;
+    }
+
+    /**
+     * Hashes an int to 64 bits. Distinct ints have distinct hashes.
+     *
+     * @param key
+     *            The key.
+     * @return The hash.
+     */
+    static long hash(final int key)
+    {
+        return HashUtils.mix(key);
+    }
+
+    /**
+     * Hashes a key to 64 bits from its hashCode(), which Strings cache, so
+     * keys with equal hash codes collide at every level and are left for the
+     * fallback map. For n String keys that is about n * n / 2^33 keys.
+     *
+     * @param key
+     *            The key.
+     * @return The hash.
+     */
+    static long hash(final Object key)
+    {
+        return HashUtils.mix(key.hashCode());
+    }
+
+    /**
+     * Returns a key's position in a level.
+     */
+    private static int position(final long hash, final int level, final int size)
+    {
+        long h = (hash ^ LEVEL_SEEDS[level]) * 0xff51afd7ed558ccdL;
+        h ^= h >>> 29;
+        return (int) (((h >>> 32) * size) >>> 32);
+    }
+
+    /**
+     * Returns the number of bits for a level, a multiple of 64.
+     */
+    private static int levelSize(final int keys)
+    {
+        final long size = Math.max(64L, (long) Math.ceil(keys * GAMMA));
+        final long rounded = (size + 63) & ~63L;
+        if (rounded > Integer.MAX_VALUE)
+        {
+            throw new IllegalArgumentException("Too many keys for a perfect hash: " + keys);
+        }
+        return (int) rounded;
+    }
+
+    /**
+     * Counts the bits set before a bit.
+     */
+    private int rank(final int word, final int bit)
+    {
+        int rank = ranks[word / RANK_BLOCK];
+        for (int i = word - word % RANK_BLOCK; i < word; i++)
+        {
+            rank += Long.bitCount(bits[i]);
+        }
+        return rank + Long.bitCount(bits[word] & ((1L << bit) - 1));
+    }
+
+    /**
+     * Joins the levels into one bit array.
+     */
+    private static MinimalPerfectHash assemble(final List<long[]> levels)
+    {
+        int words = 0;
+        for (final long[] level : levels)
+        {
+            words += level.length;
+        }
+        final long[] bits = new long[words];
+        final long[] starts = new long[levels.size()];
+        final int[] sizes = new int[levels.size()];
+        int word = 0;
+        for (int i = 0; i < levels.size(); i++)
+        {
+            final long[] level = levels.get(i);
+            System.arraycopy(level, 0, bits, word, level.length);
+            starts[i] = 64L * word;
+            sizes[i] = 64 * level.length;
+            word += level.length;
+        }
+        return new MinimalPerfectHash(bits, starts, sizes);
+    }
+
+    /**
+     * Sets a bit.
+     *
+     * @return False if it was already set.
+     */
+    private static boolean setBit(final AtomicLongArray array, final int bit)
+    {
+        final int word = bit >>> 6;
+        final long mask = 1L << bit;
+        while (true)
+        {
+            final long old = array.get(word);
+            if ((old & mask) != 0)
+            {
+                return false;
+            }
+            if (array.compareAndSet(word, old, old | mask))
+            {
+                return true;
+            }
+        }
+    }
+
+    private static boolean getBit(final AtomicLongArray array, final int bit)
+    {
+        return (array.get(bit >>> 6) & (1L << bit)) != 0;
+    }
+
+    /**
+     * Work on a slice of a level's keys.
+     */
+    private interface SliceTask
+    {
+        LongArrayList run(int from, int to);
+    }
+
+    /**
+     * Runs a task over equal slices of the keys, on the executor if there is
+     * one, and returns the results in slice order.
+     */
+    private static List<LongArrayList> runSlices(final ExecutorService executor,
+            final int slices, final int keys, final SliceTask task)
+    {
+        final List<LongArrayList> results = new ArrayList<LongArrayList>(slices);
+        if (executor == null || slices == 1)
+        {
+            results.add(task.run(0, keys));
+            return results;
+        }
+
+        final List<Future<LongArrayList>> futures = new ArrayList<Future<LongArrayList>>(slices);
+        for (int slice = 0; slice < slices; slice++)
+        {
+            final int from = (int) ((long) keys * slice / slices);
+            final int to = (int) ((long) keys * (slice + 1) / slices);
+            futures.add(executor.submit(new Callable<LongArrayList>()
+            {
+                public LongArrayList call()
+                {
+                    return task.run(from, to);
+                }
+            }));
+        }
+        try
+        {
+            for (final Future<LongArrayList> future : futures)
+            {
+                results.add(future.get());
+            }
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted building a perfect hash", e);
+        }
+        catch (final ExecutionException e)
+        {
+            throw new RuntimeException("Failed building a perfect hash", e.getCause());
+        }
+        return results;
+    }
+}
@@ -0,0 +1,260 @@
+package org.ncibi.commons.collections;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.ncibi.commons.lang.HashUtils;
+
+/**
+ * An immutable map for static lookup tables, built on a minimal perfect hash
+ * of its keys: a lookup hashes the key, finds its slot with a few bit
+ * operations and compares the one key stored there, with no probing and no
+ * entry objects. The keys and values are held in two arrays sized to the map,
+ * plus about 3.5 bits per key for the hash function.
+ *
+ * Keys are hashed from hashCode(). Keys whose hash codes collide can't be
+ * told apart by the perfect hash and are kept in a fallback HashMap; for
+ * String keys that is a handful per million. String keys can instead be
+ * hashed from their characters to 64 bits (see
+ * MapUtilities.toStringPerfectHashMap()), which places keys with equal hash
+ * codes at the cost of hashing the characters on every lookup. Null keys and
+ * values aren't allowed.
+ *
+ * @author gtarcea
+ *
+ * @param <K>
+ *            The key type.
+ * @param <V>
+ *            The value type.
+ */
+public final class PerfectHashMap<K, V> extends AbstractMap<K, V>
+{
+    /**
+     * Gives each placed key its slot.
+     */
+    private final MinimalPerfectHash hash;
+
+    /**
+     * The placed keys, by slot.
+     */
+    private final Object[] keys;
+
+    /**
+     * The values of the placed keys, by slot.
+     */
+    private final Object[] values;
+
+    /**
+     * Entries the perfect hash couldn't place.
+     */
+    private final Map<K, V> fallback;
+
+    /**
+     * Are the keys Strings hashed from their characters?
+     */
+    private final boolean charHash;
+
+    /**
+     * The entries, created on first use.
+     */
+    private Set<Map.Entry<K, V>> entrySet = null;
+
+    private PerfectHashMap(final MinimalPerfectHash hash, final Object[] keys,
+            final Object[] values, final Map<K, V> fallback, final boolean charHash)
+    {
+        this.hash = hash;
+        this.keys = keys;
+        this.values = values;
+        this.fallback = fallback;
+        this.charHash = charHash;
+    }
+
+    /**
+     * Builds a map from a collection.
+     *
+     * @param <K>
+     *            The key type.
+     * @param <V>
+     *            The value type.
+     * @param <T>
+     *            The type of the items.
+     * @param items
+     *            The items to create the map from.
+     * @param mapper
+     *            Extracts the key and value of each item; neither may be null.
+     * @param threads
+     *            The most threads to build the hash with.
+     * @param charHash
+     *            If true the keys are Strings hashed from their characters
+     *            rather than their hash codes.
+     * @return The map.
+     * @throws IllegalArgumentException
+     *             When two items have the same key.
+     */
+    static <K, V, T> PerfectHashMap<K, V> build(final Collection<? extends T> items,
+            final Mapper<K, V, T> mapper, final int threads, final boolean charHash)
+    {
+        final int n = items.size();
+        final Object[] itemKeys = new Object[n];
+        final Object[] itemValues = new Object[n];
+        final long[] hashes = new long[n];
+        int i = 0;
+        for (final T item : items)
+        {
+            final K key = mapper.getKey(item);
+            final V value = mapper.getValue(item);
+            if (key == null || value == null)
+            {
+                throw new NullPointerException("PerfectHashMap doesn't allow null keys or values");
+            }
+            itemKeys[i] = key;
+            itemValues[i] = value;
+            hashes[i] = hash(key, charHash);
+            i++;
+        }
+
+        final MinimalPerfectHash hash = MinimalPerfectHash.build(hashes, threads);
+        final Object[] keys = new Object[hash.getPlacedCount()];
+        final Object[] values = new Object[keys.length];
+        final Map<K, V> fallback = new HashMap<K, V>();
+        for (i = 0; i < n; i++)
+        {
+            final int slot = hash.index(hashes[i]);
+            if (slot >= 0)
+            {
+                keys[slot] = itemKeys[i];
+                values[slot] = itemValues[i];
+            }
+            else
+            {
+                // Duplicate keys always collide, so they all end up here.
+                @SuppressWarnings("unchecked")
+                final K key = (K) itemKeys[i];
+                @SuppressWarnings("unchecked")
+                final V value = (V) itemValues[i];
+                if (fallback.put(key, value) != null)
+                {
+                    throw new IllegalArgumentException("Duplicate key: " + key);
+                }
+            }
+        }
+        return new PerfectHashMap<K, V>(hash, keys, values, fallback, charHash);
+    }
+
+    @Override
+    public int size()
+    {
+        return keys.length + fallback.size();
+    }
+
+    @Override
+    public boolean containsKey(final Object key)
+    {
+        return get(key) != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V get(final Object key)
+    {
+        if (key == null || (charHash && !(key instanceof String)))
+        {
+            return null;
+        }
+        final int slot = hash.index(hash(key, charHash));
+        if (slot >= 0 && keys[slot].equals(key))
+        {
+            return (V) values[slot];
+        }
+        return fallback.isEmpty() ? null : fallback.get(key);
+    }
+
+    /**
+     * Hashes a key from its characters or from its hash code.
+     */
+    private static long hash(final Object key, final boolean charHash)
+    {
+        return charHash ? HashUtils.hashChars((String) key) : MinimalPerfectHash
+                .hash(key);
+    }
+
+    /**
+     * @return The number of entries the perfect hash couldn't place.
+     */
+    public int getFallbackSize()
+    {
+        return fallback.size();
+    }
+
+    /**
+     * @return The bits per key used by the perfect hash.
+     */
+    public double getBitsPerKey()
+    {
+        return keys.length == 0 ? 0 : (double) hash.getBitCount() / keys.length;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet()
+    {
+        if (entrySet == null)
+        {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    /**
+     * The placed entries in slot order, then the fallback entries.
+     */
+    private final class EntrySet extends AbstractSet<Map.Entry<K, V>>
+    {
+        @Override
+        public int size()
+        {
+            return PerfectHashMap.this.size();
+        }
+
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator()
+        {
+            final Iterator<Map.Entry<K, V>> fallbackEntries = fallback.entrySet().iterator();
+            return new Iterator<Map.Entry<K, V>>()
+            {
+                private int next = 0;
+
+                public boolean hasNext()
+                {
+                    return next < keys.length || fallbackEntries.hasNext();
+                }
+
+                @SuppressWarnings("unchecked")
+                public Map.Entry<K, V> next()
+                {
+                    if (next < keys.length)
+                    {
+                        final int slot = next++;
+                        return new AbstractMap.SimpleImmutableEntry<K, V>((K) keys[slot],
+                                (V) values[slot]);
+                    }
+                    if (!fallbackEntries.hasNext())
+                    {
+                        throw new NoSuchElementException();
+                    }
+                    return new AbstractMap.SimpleImmutableEntry<K, V>(fallbackEntries.next());
+                }
+
+                public void remove()
+                {
+                    throw new UnsupportedOperationException("PerfectHashMap is immutable");
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package org.ncibi.commons.collections.primitive;
+
+import java.util.Arrays;
+
+/**
+ * An immutable set of ints stored with Elias-Fano coding, for large static
+ * sets of IDs. Each value is split into high and low bits: the low bits are
+ * packed side by side and the high bits are stored in unary, so the set takes
+ * about 2 + log2(range / size) bits per value, where range is the distance
+ * from the smallest value to the largest, a few bits for dense ID ranges
+ * against the 32 of a sorted int[] and the 64 or more of an IntHashSet.
+ *
+ * contains() finds the value's bucket of high bits with a sampled select and
+ * scans the few low bits in it; get() returns the values in ascending order
+ * by index.
+ *
+ * @author gtarcea
+ *
+ */
+public final class EliasFanoIntSet
+{
+    /**
+     * Ones or zeros of the high bits between samples.
+     */
+    private static final int SAMPLE_INTERVAL = 256;
+
+    /**
+     * The number of values.
+     */
+    private final int size;
+
+    /**
+     * The smallest value, unsigned; the others are stored as offsets from it.
+     */
+    private final long minimum;
+
+    /**
+     * The number of low bits per value.
+     */
+    private final int lowBits;
+
+    /**
+     * The low bits of each value, packed.
+     */
+    private final long[] lower;
+
+    /**
+     * The high bits of value i as a one at position high + i; the zeros end
+     * the buckets of values with equal high bits.
+     */
+    private final long[] upper;
+
+    /**
+     * The number of buckets, one past the largest high bits.
+     */
+    private final long buckets;
+
+    /**
+     * The position of every SAMPLE_INTERVAL'th one in upper.
+     */
+    private final int[] oneSamples;
+
+    /**
+     * The position of every SAMPLE_INTERVAL'th zero in upper.
+     */
+    private final int[] zeroSamples;
+
+    private EliasFanoIntSet(final long[] values, final int size)
+    {
+        this.size = size;
+        this.minimum = size == 0 ? 0 : values[0];
+        final long universe = size == 0 ? 1 : values[size - 1] - minimum + 1;
+        this.lowBits = size == 0 ? 0 : 63 - Long.numberOfLeadingZeros(universe / size);
+        this.buckets = size == 0 ? 1 : ((values[size - 1] - minimum) >>> lowBits) + 1;
+        this.lower = new long[(int) (((long) size * lowBits + 63) >>> 6)];
+        this.upper = new long[(int) ((size + buckets + 63) >>> 6)];
+
+        final long lowMask = (1L << lowBits) - 1;
+        for (int i = 0; i < size; i++)
+        {
+            final long value = values[i] - minimum;
+            final long high = (value >>> lowBits) + i;
+            upper[(int) (high >>> 6)] |= 1L << high;
+            if (lowBits > 0)
+            {
+                final long offset = (long) i * lowBits;
+                final int word = (int) (offset >>> 6);
+                final int shift = (int) offset & 63;
+                final long low = value & lowMask;
+                lower[word] |= low << shift;
+                if (shift + lowBits > 64)
+                {
+                    lower[word + 1] |= low >>> (64 - shift);
+                }
+            }
+        }
+
+        this.oneSamples = new int[(size + SAMPLE_INTERVAL - 1) / SAMPLE_INTERVAL];
+        this.zeroSamples = new int[(int) ((buckets + SAMPLE_INTERVAL - 1) / SAMPLE_INTERVAL)];
+        int ones = 0;
+        int zeros = 0;
+        for (int position = 0; position < size + buckets; position++)
+        {
+            if ((upper[position >>> 6] & (1L << position)) != 0)
+            {
+                if (ones % SAMPLE_INTERVAL == 0)
+                {
+                    oneSamples[ones / SAMPLE_INTERVAL] = position;
+                }
+                ones++;
+            }
+            else
+            {
+                if (zeros % SAMPLE_INTERVAL == 0)
+                {
+                    zeroSamples[zeros / SAMPLE_INTERVAL] = position;
+                }
+                zeros++;
+            }
+        }
+    }
+
+    /**
+     * Creates a set of the values of an array, which needn't be sorted or
+     * distinct.
+     *
+     * @param values
+     *            The values.
+     * @return The set.
+     */
+    public static EliasFanoIntSet of(final int[] values)
+    {
+        return of(values, values.length);
+    }
+
+    /**
+     * Creates a set of the values of a list, which needn't be sorted or
+     * distinct.
+     *
+     * @param values
+     *            The values.
+     * @return The set.
+     */
+    public static EliasFanoIntSet of(final IntArrayList values)
+    {
+        return of(values.toArray(), values.size());
+    }
+
+    private static EliasFanoIntSet of(final int[] values, final int count)
+    {
+        final long[] unsigned = new long[count];
+        for (int i = 0; i < count; i++)
+        {
+            unsigned[i] = toUnsigned(values[i]);
+        }
+        Arrays.sort(unsigned);
+        return new EliasFanoIntSet(unsigned, PrimitiveCollections.unique(unsigned, count));
+    }
+
+    /**
+     * @return The number of values.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return True if the set has no values.
+     */
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+     * @param value
+     *            The value.
+     * @return True if the set holds the value.
+     */
+    public boolean contains(final int value)
+    {
+        return indexOf(value) >= 0;
+    }
+
+    /**
+     * Returns the index of a value: the number of smaller values in the set.
+     *
+     * @param value
+     *            The value.
+     * @return The index, or -1 if the set doesn't hold the value.
+     */
+    public int indexOf(final int value)
+    {
+        final long offset = toUnsigned(value) - minimum;
+        if (size == 0 || offset < 0 || (offset >>> lowBits) >= buckets)
+        {
+            return -1;
+        }
+        final long high = offset >>> lowBits;
+        final long low = offset & ((1L << lowBits) - 1);
+        // The bucket's ones start after the zero that ends the bucket before
+        // it, and the zero that ends the bucket stops the scan.
+        long position = high == 0 ? 0 : select(zeroSamples, false, high - 1) + 1;
+        int index = (int) (position - high);
+        while ((upper[(int) (position >>> 6)] & (1L << position)) != 0)
+        {
+            final long candidate = low(index);
+            if (candidate >= low)
+            {
+                return candidate == low ? index : -1;
+            }
+            position++;
+            index++;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns a value by index.
+     *
+     * @param index
+     *            The index, from 0 to size() - 1.
+     * @return The index'th smallest value.
+     */
+    public int get(final int index)
+    {
+        if (index < 0 || index >= size)
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        final long high = select(oneSamples, true, index) - index;
+        return fromUnsigned(minimum + ((high << lowBits) | low(index)));
+    }
+
+    /**
+     * @return The values in ascending order.
+     */
+    public int[] toArray()
+    {
+        final int[] values = new int[size];
+        int index = 0;
+        for (int word = 0; word < upper.length && index < size; word++)
+        {
+            long bits = upper[word];
+            while (bits != 0)
+            {
+                final long high = ((long) word << 6) + Long.numberOfTrailingZeros(bits) - index;
+                values[index] = fromUnsigned(minimum + ((high << lowBits) | low(index)));
+                index++;
+                bits &= bits - 1;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @return The number of bits used, including the select samples.
+     */
+    public long getBitCount()
+    {
+        return 64L * (lower.length + upper.length) + 32L
+                * (oneSamples.length + zeroSamples.length);
+    }
+
+    /**
+     * Returns the low bits of a value.
+     */
+    private long low(final int index)
+    {
+        if (lowBits == 0)
+        {
+            return 0;
+        }
+        final long offset = (long) index * lowBits;
+        final int word = (int) (offset >>> 6);
+        final int shift = (int) offset & 63;
+        long low = lower[word] >>> shift;
+        if (shift + lowBits > 64)
+        {
+            low |= lower[word + 1] << (64 - shift);
+        }
+        return low & ((1L << lowBits) - 1);
+    }
+
+    /**
+     * Returns the position of the rank'th one, or zero, in upper.
+     */
+    private long select(final int[] samples, final boolean ones, final long rank)
+    {
+        final int sample = samples[(int) (rank / SAMPLE_INTERVAL)];
+        long remaining = rank % SAMPLE_INTERVAL;
+        int word = sample >>> 6;
+        long bits = (ones ? upper[word] : ~upper[word]) & (-1L << sample);
+        while (true)
+        {
+            final int count = Long.bitCount(bits);
+            if (remaining < count)
+            {
+                for (; remaining > 0; remaining--)
+                {
+                    bits &= bits - 1;
+                }
+                return ((long) word << 6) + Long.numberOfTrailingZeros(bits);
+            }
+            remaining -= count;
+            word++;
+            bits = ones ? upper[word] : ~upper[word];
+        }
+    }
+
+    /**
+     * Maps an int to a long so that unsigned order is the int's order.
+     */
+    private static long toUnsigned(final int value)
+    {
+        return (value ^ Integer.MIN_VALUE) & 0xffffffffL;
+    }
+
+    private static int fromUnsigned(final long value)
+    {
+        return (int) value ^ Integer.MIN_VALUE;
+    }
+}
@@ -0,0 +1,335 @@
+package org.ncibi.commons.collections.primitive;
+
+import java.util.Arrays;
+
+import org.ncibi.commons.lang.HashUtils;
+
+/**
+ * A map from ints to ints held in an open addressing hash table: parallel
+ * key and value arrays probed linearly, with no entry objects and no boxing.
+ * Lookups of absent keys return the map's missing value, 0 unless another is
+ * given to the constructor. Useful for counts per ID and ID remapping.
+ *
+ * @author gtarcea
+ *
+ */
+public class Int2IntMap
+{
+    /**
+     * The keys; 0 is an empty slot.
+     */
+    private int[] keys;
+
+    /**
+     * The values, in the slots of their keys.
+     */
+    private int[] values;
+
+    /**
+     * Selects a slot from a hash.
+     */
+    private int mask;
+
+    /**
+     * The number of keys in the table, not counting 0.
+     */
+    private int tableCount = 0;
+
+    /**
+     * Is 0 a key?
+     */
+    private boolean hasZeroKey = false;
+
+    /**
+     * The value of key 0.
+     */
+    private int zeroValue;
+
+    /**
+     * The number of keys the table holds before it grows.
+     */
+    private int resizeAt;
+
+    /**
+     * Returned for absent keys.
+     */
+    private final int missingValue;
+
+    /**
+     * Constructor.
+     */
+    public Int2IntMap()
+    {
+        this(16, 0);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param expected
+     *            The number of keys to allocate room for.
+     * @param missingValue
+     *            Returned for absent keys.
+     */
+    public Int2IntMap(final int expected, final int missingValue)
+    {
+        this.missingValue = missingValue;
+        allocate(PrimitiveCollections.tableSize(expected));
+    }
+
+    /**
+     * @return The value returned for absent keys.
+     */
+    public int getMissingValue()
+    {
+        return missingValue;
+    }
+
+    /**
+     * @return The number of keys.
+     */
+    public int size()
+    {
+        return tableCount + (hasZeroKey ? 1 : 0);
+    }
+
+    /**
+     * @return True if the map has no keys.
+     */
+    public boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    /**
+     * @param key
+     *            The key.
+     * @return True if the key is in the map.
+     */
+    public boolean containsKey(final int key)
+    {
+        return key == 0 ? hasZeroKey : keys[find(key)] != 0;
+    }
+
+    /**
+     * Returns a key's value.
+     *
+     * @param key
+     *            The key.
+     * @return Its value, or the missing value if it isn't in the map.
+     */
+    public int get(final int key)
+    {
+        if (key == 0)
+        {
+            return hasZeroKey ? zeroValue : missingValue;
+        }
+        final int slot = find(key);
+        return keys[slot] == 0 ? missingValue : values[slot];
+    }
+
+    /**
+     * Sets a key's value.
+     *
+     * @param key
+     *            The key.
+     * @param value
+     *            The value.
+     * @return The old value, or the missing value if the key is new.
+     */
+    public int put(final int key, final int value)
+    {
+        if (key == 0)
+        {
+            final int old = hasZeroKey ? zeroValue : missingValue;
+            hasZeroKey = true;
+            zeroValue = value;
+            return old;
+        }
+        final int slot = find(key);
+        if (keys[slot] != 0)
+        {
+            final int old = values[slot];
+            values[slot] = value;
+            return old;
+        }
+        insert(slot, key, value);
+        return missingValue;
+    }
+
+    /**
+     * Adds to a key's value, starting from the missing value if the key is
+     * new.
+     *
+     * @param key
+     *            The key.
+     * @param delta
+     *            The amount to add.
+     * @return The new value.
+     */
+    public int addTo(final int key, final int delta)
+    {
+        if (key == 0)
+        {
+            zeroValue = (hasZeroKey ? zeroValue : missingValue) + delta;
+            hasZeroKey = true;
+            return zeroValue;
+        }
+        final int slot = find(key);
+        if (keys[slot] != 0)
+        {
+            return values[slot] += delta;
+        }
+        insert(slot, key, missingValue + delta);
+        return missingValue + delta;
+    }
+
+    /**
+     * Copies the entries of another map into this one.
+     *
+     * @param other
+     *            The map.
+     */
+    public void putAll(final Int2IntMap other)
+    {
+        if (other.hasZeroKey)
+        {
+            put(0, other.zeroValue);
+        }
+        for (int slot = 0; slot < other.keys.length; slot++)
+        {
+            if (other.keys[slot] != 0)
+            {
+                put(other.keys[slot], other.values[slot]);
+            }
+        }
+    }
+
+    /**
+     * Removes a key.
+     *
+     * @param key
+     *            The key.
+     * @return Its value, or the missing value if it wasn't in the map.
+     */
+    public int remove(final int key)
+    {
+        if (key == 0)
+        {
+            final int old = hasZeroKey ? zeroValue : missingValue;
+            hasZeroKey = false;
+            return old;
+        }
+        final int slot = find(key);
+        if (keys[slot] == 0)
+        {
+            return missingValue;
+        }
+        final int old = values[slot];
+        shiftKeys(slot);
+        tableCount--;
+        return old;
+    }
+
+    /**
+     * Removes all keys, keeping the capacity.
+     */
+    public void clear()
+    {
+        Arrays.fill(keys, 0);
+        tableCount = 0;
+        hasZeroKey = false;
+    }
+
+    /**
+     * @return The keys, in no particular order.
+     */
+    public int[] keys()
+    {
+        final int[] result = new int[size()];
+        int n = 0;
+        if (hasZeroKey)
+        {
+            result[n++] = 0;
+        }
+        for (final int key : keys)
+        {
+            if (key != 0)
+            {
+                result[n++] = key;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds a key's slot, or the empty slot it would go in.
+     */
+    private int find(final int key)
+    {
+        int slot = HashUtils.spread(key) & mask;
+        while (keys[slot] != 0 && keys[slot] != key)
+        {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Stores a new key in the empty slot find() returned.
+     */
+    private void insert(final int slot, final int key, final int value)
+    {
+        keys[slot] = key;
+        values[slot] = value;
+        if (++tableCount > resizeAt)
+        {
+            rehash(keys.length * 2);
+        }
+    }
+
+    /**
+     * Empties a slot, moving later entries of the same probe run back so every
+     * key stays reachable from its home slot.
+     */
+    private void shiftKeys(final int emptied)
+    {
+        int gap = emptied;
+        for (int slot = (gap + 1) & mask; keys[slot] != 0; slot = (slot + 1) & mask)
+        {
+            final int home = HashUtils.spread(keys[slot]) & mask;
+            // Move the entry unless its home lies cyclically in (gap, slot].
+            if (((slot - home) & mask) >= ((slot - gap) & mask))
+            {
+                keys[gap] = keys[slot];
+                values[gap] = values[slot];
+                gap = slot;
+            }
+        }
+        keys[gap] = 0;
+    }
+
+    private void allocate(final int tableSize)
+    {
+        keys = new int[tableSize];
+        values = new int[tableSize];
+        mask = tableSize - 1;
+        resizeAt = (int) (tableSize * PrimitiveCollections.LOAD_FACTOR);
+    }
+
+    private void rehash(final int tableSize)
+    {
+        final int[] oldKeys = keys;
+        final int[] oldValues = values;
+        allocate(tableSize);
+        for (int i = 0; i < oldKeys.length; i++)
+        {
+            if (oldKeys[i] != 0)
+            {
+                final int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
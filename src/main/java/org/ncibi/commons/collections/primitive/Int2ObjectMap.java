@@ -0,0 +1,310 @@
+package org.ncibi.commons.collections.primitive;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.ncibi.commons.lang.HashUtils;
+
+/**
+ * A map from ints to objects held in an open addressing hash table: parallel
+ * key and value arrays probed linearly, with no entry objects and no boxed
+ * keys. Null values aren't allowed, so get() returning null means the key is
+ * absent.
+ *
+ * @author gtarcea
+ *
+ * @param <V>
+ *            The type of the values.
+ */
+public class Int2ObjectMap<V>
+{
+    /**
+     * The keys; 0 is an empty slot.
+     */
+    private int[] keys;
+
+    /**
+     * The values, in the slots of their keys.
+     */
+    private Object[] values;
+
+    /**
+     * Selects a slot from a hash.
+     */
+    private int mask;
+
+    /**
+     * The number of keys in the table, not counting 0.
+     */
+    private int tableCount = 0;
+
+    /**
+     * The value of key 0, or null.
+     */
+    private V zeroValue = null;
+
+    /**
+     * The number of keys the table holds before it grows.
+     */
+    private int resizeAt;
+
+    /**
+     * Constructor.
+     */
+    public Int2ObjectMap()
+    {
+        this(16);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param expected
+     *            The number of keys to allocate room for.
+     */
+    public Int2ObjectMap(final int expected)
+    {
+        allocate(PrimitiveCollections.tableSize(expected));
+    }
+
+    /**
+     * @return The number of keys.
+     */
+    public int size()
+    {
+        return tableCount + (zeroValue != null ? 1 : 0);
+    }
+
+    /**
+     * @return True if the map has no keys.
+     */
+    public boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    /**
+     * @param key
+     *            The key.
+     * @return True if the key is in the map.
+     */
+    public boolean containsKey(final int key)
+    {
+        return get(key) != null;
+    }
+
+    /**
+     * Returns a key's value.
+     *
+     * @param key
+     *            The key.
+     * @return Its value, or null if it isn't in the map.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(final int key)
+    {
+        if (key == 0)
+        {
+            return zeroValue;
+        }
+        return (V) values[find(key)];
+    }
+
+    /**
+     * Sets a key's value.
+     *
+     * @param key
+     *            The key.
+     * @param value
+     *            The value, which must not be null.
+     * @return The old value, or null if the key is new.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(final int key, final V value)
+    {
+        if (value == null)
+        {
+            throw new NullPointerException("Int2ObjectMap doesn't allow null values");
+        }
+        if (key == 0)
+        {
+            final V old = zeroValue;
+            zeroValue = value;
+            return old;
+        }
+        final int slot = find(key);
+        final V old = (V) values[slot];
+        values[slot] = value;
+        if (keys[slot] == 0)
+        {
+            keys[slot] = key;
+            if (++tableCount > resizeAt)
+            {
+                rehash(keys.length * 2);
+            }
+        }
+        return old;
+    }
+
+    /**
+     * Copies the entries of another map into this one.
+     *
+     * @param other
+     *            The map.
+     */
+    @SuppressWarnings("unchecked")
+    public void putAll(final Int2ObjectMap<? extends V> other)
+    {
+        if (other.zeroValue != null)
+        {
+            put(0, other.zeroValue);
+        }
+        for (int slot = 0; slot < other.keys.length; slot++)
+        {
+            if (other.keys[slot] != 0)
+            {
+                put(other.keys[slot], (V) other.values[slot]);
+            }
+        }
+    }
+
+    /**
+     * Removes a key.
+     *
+     * @param key
+     *            The key.
+     * @return Its value, or null if it wasn't in the map.
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(final int key)
+    {
+        if (key == 0)
+        {
+            final V old = zeroValue;
+            zeroValue = null;
+            return old;
+        }
+        final int slot = find(key);
+        if (keys[slot] == 0)
+        {
+            return null;
+        }
+        final V old = (V) values[slot];
+        shiftKeys(slot);
+        tableCount--;
+        return old;
+    }
+
+    /**
+     * Removes all keys, keeping the capacity.
+     */
+    public void clear()
+    {
+        Arrays.fill(keys, 0);
+        Arrays.fill(values, null);
+        tableCount = 0;
+        zeroValue = null;
+    }
+
+    /**
+     * @return The keys, in no particular order.
+     */
+    public int[] keys()
+    {
+        final int[] result = new int[size()];
+        int n = 0;
+        if (zeroValue != null)
+        {
+            result[n++] = 0;
+        }
+        for (final int key : keys)
+        {
+            if (key != 0)
+            {
+                result[n++] = key;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return The values, in the same order as keys().
+     */
+    @SuppressWarnings("unchecked")
+    public List<V> values()
+    {
+        final List<V> result = new ArrayList<V>(size());
+        if (zeroValue != null)
+        {
+            result.add(zeroValue);
+        }
+        for (int slot = 0; slot < keys.length; slot++)
+        {
+            if (keys[slot] != 0)
+            {
+                result.add((V) values[slot]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds a key's slot, or the empty slot it would go in.
+     */
+    private int find(final int key)
+    {
+        int slot = HashUtils.spread(key) & mask;
+        while (keys[slot] != 0 && keys[slot] != key)
+        {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Empties a slot, moving later entries of the same probe run back so every
+     * key stays reachable from its home slot.
+     */
+    private void shiftKeys(final int emptied)
+    {
+        int gap = emptied;
+        for (int slot = (gap + 1) & mask; keys[slot] != 0; slot = (slot + 1) & mask)
+        {
+            final int home = HashUtils.spread(keys[slot]) & mask;
+            // Move the entry unless its home lies cyclically in (gap, slot].
+            if (((slot - home) & mask) >= ((slot - gap) & mask))
+            {
+                keys[gap] = keys[slot];
+                values[gap] = values[slot];
+                gap = slot;
+            }
+        }
+        keys[gap] = 0;
+        values[gap] = null;
+    }
+
+    private void allocate(final int tableSize)
+    {
+        keys = new int[tableSize];
+        values = new Object[tableSize];
+        mask = tableSize - 1;
+        resizeAt = (int) (tableSize * PrimitiveCollections.LOAD_FACTOR);
+    }
+
+    private void rehash(final int tableSize)
+    {
+        final int[] oldKeys = keys;
+        final Object[] oldValues = values;
+        allocate(tableSize);
+        for (int i = 0; i < oldKeys.length; i++)
+        {
+            if (oldKeys[i] != 0)
+            {
+                final int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,403 @@
+package org.ncibi.commons.collections.primitive;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A growable list of ints held in an int[], for ID lists that would otherwise
+ * be Lists of boxed Integers. Values are read and written without boxing;
+ * asList() gives a boxed view for code that takes a Collection&lt;Integer&gt;.
+ *
+ * @author gtarcea
+ *
+ */
+public class IntArrayList
+{
+    /**
+     * The values; only the first size are used.
+     */
+    private int[] values;
+
+    /**
+     * The number of values.
+     */
+    private int size = 0;
+
+    /**
+     * Constructor.
+     */
+    public IntArrayList()
+    {
+        this(16);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param capacity
+     *            The number of values to allocate room for.
+     */
+    public IntArrayList(final int capacity)
+    {
+        if (capacity < 0)
+        {
+            throw new IllegalArgumentException("capacity must not be negative: " + capacity);
+        }
+        values = new int[capacity];
+    }
+
+    /**
+     * Constructor for a list holding a copy of some values.
+     *
+     * @param values
+     *            The values.
+     */
+    public IntArrayList(final int[] values)
+    {
+        this.values = values.clone();
+        this.size = values.length;
+    }
+
+    /**
+     * Creates a list from boxed values.
+     *
+     * @param values
+     *            The values, none of which may be null.
+     * @return The list.
+     */
+    public static IntArrayList copyOf(final Collection<Integer> values)
+    {
+        final IntArrayList list = new IntArrayList(values.size());
+        for (final Integer value : values)
+        {
+            list.add(value);
+        }
+        return list;
+    }
+
+    /**
+     * @return The number of values.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return True if the list has no values.
+     */
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+     * Returns a value.
+     *
+     * @param index
+     *            The value's index.
+     * @return The value.
+     */
+    public int get(final int index)
+    {
+        checkIndex(index);
+        return values[index];
+    }
+
+    /**
+     * Replaces a value.
+     *
+     * @param index
+     *            The value's index.
+     * @param value
+     *            The new value.
+     * @return The old value.
+     */
+    public int set(final int index, final int value)
+    {
+        checkIndex(index);
+        final int old = values[index];
+        values[index] = value;
+        return old;
+    }
+
+    /**
+     * Appends a value.
+     *
+     * @param value
+     *            The value.
+     */
+    public void add(final int value)
+    {
+        if (size == values.length)
+        {
+            values = Arrays.copyOf(values, PrimitiveCollections.grow(size, size + 1));
+        }
+        values[size++] = value;
+    }
+
+    /**
+     * Appends values.
+     *
+     * @param more
+     *            The values.
+     */
+    public void addAll(final int[] more)
+    {
+        addAll(more, 0, more.length);
+    }
+
+    /**
+     * Appends a range of an array.
+     *
+     * @param more
+     *            The values.
+     * @param start
+     *            The first value to append.
+     * @param end
+     *            The end of the range (exclusive).
+     */
+    public void addAll(final int[] more, final int start, final int end)
+    {
+        final int count = end - start;
+        ensureCapacity(size + count);
+        System.arraycopy(more, start, values, size, count);
+        size += count;
+    }
+
+    /**
+     * Appends the values of another list.
+     *
+     * @param more
+     *            The list.
+     */
+    public void addAll(final IntArrayList more)
+    {
+        addAll(more.values, 0, more.size);
+    }
+
+    /**
+     * Removes a value, shifting the later values down.
+     *
+     * @param index
+     *            The value's index.
+     * @return The value removed.
+     */
+    public int removeAt(final int index)
+    {
+        checkIndex(index);
+        final int old = values[index];
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+        size--;
+        return old;
+    }
+
+    /**
+     * Drops values from the end of the list.
+     *
+     * @param newSize
+     *            The number of values to keep.
+     */
+    public void truncate(final int newSize)
+    {
+        if (newSize < 0 || newSize > size)
+        {
+            throw new IndexOutOfBoundsException("Size " + newSize + " of " + size);
+        }
+        size = newSize;
+    }
+
+    /**
+     * Removes all values, keeping the capacity.
+     */
+    public void clear()
+    {
+        size = 0;
+    }
+
+    /**
+     * Finds a value by scanning the list.
+     *
+     * @param value
+     *            The value.
+     * @return Its first index, or -1 if it isn't in the list.
+     */
+    public int indexOf(final int value)
+    {
+        for (int i = 0; i < size; i++)
+        {
+            if (values[i] == value)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param value
+     *            The value.
+     * @return True if the value is in the list.
+     */
+    public boolean contains(final int value)
+    {
+        return indexOf(value) >= 0;
+    }
+
+    /**
+     * Finds a value in a sorted list.
+     *
+     * @param value
+     *            The value.
+     * @return As Arrays.binarySearch().
+     */
+    public int binarySearch(final int value)
+    {
+        return Arrays.binarySearch(values, 0, size, value);
+    }
+
+    /**
+     * Sorts the values in ascending order.
+     */
+    public void sort()
+    {
+        Arrays.sort(values, 0, size);
+    }
+
+    /**
+     * Removes repeated values from a sorted list, leaving each value once.
+     */
+    public void unique()
+    {
+        size = PrimitiveCollections.unique(values, size);
+    }
+
+    /**
+     * Sorts the values and removes repeats, so the list can be searched with
+     * binarySearch().
+     */
+    public void sortUnique()
+    {
+        sort();
+        unique();
+    }
+
+    /**
+     * Makes sure the list can hold a number of values without growing.
+     *
+     * @param capacity
+     *            The number of values.
+     */
+    public void ensureCapacity(final int capacity)
+    {
+        if (capacity > values.length)
+        {
+            values = Arrays.copyOf(values, PrimitiveCollections.grow(values.length, capacity));
+        }
+    }
+
+    /**
+     * Shrinks the array to the number of values.
+     */
+    public void trimToSize()
+    {
+        if (values.length > size)
+        {
+            values = Arrays.copyOf(values, size);
+        }
+    }
+
+    /**
+     * @return A copy of the values.
+     */
+    public int[] toArray()
+    {
+        return Arrays.copyOf(values, size);
+    }
+
+    /**
+     * Returns a view of the list as boxed Integers. Changes to either show in
+     * the other; values can be replaced through the view but not added or
+     * removed.
+     *
+     * @return The view.
+     */
+    public List<Integer> asList()
+    {
+        return new BoxedView();
+    }
+
+    @Override
+    public boolean equals(final Object o)
+    {
+        if (!(o instanceof IntArrayList))
+        {
+            return false;
+        }
+        final IntArrayList other = (IntArrayList) o;
+        if (other.size != size)
+        {
+            return false;
+        }
+        for (int i = 0; i < size; i++)
+        {
+            if (values[i] != other.values[i])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int hash = 1;
+        for (int i = 0; i < size; i++)
+        {
+            hash = 31 * hash + values[i];
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString()
+    {
+        return asList().toString();
+    }
+
+    private void checkIndex(final int index)
+    {
+        if (index < 0 || index >= size)
+        {
+            throw new IndexOutOfBoundsException("Index " + index + " of " + size);
+        }
+    }
+
+    /**
+     * Boxed view of the list.
+     */
+    private final class BoxedView extends AbstractList<Integer> implements RandomAccess
+    {
+        @Override
+        public Integer get(final int index)
+        {
+            return IntArrayList.this.get(index);
+        }
+
+        @Override
+        public Integer set(final int index, final Integer value)
+        {
+            return IntArrayList.this.set(index, value);
+        }
+
+        @Override
+        public int size()
+        {
+            return size;
+        }
+    }
+}
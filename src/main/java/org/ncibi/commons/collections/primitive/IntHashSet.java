@@ -0,0 +1,294 @@
+package org.ncibi.commons.collections.primitive;
+
+import java.util.Arrays;
+
+import org.ncibi.commons.lang.HashUtils;
+
+/**
+ * A set of ints held in an open addressing hash table: one int[] probed
+ * linearly, with no entry objects and no boxing. 0 marks an empty slot, so
+ * whether the set holds 0 is kept separately.
+ *
+ * @author gtarcea
+ *
+ */
+public class IntHashSet
+{
+    /**
+     * The slots; 0 is empty.
+     */
+    private int[] keys;
+
+    /**
+     * Selects a slot from a hash.
+     */
+    private int mask;
+
+    /**
+     * The number of keys in the table, not counting 0.
+     */
+    private int tableCount = 0;
+
+    /**
+     * Is 0 in the set?
+     */
+    private boolean hasZero = false;
+
+    /**
+     * The number of keys the table holds before it grows.
+     */
+    private int resizeAt;
+
+    /**
+     * Constructor.
+     */
+    public IntHashSet()
+    {
+        this(16);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param expected
+     *            The number of values to allocate room for.
+     */
+    public IntHashSet(final int expected)
+    {
+        allocate(PrimitiveCollections.tableSize(expected));
+    }
+
+    /**
+     * Creates a set of the values of an array.
+     *
+     * @param values
+     *            The values.
+     * @return The set.
+     */
+    public static IntHashSet of(final int[] values)
+    {
+        final IntHashSet set = new IntHashSet(values.length);
+        set.addAll(values);
+        return set;
+    }
+
+    /**
+     * @return The number of values.
+     */
+    public int size()
+    {
+        return tableCount + (hasZero ? 1 : 0);
+    }
+
+    /**
+     * @return True if the set has no values.
+     */
+    public boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    /**
+     * @param value
+     *            The value.
+     * @return True if the value is in the set.
+     */
+    public boolean contains(final int value)
+    {
+        if (value == 0)
+        {
+            return hasZero;
+        }
+        for (int slot = HashUtils.spread(value) & mask;; slot = (slot + 1) & mask)
+        {
+            final int key = keys[slot];
+            if (key == value)
+            {
+                return true;
+            }
+            if (key == 0)
+            {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Adds a value.
+     *
+     * @param value
+     *            The value.
+     * @return True if the value wasn't already in the set.
+     */
+    public boolean add(final int value)
+    {
+        if (value == 0)
+        {
+            final boolean added = !hasZero;
+            hasZero = true;
+            return added;
+        }
+        for (int slot = HashUtils.spread(value) & mask;; slot = (slot + 1) & mask)
+        {
+            final int key = keys[slot];
+            if (key == value)
+            {
+                return false;
+            }
+            if (key == 0)
+            {
+                keys[slot] = value;
+                if (++tableCount > resizeAt)
+                {
+                    rehash(keys.length * 2);
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Adds values.
+     *
+     * @param values
+     *            The values.
+     */
+    public void addAll(final int[] values)
+    {
+        for (final int value : values)
+        {
+            add(value);
+        }
+    }
+
+    /**
+     * Adds the values of a list.
+     *
+     * @param values
+     *            The list.
+     */
+    public void addAll(final IntArrayList values)
+    {
+        for (int i = 0; i < values.size(); i++)
+        {
+            add(values.get(i));
+        }
+    }
+
+    /**
+     * Removes a value.
+     *
+     * @param value
+     *            The value.
+     * @return True if the value was in the set.
+     */
+    public boolean remove(final int value)
+    {
+        if (value == 0)
+        {
+            final boolean removed = hasZero;
+            hasZero = false;
+            return removed;
+        }
+        for (int slot = HashUtils.spread(value) & mask;; slot = (slot + 1) & mask)
+        {
+            final int key = keys[slot];
+            if (key == value)
+            {
+                shiftKeys(slot);
+                tableCount--;
+                return true;
+            }
+            if (key == 0)
+            {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Removes all values, keeping the capacity.
+     */
+    public void clear()
+    {
+        Arrays.fill(keys, 0);
+        tableCount = 0;
+        hasZero = false;
+    }
+
+    /**
+     * @return The values, in no particular order.
+     */
+    public int[] toArray()
+    {
+        final int[] values = new int[size()];
+        int n = 0;
+        if (hasZero)
+        {
+            values[n++] = 0;
+        }
+        for (final int key : keys)
+        {
+            if (key != 0)
+            {
+                values[n++] = key;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @return The values in ascending order.
+     */
+    public IntArrayList toSortedList()
+    {
+        final IntArrayList list = new IntArrayList(toArray());
+        list.sort();
+        return list;
+    }
+
+    /**
+     * Empties a slot, moving later keys of the same probe run back so every
+     * key stays reachable from its home slot.
+     */
+    private void shiftKeys(final int emptied)
+    {
+        int gap = emptied;
+        for (int slot = (gap + 1) & mask; keys[slot] != 0; slot = (slot + 1) & mask)
+        {
+            final int home = HashUtils.spread(keys[slot]) & mask;
+            // Move the key unless its home lies cyclically in (gap, slot].
+            if (((slot - home) & mask) >= ((slot - gap) & mask))
+            {
+                keys[gap] = keys[slot];
+                gap = slot;
+            }
+        }
+        keys[gap] = 0;
+    }
+
+    private void allocate(final int tableSize)
+    {
+        keys = new int[tableSize];
+        mask = tableSize - 1;
+        resizeAt = (int) (tableSize * PrimitiveCollections.LOAD_FACTOR);
+    }
+
+    private void rehash(final int tableSize)
+    {
+        final int[] old = keys;
+        allocate(tableSize);
+        for (final int key : old)
+        {
+            if (key != 0)
+            {
+                int slot = HashUtils.spread(key) & mask;
+                while (keys[slot] != 0)
+                {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+            }
+        }
+    }
+}
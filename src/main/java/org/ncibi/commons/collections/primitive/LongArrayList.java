@@ -0,0 +1,403 @@
+package org.ncibi.commons.collections.primitive;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A growable list of longs held in a long[], for ID lists that would otherwise
+ * be Lists of boxed Longs. Values are read and written without boxing;
+ * asList() gives a boxed view for code that takes a Collection&lt;Long&gt;.
+ *
+ * @author gtarcea
+ *
+ */
+public class LongArrayList
+{
+    /**
+     * The values; only the first size are used.
+     */
+    private long[] values;
+
+    /**
+     * The number of values.
+     */
+    private int size = 0;
+
+    /**
+     * Constructor.
+     */
+    public LongArrayList()
+    {
+        this(16);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param capacity
+     *            The number of values to allocate room for.
+     */
+    public LongArrayList(final int capacity)
+    {
+        if (capacity < 0)
+        {
+            throw new IllegalArgumentException("capacity must not be negative: " + capacity);
+        }
+        values = new long[capacity];
+    }
+
+    /**
+     * Constructor for a list holding a copy of some values.
+     *
+     * @param values
+     *            The values.
+     */
+    public LongArrayList(final long[] values)
+    {
+        this.values = values.clone();
+        this.size = values.length;
+    }
+
+    /**
+     * Creates a list from boxed values.
+     *
+     * @param values
+     *            The values, none of which may be null.
+     * @return The list.
+     */
+    public static LongArrayList copyOf(final Collection<Long> values)
+    {
+        final LongArrayList list = new LongArrayList(values.size());
+        for (final Long value : values)
+        {
+            list.add(value);
+        }
+        return list;
+    }
+
+    /**
+     * @return The number of values.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return True if the list has no values.
+     */
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+     * Returns a value.
+     *
+     * @param index
+     *            The value's index.
+     * @return The value.
+     */
+    public long get(final int index)
+    {
+        checkIndex(index);
+        return values[index];
+    }
+
+    /**
+     * Replaces a value.
+     *
+     * @param index
+     *            The value's index.
+     * @param value
+     *            The new value.
+     * @return The old value.
+     */
+    public long set(final int index, final long value)
+    {
+        checkIndex(index);
+        final long old = values[index];
+        values[index] = value;
+        return old;
+    }
+
+    /**
+     * Appends a value.
+     *
+     * @param value
+     *            The value.
+     */
+    public void add(final long value)
+    {
+        if (size == values.length)
+        {
+            values = Arrays.copyOf(values, PrimitiveCollections.grow(size, size + 1));
+        }
+        values[size++] = value;
+    }
+
+    /**
+     * Appends values.
+     *
+     * @param more
+     *            The values.
+     */
+    public void addAll(final long[] more)
+    {
+        addAll(more, 0, more.length);
+    }
+
+    /**
+     * Appends a range of an array.
+     *
+     * @param more
+     *            The values.
+     * @param start
+     *            The first value to append.
+     * @param end
+     *            The end of the range (exclusive).
+     */
+    public void addAll(final long[] more, final int start, final int end)
+    {
+        final int count = end - start;
+        ensureCapacity(size + count);
+        System.arraycopy(more, start, values, size, count);
+        size += count;
+    }
+
+    /**
+     * Appends the values of another list.
+     *
+     * @param more
+     *            The list.
+     */
+    public void addAll(final LongArrayList more)
+    {
+        addAll(more.values, 0, more.size);
+    }
+
+    /**
+     * Removes a value, shifting the later values down.
+     *
+     * @param index
+     *            The value's index.
+     * @return The value removed.
+     */
+    public long removeAt(final int index)
+    {
+        checkIndex(index);
+        final long old = values[index];
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+        size--;
+        return old;
+    }
+
+    /**
+     * Drops values from the end of the list.
+     *
+     * @param newSize
+     *            The number of values to keep.
+     */
+    public void truncate(final int newSize)
+    {
+        if (newSize < 0 || newSize > size)
+        {
+            throw new IndexOutOfBoundsException("Size " + newSize + " of " + size);
+        }
+        size = newSize;
+    }
+
+    /**
+     * Removes all values, keeping the capacity.
+     */
+    public void clear()
+    {
+        size = 0;
+    }
+
+    /**
+     * Finds a value by scanning the list.
+     *
+     * @param value
+     *            The value.
+     * @return Its first index, or -1 if it isn't in the list.
+     */
+    public int indexOf(final long value)
+    {
+        for (int i = 0; i < size; i++)
+        {
+            if (values[i] == value)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param value
+     *            The value.
+     * @return True if the value is in the list.
+     */
+    public boolean contains(final long value)
+    {
+        return indexOf(value) >= 0;
+    }
+
+    /**
+     * Finds a value in a sorted list.
+     *
+     * @param value
+     *            The value.
+     * @return As Arrays.binarySearch().
+     */
+    public int binarySearch(final long value)
+    {
+        return Arrays.binarySearch(values, 0, size, value);
+    }
+
+    /**
+     * Sorts the values in ascending order.
+     */
+    public void sort()
+    {
+        Arrays.sort(values, 0, size);
+    }
+
+    /**
+     * Removes repeated values from a sorted list, leaving each value once.
+     */
+    public void unique()
+    {
+        size = PrimitiveCollections.unique(values, size);
+    }
+
+    /**
+     * Sorts the values and removes repeats, so the list can be searched with
+     * binarySearch().
+     */
+    public void sortUnique()
+    {
+        sort();
+        unique();
+    }
+
+    /**
+     * Makes sure the list can hold a number of values without growing.
+     *
+     * @param capacity
+     *            The number of values.
+     */
+    public void ensureCapacity(final int capacity)
+    {
+        if (capacity > values.length)
+        {
+            values = Arrays.copyOf(values, PrimitiveCollections.grow(values.length, capacity));
+        }
+    }
+
+    /**
+     * Shrinks the array to the number of values.
+     */
+    public void trimToSize()
+    {
+        if (values.length > size)
+        {
+            values = Arrays.copyOf(values, size);
+        }
+    }
+
+    /**
+     * @return A copy of the values.
+     */
+    public long[] toArray()
+    {
+        return Arrays.copyOf(values, size);
+    }
+
+    /**
+     * Returns a view of the list as boxed Longs. Changes to either show in
+     * the other; values can be replaced through the view but not added or
+     * removed.
+     *
+     * @return The view.
+     */
+    public List<Long> asList()
+    {
+        return new BoxedView();
+    }
+
+    @Override
+    public boolean equals(final Object o)
+    {
+        if (!(o instanceof LongArrayList))
+        {
+            return false;
+        }
+        final LongArrayList other = (LongArrayList) o;
+        if (other.size != size)
+        {
+            return false;
+        }
+        for (int i = 0; i < size; i++)
+        {
+            if (values[i] != other.values[i])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int hash = 1;
+        for (int i = 0; i < size; i++)
+        {
+            hash = 31 * hash + (int) (values[i] ^ (values[i] >>> 32));
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString()
+    {
+        return asList().toString();
+    }
+
+    private void checkIndex(final int index)
+    {
+        if (index < 0 || index >= size)
+        {
+            throw new IndexOutOfBoundsException("Index " + index + " of " + size);
+        }
+    }
+
+    /**
+     * Boxed view of the list.
+     */
+    private final class BoxedView extends AbstractList<Long> implements RandomAccess
+    {
+        @Override
+        public Long get(final int index)
+        {
+            return LongArrayList.this.get(index);
+        }
+
+        @Override
+        public Long set(final int index, final Long value)
+        {
+            return LongArrayList.this.set(index, value);
+        }
+
+        @Override
+        public int size()
+        {
+            return size;
+        }
+    }
+}
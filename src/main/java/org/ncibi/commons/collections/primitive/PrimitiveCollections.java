@@ -0,0 +1,128 @@
+package org.ncibi.commons.collections.primitive;
+
+import org.ncibi.commons.exception.ConstructorCalledError;
+
+/**
+ * Sizing shared by the primitive collections.
+ *
+ * @author gtarcea
+ *
+ */
+final class PrimitiveCollections
+{
+    /**
+     * The most entries a hash table is allowed to fill, as a fraction of its
+     * slots.
+     */
+    static final float LOAD_FACTOR = 0.5f;
+
+    /**
+     * The most slots a hash table can have.
+     */
+    private static final int MAX_TABLE_SIZE = 1 << 30;
+
+    /**
+     * Constructor - Not callable.
+     */
+    private PrimitiveCollections()
+    {
+        throw new ConstructorCalledError(this.getClass());
+    }
+
+    /**
+     * Returns the capacity to grow an array to, growing by half again so
+     * appends take constant time on average.
+     *
+     * @param capacity
+     *            The current capacity.
+     * @param needed
+     *            The capacity needed.
+     * @return The new capacity.
+     */
+    static int grow(final int capacity, final int needed)
+    {
+        if (needed < 0)
+        {
+            throw new OutOfMemoryError("Array would exceed Integer.MAX_VALUE elements");
+        }
+        final int grown = capacity + (capacity >> 1);
+        return Math.max(Math.max(16, needed), grown < 0 ? Integer.MAX_VALUE - 8 : grown);
+    }
+
+    /**
+     * Returns the number of slots for a hash table expected to hold a number
+     * of entries: a power of two large enough to stay under the load factor.
+     *
+     * @param expected
+     *            The expected number of entries.
+     * @return The number of slots.
+     */
+    static int tableSize(final int expected)
+    {
+        final long needed = (long) Math.ceil(Math.max(expected, 2) / LOAD_FACTOR);
+        if (needed > MAX_TABLE_SIZE)
+        {
+            throw new IllegalArgumentException("Too many entries for a hash table: " + expected);
+        }
+        int size = 2;
+        while (size < needed)
+        {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    /**
+     * Moves the first of each run of equal values to the front of a sorted
+     * array.
+     *
+     * @param values
+     *            The sorted values.
+     * @param size
+     *            The number of values used.
+     * @return The number of distinct values.
+     */
+    static int unique(final int[] values, final int size)
+    {
+        if (size == 0)
+        {
+            return 0;
+        }
+        int last = 0;
+        for (int i = 1; i < size; i++)
+        {
+            if (values[i] != values[last])
+            {
+                values[++last] = values[i];
+            }
+        }
+        return last + 1;
+    }
+
+    /**
+     * Moves the first of each run of equal values to the front of a sorted
+     * array.
+     *
+     * @param values
+     *            The sorted values.
+     * @param size
+     *            The number of values used.
+     * @return The number of distinct values.
+     */
+    static int unique(final long[] values, final int size)
+    {
+        if (size == 0)
+        {
+            return 0;
+        }
+        int last = 0;
+        for (int i = 1; i < size; i++)
+        {
+            if (values[i] != values[last])
+            {
+                values[++last] = values[i];
+            }
+        }
+        return last + 1;
+    }
+}
@@ -0,0 +1,217 @@
+package org.ncibi.commons.io;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Records how far a line processing job got through a file: the byte offset
+ * and line count after the last fully processed line, plus an optional blob of
+ * user state. Checkpoints are saved to a small sidecar file next to the data
+ * file so that a job that dies can resume where it left off.
+ *
+ * The size and modification time of the data file are saved with the
+ * checkpoint so that a checkpoint taken against a different version of the
+ * file is not used.
+ *
+ * @author gtarcea
+ *
+ */
+public final class Checkpoint
+{
+    /**
+     * Identifies a checkpoint file ("NCKP").
+     */
+    private static final int MAGIC = 0x4e434b50;
+
+    /**
+     * Version of the checkpoint file format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Byte offset of the first unprocessed line.
+     */
+    private final long offset;
+
+    /**
+     * Number of lines processed (not counting header lines).
+     */
+    private final long linesProcessed;
+
+    /**
+     * Size of the data file when the checkpoint was taken.
+     */
+    private final long fileLength;
+
+    /**
+     * Modification time of the data file when the checkpoint was taken.
+     */
+    private final long fileLastModified;
+
+    /**
+     * User state, or null.
+     */
+    private final byte[] state;
+
+    /**
+     * Constructor.
+     *
+     * @param offset
+     *            Byte offset of the first unprocessed line.
+     * @param linesProcessed
+     *            Number of lines processed.
+     * @param file
+     *            The data file being processed.
+     * @param state
+     *            User state to save with the checkpoint, or null.
+     */
+    public Checkpoint(final long offset, final long linesProcessed, final File file,
+            final byte[] state)
+    {
+        this(offset, linesProcessed, file.length(), file.lastModified(), state);
+    }
+
+    /**
+     * Constructor used when loading a checkpoint.
+     */
+    private Checkpoint(final long offset, final long linesProcessed, final long fileLength,
+            final long fileLastModified, final byte[] state)
+    {
+        this.offset = offset;
+        this.linesProcessed = linesProcessed;
+        this.fileLength = fileLength;
+        this.fileLastModified = fileLastModified;
+        this.state = state;
+    }
+
+    /**
+     * @return The byte offset of the first unprocessed line.
+     */
+    public long getOffset()
+    {
+        return offset;
+    }
+
+    /**
+     * @return The number of lines processed, not counting header lines.
+     */
+    public long getLinesProcessed()
+    {
+        return linesProcessed;
+    }
+
+    /**
+     * @return The size of the data file when the checkpoint was taken.
+     */
+    public long getFileLength()
+    {
+        return fileLength;
+    }
+
+    /**
+     * @return The user state saved with the checkpoint, or null.
+     */
+    public byte[] getState()
+    {
+        return state;
+    }
+
+    /**
+     * Checks that the data file hasn't changed since the checkpoint was taken.
+     *
+     * @param file
+     *            The data file.
+     * @return True if the file has the same size and modification time.
+     */
+    public boolean matches(final File file)
+    {
+        return file.length() == fileLength && file.lastModified() == fileLastModified;
+    }
+
+    /**
+     * Saves the checkpoint. The checkpoint is written to a temporary file that
+     * is then renamed, so a crash while saving leaves the previous checkpoint
+     * in place.
+     *
+     * @param checkpointFile
+     *            The sidecar file to save to.
+     * @throws IOException
+     *             When the checkpoint can't be written.
+     */
+    public void save(final File checkpointFile) throws IOException
+    {
+        final File tmp = new File(checkpointFile.getPath() + ".tmp");
+        final FileOutputStream file = new FileOutputStream(tmp);
+        try
+        {
+            final DataOutputStream out = new DataOutputStream(file);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(offset);
+            out.writeLong(linesProcessed);
+            out.writeLong(fileLength);
+            out.writeLong(fileLastModified);
+            out.writeInt(state == null ? -1 : state.length);
+            if (state != null)
+            {
+                out.write(state);
+            }
+            out.flush();
+            file.getFD().sync();
+        }
+        finally
+        {
+            file.close();
+        }
+
+        FileUtilities.replaceFile(tmp, checkpointFile);
+    }
+
+    /**
+     * Loads a checkpoint.
+     *
+     * @param checkpointFile
+     *            The sidecar file to load.
+     * @return The checkpoint, or null if there is no checkpoint file.
+     * @throws IOException
+     *             When the file can't be read or isn't a checkpoint file.
+     */
+    public static Checkpoint load(final File checkpointFile) throws IOException
+    {
+        if (!checkpointFile.exists())
+        {
+            return null;
+        }
+
+        final DataInputStream in = new DataInputStream(new FileInputStream(checkpointFile));
+        try
+        {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+            {
+                throw new IOException("Not a checkpoint file: " + checkpointFile);
+            }
+
+            final long offset = in.readLong();
+            final long linesProcessed = in.readLong();
+            final long fileLength = in.readLong();
+            final long fileLastModified = in.readLong();
+            final int stateLength = in.readInt();
+            byte[] state = null;
+            if (stateLength >= 0)
+            {
+                state = new byte[stateLength];
+                in.readFully(state);
+            }
+
+            return new Checkpoint(offset, linesProcessed, fileLength, fileLastModified, state);
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+}
@@ -7,7 +7,8 @@ import org.ncibi.commons.exception.ExceptionHandler;
 /**
  * Template class that processes a file a line at a time counting the line being
  * processed as it goes. If headers are skipped then line counting starts after
- * the headers.
+ * the headers. When resuming from a checkpoint, line counting carries on from
+ * the line count saved in the checkpoint.
  * 
  * @author gtarcea
  * 
@@ -58,4 +59,15 @@ public abstract class CountedFileInputLineProcessor extends FileInputLineProcess
         lineNumber++;
         processLineNumber(line, lineNumber);
     }
+
+    /**
+     * Restores the line counter from the checkpoint. Subclasses that override
+     * this must call super.resumeFromCheckpoint().
+     */
+    @Override
+    protected void resumeFromCheckpoint(final long linesProcessed, final byte[] state)
+    {
+        super.resumeFromCheckpoint(linesProcessed, state);
+        lineNumber = 1 + (int) linesProcessed;
+    }
 }
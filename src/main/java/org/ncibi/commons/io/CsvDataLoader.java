@@ -0,0 +1,139 @@
+package org.ncibi.commons.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads a CSV or TSV file into a list of data items. The file is read with a
+ * CsvParser, so quoted fields may contain delimiters and line breaks, and the
+ * fields of each record are passed to parseFields(). Header lines are counted
+ * as records. DelimitedLineDataLoader is the line at a time equivalent for
+ * files without quoting.
+ * 
+ * @author gtarcea
+ * 
+ * @param <T>
+ *            The type of data items to load.
+ */
+public abstract class CsvDataLoader<T>
+{
+    /**
+     * The list of (converted) data items loaded from the data file.
+     */
+    private final List<T> dataItems = new ArrayList<T>();
+
+    /**
+     * The filepath to load.
+     */
+    private final String filepath;
+
+    /**
+     * The format to parse the file with.
+     */
+    private final CsvFormat format;
+
+    /**
+     * Should headers be skipped?
+     */
+    private boolean skipHeader = true;
+
+    /**
+     * The number of records that are headers in the file.
+     */
+    private int headerLineCount = 1;
+
+    /**
+     * Parses the fields of a record turning them into a object of type T. It
+     * should return null for bad records.
+     * 
+     * @param fields
+     *            The fields of the record to parse.
+     * @return The item to add to the list of data items, or null on error or to
+     *         ignore that record.
+     */
+    protected abstract T parseFields(String[] fields);
+
+    /**
+     * Constructor that accepts the path to the file to load and its format.
+     * 
+     * @param filepath
+     *            The file to load.
+     * @param format
+     *            The format to parse the file with.
+     */
+    public CsvDataLoader(final String filepath, final CsvFormat format)
+    {
+        this.filepath = filepath;
+        this.format = format;
+    }
+
+    /**
+     * Loads the data from the file passed into the constructor.
+     */
+    public final void loadData()
+    {
+        final FileInputProcessor recordProcessor = new FileInputProcessor()
+        {
+            @Override
+            public void doProcess(final InputStream input) throws IOException
+            {
+                final CsvParser parser = new CsvParser(new InputStreamReader(input), format);
+                int headerRecords = skipHeader ? headerLineCount : 0;
+                for (CsvRecord record = parser.next(); record != null; record = parser.next())
+                {
+                    if (headerRecords > 0)
+                    {
+                        headerRecords--;
+                        continue;
+                    }
+                    final T item = parseFields(record.toArray());
+                    if (item != null)
+                    {
+                        dataItems.add(item);
+                    }
+                }
+            }
+        };
+
+        recordProcessor.process(filepath);
+    }
+
+    /**
+     * Returns the list of type T data items loaded.
+     * 
+     * @return The list of data items.
+     */
+    public final List<T> getDataItems()
+    {
+        return dataItems;
+    }
+
+    /**
+     * Sets whether or not header records should be skipped.
+     * 
+     * @param skipHeader
+     *            True if headers should be skipped.
+     * @return this
+     */
+    public final CsvDataLoader<T> setSkipHeader(final boolean skipHeader)
+    {
+        this.skipHeader = skipHeader;
+        return this;
+    }
+
+    /**
+     * Sets the number of header records (to skip).
+     * 
+     * @param lineCount
+     *            The number of header records in the data file.
+     * @return this
+     */
+    public final CsvDataLoader<T> setHeaderLineCount(final int lineCount)
+    {
+        this.headerLineCount = lineCount;
+        return this;
+    }
+}
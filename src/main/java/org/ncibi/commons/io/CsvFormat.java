@@ -0,0 +1,91 @@
+package org.ncibi.commons.io;
+
+/**
+ * The dialect of a delimited file read by CsvParser: the field delimiter, the
+ * quote character and an optional escape character. Inside quotes a doubled
+ * quote stands for one quote, as in RFC 4180; when an escape character is set
+ * it also makes the character after it literal.
+ *
+ * @author gtarcea
+ *
+ */
+public final class CsvFormat
+{
+    /**
+     * Marks a format without an escape character.
+     */
+    public static final char NO_ESCAPE = '\0';
+
+    /**
+     * Comma separated values as described by RFC 4180.
+     */
+    public static final CsvFormat CSV = new CsvFormat(',', '"', NO_ESCAPE);
+
+    /**
+     * Tab separated values, with RFC 4180 quoting.
+     */
+    public static final CsvFormat TSV = new CsvFormat('\t', '"', NO_ESCAPE);
+
+    /**
+     * Separates fields.
+     */
+    private final char delimiter;
+
+    /**
+     * Encloses fields that contain delimiters, quotes or line breaks.
+     */
+    private final char quote;
+
+    /**
+     * Makes the next character literal inside quotes, or NO_ESCAPE.
+     */
+    private final char escape;
+
+    /**
+     * Constructor.
+     *
+     * @param delimiter
+     *            Separates fields.
+     * @param quote
+     *            Encloses fields that contain delimiters, quotes or line
+     *            breaks.
+     * @param escape
+     *            Makes the next character literal inside quotes, or NO_ESCAPE.
+     */
+    public CsvFormat(final char delimiter, final char quote, final char escape)
+    {
+        if (delimiter == quote || delimiter == '\n' || delimiter == '\r' || quote == '\n'
+                || quote == '\r')
+        {
+            throw new IllegalArgumentException("Delimiter and quote must differ and not be line "
+                    + "breaks.");
+        }
+        this.delimiter = delimiter;
+        this.quote = quote;
+        this.escape = escape;
+    }
+
+    /**
+     * @return The field delimiter.
+     */
+    public char getDelimiter()
+    {
+        return delimiter;
+    }
+
+    /**
+     * @return The quote character.
+     */
+    public char getQuote()
+    {
+        return quote;
+    }
+
+    /**
+     * @return The escape character, or NO_ESCAPE.
+     */
+    public char getEscape()
+    {
+        return escape;
+    }
+}
@@ -0,0 +1,398 @@
+package org.ncibi.commons.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+import org.ncibi.commons.lang.StringPool;
+
+/**
+ * A streaming parser for CSV and TSV files as described by RFC 4180. Fields
+ * may be quoted, and quoted fields may contain delimiters, doubled quotes (or
+ * escaped characters, see CsvFormat) and line breaks, so a record can span
+ * several lines. Records end with "\n", "\r\n" or "\r" outside quotes; blank
+ * lines are skipped. Text after a closing quote is kept as part of the field
+ * rather than rejected, and a quote inside an unquoted field is an ordinary
+ * character.
+ *
+ * The parser is a state machine over a character buffer: runs of ordinary
+ * characters are copied into the record in bulk, and the record returned by
+ * next() is reused for every record, so parsing creates no objects until a
+ * field is fetched. A parser is not thread safe.
+ *
+ * <pre>
+ * CsvParser parser = new CsvParser(reader, CsvFormat.CSV);
+ * for (CsvRecord record = parser.next(); record != null; record = parser.next())
+ * {
+ *     String id = record.get(0);
+ * }
+ * </pre>
+ *
+ * @author gtarcea
+ *
+ */
+public final class CsvParser implements Closeable
+{
+    /**
+     * Size of the character buffer.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The text to parse.
+     */
+    private final Reader reader;
+
+    /**
+     * Separates fields.
+     */
+    private final char delimiter;
+
+    /**
+     * Encloses fields.
+     */
+    private final char quote;
+
+    /**
+     * Makes the next character literal inside quotes.
+     */
+    private final char escape;
+
+    /**
+     * Buffered characters.
+     */
+    private final char[] buffer = new char[BUFFER_SIZE];
+
+    /**
+     * Next character to parse.
+     */
+    private int pos = 0;
+
+    /**
+     * End of the buffered characters.
+     */
+    private int limit = 0;
+
+    /**
+     * Set when the reader has returned -1.
+     */
+    private boolean eof = false;
+
+    /**
+     * The current line, counting from 1.
+     */
+    private long line = 1;
+
+    /**
+     * The record returned by next().
+     */
+    private final CsvRecord record = new CsvRecord();
+
+    /**
+     * Constructor.
+     *
+     * @param reader
+     *            The text to parse.
+     * @param format
+     *            The dialect of the text.
+     */
+    public CsvParser(final Reader reader, final CsvFormat format)
+    {
+        this.reader = reader;
+        this.delimiter = format.getDelimiter();
+        this.quote = format.getQuote();
+        this.escape = format.getEscape();
+    }
+
+    /**
+     * Constructor for text in a buffer, such as a memory mapped file. The
+     * buffer's position is advanced as it is decoded.
+     *
+     * @param bytes
+     *            The encoded text to parse.
+     * @param charset
+     *            The charset of the text.
+     * @param format
+     *            The dialect of the text.
+     */
+    public CsvParser(final ByteBuffer bytes, final Charset charset, final CsvFormat format)
+    {
+        this(new ByteBufferReader(bytes, charset), format);
+    }
+
+    /**
+     * Parses the first record of a string, for single values such as command
+     * line or configuration parameters.
+     *
+     * @param text
+     *            The text to parse.
+     * @param format
+     *            The dialect of the text.
+     * @return The fields of the first record; empty if there isn't one.
+     */
+    public static String[] parseRecord(final String text, final CsvFormat format)
+    {
+        try
+        {
+            final CsvRecord first = new CsvParser(new StringReader(text), format).next();
+            return first == null ? new String[0] : first.toArray();
+        }
+        catch (final IOException e)
+        {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return The record, which is reused by the next call, or null at the end
+     *         of the text.
+     * @throws IOException
+     *             When the reader fails or the text ends inside quotes.
+     */
+    public CsvRecord next() throws IOException
+    {
+        // Skip blank lines.
+        while (true)
+        {
+            if (!ensure())
+            {
+                return null;
+            }
+            final char c = buffer[pos];
+            if (c != '\n' && c != '\r')
+            {
+                break;
+            }
+            consumeLineBreak();
+        }
+
+        record.clear(line);
+        while (parseField())
+        {
+            record.endField();
+        }
+        record.endField();
+        return record;
+    }
+
+    /**
+     * Sets a pool to deduplicate fields through, for files that repeat the
+     * same values many times.
+     *
+     * @param pool
+     *            The pool, or null to create a new String for every field.
+     */
+    public void setStringPool(final StringPool pool)
+    {
+        record.setPool(pool);
+    }
+
+    /**
+     * @return The line the parser has reached, counting from 1.
+     */
+    public long getLineNumber()
+    {
+        return line;
+    }
+
+    /**
+     * Closes the reader.
+     *
+     * @throws IOException
+     *             When the reader can't be closed.
+     */
+    public void close() throws IOException
+    {
+        reader.close();
+    }
+
+    /**
+     * Parses one field into the record.
+     *
+     * @return True if a delimiter followed the field, false if the record
+     *         ended.
+     */
+    private boolean parseField() throws IOException
+    {
+        if (!ensure())
+        {
+            return false;
+        }
+        if (buffer[pos] == quote)
+        {
+            pos++;
+            parseQuoted();
+        }
+
+        while (ensure())
+        {
+            final int start = pos;
+            while (pos < limit)
+            {
+                final char c = buffer[pos];
+                if (c == delimiter)
+                {
+                    record.append(buffer, start, pos);
+                    pos++;
+                    return true;
+                }
+                if (c == '\n' || c == '\r')
+                {
+                    record.append(buffer, start, pos);
+                    consumeLineBreak();
+                    return false;
+                }
+                pos++;
+            }
+            record.append(buffer, start, pos);
+        }
+        return false;
+    }
+
+    /**
+     * Parses the inside of a quoted field, up to and including the closing
+     * quote.
+     */
+    private void parseQuoted() throws IOException
+    {
+        final long startLine = line;
+        while (ensure())
+        {
+            int start = pos;
+            while (pos < limit)
+            {
+                final char c = buffer[pos];
+                if (c == quote)
+                {
+                    record.append(buffer, start, pos);
+                    pos++;
+                    if (!ensure() || buffer[pos] != quote)
+                    {
+                        return;
+                    }
+                    // A doubled quote.
+                    record.append(quote);
+                    pos++;
+                    start = pos;
+                }
+                else if (c == escape && escape != CsvFormat.NO_ESCAPE)
+                {
+                    record.append(buffer, start, pos);
+                    pos++;
+                    if (!ensure())
+                    {
+                        break;
+                    }
+                    if (buffer[pos] == '\n')
+                    {
+                        line++;
+                    }
+                    record.append(buffer[pos]);
+                    pos++;
+                    start = pos;
+                }
+                else
+                {
+                    if (c == '\n')
+                    {
+                        line++;
+                    }
+                    pos++;
+                }
+            }
+            record.append(buffer, start, pos);
+        }
+        throw new IOException("Unterminated quoted field starting on line " + startLine);
+    }
+
+    /**
+     * Consumes a "\n", "\r\n" or "\r" at pos.
+     */
+    private void consumeLineBreak() throws IOException
+    {
+        final char c = buffer[pos++];
+        line++;
+        if (c == '\r' && ensure() && buffer[pos] == '\n')
+        {
+            pos++;
+        }
+    }
+
+    /**
+     * Makes sure there is a character at pos, refilling the buffer if needed.
+     *
+     * @return False at the end of the text.
+     */
+    private boolean ensure() throws IOException
+    {
+        if (pos < limit)
+        {
+            return true;
+        }
+        pos = 0;
+        limit = 0;
+        while (!eof && limit == 0)
+        {
+            final int n = reader.read(buffer, 0, buffer.length);
+            if (n == -1)
+            {
+                eof = true;
+            }
+            else
+            {
+                limit = n;
+            }
+        }
+        return limit > 0;
+    }
+
+    /**
+     * Decodes a ByteBuffer, replacing malformed input like InputStreamReader
+     * does.
+     */
+    private static final class ByteBufferReader extends Reader
+    {
+        private final ByteBuffer bytes;
+        private final CharsetDecoder decoder;
+        private boolean flushed = false;
+
+        ByteBufferReader(final ByteBuffer bytes, final Charset charset)
+        {
+            this.bytes = bytes;
+            this.decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+
+        @Override
+        public int read(final char[] cbuf, final int off, final int len) throws IOException
+        {
+            if (flushed)
+            {
+                return -1;
+            }
+            final CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+            final CoderResult result = decoder.decode(bytes, out, true);
+            if (result.isUnderflow() && decoder.flush(out).isUnderflow())
+            {
+                flushed = true;
+            }
+            final int n = out.position() - off;
+            return n == 0 && flushed ? -1 : n;
+        }
+
+        @Override
+        public void close()
+        {
+            // Nothing to release.
+        }
+    }
+}
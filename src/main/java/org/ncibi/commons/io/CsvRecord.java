@@ -0,0 +1,174 @@
+package org.ncibi.commons.io;
+
+import java.util.Arrays;
+
+import org.ncibi.commons.lang.StringPool;
+
+/**
+ * A record read by CsvParser. The parser reuses one record for every call to
+ * next(), so the fields must be fetched (or the record copied with toArray())
+ * before reading the next record. Fields are kept as characters and only
+ * turned into Strings when asked for, through the parser's StringPool if it
+ * has one.
+ *
+ * @author gtarcea
+ *
+ */
+public final class CsvRecord
+{
+    /**
+     * The characters of all the fields, back to back.
+     */
+    private char[] chars = new char[1024];
+
+    /**
+     * Number of characters used.
+     */
+    private int length = 0;
+
+    /**
+     * End of each field in chars.
+     */
+    private int[] ends = new int[32];
+
+    /**
+     * Number of fields.
+     */
+    private int size = 0;
+
+    /**
+     * The line the record starts on, counting from 1.
+     */
+    private long lineNumber;
+
+    /**
+     * Deduplicates fields, or null.
+     */
+    private StringPool pool = null;
+
+    /**
+     * Package-private; records are created by CsvParser.
+     */
+    CsvRecord()
+    {
+    }
+
+    /**
+     * @return The number of fields.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns a field.
+     *
+     * @param i
+     *            The field, starting at 0.
+     * @return The field's value.
+     */
+    public String get(final int i)
+    {
+        if (i >= size)
+        {
+            throw new IndexOutOfBoundsException("Field " + i + " of " + size);
+        }
+        final int start = i == 0 ? 0 : ends[i - 1];
+        return string(start, ends[i]);
+    }
+
+    /**
+     * @return The fields in a new array.
+     */
+    public String[] toArray()
+    {
+        final String[] fields = new String[size];
+        int start = 0;
+        for (int i = 0; i < size; i++)
+        {
+            fields[i] = string(start, ends[i]);
+            start = ends[i];
+        }
+        return fields;
+    }
+
+    /**
+     * @return The line the record starts on, counting from 1.
+     */
+    public long getLineNumber()
+    {
+        return lineNumber;
+    }
+
+    @Override
+    public String toString()
+    {
+        return Arrays.toString(toArray());
+    }
+
+    /**
+     * Creates a field's String.
+     */
+    private String string(final int start, final int end)
+    {
+        return pool == null ? new String(chars, start, end - start) : pool.intern(chars, start,
+                end);
+    }
+
+    /**
+     * Sets the pool fields are taken from.
+     */
+    void setPool(final StringPool pool)
+    {
+        this.pool = pool;
+    }
+
+    /**
+     * Empties the record for reuse.
+     */
+    void clear(final long startLine)
+    {
+        length = 0;
+        size = 0;
+        lineNumber = startLine;
+    }
+
+    /**
+     * Appends a character to the current field.
+     */
+    void append(final char c)
+    {
+        if (length == chars.length)
+        {
+            chars = Arrays.copyOf(chars, length * 2);
+        }
+        chars[length++] = c;
+    }
+
+    /**
+     * Appends characters to the current field.
+     */
+    void append(final char[] source, final int start, final int end)
+    {
+        final int count = end - start;
+        if (length + count > chars.length)
+        {
+            chars = Arrays.copyOf(chars, Math.max(chars.length * 2, length + count));
+        }
+        System.arraycopy(source, start, chars, length, count);
+        length += count;
+    }
+
+    /**
+     * Ends the current field.
+     */
+    void endField()
+    {
+        if (size == ends.length)
+        {
+            ends = Arrays.copyOf(ends, size * 2);
+        }
+        ends[size++] = length;
+    }
+}
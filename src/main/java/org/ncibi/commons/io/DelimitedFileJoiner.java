@@ -0,0 +1,661 @@
+package org.ncibi.commons.io;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.ncibi.commons.io.stream.DecompressingInputStreams;
+import org.ncibi.commons.lang.FieldSplitter;
+
+/**
+ * Joins two delimited files on a key column without loading both into memory.
+ * Rows are streamed to a JoinSink as they are found. Two algorithms are
+ * available:
+ *
+ * hashJoin() builds a hash table on the smaller file and streams the larger
+ * file past it. When the build side doesn't fit in the memory budget both
+ * files are split into partitions on disk by hash of the key (a grace hash
+ * join) and each pair of partitions is joined in turn.
+ *
+ * mergeJoin() joins two files that are already sorted on their keys (for
+ * example by DelimitedFileSorter) in a single pass over each. Only the lines
+ * of the right file that share one key are held in memory.
+ *
+ * Both are inner joins: every pair of lines with equal keys produces one row.
+ * Compressed files are decompressed.
+ *
+ * @author gtarcea
+ *
+ */
+public class DelimitedFileJoiner
+{
+    /**
+     * Default memory budget for the hash table.
+     */
+    public static final long DEFAULT_MEMORY_LIMIT = 256L * 1024 * 1024;
+
+    /**
+     * Default number of partitions a build side that doesn't fit is split
+     * into.
+     */
+    public static final int DEFAULT_PARTITION_COUNT = 32;
+
+    /**
+     * Partitions that still don't fit are partitioned again, up to this many
+     * levels. Past that a partition is loaded whatever its size, since it is
+     * probably made of a few very common keys that can't be split.
+     */
+    private static final int MAX_PARTITION_LEVELS = 3;
+
+    /**
+     * Rough per line memory overhead on top of the characters: the String
+     * objects for the line and its key, the map entry and list.
+     */
+    private static final int LINE_OVERHEAD = 160;
+
+    /**
+     * Buffer size for reading and writing files.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Partitions are always written in UTF-8 so no character is lost.
+     */
+    private static final Charset PARTITION_CHARSET = Charset.forName("UTF-8");
+
+    /**
+     * The key column (starting at 0) of the left file.
+     */
+    private final int leftKeyColumn;
+
+    /**
+     * The key column (starting at 0) of the right file.
+     */
+    private final int rightKeyColumn;
+
+    /**
+     * Extracts the key columns.
+     */
+    private final FieldSplitter splitter;
+
+    /**
+     * Orders keys for mergeJoin().
+     */
+    private Comparator<String> keyComparator = KeyType.STRING;
+
+    /**
+     * Memory budget for the hash table.
+     */
+    private long memoryLimit = DEFAULT_MEMORY_LIMIT;
+
+    /**
+     * Number of partitions for a grace hash join.
+     */
+    private int partitionCount = DEFAULT_PARTITION_COUNT;
+
+    /**
+     * Should header lines be skipped?
+     */
+    private boolean skipHeader = false;
+
+    /**
+     * How many lines are there in the header?
+     */
+    private int headerLineCount = 1;
+
+    /**
+     * The charset of the files.
+     */
+    private Charset charset = Charset.defaultCharset();
+
+    /**
+     * Constructor.
+     *
+     * @param leftKeyColumn
+     *            The key column (starting at 0) of the left file.
+     * @param rightKeyColumn
+     *            The key column (starting at 0) of the right file.
+     * @param delimiter
+     *            The column delimiter of both files.
+     */
+    public DelimitedFileJoiner(final int leftKeyColumn, final int rightKeyColumn,
+            final char delimiter)
+    {
+        this.leftKeyColumn = leftKeyColumn;
+        this.rightKeyColumn = rightKeyColumn;
+        this.splitter = new FieldSplitter(delimiter);
+    }
+
+    /**
+     * Sets how keys are ordered in the files given to mergeJoin(). The default
+     * is KeyType.STRING. hashJoin() only compares keys for equality.
+     *
+     * @param comparator
+     *            The key comparator the files were sorted with.
+     */
+    public void setKeyComparator(final Comparator<String> comparator)
+    {
+        this.keyComparator = comparator;
+    }
+
+    /**
+     * Sets the memory budget for the hash table built by hashJoin().
+     *
+     * @param bytes
+     *            The memory budget in bytes.
+     */
+    public void setMemoryLimit(final long bytes)
+    {
+        this.memoryLimit = bytes;
+    }
+
+    /**
+     * Sets the number of partitions the files are split into when the build
+     * side doesn't fit in memory.
+     *
+     * @param count
+     *            The number of partitions, at least 2.
+     */
+    public void setPartitionCount(final int count)
+    {
+        if (count < 2)
+        {
+            throw new IllegalArgumentException("count must be at least 2: " + count);
+        }
+        this.partitionCount = count;
+    }
+
+    /**
+     * Sets the skipHeader property. If the property is true then both files
+     * have header lines that are skipped.
+     *
+     * @param skip
+     *            If true then skip the header lines.
+     */
+    public void setSkipHeader(final boolean skip)
+    {
+        this.skipHeader = skip;
+    }
+
+    /**
+     * Sets the count of header lines. The default is 1.
+     *
+     * @param count
+     *            The number of headers lines in each file.
+     */
+    public void setHeaderLineCount(final int count)
+    {
+        this.headerLineCount = count;
+    }
+
+    /**
+     * Sets the charset of the files. The default is the platform charset.
+     *
+     * @param charset
+     *            The charset.
+     */
+    public void setCharset(final Charset charset)
+    {
+        this.charset = charset;
+    }
+
+    /**
+     * Joins two files with a hash join, building on the smaller file.
+     *
+     * @param leftFile
+     *            The left file.
+     * @param rightFile
+     *            The right file.
+     * @param sink
+     *            Receives the joined rows.
+     * @throws IOException
+     *             When a file can't be read or the sink fails.
+     */
+    public void hashJoin(final String leftFile, final String rightFile, final JoinSink sink)
+            throws IOException
+    {
+        final int headerLines = skipHeader ? headerLineCount : 0;
+        final Input left = new Input(leftFile, leftKeyColumn, headerLines, charset);
+        final Input right = new Input(rightFile, rightKeyColumn, headerLines, charset);
+        if (new File(leftFile).length() <= new File(rightFile).length())
+        {
+            hashJoin(left, right, true, sink, 0);
+        }
+        else
+        {
+            hashJoin(right, left, false, sink, 0);
+        }
+    }
+
+    /**
+     * Joins a build input with a probe input, partitioning both when the
+     * build side doesn't fit in memory.
+     */
+    private void hashJoin(final Input build, final Input probe, final boolean buildIsLeft,
+            final JoinSink sink, final int level) throws IOException
+    {
+        final Map<String, List<String>> table = loadTable(build,
+                level < MAX_PARTITION_LEVELS ? memoryLimit : Long.MAX_VALUE);
+        if (table != null)
+        {
+            probe(table, probe, buildIsLeft, sink);
+            return;
+        }
+
+        final List<File> partitions = new ArrayList<File>();
+        try
+        {
+            final File[] buildParts = partition(build, level, partitions);
+            final File[] probeParts = partition(probe, level, partitions);
+            for (int i = 0; i < partitionCount; i++)
+            {
+                hashJoin(new Input(buildParts[i].getPath(), build.keyColumn, 0,
+                        PARTITION_CHARSET), new Input(probeParts[i].getPath(), probe.keyColumn,
+                        0, PARTITION_CHARSET), buildIsLeft, sink, level + 1);
+                buildParts[i].delete();
+                probeParts[i].delete();
+            }
+        }
+        finally
+        {
+            for (final File partition : partitions)
+            {
+                partition.delete();
+            }
+        }
+    }
+
+    /**
+     * Loads the build side into a hash table.
+     *
+     * @return The table, or null if it doesn't fit in the memory limit.
+     */
+    private Map<String, List<String>> loadTable(final Input build, final long limit)
+            throws IOException
+    {
+        final Map<String, List<String>> table = new HashMap<String, List<String>>();
+        final LineReader in = build.open();
+        try
+        {
+            long bytes = 0;
+            String line;
+            while ((line = in.readLine()) != null)
+            {
+                final String key = build.key(line);
+                if (key == null)
+                {
+                    continue;
+                }
+
+                bytes += LINE_OVERHEAD + 2L * (line.length() + key.length());
+                if (bytes > limit)
+                {
+                    return null;
+                }
+
+                List<String> lines = table.get(key);
+                if (lines == null)
+                {
+                    lines = new ArrayList<String>(1);
+                    table.put(key, lines);
+                }
+                lines.add(line);
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        return table;
+    }
+
+    /**
+     * Streams the probe side past the hash table.
+     */
+    private void probe(final Map<String, List<String>> table, final Input probe,
+            final boolean buildIsLeft, final JoinSink sink) throws IOException
+    {
+        final LineReader in = probe.open();
+        try
+        {
+            String line;
+            while ((line = in.readLine()) != null)
+            {
+                final String key = probe.key(line);
+                final List<String> matches = key == null ? null : table.get(key);
+                if (matches == null)
+                {
+                    continue;
+                }
+
+                for (final String match : matches)
+                {
+                    if (buildIsLeft)
+                    {
+                        sink.join(match, line);
+                    }
+                    else
+                    {
+                        sink.join(line, match);
+                    }
+                }
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * Splits an input into partitions by hash of the key. Lines without a key
+     * can't match anything and are dropped.
+     *
+     * @param created
+     *            Collects the partition files so they can be cleaned up.
+     * @return The partition files.
+     */
+    private File[] partition(final Input input, final int level, final List<File> created)
+            throws IOException
+    {
+        final File tmpDir = new File(FileUtilities.tmpDir());
+        final File[] files = new File[partitionCount];
+        final Writer[] writers = new Writer[partitionCount];
+        try
+        {
+            for (int i = 0; i < partitionCount; i++)
+            {
+                files[i] = File.createTempFile("join", ".part", tmpDir);
+                created.add(files[i]);
+                writers[i] = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(
+                        files[i]), PARTITION_CHARSET), BUFFER_SIZE / 4);
+            }
+
+            final LineReader in = input.open();
+            try
+            {
+                String line;
+                while ((line = in.readLine()) != null)
+                {
+                    final String key = input.key(line);
+                    if (key != null)
+                    {
+                        final Writer out = writers[partitionOf(key, level)];
+                        out.write(line);
+                        out.write('\n');
+                    }
+                }
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        finally
+        {
+            for (final Writer writer : writers)
+            {
+                if (writer != null)
+                {
+                    writer.close();
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Picks the partition for a key. Each level mixes the hash differently so
+     * that a partition that is partitioned again is spread over all the new
+     * partitions.
+     */
+    private int partitionOf(final String key, final int level)
+    {
+        int h = key.hashCode() * (0x9e3779b1 + 2 * level);
+        h ^= h >>> 16;
+        return (h & Integer.MAX_VALUE) % partitionCount;
+    }
+
+    /**
+     * Joins two files that are sorted by their keys, in the order given by
+     * the key comparator.
+     *
+     * @param leftFile
+     *            The left file.
+     * @param rightFile
+     *            The right file.
+     * @param sink
+     *            Receives the joined rows.
+     * @throws IOException
+     *             When a file can't be read, isn't sorted, or the sink fails.
+     */
+    public void mergeJoin(final String leftFile, final String rightFile, final JoinSink sink)
+            throws IOException
+    {
+        final int headerLines = skipHeader ? headerLineCount : 0;
+        final SortedCursor left = new SortedCursor(new Input(leftFile, leftKeyColumn,
+                headerLines, charset));
+        try
+        {
+            final SortedCursor right = new SortedCursor(new Input(rightFile, rightKeyColumn,
+                    headerLines, charset));
+            try
+            {
+                mergeJoin(left, right, sink);
+            }
+            finally
+            {
+                right.close();
+            }
+        }
+        finally
+        {
+            left.close();
+        }
+    }
+
+    /**
+     * Merges the two cursors, buffering the right lines that share a key.
+     */
+    private void mergeJoin(final SortedCursor left, final SortedCursor right, final JoinSink sink)
+            throws IOException
+    {
+        left.next();
+        right.next();
+        final List<String> group = new ArrayList<String>();
+        final SortedCursor groupKey = new SortedCursor();
+        while (left.line != null && right.line != null)
+        {
+            final int c = left.compareTo(right);
+            if (c < 0)
+            {
+                left.next();
+            }
+            else if (c > 0)
+            {
+                right.next();
+            }
+            else
+            {
+                groupKey.setKey(right);
+                group.clear();
+                do
+                {
+                    group.add(right.line);
+                    right.next();
+                }
+                while (right.line != null && right.compareTo(groupKey) == 0);
+
+                do
+                {
+                    for (final String rightLine : group)
+                    {
+                        sink.join(left.line, rightLine);
+                    }
+                    left.next();
+                }
+                while (left.line != null && left.compareTo(groupKey) == 0);
+            }
+        }
+    }
+
+    /**
+     * A file to join and where its key is.
+     */
+    private final class Input
+    {
+        final String filename;
+        final int keyColumn;
+        final int headerLines;
+        final Charset inputCharset;
+
+        Input(final String filename, final int keyColumn, final int headerLines,
+                final Charset inputCharset)
+        {
+            this.filename = filename;
+            this.keyColumn = keyColumn;
+            this.headerLines = headerLines;
+            this.inputCharset = inputCharset;
+        }
+
+        /**
+         * Opens the file positioned after its header lines.
+         */
+        LineReader open() throws IOException
+        {
+            final FileInputStream file = new FileInputStream(filename);
+            final LineReader in;
+            try
+            {
+                in = new LineReader(DecompressingInputStreams.open(file), inputCharset, 0,
+                        BUFFER_SIZE);
+            }
+            catch (IOException e)
+            {
+                file.close();
+                throw e;
+            }
+
+            for (int i = 0; i < headerLines; i++)
+            {
+                in.readLine();
+            }
+            return in;
+        }
+
+        /**
+         * @return The key of a line, or null if the line has too few columns.
+         */
+        String key(final String line)
+        {
+            return splitter.field(line, keyColumn);
+        }
+    }
+
+    /**
+     * Reads a sorted file a line at a time, checking that it really is sorted.
+     * Lines without a key are skipped. For a numeric KeyType each key is
+     * parsed once, when its line is read.
+     */
+    private final class SortedCursor
+    {
+        private final Input input;
+        private final LineReader in;
+        private final KeyType numericType = KeyType.numericType(keyComparator);
+        String line;
+        String key;
+
+        /**
+         * Is the key a number of the numeric KeyType?
+         */
+        boolean numeric;
+
+        /**
+         * The key as KeyType.parseOrNull() returned it, if it is a number.
+         */
+        long number;
+
+        SortedCursor(final Input input) throws IOException
+        {
+            this.input = input;
+            this.in = input.open();
+        }
+
+        /**
+         * Constructor for a cursor that only holds a key.
+         */
+        SortedCursor()
+        {
+            this.input = null;
+            this.in = null;
+        }
+
+        void next() throws IOException
+        {
+            final String previousKey = key;
+            final boolean previousNumeric = numeric;
+            final long previousNumber = number;
+            do
+            {
+                line = in.readLine();
+                key = line == null ? null : input.key(line);
+            }
+            while (line != null && key == null);
+
+            final Long parsed = key == null || numericType == null ? null : numericType
+                    .parseOrNull(key);
+            numeric = parsed != null;
+            number = parsed == null ? 0 : parsed;
+            if (key != null && previousKey != null
+                    && compareKeys(previousKey, previousNumeric, previousNumber, key, numeric,
+                            number) > 0)
+            {
+                throw new IOException(input.filename + " is not sorted: " + key + " follows "
+                        + previousKey);
+            }
+        }
+
+        /**
+         * Copies the key of another cursor.
+         */
+        void setKey(final SortedCursor other)
+        {
+            key = other.key;
+            numeric = other.numeric;
+            number = other.number;
+        }
+
+        /**
+         * Compares this cursor's key with another's.
+         */
+        int compareTo(final SortedCursor other)
+        {
+            return compareKeys(key, numeric, number, other.key, other.numeric, other.number);
+        }
+
+        private int compareKeys(final String a, final boolean aNumeric, final long x,
+                final String b, final boolean bNumeric, final long y)
+        {
+            if (numericType == null)
+            {
+                return keyComparator.compare(a, b);
+            }
+            return KeyType.compareParsed(a, aNumeric, x, b, bNumeric, y);
+        }
+
+        void close() throws IOException
+        {
+            in.close();
+        }
+    }
+}
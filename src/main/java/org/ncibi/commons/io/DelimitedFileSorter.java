@@ -0,0 +1,728 @@
+package org.ncibi.commons.io;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.ncibi.commons.io.stream.DecompressingInputStreams;
+import org.ncibi.commons.lang.FieldSplitter;
+
+/**
+ * Sorts a delimited text file by one of its columns using an external merge
+ * sort, so files much larger than memory can be sorted. The file is read with
+ * a LineReader and cut into chunks that fit in the memory budget.
+ * Chunks are sorted in parallel and written as sorted runs under
+ * FileUtilities.tmpDir(), and the runs are then merged with a heap. When there
+ * are more runs than the merge fan-in they are merged in several passes.
+ *
+ * The sort is stable: lines with equal keys stay in the order they had in the
+ * input. When unique is set only the first line for each key is kept.
+ *
+ * @author gtarcea
+ *
+ */
+public class DelimitedFileSorter
+{
+    /**
+     * Default memory budget for lines held in memory.
+     */
+    public static final long DEFAULT_MEMORY_LIMIT = 256L * 1024 * 1024;
+
+    /**
+     * Default maximum number of runs merged at once.
+     */
+    public static final int DEFAULT_MERGE_FAN_IN = 128;
+
+    /**
+     * Rough per line memory overhead on top of the characters: the String
+     * objects for the line and its key, their arrays and the Line entry.
+     */
+    private static final int LINE_OVERHEAD = 128;
+
+    /**
+     * Buffer size for reading and writing runs.
+     */
+    private static final int RUN_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Runs are always written in UTF-8 so no character is lost.
+     */
+    private static final Charset RUN_CHARSET = Charset.forName("UTF-8");
+
+    /**
+     * The column (starting at 0) to sort by.
+     */
+    private final int keyColumn;
+
+    /**
+     * Extracts the key column.
+     */
+    private final FieldSplitter splitter;
+
+    /**
+     * Compares keys.
+     */
+    private Comparator<String> keyComparator = KeyType.STRING;
+
+    /**
+     * Sort in descending order?
+     */
+    private boolean reverse = false;
+
+    /**
+     * Keep only the first line for each key?
+     */
+    private boolean unique = false;
+
+    /**
+     * Gzip the runs?
+     */
+    private boolean compressRuns = false;
+
+    /**
+     * Memory budget for lines held in memory.
+     */
+    private long memoryLimit = DEFAULT_MEMORY_LIMIT;
+
+    /**
+     * Number of threads sorting chunks.
+     */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Maximum number of runs merged at once.
+     */
+    private int mergeFanIn = DEFAULT_MERGE_FAN_IN;
+
+    /**
+     * Should header lines be copied to the output unsorted?
+     */
+    private boolean skipHeader = false;
+
+    /**
+     * How many lines are there in the header?
+     */
+    private int headerLineCount = 1;
+
+    /**
+     * The charset of the input and output files.
+     */
+    private Charset charset = Charset.defaultCharset();
+
+    /**
+     * Constructor.
+     *
+     * @param keyColumn
+     *            The column (starting at 0) to sort by. Lines that don't have
+     *            this column have an empty key.
+     * @param delimiter
+     *            The column delimiter.
+     */
+    public DelimitedFileSorter(final int keyColumn, final char delimiter)
+    {
+        this.keyColumn = keyColumn;
+        this.splitter = new FieldSplitter(delimiter);
+    }
+
+    /**
+     * Sets how keys are compared. The default is KeyType.STRING.
+     *
+     * @param comparator
+     *            The key comparator, usually one of the KeyType values.
+     */
+    public void setKeyComparator(final Comparator<String> comparator)
+    {
+        this.keyComparator = comparator;
+    }
+
+    /**
+     * Sets whether the file is sorted in descending order.
+     *
+     * @param reverse
+     *            If true the largest key comes first.
+     */
+    public void setReverse(final boolean reverse)
+    {
+        this.reverse = reverse;
+    }
+
+    /**
+     * Sets whether duplicate keys are removed. Only the first line (in input
+     * order) for each key is kept.
+     *
+     * @param unique
+     *            If true duplicate keys are removed.
+     */
+    public void setUnique(final boolean unique)
+    {
+        this.unique = unique;
+    }
+
+    /**
+     * Sets whether the temporary runs are gzipped. This trades CPU for disk
+     * space and I/O.
+     *
+     * @param compressRuns
+     *            If true runs are gzipped.
+     */
+    public void setCompressRuns(final boolean compressRuns)
+    {
+        this.compressRuns = compressRuns;
+    }
+
+    /**
+     * Sets the memory budget for lines held in memory while sorting chunks.
+     * The budget is shared by all the sorting threads.
+     *
+     * @param bytes
+     *            The memory budget in bytes.
+     */
+    public void setMemoryLimit(final long bytes)
+    {
+        this.memoryLimit = bytes;
+    }
+
+    /**
+     * Sets the number of threads sorting chunks. The default is the number of
+     * processors.
+     *
+     * @param threads
+     *            The number of threads.
+     */
+    public void setThreads(final int threads)
+    {
+        this.threads = threads;
+    }
+
+    /**
+     * Sets the maximum number of runs merged at once.
+     *
+     * @param fanIn
+     *            The maximum number of open runs, at least 2.
+     */
+    public void setMergeFanIn(final int fanIn)
+    {
+        if (fanIn < 2)
+        {
+            throw new IllegalArgumentException("fanIn must be at least 2: " + fanIn);
+        }
+        this.mergeFanIn = fanIn;
+    }
+
+    /**
+     * Sets the skipHeader property. If the property is true then the input file
+     * has header lines that are copied to the output without being sorted.
+     *
+     * @param skip
+     *            If true then header lines are not sorted.
+     */
+    public void setSkipHeader(final boolean skip)
+    {
+        this.skipHeader = skip;
+    }
+
+    /**
+     * Sets the count of header lines. The default is 1.
+     *
+     * @param count
+     *            The number of headers lines in the file.
+     */
+    public void setHeaderLineCount(final int count)
+    {
+        this.headerLineCount = count;
+    }
+
+    /**
+     * Sets the charset of the input and output files. The default is the
+     * platform charset.
+     *
+     * @param charset
+     *            The charset.
+     */
+    public void setCharset(final Charset charset)
+    {
+        this.charset = charset;
+    }
+
+    /**
+     * Sorts a file. Compressed input is decompressed.
+     *
+     * @param inputFile
+     *            The file to sort.
+     * @param outputFile
+     *            The file to write the sorted lines to. It may be the same as
+     *            the input file.
+     * @throws IOException
+     *             When a file can't be read or written.
+     */
+    public void sort(final String inputFile, final String outputFile) throws IOException
+    {
+        final Comparator<Line> lineOrder = reverse ? Collections.reverseOrder(lineOrder())
+                : lineOrder();
+        final RunBuilder runs = new RunBuilder(lineOrder);
+        try
+        {
+            final List<String> header = readRuns(inputFile, runs);
+
+            final List<File> sortedRuns = mergeToFanIn(runs.finish(), lineOrder, runs);
+
+            final Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(
+                    outputFile), charset), RUN_BUFFER_SIZE);
+            try
+            {
+                for (final String line : header)
+                {
+                    out.write(line);
+                    out.write('\n');
+                }
+                merge(sortedRuns, lineOrder, out);
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+        finally
+        {
+            runs.close();
+        }
+    }
+
+    /**
+     * Reads the input file into sorted runs, keeping back the header lines.
+     *
+     * @return The header lines.
+     */
+    private List<String> readRuns(final String inputFile, final RunBuilder runs)
+            throws IOException
+    {
+        final List<String> header = new ArrayList<String>();
+        final FileInputStream file = new FileInputStream(inputFile);
+        try
+        {
+            final LineReader in = new LineReader(DecompressingInputStreams.open(file), charset,
+                    0, RUN_BUFFER_SIZE);
+            String line;
+            while ((line = in.readLine()) != null)
+            {
+                if (skipHeader && header.size() < headerLineCount)
+                {
+                    header.add(line);
+                }
+                else
+                {
+                    runs.add(line);
+                }
+            }
+            in.close();
+        }
+        finally
+        {
+            file.close();
+        }
+        return header;
+    }
+
+    /**
+     * Merges groups of runs until there are no more than mergeFanIn runs left.
+     * Groups are made of consecutive runs so the merge stays stable.
+     */
+    private List<File> mergeToFanIn(final List<File> runFiles, final Comparator<Line> lineOrder,
+            final RunBuilder runs) throws IOException
+    {
+        List<File> files = runFiles;
+        while (files.size() > mergeFanIn)
+        {
+            final List<File> merged = new ArrayList<File>();
+            for (int i = 0; i < files.size(); i += mergeFanIn)
+            {
+                final List<File> group = files.subList(i, Math.min(i + mergeFanIn, files.size()));
+                final File run = runs.newRunFile();
+                final Writer out = openRun(run);
+                try
+                {
+                    merge(group, lineOrder, out);
+                }
+                finally
+                {
+                    out.close();
+                }
+                for (final File file : group)
+                {
+                    file.delete();
+                }
+                merged.add(run);
+            }
+            files = merged;
+        }
+        return files;
+    }
+
+    /**
+     * Merges sorted runs with a heap. Ties are broken by run order so lines
+     * with equal keys come out in input order.
+     */
+    private void merge(final List<File> runFiles, final Comparator<Line> lineOrder,
+            final Writer out) throws IOException
+    {
+        final PriorityQueue<RunReader> heap = new PriorityQueue<RunReader>(Math.max(1, runFiles
+                .size()), new Comparator<RunReader>()
+        {
+            public int compare(final RunReader a, final RunReader b)
+            {
+                final int c = lineOrder.compare(a.current, b.current);
+                return c != 0 ? c : a.index - b.index;
+            }
+        });
+
+        try
+        {
+            for (int i = 0; i < runFiles.size(); i++)
+            {
+                final RunReader run = new RunReader(runFiles.get(i), i);
+                if (run.next())
+                {
+                    heap.add(run);
+                }
+                else
+                {
+                    run.close();
+                }
+            }
+
+            Line last = null;
+            while (!heap.isEmpty())
+            {
+                final RunReader run = heap.poll();
+                final Line line = run.current;
+                if (!unique || last == null || lineOrder.compare(last, line) != 0)
+                {
+                    out.write(line.text);
+                    out.write('\n');
+                    last = line;
+                }
+
+                if (run.next())
+                {
+                    heap.add(run);
+                }
+                else
+                {
+                    run.close();
+                }
+            }
+        }
+        finally
+        {
+            for (final RunReader run : heap)
+            {
+                run.close();
+            }
+        }
+    }
+
+    /**
+     * Opens a run for writing.
+     */
+    private Writer openRun(final File run) throws IOException
+    {
+        OutputStream out = new FileOutputStream(run);
+        if (compressRuns)
+        {
+            out = new GZIPOutputStream(out, RUN_BUFFER_SIZE);
+        }
+        return new BufferedWriter(new OutputStreamWriter(out, RUN_CHARSET), RUN_BUFFER_SIZE);
+    }
+
+    /**
+     * Extracts the key column from a line.
+     *
+     * @param line
+     *            The line.
+     * @return The key, or "" if the line has too few columns.
+     */
+    private String key(final String line)
+    {
+        final String key = splitter.field(line, keyColumn);
+        return key == null ? "" : key;
+    }
+
+    /**
+     * Creates a line, extracting its key and, for a numeric KeyType, parsing
+     * it.
+     */
+    private Line line(final String text)
+    {
+        final String key = key(text);
+        final KeyType numericType = KeyType.numericType(keyComparator);
+        final Long number = numericType == null ? null : numericType.parseOrNull(key);
+        return new Line(key, text, number != null, number == null ? 0 : number);
+    }
+
+    /**
+     * Returns the order of lines by key, ascending. Numeric keys are compared
+     * by the values parsed when the lines were read.
+     */
+    private Comparator<Line> lineOrder()
+    {
+        final Comparator<String> keyOrder = keyComparator;
+        if (KeyType.numericType(keyOrder) != null)
+        {
+            return new Comparator<Line>()
+            {
+                public int compare(final Line a, final Line b)
+                {
+                    return KeyType.compareParsed(a.key, a.numeric, a.number, b.key, b.numeric,
+                            b.number);
+                }
+            };
+        }
+        return new Comparator<Line>()
+        {
+            public int compare(final Line a, final Line b)
+            {
+                return keyOrder.compare(a.key, b.key);
+            }
+        };
+    }
+
+    /**
+     * A line and its key, extracted (and parsed) once.
+     */
+    private static final class Line
+    {
+        final String key;
+        final String text;
+
+        /**
+         * Is the key a number of a numeric KeyType?
+         */
+        final boolean numeric;
+
+        /**
+         * The key as KeyType.parseOrNull() returned it, if it is a number.
+         */
+        final long number;
+
+        Line(final String key, final String text, final boolean numeric, final long number)
+        {
+            this.key = key;
+            this.text = text;
+            this.numeric = numeric;
+            this.number = number;
+        }
+    }
+
+    /**
+     * Collects lines into chunks and sorts and writes each full chunk as a run
+     * on a thread pool. At most threads chunks are in flight at once, which
+     * keeps memory use within the budget and makes reading wait for the
+     * sorting threads rather than run ahead of them.
+     */
+    private final class RunBuilder
+    {
+        private final Comparator<Line> lineOrder;
+        private final long chunkLimit;
+        private final ExecutorService executor;
+        private final Semaphore chunksInFlight;
+        private final List<File> runFiles = new ArrayList<File>();
+        private final List<Future<?>> writes = new ArrayList<Future<?>>();
+        private List<Line> chunk = new ArrayList<Line>();
+        private long chunkBytes = 0;
+
+        RunBuilder(final Comparator<Line> lineOrder)
+        {
+            this.lineOrder = lineOrder;
+            this.chunkLimit = Math.max(1, memoryLimit / (threads + 1));
+            this.executor = Executors.newFixedThreadPool(threads);
+            this.chunksInFlight = new Semaphore(threads);
+        }
+
+        void add(final String text) throws IOException
+        {
+            final Line line = line(text);
+            chunk.add(line);
+            chunkBytes += LINE_OVERHEAD + 2L * (text.length() + line.key.length());
+            if (chunkBytes >= chunkLimit)
+            {
+                submitChunk();
+            }
+        }
+
+        File newRunFile() throws IOException
+        {
+            final File run = File.createTempFile("sort", compressRuns ? ".run.gz" : ".run",
+                    new File(FileUtilities.tmpDir()));
+            synchronized (runFiles)
+            {
+                runFiles.add(run);
+            }
+            return run;
+        }
+
+        private void submitChunk() throws IOException
+        {
+            final List<Line> lines = chunk;
+            final File run = newRunFile();
+            chunk = new ArrayList<Line>();
+            chunkBytes = 0;
+
+            try
+            {
+                chunksInFlight.acquire();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting to sort a chunk");
+            }
+
+            writes.add(executor.submit(new Callable<Void>()
+            {
+                public Void call() throws IOException
+                {
+                    try
+                    {
+                        writeRun(lines, run);
+                    }
+                    finally
+                    {
+                        chunksInFlight.release();
+                    }
+                    return null;
+                }
+            }));
+        }
+
+        private void writeRun(final List<Line> lines, final File run) throws IOException
+        {
+            // Collections.sort() is a stable merge sort.
+            Collections.sort(lines, lineOrder);
+            final Writer out = openRun(run);
+            try
+            {
+                Line last = null;
+                for (final Line line : lines)
+                {
+                    if (!unique || last == null || lineOrder.compare(last, line) != 0)
+                    {
+                        out.write(line.text);
+                        out.write('\n');
+                        last = line;
+                    }
+                }
+            }
+            finally
+            {
+                out.close();
+            }
+        }
+
+        /**
+         * Writes the last chunk and waits for all runs to be written.
+         *
+         * @return The runs in input order.
+         */
+        List<File> finish() throws IOException
+        {
+            if (!chunk.isEmpty())
+            {
+                submitChunk();
+            }
+
+            for (final Future<?> write : writes)
+            {
+                try
+                {
+                    write.get();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while sorting chunks");
+                }
+                catch (ExecutionException e)
+                {
+                    if (e.getCause() instanceof IOException)
+                    {
+                        throw (IOException) e.getCause();
+                    }
+                    throw new RuntimeException("Error sorting chunk", e.getCause());
+                }
+            }
+
+            synchronized (runFiles)
+            {
+                return new ArrayList<File>(runFiles);
+            }
+        }
+
+        /**
+         * Stops the sorting threads and deletes all runs.
+         */
+        void close()
+        {
+            executor.shutdownNow();
+            synchronized (runFiles)
+            {
+                for (final File run : runFiles)
+                {
+                    run.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the lines of a run.
+     */
+    private final class RunReader
+    {
+        private final LineReader in;
+        final int index;
+        Line current;
+
+        RunReader(final File run, final int index) throws IOException
+        {
+            InputStream input = new FileInputStream(run);
+            if (compressRuns)
+            {
+                input = new GZIPInputStream(input, RUN_BUFFER_SIZE);
+            }
+            this.in = new LineReader(input, RUN_CHARSET, 0, RUN_BUFFER_SIZE);
+            this.index = index;
+        }
+
+        boolean next() throws IOException
+        {
+            final String text = in.readLine();
+            current = text == null ? null : line(text);
+            return text != null;
+        }
+
+        void close() throws IOException
+        {
+            in.close();
+        }
+    }
+}
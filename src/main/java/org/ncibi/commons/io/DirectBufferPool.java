@@ -0,0 +1,129 @@
+package org.ncibi.commons.io;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A thread safe pool of direct byte buffers of a fixed size. Direct buffers
+ * are expensive to allocate and are only released when they are garbage
+ * collected, so streams and copy loops that need them should borrow them from
+ * a pool rather than allocating their own.
+ *
+ * @author gtarcea
+ *
+ */
+public final class DirectBufferPool
+{
+    /**
+     * Default buffer size (64K).
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * A shared pool of DEFAULT_BUFFER_SIZE buffers.
+     */
+    private static final DirectBufferPool DEFAULT_POOL = new DirectBufferPool(
+            DEFAULT_BUFFER_SIZE, 64);
+
+    /**
+     * The buffers available for reuse.
+     */
+    private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<ByteBuffer>();
+
+    /**
+     * The number of buffers in the queue.
+     */
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    /**
+     * The size of the buffers in the pool.
+     */
+    private final int bufferSize;
+
+    /**
+     * The most buffers kept for reuse. Buffers released when the pool is full
+     * are left to the garbage collector.
+     */
+    private final int maxPooled;
+
+    /**
+     * Constructor.
+     *
+     * @param bufferSize
+     *            The size of the buffers in the pool.
+     * @param maxPooled
+     *            The most buffers to keep for reuse.
+     */
+    public DirectBufferPool(final int bufferSize, final int maxPooled)
+    {
+        if (bufferSize <= 0)
+        {
+            throw new IllegalArgumentException("bufferSize must be greater than 0.");
+        }
+
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+
+    /**
+     * Returns the shared pool of 64K buffers.
+     *
+     * @return The shared pool.
+     */
+    public static DirectBufferPool defaultPool()
+    {
+        return DEFAULT_POOL;
+    }
+
+    /**
+     * Borrows a buffer from the pool, allocating one if the pool is empty.
+     *
+     * @return A cleared buffer of getBufferSize() bytes.
+     */
+    public ByteBuffer acquire()
+    {
+        final ByteBuffer buffer = buffers.poll();
+        if (buffer == null)
+        {
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+
+        pooled.decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer to the pool. The caller must not use the buffer after
+     * releasing it.
+     *
+     * @param buffer
+     *            A buffer obtained from acquire().
+     */
+    public void release(final ByteBuffer buffer)
+    {
+        if (buffer == null || buffer.capacity() != bufferSize || !buffer.isDirect())
+        {
+            return;
+        }
+
+        if (pooled.incrementAndGet() <= maxPooled)
+        {
+            buffers.offer(buffer);
+        }
+        else
+        {
+            pooled.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return The size of the buffers in the pool.
+     */
+    public int getBufferSize()
+    {
+        return bufferSize;
+    }
+}
@@ -0,0 +1,317 @@
+package org.ncibi.commons.io;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.filefilter.WildcardFileFilter;
+import org.ncibi.commons.closure.F2;
+import org.ncibi.commons.exception.ExceptionHandler;
+
+/**
+ * Template class that processes every file in a directory in parallel and
+ * combines the per file results. Subclasses implement processFile(), usually
+ * with a FileInputLineProcessor, and supply a combiner that merges two results.
+ *
+ * Files are processed largest first from a shared queue by a pool of threads
+ * (one per processor by default). Each thread takes the next file as soon as
+ * it is done with its last one, so a few large files don't leave the other
+ * threads idle at the end of the batch. Each thread combines its own results
+ * and the per thread results are combined at the end, so the combiner must be
+ * associative and commutative.
+ *
+ * A file that fails is passed to the ExceptionHandler (if there is one) and
+ * recorded in getFailures(); the rest of the batch carries on.
+ *
+ * @author gtarcea
+ *
+ * @param <R>
+ *            The type of the per file results.
+ */
+public abstract class DirectoryBatchProcessor<R>
+{
+    /**
+     * Processes one file.
+     *
+     * @param file
+     *            The file to process.
+     * @return The result for the file, or null for no result.
+     * @throws IOException
+     *             When the file can't be processed.
+     */
+    public abstract R processFile(File file) throws IOException;
+
+    /**
+     * Merges two results.
+     */
+    private final F2<R, R, R> combiner;
+
+    /**
+     * The exception handler to call when a file fails, or null.
+     */
+    private final ExceptionHandler exceptionHandler;
+
+    /**
+     * Number of threads processing files.
+     */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Nanoseconds spent processing each file of the last batch, in the order
+     * the files finished.
+     */
+    private final Map<File, Long> fileTimes = new LinkedHashMap<File, Long>();
+
+    /**
+     * Files of the last batch that failed.
+     */
+    private final List<File> failures = new ArrayList<File>();
+
+    /**
+     * Constructor that sets up processing without an exception handler.
+     *
+     * @param combiner
+     *            Merges two results into one.
+     */
+    public DirectoryBatchProcessor(final F2<R, R, R> combiner)
+    {
+        this(combiner, null);
+    }
+
+    /**
+     * Constructor that accepts an exception handler to handle files that fail.
+     *
+     * @param combiner
+     *            Merges two results into one.
+     * @param exceptionHandler
+     *            The exception handler to call when a file fails.
+     */
+    public DirectoryBatchProcessor(final F2<R, R, R> combiner,
+            final ExceptionHandler exceptionHandler)
+    {
+        this.combiner = combiner;
+        this.exceptionHandler = exceptionHandler;
+    }
+
+    /**
+     * Sets the number of threads processing files. The default is the number
+     * of processors.
+     *
+     * @param threads
+     *            The number of threads.
+     */
+    public void setThreads(final int threads)
+    {
+        this.threads = threads;
+    }
+
+    /**
+     * Processes every file in a directory. Subdirectories are not processed.
+     *
+     * @param directory
+     *            The directory.
+     * @return The combined result, or null if there were no results.
+     */
+    public R process(final String directory)
+    {
+        return process(directory, "*");
+    }
+
+    /**
+     * Processes the files in a directory whose names match a wildcard.
+     *
+     * @param directory
+     *            The directory.
+     * @param wildcard
+     *            The wildcard, using ? and *, for example "*.tsv.gz".
+     * @return The combined result, or null if there were no results.
+     */
+    public R process(final String directory, final String wildcard)
+    {
+        final File dir = new File(directory);
+        final FileFilter filter = new WildcardFileFilter(wildcard);
+        final File[] files = dir.listFiles(new FileFilter()
+        {
+            public boolean accept(final File file)
+            {
+                return file.isFile() && filter.accept(file);
+            }
+        });
+        if (files == null)
+        {
+            throw new IllegalArgumentException("Not a directory: " + directory);
+        }
+        return process(Arrays.asList(files));
+    }
+
+    /**
+     * Processes a collection of files.
+     *
+     * @param files
+     *            The files.
+     * @return The combined result, or null if there were no results.
+     */
+    public R process(final Collection<File> files)
+    {
+        synchronized (fileTimes)
+        {
+            fileTimes.clear();
+            failures.clear();
+        }
+
+        final List<File> largestFirst = new ArrayList<File>(files);
+        Collections.sort(largestFirst, new Comparator<File>()
+        {
+            public int compare(final File a, final File b)
+            {
+                final long x = a.length();
+                final long y = b.length();
+                return x > y ? -1 : (x < y ? 1 : 0);
+            }
+        });
+        final Queue<File> queue = new ConcurrentLinkedQueue<File>(largestFirst);
+
+        final int workers = Math.max(1, Math.min(threads, largestFirst.size()));
+        final ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try
+        {
+            final List<Future<R>> results = new ArrayList<Future<R>>();
+            for (int i = 0; i < workers; i++)
+            {
+                results.add(executor.submit(new Callable<R>()
+                {
+                    public R call()
+                    {
+                        return processQueue(queue);
+                    }
+                }));
+            }
+
+            R combined = null;
+            for (final Future<R> result : results)
+            {
+                combined = combine(combined, result.get());
+            }
+            return combined;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while processing files", e);
+        }
+        catch (ExecutionException e)
+        {
+            throw new RuntimeException("Error processing files", e.getCause());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns how long each file of the last batch took to process, including
+     * files that failed.
+     *
+     * @return Nanoseconds per file, in the order the files finished.
+     */
+    public Map<File, Long> getFileTimes()
+    {
+        synchronized (fileTimes)
+        {
+            return new LinkedHashMap<File, Long>(fileTimes);
+        }
+    }
+
+    /**
+     * @return The files of the last batch that failed.
+     */
+    public List<File> getFailures()
+    {
+        synchronized (fileTimes)
+        {
+            return new ArrayList<File>(failures);
+        }
+    }
+
+    /**
+     * Processes files from the queue until it is empty.
+     *
+     * @return The combined results of the files processed by this thread.
+     */
+    private R processQueue(final Queue<File> queue)
+    {
+        R combined = null;
+        File file;
+        while ((file = queue.poll()) != null && !Thread.currentThread().isInterrupted())
+        {
+            final long start = System.nanoTime();
+            try
+            {
+                combined = combine(combined, processFile(file));
+                recordTime(file, start);
+            }
+            catch (Exception e)
+            {
+                recordTime(file, start);
+                handleException(file, e);
+            }
+        }
+        return combined;
+    }
+
+    /**
+     * Combines two results, either of which may be null.
+     */
+    private R combine(final R a, final R b)
+    {
+        if (a == null)
+        {
+            return b;
+        }
+        return b == null ? a : combiner.apply(a, b);
+    }
+
+    /**
+     * Records the time spent on a file.
+     */
+    private void recordTime(final File file, final long start)
+    {
+        final long elapsed = System.nanoTime() - start;
+        synchronized (fileTimes)
+        {
+            fileTimes.put(file, elapsed);
+        }
+    }
+
+    /**
+     * Records a failed file and passes the exception to the exception handler.
+     * Calls to the handler are serialized so it needn't be thread safe.
+     */
+    private void handleException(final File file, final Exception e)
+    {
+        synchronized (fileTimes)
+        {
+            failures.add(file);
+            if (exceptionHandler != null)
+            {
+                exceptionHandler.handle(e, "Error processing file: " + file);
+            }
+        }
+    }
+}
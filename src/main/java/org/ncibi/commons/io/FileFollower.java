@@ -0,0 +1,545 @@
+package org.ncibi.commons.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.ncibi.commons.exception.ExceptionHandler;
+import org.ncibi.commons.io.stream.FileChannelInputStream;
+
+/**
+ * Template class that follows a file that is being appended to, like tail -f,
+ * processing each complete line once. Only the bytes appended since the last
+ * poll are read, and a partly written last line is left until its terminator
+ * has been written.
+ *
+ * The file is kept open between polls. Its first bytes and the bytes just
+ * before the offset are remembered, and each poll checks them against the
+ * open file and the file at the path. When the open file no longer matches it
+ * has been truncated or rewritten in place (copytruncate rotation) and is
+ * followed from the start again. When only the file at the path differs, the
+ * file has been renamed and replaced: the rest of the old file is processed
+ * before following the new one from the start.
+ *
+ * With checkpointing on, the offset reached is saved to a sidecar file (the
+ * file name + ".checkpoint") after every poll that processes lines, so a
+ * restarted follower carries on where the last one stopped.
+ *
+ * @author gtarcea
+ *
+ */
+public abstract class FileFollower
+{
+    /**
+     * Abstract method that is given each new line of the file to process.
+     *
+     * @param line
+     *            The line to process.
+     * @throws IOException
+     *             When an unrecoverable error occurs during line processing.
+     */
+    public abstract void processLine(String line) throws IOException;
+
+    /**
+     * Number of bytes at the start of the file used to recognize it.
+     */
+    private static final int FINGERPRINT_LENGTH = 64;
+
+    /**
+     * Buffer size used when reading new lines.
+     */
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+
+    /**
+     * The file to follow.
+     */
+    private final String filename;
+
+    /**
+     * The exception handler to call, or null.
+     */
+    private final ExceptionHandler exceptionHandler;
+
+    /**
+     * The charset used to decode lines.
+     */
+    private Charset charset = Charset.defaultCharset();
+
+    /**
+     * Should the offset be saved to a checkpoint file?
+     */
+    private boolean checkpointing = false;
+
+    /**
+     * Shortest wait between polls, used while lines are arriving.
+     */
+    private long minPollMillis = 50;
+
+    /**
+     * Longest wait between polls. The wait doubles after every empty poll up
+     * to this.
+     */
+    private long maxPollMillis = 2000;
+
+    /**
+     * The open file, or null before the first poll.
+     */
+    private RandomAccessFile file;
+
+    /**
+     * The first bytes of the open file.
+     */
+    private byte[] fingerprint;
+
+    /**
+     * The bytes of the open file just before the offset, or null if they
+     * aren't known.
+     */
+    private byte[] tail;
+
+    /**
+     * Offset of the first unprocessed byte of the open file.
+     */
+    private long offset;
+
+    /**
+     * Number of lines processed.
+     */
+    private long linesProcessed;
+
+    /**
+     * Set by stop().
+     */
+    private volatile boolean stopped;
+
+    /**
+     * Constructor.
+     *
+     * @param filename
+     *            The file to follow. It need not exist yet.
+     */
+    public FileFollower(final String filename)
+    {
+        this(filename, null);
+    }
+
+    /**
+     * Constructor that accepts an exception handler to handle exceptions during
+     * processing.
+     *
+     * @param filename
+     *            The file to follow. It need not exist yet.
+     * @param exceptionHandler
+     *            The exception handler to call when an exception is raised.
+     */
+    public FileFollower(final String filename, final ExceptionHandler exceptionHandler)
+    {
+        this.filename = filename;
+        this.exceptionHandler = exceptionHandler;
+    }
+
+    /**
+     * Sets the charset used to decode lines. The default is the platform
+     * charset.
+     *
+     * @param charset
+     *            The charset of the file.
+     */
+    public void setCharset(final Charset charset)
+    {
+        this.charset = charset;
+    }
+
+    /**
+     * Sets whether the offset reached is saved to, and resumed from, a
+     * checkpoint file.
+     *
+     * @param checkpointing
+     *            If true the offset is checkpointed.
+     */
+    public void setCheckpointing(final boolean checkpointing)
+    {
+        this.checkpointing = checkpointing;
+    }
+
+    /**
+     * Sets the bounds of the wait between polls in follow(). The wait starts
+     * at the minimum, doubles each time a poll finds nothing new up to the
+     * maximum, and drops back to the minimum as soon as new lines arrive.
+     *
+     * @param minMillis
+     *            Shortest wait between polls.
+     * @param maxMillis
+     *            Longest wait between polls.
+     */
+    public void setPollInterval(final long minMillis, final long maxMillis)
+    {
+        this.minPollMillis = minMillis;
+        this.maxPollMillis = Math.max(minMillis, maxMillis);
+    }
+
+    /**
+     * @return The offset of the first unprocessed byte of the file.
+     */
+    public long getOffset()
+    {
+        return offset;
+    }
+
+    /**
+     * @return The number of lines processed, including those of rotated
+     *         files.
+     */
+    public long getLinesProcessed()
+    {
+        return linesProcessed;
+    }
+
+    /**
+     * Follows the file until stop() is called or the thread is interrupted.
+     */
+    public void follow()
+    {
+        stopped = false;
+        long wait = minPollMillis;
+        while (!stopped)
+        {
+            wait = poll() > 0 ? minPollMillis : Math.min(wait * 2, maxPollMillis);
+            try
+            {
+                Thread.sleep(wait);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Makes follow() return after its current poll. Can be called from any
+     * thread.
+     */
+    public void stop()
+    {
+        stopped = true;
+    }
+
+    /**
+     * Processes the complete lines appended since the last poll.
+     *
+     * @return The number of lines processed.
+     */
+    public int poll()
+    {
+        try
+        {
+            int processed = 0;
+            if (file == null)
+            {
+                open();
+            }
+            else
+            {
+                final Change change = change();
+                if (change != Change.NONE)
+                {
+                    if (change == Change.ROTATED)
+                    {
+                        processed += processLines(true);
+                    }
+                    closeFile();
+                    fingerprint = null;
+                    offset = 0;
+                    open();
+                }
+            }
+
+            if (file != null)
+            {
+                processed += processLines(false);
+            }
+
+            if (checkpointing && processed > 0)
+            {
+                saveCheckpoint();
+            }
+            return processed;
+        }
+        catch (IOException e)
+        {
+            handleException(e, "Error following file: " + filename);
+            return 0;
+        }
+    }
+
+    /**
+     * Closes the file.
+     */
+    public void close()
+    {
+        try
+        {
+            closeFile();
+        }
+        catch (IOException e)
+        {
+            handleException(e, "Error closing file: " + filename);
+        }
+    }
+
+    /**
+     * Opens the file at the path, if it exists. Following carries on from the
+     * offset reached if this is the file that was being followed (after
+     * close(), or from the checkpoint on the first poll) and otherwise starts
+     * at the beginning of the file.
+     */
+    private void open() throws IOException
+    {
+        if (!new File(filename).exists())
+        {
+            return;
+        }
+
+        if (fingerprint == null && checkpointing)
+        {
+            final Checkpoint checkpoint = loadCheckpoint();
+            if (checkpoint != null)
+            {
+                fingerprint = checkpoint.getState();
+                offset = checkpoint.getOffset();
+                linesProcessed = checkpoint.getLinesProcessed();
+            }
+        }
+
+        file = new RandomAccessFile(filename, "r");
+        final byte[] current = readFingerprint(file);
+        if (!sameFile(fingerprint, current) || offset > file.length())
+        {
+            offset = 0;
+        }
+        fingerprint = current;
+        tail = readBefore(file, offset);
+    }
+
+    /**
+     * Checks whether the open file has been truncated or rewritten in place,
+     * or the file at the path is no longer the open file.
+     */
+    private Change change() throws IOException
+    {
+        final File current = new File(filename);
+        if (!current.exists())
+        {
+            // Renamed but not yet replaced; keep reading the old file.
+            return Change.NONE;
+        }
+        final long openLength = file.length();
+        if (!matches(file))
+        {
+            return Change.TRUNCATED;
+        }
+        // The open file only grows, so if the path is the open file its size
+        // lies between the open file's sizes before and after it was read.
+        final long pathLength = current.length();
+        if (pathLength < openLength || pathLength > file.length())
+        {
+            return renamedOrTruncated();
+        }
+
+        final RandomAccessFile path = new RandomAccessFile(current, "r");
+        try
+        {
+            if (!matches(path))
+            {
+                return renamedOrTruncated();
+            }
+            final byte[] currentFingerprint = readFingerprint(path);
+            if (currentFingerprint.length > fingerprint.length)
+            {
+                fingerprint = currentFingerprint;
+            }
+            return Change.NONE;
+        }
+        finally
+        {
+            path.close();
+        }
+    }
+
+    /**
+     * Once the path is known to differ from what was read: the file was
+     * renamed if the open file still holds what was read, and otherwise it
+     * was rewritten in the meantime.
+     */
+    private Change renamedOrTruncated() throws IOException
+    {
+        return matches(file) ? Change.ROTATED : Change.TRUNCATED;
+    }
+
+    /**
+     * Checks that a file still holds the bytes that were read: it is at least
+     * as long as the offset and its first bytes and the bytes before the
+     * offset are the remembered ones.
+     */
+    private boolean matches(final RandomAccessFile raf) throws IOException
+    {
+        if (raf.length() < offset || !sameFile(fingerprint, readFingerprint(raf)))
+        {
+            return false;
+        }
+        return tail == null || Arrays.equals(tail, readBefore(raf, offset));
+    }
+
+    /**
+     * Processes lines from the offset onwards.
+     *
+     * @param drain
+     *            If true the file is being left, so a final line without a
+     *            terminator is processed too.
+     * @return The number of lines processed.
+     */
+    private int processLines(final boolean drain) throws IOException
+    {
+        int processed = 0;
+        final LineReader in = new LineReader(new FileChannelInputStream(file.getChannel(),
+                offset), charset, offset, READ_BUFFER_SIZE);
+        String line;
+        while ((line = drain ? in.readLine() : in.readCompleteLine()) != null)
+        {
+            processLine(line);
+            linesProcessed++;
+            processed++;
+            offset = in.getPosition();
+        }
+        if (processed > 0)
+        {
+            tail = readBefore(file, offset);
+        }
+        return processed;
+    }
+
+    /**
+     * Reads the first bytes of a file.
+     */
+    private static byte[] readFingerprint(final RandomAccessFile raf) throws IOException
+    {
+        final byte[] bytes = new byte[(int) Math.min(FINGERPRINT_LENGTH, raf.length())];
+        raf.seek(0);
+        raf.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Reads the bytes of a file just before an offset, at most
+     * FINGERPRINT_LENGTH of them.
+     */
+    private static byte[] readBefore(final RandomAccessFile raf, final long offset)
+            throws IOException
+    {
+        final byte[] bytes = new byte[(int) Math.min(FINGERPRINT_LENGTH, offset)];
+        raf.seek(offset - bytes.length);
+        raf.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Two fingerprints are from the same file if the shorter is a prefix of
+     * the longer, since a file may have been shorter than the fingerprint
+     * length when it was first read.
+     */
+    private static boolean sameFile(final byte[] a, final byte[] b)
+    {
+        if (a == null || b == null)
+        {
+            return false;
+        }
+        final int length = Math.min(a.length, b.length);
+        return Arrays.equals(Arrays.copyOf(a, length), Arrays.copyOf(b, length));
+    }
+
+    /**
+     * Closes the open file.
+     */
+    private void closeFile() throws IOException
+    {
+        if (file != null)
+        {
+            final RandomAccessFile open = file;
+            file = null;
+            open.close();
+        }
+    }
+
+    /**
+     * @return The sidecar file the offset is saved to.
+     */
+    private File checkpointFile()
+    {
+        return new File(filename + ".checkpoint");
+    }
+
+    /**
+     * Loads the checkpoint, ignoring one that can't be read.
+     */
+    private Checkpoint loadCheckpoint()
+    {
+        try
+        {
+            return Checkpoint.load(checkpointFile());
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Saves the offset, with the file's fingerprint as the checkpoint state.
+     */
+    private void saveCheckpoint() throws IOException
+    {
+        new Checkpoint(offset, linesProcessed, new File(filename), fingerprint)
+                .save(checkpointFile());
+    }
+
+    /**
+     * Calls the exception handler, or throws a RuntimeException if there isn't
+     * one.
+     */
+    private void handleException(final Throwable t, final String message)
+    {
+        if (exceptionHandler != null)
+        {
+            exceptionHandler.handle(t, message);
+        }
+        else
+        {
+            throw new RuntimeException(message, t);
+        }
+    }
+
+    /**
+     * How the file has changed since the last poll, apart from growing.
+     */
+    private enum Change
+    {
+        /**
+         * Still the same file.
+         */
+        NONE,
+
+        /**
+         * Renamed and replaced by a new file.
+         */
+        ROTATED,
+
+        /**
+         * Truncated or rewritten in place.
+         */
+        TRUNCATED
+    }
+}
@@ -1,9 +1,10 @@
 package org.ncibi.commons.io;
 
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
 
 import org.ncibi.commons.exception.ExceptionHandler;
 
@@ -11,6 +12,15 @@ import org.ncibi.commons.exception.ExceptionHandler;
  * Template class that processes a file a line at a time. This class hides the
  * details of open/closing the stream, correctly handling exceptions, etc...
  * 
+ * Long running jobs can be monitored by setting a ProgressListener, which is
+ * sent the lines processed, bytes read, throughput, estimated time remaining
+ * and the time split between reading and processing lines.
+ * 
+ * Jobs can also be made restartable by turning on checkpointing. The offset
+ * and count of the last fully processed line (plus any state returned by
+ * getCheckpointState()) are then saved periodically to a sidecar file, and a
+ * later call to process() for the same, unchanged, file resumes from there.
+ * 
  * @author gtarcea
  * 
  */
@@ -42,6 +52,52 @@ public abstract class FileInputLineProcessor
      */
     private int headerLineCount = 1;
 
+    /**
+     * The charset used to decode lines.
+     */
+    private Charset charset = Charset.defaultCharset();
+
+    /**
+     * The listener to send progress reports to, or null.
+     */
+    private ProgressListener progressListener = null;
+
+    /**
+     * Milliseconds between progress reports.
+     */
+    private long progressIntervalMillis;
+
+    /**
+     * Should checkpoints be saved?
+     */
+    private boolean checkpointing = false;
+
+    /**
+     * Milliseconds between checkpoints.
+     */
+    private long checkpointIntervalMillis = 60 * 1000;
+
+    /**
+     * The file currently being processed.
+     */
+    private String filename;
+
+    /**
+     * The offset processing of the current file started at.
+     */
+    private long startOffset;
+
+    /**
+     * The number of lines of the current file processed so far (including
+     * those processed before resuming from a checkpoint).
+     */
+    private long linesProcessed;
+
+    /**
+     * Set when the whole file has been processed.
+     */
+    private boolean completed;
+
     /**
      * Constructor that sets up processing without an exception handler.
      */
@@ -82,7 +138,126 @@ public abstract class FileInputLineProcessor
      */
     public void process(final String filename)
     {
-        inputStreamProcessor.process(filename);
+        this.filename = filename;
+        this.startOffset = 0;
+        this.linesProcessed = 0;
+        this.completed = false;
+
+        if (checkpointing)
+        {
+            resumeFromSavedCheckpoint();
+        }
+
+        inputStreamProcessor.process(filename, startOffset);
+
+        if (checkpointing && completed)
+        {
+            checkpointFile().delete();
+        }
+    }
+
+    /**
+     * Sets whether checkpoints are saved while a file is processed. The
+     * checkpoint is saved to a sidecar file (the file name + ".checkpoint")
+     * and deleted once the file has been completely processed. When a
+     * checkpoint exists for an unchanged file, process() resumes from it.
+     * 
+     * @param checkpointing
+     *            If true checkpoints are saved and resumed from.
+     */
+    public void setCheckpointing(final boolean checkpointing)
+    {
+        this.checkpointing = checkpointing;
+    }
+
+    /**
+     * Sets how often checkpoints are saved. The default is once a minute.
+     * 
+     * @param intervalMillis
+     *            Milliseconds between checkpoints.
+     */
+    public void setCheckpointInterval(final long intervalMillis)
+    {
+        this.checkpointIntervalMillis = intervalMillis;
+    }
+
+    /**
+     * Called when a checkpoint is about to be saved. Subclasses that keep state
+     * across lines should return it here, and should flush any buffered output
+     * so that everything up to the checkpoint is durable.
+     * 
+     * @return The state to save with the checkpoint, or null.
+     * @throws IOException
+     *             When the state can't be produced.
+     */
+    protected byte[] getCheckpointState() throws IOException
+    {
+        return null;
+    }
+
+    /**
+     * Called before processing resumes from a checkpoint. Subclasses that
+     * override this must call super.resumeFromCheckpoint().
+     * 
+     * @param linesProcessed
+     *            The number of lines processed before the checkpoint, not
+     *            counting header lines.
+     * @param state
+     *            The state returned by getCheckpointState(), or null.
+     */
+    protected void resumeFromCheckpoint(final long linesProcessed, final byte[] state)
+    {
+        // Nothing to restore by default.
+    }
+
+    /**
+     * Returns the sidecar file checkpoints are saved to.
+     * 
+     * @return The checkpoint file for the current file.
+     */
+    private File checkpointFile()
+    {
+        return new File(filename + ".checkpoint");
+    }
+
+    /**
+     * Loads the checkpoint for the current file, if there is one for this
+     * version of the file, and sets up processing to resume from it. A
+     * checkpoint that can't be read is ignored and the file is processed from
+     * the start.
+     */
+    private void resumeFromSavedCheckpoint()
+    {
+        Checkpoint checkpoint;
+        try
+        {
+            checkpoint = Checkpoint.load(checkpointFile());
+        }
+        catch (IOException e)
+        {
+            checkpoint = null;
+        }
+
+        if (checkpoint != null && checkpoint.matches(new File(filename)))
+        {
+            startOffset = checkpoint.getOffset();
+            linesProcessed = checkpoint.getLinesProcessed();
+            resumeFromCheckpoint(linesProcessed, checkpoint.getState());
+        }
+    }
+
+    /**
+     * Saves a checkpoint for the current file.
+     * 
+     * @param offset
+     *            The offset of the first unprocessed line.
+     * @throws IOException
+     *             When the checkpoint can't be saved.
+     */
+    private void saveCheckpoint(final long offset) throws IOException
+    {
+        new Checkpoint(offset, linesProcessed, new File(filename), getCheckpointState())
+                .save(checkpointFile());
     }
 
     /**
@@ -97,6 +272,63 @@ public abstract class FileInputLineProcessor
         skipHeader = skip;
     }
 
+    /**
+     * Sets the charset used to decode lines. The default is the platform
+     * charset. Lines are split on '\n' and '\r' bytes, to track their
+     * offsets, so the charset must be ASCII compatible, like UTF-8 or
+     * ISO-8859-1; UTF-16 and UTF-32 are rejected.
+     * 
+     * @param charset
+     *            The charset of the file.
+     * @throws IllegalArgumentException
+     *             When the charset isn't ASCII compatible.
+     */
+    public void setCharset(final Charset charset)
+    {
+        LineReader.checkCharset(charset);
+        this.charset = charset;
+    }
+
+    /**
+     * Sets whether compressed files are detected and decompressed. The default
+     * is true.
+     * 
+     * @param decompress
+     *            If false the file is processed as is.
+     */
+    public void setDecompress(final boolean decompress)
+    {
+        inputStreamProcessor.setDecompress(decompress);
+    }
+
+    /**
+     * Sets whether the file is read ahead of processLine() on a background
+     * thread. The default is false.
+     * 
+     * @param readAhead
+     *            If true disk I/O overlaps with line processing.
+     */
+    public void setReadAhead(final boolean readAhead)
+    {
+        inputStreamProcessor.setReadAhead(readAhead);
+    }
+
+    /**
+     * Sets a listener to receive progress reports while a file is processed.
+     * When no listener is set processing isn't metered at all.
+     * 
+     * @param listener
+     *            The listener, or null to turn off reporting.
+     * @param intervalMillis
+     *            Milliseconds between reports. A final report is always sent
+     *            when the file has been processed.
+     */
+    public void setProgressListener(final ProgressListener listener, final long intervalMillis)
+    {
+        this.progressListener = listener;
+        this.progressIntervalMillis = intervalMillis;
+    }
+
     /**
      * Sets the count of header lines. The default is 1.
      * 
@@ -120,10 +352,12 @@ public abstract class FileInputLineProcessor
      */
     private void processInputStream(final InputStream input) throws IOException
     {
-        final BufferedReader in = new BufferedReader(new InputStreamReader(input));
+        final LineReader in = new LineReader(input, charset, startOffset,
+                LineReader.DEFAULT_BUFFER_SIZE);
         String line;
 
-        if (skipHeader)
+        // Header lines are behind us when resuming from a checkpoint.
+        if (skipHeader && startOffset == 0)
         {
             for (int i = 0; i < headerLineCount; i++)
             {
@@ -131,9 +365,66 @@ public abstract class FileInputLineProcessor
             }
         }
 
+        if (progressListener == null && !checkpointing)
+        {
+            while ((line = in.readLine()) != null)
+            {
+                processLine(line);
+                linesProcessed++;
+            }
+        }
+        else
+        {
+            processTrackedLines(in);
+        }
+
+        completed = true;
+    }
+
+    /**
+     * Processes the lines of the file while sending progress reports and
+     * saving checkpoints. Reads and calls to processLine() are timed for the
+     * progress reports.
+     * 
+     * @param in
+     *            The reader positioned after any header lines.
+     * @throws IOException
+     *             When an unrecoverable error occurs.
+     */
+    private void processTrackedLines(final LineReader in) throws IOException
+    {
+        final ProgressMeter meter = progressListener == null ? null : new ProgressMeter(
+                progressListener, progressIntervalMillis, inputStreamProcessor, filename,
+                startOffset, new File(filename).length());
+        final long checkpointIntervalNanos = TimeUnit.MILLISECONDS
+                .toNanos(checkpointIntervalMillis);
+        String line;
+
+        long readStart = System.nanoTime();
+        long nextCheckpoint = readStart + checkpointIntervalNanos;
         while ((line = in.readLine()) != null)
         {
+            final long processStart = System.nanoTime();
             processLine(line);
+            linesProcessed++;
+            final long processEnd = System.nanoTime();
+
+            if (meter != null)
+            {
+                meter.lineProcessed(processStart - readStart, processEnd - processStart,
+                        processEnd);
+            }
+            if (checkpointing && processEnd - nextCheckpoint >= 0)
+            {
+                saveCheckpoint(in.getPosition());
+                nextCheckpoint = System.nanoTime() + checkpointIntervalNanos;
+            }
+            readStart = processEnd;
+        }
+
+        if (meter != null)
+        {
+            meter.finish();
         }
     }
 }
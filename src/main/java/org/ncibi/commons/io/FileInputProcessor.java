@@ -3,8 +3,14 @@ package org.ncibi.commons.io;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
 
 import org.ncibi.commons.exception.ExceptionHandler;
+import org.ncibi.commons.io.stream.ChecksumAlgorithm;
+import org.ncibi.commons.io.stream.ChecksumInputStream;
+import org.ncibi.commons.io.stream.Compression;
+import org.ncibi.commons.io.stream.DecompressingInputStreams;
+import org.ncibi.commons.io.stream.ReadAheadInputStream;
 
 /**
  * This class wraps input stream processing shielding users from the need to
@@ -16,6 +22,14 @@ import org.ncibi.commons.exception.ExceptionHandler;
  * http://tutorials.jenkov.com/java-exception-handling/exception
  * -handling-templates.html
  * 
+ * Compressed files (gzip, BGZF) are detected by their magic bytes and
+ * decompressed as they are read, so doProcess() always sees the uncompressed
+ * data. See DecompressingInputStreams.
+ * 
+ * A checksum of the file (of the compressed bytes for a compressed file) can
+ * be computed while it is processed, and checked against an expected value,
+ * so a file can be verified and processed in a single pass.
+ * 
  * @author gtarcea
  * 
  */
@@ -37,6 +51,46 @@ public abstract class FileInputProcessor
      */
     private final ExceptionHandler exceptionHandler;
 
+    /**
+     * Should compressed files be detected and decompressed?
+     */
+    private boolean decompress = true;
+
+    /**
+     * Should the file be read on a background thread?
+     */
+    private boolean readAhead = false;
+
+    /**
+     * The checksum to compute, or null for none.
+     */
+    private ChecksumAlgorithm checksumAlgorithm = null;
+
+    /**
+     * The checksum the file should have, or null if it isn't checked.
+     */
+    private String expectedChecksum = null;
+
+    /**
+     * The checksum of the last file processed.
+     */
+    private String checksum = null;
+
+    /**
+     * Computes the checksum of the file being processed, or null.
+     */
+    private ChecksumInputStream checksumStream;
+
+    /**
+     * Reads the file being processed ahead of doProcess(), or null.
+     */
+    private ReadAheadInputStream readAheadStream;
+
+    /**
+     * The channel of the file being processed, null when no file is open.
+     */
+    private volatile FileChannel channel;
+
     /**
      * Constructor accepting an exception handler that will be called when an
      * exception is raised during processing or when open or closing the stream.
@@ -56,6 +110,91 @@ public abstract class FileInputProcessor
         exceptionHandler = null;
     }
 
+    /**
+     * Sets whether compressed files are detected and decompressed. The default
+     * is true.
+     * 
+     * @param decompress
+     *            If false the file is passed to doProcess() as is.
+     */
+    public void setDecompress(final boolean decompress)
+    {
+        this.decompress = decompress;
+    }
+
+    /**
+     * Sets whether the file is read ahead of doProcess() on a background
+     * thread, so that disk I/O overlaps with processing. The default is false.
+     * 
+     * @param readAhead
+     *            If true the file is read through a ReadAheadInputStream.
+     */
+    public void setReadAhead(final boolean readAhead)
+    {
+        this.readAhead = readAhead;
+    }
+
+    /**
+     * Sets the checksum computed while the file is processed. Whatever
+     * doProcess() leaves unread is read after it returns so the checksum
+     * covers the whole file. The default is no checksum.
+     * 
+     * @param algorithm
+     *            The checksum to compute, or null for none.
+     */
+    public void setChecksum(final ChecksumAlgorithm algorithm)
+    {
+        this.checksumAlgorithm = algorithm;
+    }
+
+    /**
+     * Sets the checksum the file must have. A file with a different checksum
+     * is reported as an error after doProcess() returns. Requires
+     * setChecksum().
+     * 
+     * @param expectedChecksum
+     *            The checksum in hex (case is ignored), or null to not check.
+     */
+    public void setExpectedChecksum(final String expectedChecksum)
+    {
+        this.expectedChecksum = expectedChecksum;
+    }
+
+    /**
+     * @return The checksum of the last file processed in lower case hex, or
+     *         null if no checksum was computed.
+     */
+    public String getChecksum()
+    {
+        return checksum;
+    }
+
+    /**
+     * Returns the position in the file being processed, that is the number of
+     * bytes read from the file so far. For compressed files this is the
+     * position in the compressed file. Bytes read ahead of doProcess() are
+     * included. This can be called from any thread.
+     * 
+     * @return The position in the file, or 0 when no file is being processed.
+     */
+    public long getPosition()
+    {
+        final FileChannel current = channel;
+        if (current == null)
+        {
+            return 0;
+        }
+
+        try
+        {
+            return current.position();
+        }
+        catch (IOException e)
+        {
+            return 0;
+        }
+    }
+
     /**
      * Private method that centralizes checking for the exception handler. Will
      * slightly mess up stack traces.
@@ -85,13 +224,33 @@ public abstract class FileInputProcessor
      *            The file to open.
      */
     public void process(final String filename)
+    {
+        process(filename, 0);
+    }
+
+    /**
+     * Opens a file at an offset, handles exceptions and calls the abstract
+     * doProcess() method to process the stream from that offset. For a
+     * compressed file the offset is an offset into the decompressed data.
+     * 
+     * @param filename
+     *            The file to open.
+     * @param startOffset
+     *            The offset of the first byte to pass to doProcess().
+     */
+    public void process(final String filename, final long startOffset)
     {
         IOException processException = null;
         InputStream input = null;
         try
         {
-            input = new FileInputStream(filename);
+            checksum = null;
+            input = openInputStream(filename, startOffset);
             doProcess(input);
+            if (checksumStream != null)
+            {
+                verifyChecksum(input, filename);
+            }
         }
         catch (IOException e)
         {
@@ -99,6 +258,9 @@ public abstract class FileInputProcessor
         }
         finally
         {
+            channel = null;
+            checksumStream = null;
+            readAheadStream = null;
             if (input != null)
             {
                 try
@@ -124,4 +286,142 @@ public abstract class FileInputProcessor
             }
         }
     }
+
+    /**
+     * Reads the rest of the file so the checksum covers all of it, and checks
+     * it against the expected checksum. Draining the stream given to
+     * doProcess() isn't enough: a decompressor stops at the end of the
+     * compressed data and leaves any bytes after it, such as padding, unread.
+     * 
+     * @param input
+     *            The stream given to doProcess().
+     * @param filename
+     *            The file being processed.
+     * @throws IOException
+     *             When the file can't be read or has the wrong checksum.
+     */
+    private void verifyChecksum(final InputStream input, final String filename)
+            throws IOException
+    {
+        drain(input);
+        if (readAheadStream != null)
+        {
+            // The read ahead thread updates the checksum as it reads. It has
+            // read the file to the end, and won't touch the checksum again,
+            // once its end of stream has been read.
+            drain(readAheadStream);
+        }
+        drain(checksumStream);
+
+        checksum = checksumStream.getChecksum();
+        if (expectedChecksum != null && !expectedChecksum.equalsIgnoreCase(checksum))
+        {
+            throw new IOException(checksumAlgorithm + " checksum of " + filename + " is "
+                    + checksum + ", expected " + expectedChecksum);
+        }
+    }
+
+    /**
+     * Opens the file, decompressing it if it is compressed and decompression
+     * is turned on, reading it ahead if read ahead is turned on and computing
+     * its checksum if a checksum is set.
+     * 
+     * @param filename
+     *            The file to open.
+     * @param startOffset
+     *            The offset to position the stream at.
+     * @return The stream to pass to doProcess().
+     * @throws IOException
+     *             When the file can't be opened.
+     */
+    private InputStream openInputStream(final String filename, final long startOffset)
+            throws IOException
+    {
+        final FileInputStream fileStream = new FileInputStream(filename);
+        channel = fileStream.getChannel();
+        try
+        {
+            final boolean compressed = decompress
+                    && DecompressingInputStreams.detect(channel) != Compression.NONE;
+            if (checksumAlgorithm != null && startOffset > 0)
+            {
+                throw new IOException("A checksum can't be computed starting at offset "
+                        + startOffset);
+            }
+            if (!compressed && startOffset > 0)
+            {
+                channel.position(startOffset);
+            }
+
+            InputStream raw = fileStream;
+            if (checksumAlgorithm != null)
+            {
+                checksumStream = new ChecksumInputStream(fileStream, checksumAlgorithm);
+                raw = checksumStream;
+            }
+            readAheadStream = readAhead ? new ReadAheadInputStream(raw) : null;
+            final InputStream file = readAhead ? readAheadStream : raw;
+            if (!compressed)
+            {
+                return file;
+            }
+
+            final InputStream input = DecompressingInputStreams.open(file);
+            skipFully(input, startOffset);
+            return input;
+        }
+        catch (IOException e)
+        {
+            fileStream.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads a stream to its end.
+     * 
+     * @param input
+     *            The stream.
+     * @throws IOException
+     *             When the stream can't be read.
+     */
+    private static void drain(final InputStream input) throws IOException
+    {
+        final byte[] buffer = new byte[8 * 1024];
+        while (input.read(buffer) != -1)
+        {
+            // Drain.
+        }
+    }
+
+    /**
+     * Skips count bytes of a stream.
+     * 
+     * @param input
+     *            The stream.
+     * @param count
+     *            The number of bytes to skip.
+     * @throws IOException
+     *             When the stream ends before count bytes.
+     */
+    private static void skipFully(final InputStream input, final long count) throws IOException
+    {
+        long remaining = count;
+        while (remaining > 0)
+        {
+            final long skipped = input.skip(remaining);
+            if (skipped > 0)
+            {
+                remaining -= skipped;
+            }
+            else if (input.read() == -1)
+            {
+                throw new IOException("Offset " + count + " is past the end of the stream.");
+            }
+            else
+            {
+                remaining--;
+            }
+        }
+    }
 }
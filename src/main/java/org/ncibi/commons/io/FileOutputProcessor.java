@@ -0,0 +1,303 @@
+package org.ncibi.commons.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+
+import org.ncibi.commons.exception.ExceptionHandler;
+
+/**
+ * Template class that writes a file of delimited records. This class hides the
+ * details of opening, buffering, encoding and closing the output and correctly
+ * handles exceptions, the same as FileInputProcessor does for input.
+ * Subclasses write their records to the RecordWriter given to
+ * processRecords().
+ *
+ * Encoding and writing can be moved to a background thread, and the file can
+ * be written atomically: it is then written under a temporary name in the
+ * same directory, synced to disk and renamed over the target only when
+ * processRecords() succeeds, so readers never see a partial file.
+ *
+ * @author gtarcea
+ *
+ */
+public abstract class FileOutputProcessor
+{
+    /**
+     * Abstract method that writes the records of the file.
+     *
+     * @param out
+     *            The writer to write records to.
+     * @throws IOException
+     *             When an unrecoverable error occurs.
+     */
+    public abstract void processRecords(RecordWriter out) throws IOException;
+
+    /**
+     * The exception handler to call, or null.
+     */
+    private final ExceptionHandler exceptionHandler;
+
+    /**
+     * The charset to encode the file with.
+     */
+    private Charset charset = Charset.defaultCharset();
+
+    /**
+     * Written between fields.
+     */
+    private String fieldDelimiter = "\t";
+
+    /**
+     * Written after each record.
+     */
+    private String recordSeparator = "\n";
+
+    /**
+     * Size of the character buffer.
+     */
+    private int bufferSize = RecordWriter.DEFAULT_BUFFER_SIZE;
+
+    /**
+     * Full buffers that can wait for the background writer, or 0 for no
+     * background writer.
+     */
+    private int queueCapacity = 0;
+
+    /**
+     * Write to a temporary file and rename it when done?
+     */
+    private boolean atomic = false;
+
+    /**
+     * Bytes written by the last call to process().
+     */
+    private long bytesWritten = 0;
+
+    /**
+     * Write rate of the last call to process().
+     */
+    private double bytesPerSecond = 0;
+
+    /**
+     * Constructor that sets up processing without an exception handler.
+     */
+    public FileOutputProcessor()
+    {
+        this(null);
+    }
+
+    /**
+     * Constructor that accepts an exception handler to handle exceptions during
+     * processing.
+     *
+     * @param exceptionHandler
+     *            The exception handler to call when an exception is raised.
+     */
+    public FileOutputProcessor(final ExceptionHandler exceptionHandler)
+    {
+        this.exceptionHandler = exceptionHandler;
+    }
+
+    /**
+     * Sets the charset the file is encoded with. The default is the platform
+     * charset. Characters the charset can't encode are an error.
+     *
+     * @param charset
+     *            The charset.
+     */
+    public void setCharset(final Charset charset)
+    {
+        this.charset = charset;
+    }
+
+    /**
+     * Sets the field delimiter. The default is a tab.
+     *
+     * @param delimiter
+     *            Written between fields.
+     */
+    public void setFieldDelimiter(final String delimiter)
+    {
+        this.fieldDelimiter = delimiter;
+    }
+
+    /**
+     * Sets the record separator. The default is "\n".
+     *
+     * @param separator
+     *            Written after each record.
+     */
+    public void setRecordSeparator(final String separator)
+    {
+        this.recordSeparator = separator;
+    }
+
+    /**
+     * Sets the size of the character buffer.
+     *
+     * @param size
+     *            The buffer size in characters.
+     */
+    public void setBufferSize(final int size)
+    {
+        this.bufferSize = size;
+    }
+
+    /**
+     * Sets whether encoding and writing happen on a background thread.
+     *
+     * @param queueCapacity
+     *            Number of full buffers that can wait for the background
+     *            thread before the caller blocks, or 0 to write on the calling
+     *            thread.
+     */
+    public void setBackgroundWriting(final int queueCapacity)
+    {
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Sets whether the file is written atomically.
+     *
+     * @param atomic
+     *            If true the file is written under a temporary name and
+     *            renamed when complete.
+     */
+    public void setAtomic(final boolean atomic)
+    {
+        this.atomic = atomic;
+    }
+
+    /**
+     * @return The number of bytes written by the last call to process().
+     */
+    public long getBytesWritten()
+    {
+        return bytesWritten;
+    }
+
+    /**
+     * @return The rate the last call to process() wrote at.
+     */
+    public double getBytesPerSecond()
+    {
+        return bytesPerSecond;
+    }
+
+    /**
+     * Writes a file.
+     *
+     * @param filename
+     *            The file to write.
+     */
+    public void process(final String filename)
+    {
+        final File target = new File(filename);
+        File tmp = null;
+        FileChannel channel = null;
+        RecordWriter out = null;
+        try
+        {
+            if (atomic)
+            {
+                tmp = File.createTempFile(target.getName() + ".", ".tmp", target
+                        .getAbsoluteFile().getParentFile());
+            }
+
+            channel = new FileOutputStream(tmp != null ? tmp : target).getChannel();
+            out = new RecordWriter(channel, charset.newEncoder().onMalformedInput(
+                    CodingErrorAction.REPORT).onUnmappableCharacter(CodingErrorAction.REPORT),
+                    fieldDelimiter, recordSeparator, bufferSize, queueCapacity);
+
+            processRecords(out);
+
+            if (tmp != null)
+            {
+                // Finished first so the encoder's final bytes are synced too.
+                out.finish();
+                channel.force(true);
+            }
+            final RecordWriter closing = out;
+            out = null;
+            closing.close();
+            bytesWritten = closing.getBytesWritten();
+            bytesPerSecond = closing.getBytesPerSecond();
+
+            if (tmp != null)
+            {
+                FileUtilities.replaceFile(tmp, target);
+            }
+        }
+        catch (IOException e)
+        {
+            closeAfterFailure(out, channel);
+            if (tmp != null)
+            {
+                tmp.delete();
+            }
+            handleException(e, "Error writing file: " + filename);
+        }
+        catch (RuntimeException e)
+        {
+            closeAfterFailure(out, channel);
+            if (tmp != null)
+            {
+                tmp.delete();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Closes the writer after a failure, or the channel if the writer was
+     * never created, ignoring any further errors.
+     *
+     * @param out
+     *            The writer, or null.
+     * @param channel
+     *            The channel the writer writes to, or null.
+     */
+    private static void closeAfterFailure(final RecordWriter out, final FileChannel channel)
+    {
+        try
+        {
+            if (out != null)
+            {
+                out.close();
+            }
+            else if (channel != null)
+            {
+                channel.close();
+            }
+        }
+        catch (IOException e)
+        {
+            // Already failing.
+        }
+    }
+
+    /**
+     * Calls the exception handler, or throws a RuntimeException if there isn't
+     * one.
+     *
+     * @param t
+     *            The exception.
+     * @param message
+     *            Describes what failed.
+     */
+    private void handleException(final Throwable t, final String message)
+    {
+        if (exceptionHandler != null)
+        {
+            exceptionHandler.handle(t, message);
+        }
+        else
+        {
+            throw new RuntimeException(message, t);
+        }
+    }
+}
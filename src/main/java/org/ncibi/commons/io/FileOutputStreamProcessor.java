@@ -3,6 +3,13 @@ package org.ncibi.commons.io;
 import java.io.FileOutputStream;
 import java.io.IOException;
 
+/**
+ * Hands callers an unbuffered FileOutputStream.
+ * 
+ * @deprecated Use FileOutputProcessor, which buffers and encodes output and
+ *             reports errors.
+ */
+@Deprecated
 public abstract class FileOutputStreamProcessor
 {
     public abstract void processStream(FileOutputStream stream);
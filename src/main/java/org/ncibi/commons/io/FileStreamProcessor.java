@@ -2,14 +2,52 @@ package org.ncibi.commons.io;
 
 import java.io.IOException;
 
+import org.ncibi.commons.exception.ExceptionHandler;
+
+/**
+ * Template class that opens a file stream, hands it to processFileStream() and
+ * closes it. IOExceptions are passed to the exception handler, or rethrown as
+ * RuntimeExceptions when there isn't one, the same as FileInputProcessor.
+ * 
+ * @author gtarcea
+ * 
+ * @param <S>
+ *            The type of stream.
+ */
 public abstract class FileStreamProcessor<S>
 {
     public abstract S openFileStream(String filename) throws IOException;
-    public abstract void processFileStream(S stream);
+    public abstract void processFileStream(S stream) throws IOException;
     public abstract void closeFileStream(S stream) throws IOException;
+
+    /**
+     * The exception handler to call, or null.
+     */
+    private final ExceptionHandler exceptionHandler;
+
+    /**
+     * Constructor that sets up processing without an exception handler.
+     */
+    public FileStreamProcessor()
+    {
+        this(null);
+    }
+
+    /**
+     * Constructor that accepts an exception handler to handle exceptions during
+     * processing.
+     * 
+     * @param exceptionHandler
+     *            The exception handler to call when an exception is raised.
+     */
+    public FileStreamProcessor(final ExceptionHandler exceptionHandler)
+    {
+        this.exceptionHandler = exceptionHandler;
+    }
     
     public void process(final String filename)
     {
+        IOException processException = null;
         S stream = null;
         try
         {
@@ -18,7 +56,7 @@ public abstract class FileStreamProcessor<S>
         }
         catch (IOException e)
         {
-            // Ignore
+            processException = e;
         }
         finally
         {
@@ -30,9 +68,37 @@ public abstract class FileStreamProcessor<S>
                 }
                 catch (IOException e)
                 {
-                    // Ignore.
+                    if (processException == null)
+                    {
+                        handleException(e, "Error closing stream. File: " + filename);
+                    }
                 }
             }
+            if (processException != null)
+            {
+                handleException(processException, "Error processing stream. File: " + filename);
+            }
+        }
+    }
+
+    /**
+     * Calls the exception handler, or throws a RuntimeException if there isn't
+     * one.
+     * 
+     * @param t
+     *            The exception.
+     * @param message
+     *            Describes what failed.
+     */
+    private void handleException(final Throwable t, final String message)
+    {
+        if (exceptionHandler != null)
+        {
+            exceptionHandler.handle(t, message);
+        }
+        else
+        {
+            throw new RuntimeException(message, t);
         }
     }
 }
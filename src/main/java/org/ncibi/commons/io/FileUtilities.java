@@ -1,15 +1,17 @@
 package org.ncibi.commons.io;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
-import java.io.StringWriter;
-import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.ncibi.commons.config.ProjectConfiguration;
 import org.ncibi.commons.exception.ConstructorCalledError;
@@ -23,6 +25,21 @@ import org.ncibi.commons.lang.ClassLoaderUtils;
  */
 public final class FileUtilities
 {
+    /**
+     * Charset of the strings read by convertStreamToString().
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Smallest buffer used to read a stream of unknown length.
+     */
+    private static final int READ_BUFFER_SIZE = 8192;
+
+    /**
+     * Largest array the JVM reliably allocates.
+     */
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
     /**
      * Constructor. Private because this is a utilities class with all static
      * methods.
@@ -105,42 +122,533 @@ public final class FileUtilities
         return System.getProperty("file.separator");
     }
 
+    /**
+     * Reads a UTF-8 stream into a string and closes the stream.
+     * 
+     * @param is
+     *            The stream, or null.
+     * @return The contents of the stream, or "" if it is null.
+     * @throws IOException
+     *             When the stream can't be read.
+     */
     public static String convertStreamToString(InputStream is) throws IOException
     {
-        /*
-         * From: http://www.kodejava.org/examples/266.html
-         * 
-         * To convert the InputStream to String we use the Reader.read(char[]
-         * buffer) method. We iterate until the Reader return -1 which means
-         * there's no more data to read. We use the StringWriter class to
-         * produce the string.
-         */
         if (is != null)
         {
-            Writer writer = new StringWriter();
-
-            char[] buffer = new char[1024];
             try
             {
-                Reader reader = new BufferedReader(new InputStreamReader(is, "UTF-8"));
-                int n;
-                while ((n = reader.read(buffer)) != -1)
-                {
-                    writer.write(buffer, 0, n);
-                }
+                return readString(is, UTF8);
             }
             finally
             {
                 is.close();
             }
-            return writer.toString();
         }
         else
         {
             return "";
         }
     }
-    
+
+    /**
+     * Reads the rest of a stream. The buffer is sized from available(), so a
+     * stream that knows its length is read with a single allocation. The
+     * stream is not closed.
+     * 
+     * @param in
+     *            The stream to read.
+     * @return The bytes read.
+     * @throws IOException
+     *             When the stream can't be read or holds more than 2GB.
+     */
+    public static byte[] readAllBytes(final InputStream in) throws IOException
+    {
+        byte[] buffer = new byte[Math.max(in.available(), READ_BUFFER_SIZE)];
+        int length = 0;
+        while (true)
+        {
+            if (length == buffer.length)
+            {
+                // Check for the end of the stream before growing the buffer,
+                // since available() is often exactly right.
+                final int next = in.read();
+                if (next == -1)
+                {
+                    return buffer;
+                }
+                if (buffer.length >= MAX_ARRAY_SIZE)
+                {
+                    throw new IOException("Stream too large to read into memory");
+                }
+                buffer = Arrays.copyOf(buffer, (int) Math.min(MAX_ARRAY_SIZE,
+                        2L * buffer.length));
+                buffer[length++] = (byte) next;
+            }
+
+            final int n = in.read(buffer, length, buffer.length - length);
+            if (n == -1)
+            {
+                return length == buffer.length ? buffer : Arrays.copyOf(buffer, length);
+            }
+            length += n;
+        }
+    }
+
+    /**
+     * Reads a whole file through its FileChannel into an array of exactly the
+     * file's size.
+     * 
+     * @param file
+     *            The file to read.
+     * @return The contents of the file.
+     * @throws IOException
+     *             When the file can't be read or is larger than 2GB.
+     */
+    public static byte[] readAllBytes(final File file) throws IOException
+    {
+        final FileChannel channel = new FileInputStream(file).getChannel();
+        try
+        {
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+            {
+                throw new IOException("File too large to read into memory: " + file);
+            }
+
+            final ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) > 0)
+            {
+                // Keep reading until the buffer is full.
+            }
+            final byte[] bytes = buffer.array();
+            return buffer.hasRemaining() ? Arrays.copyOf(bytes, buffer.position()) : bytes;
+        }
+        finally
+        {
+            channel.close();
+        }
+    }
+
+    /**
+     * Reads the rest of a stream into a string, decoding it in one pass. The
+     * stream is not closed.
+     * 
+     * @param in
+     *            The stream to read.
+     * @param charset
+     *            The charset of the stream.
+     * @return The contents of the stream.
+     * @throws IOException
+     *             When the stream can't be read.
+     */
+    public static String readString(final InputStream in, final Charset charset)
+            throws IOException
+    {
+        return new String(readAllBytes(in), charset);
+    }
+
+    /**
+     * Reads a whole file into a string, decoding it in one pass.
+     * 
+     * @param file
+     *            The file to read.
+     * @param charset
+     *            The charset of the file.
+     * @return The contents of the file.
+     * @throws IOException
+     *             When the file can't be read or is larger than 2GB.
+     */
+    public static String readString(final File file, final Charset charset) throws IOException
+    {
+        return new String(readAllBytes(file), charset);
+    }
+
+    /**
+     * Reads a whole file as lines. Lines end with '\n', '\r' or "\r\n", the
+     * same as BufferedReader.readLine().
+     * 
+     * @param file
+     *            The file to read.
+     * @param charset
+     *            The charset of the file.
+     * @return The lines, without their terminators.
+     * @throws IOException
+     *             When the file can't be read or is larger than 2GB.
+     */
+    public static List<String> readLines(final File file, final Charset charset)
+            throws IOException
+    {
+        return splitLines(readString(file, charset));
+    }
+
+    /**
+     * Reads the rest of a stream as lines. The stream is not closed.
+     * 
+     * @param in
+     *            The stream to read.
+     * @param charset
+     *            The charset of the stream.
+     * @return The lines, without their terminators.
+     * @throws IOException
+     *             When the stream can't be read.
+     */
+    public static List<String> readLines(final InputStream in, final Charset charset)
+            throws IOException
+    {
+        return splitLines(readString(in, charset));
+    }
+
+    /**
+     * Splits text into lines. A terminator at the very end doesn't start
+     * another line.
+     */
+    private static List<String> splitLines(final String text)
+    {
+        final List<String> lines = new ArrayList<String>();
+        final int length = text.length();
+        int start = 0;
+        for (int i = 0; i < length; i++)
+        {
+            final char c = text.charAt(i);
+            if (c == '\n' || c == '\r')
+            {
+                lines.add(text.substring(start, i));
+                if (c == '\r' && i + 1 < length && text.charAt(i + 1) == '\n')
+                {
+                    i++;
+                }
+                start = i + 1;
+            }
+        }
+        if (start < length)
+        {
+            lines.add(text.substring(start));
+        }
+        return lines;
+    }
+
+    /**
+     * Copies a file. The copy is done by the kernel with
+     * FileChannel.transferTo() where the platform supports it, so the data
+     * never passes through the Java heap.
+     * 
+     * @param source
+     *            The file to copy.
+     * @param target
+     *            The copy. An existing file is overwritten.
+     * @return The number of bytes copied.
+     * @throws IOException
+     *             When the files can't be read or written.
+     * @throws IllegalArgumentException
+     *             When the target is the source.
+     */
+    public static long copy(final File source, final File target) throws IOException
+    {
+        final List<File> sources = new ArrayList<File>(1);
+        sources.add(source);
+        return concat(sources, target);
+    }
+
+    /**
+     * Concatenates files into one, using kernel side copying where possible.
+     * 
+     * @param sources
+     *            The files to concatenate, in order.
+     * @param target
+     *            The concatenated file. An existing file is overwritten.
+     * @return The number of bytes written.
+     * @throws IOException
+     *             When the files can't be read or written.
+     * @throws IllegalArgumentException
+     *             When the target is one of the sources, which opening the
+     *             target would truncate before it is read.
+     */
+    public static long concat(final List<File> sources, final File target) throws IOException
+    {
+        final File canonicalTarget = target.getCanonicalFile();
+        for (final File source : sources)
+        {
+            if (source.getCanonicalFile().equals(canonicalTarget))
+            {
+                throw new IllegalArgumentException("Target is also a source: " + target);
+            }
+        }
+
+        final FileChannel out = new FileOutputStream(target).getChannel();
+        try
+        {
+            long written = 0;
+            for (final File source : sources)
+            {
+                final FileChannel in = new FileInputStream(source).getChannel();
+                try
+                {
+                    written += transfer(in, 0, in.size(), out);
+                }
+                finally
+                {
+                    in.close();
+                }
+            }
+            return written;
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    /**
+     * Splits a file into parts of at most maxBytes each, cutting only at line
+     * ends ('\n') so no line is split, unless a single line is longer than
+     * maxBytes. Parts are written to the directory as name.00000,
+     * name.00001, ...
+     * 
+     * @param source
+     *            The file to split.
+     * @param directory
+     *            The directory to write the parts to.
+     * @param maxBytes
+     *            The maximum size of a part, at least 1.
+     * @return The parts, in order.
+     * @throws IOException
+     *             When the files can't be read or written.
+     * @throws IllegalArgumentException
+     *             When maxBytes is not positive.
+     */
+    public static List<File> splitBySize(final File source, final File directory,
+            final long maxBytes) throws IOException
+    {
+        if (maxBytes <= 0)
+        {
+            throw new IllegalArgumentException("maxBytes must be positive: " + maxBytes);
+        }
+        final FileChannel in = new FileInputStream(source).getChannel();
+        try
+        {
+            final List<Long> cuts = new ArrayList<Long>();
+            final long size = in.size();
+            long start = 0;
+            while (size - start > maxBytes)
+            {
+                final long lineEnd = lastLineEnd(in, start, start + maxBytes);
+                start = lineEnd > start ? lineEnd : start + maxBytes;
+                cuts.add(start);
+            }
+            return writeParts(in, cuts, source.getName(), directory);
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /**
+     * Splits a file into parts of linesPerPart lines each (the last part may
+     * be shorter). Lines are counted by '\n', so "\r\n" line ends are
+     * handled but bare '\r' line ends are not. Parts are written to the
+     * directory as name.00000, name.00001, ...
+     * 
+     * @param source
+     *            The file to split.
+     * @param directory
+     *            The directory to write the parts to.
+     * @param linesPerPart
+     *            The number of lines in each part, at least 1.
+     * @return The parts, in order.
+     * @throws IOException
+     *             When the files can't be read or written.
+     * @throws IllegalArgumentException
+     *             When linesPerPart is not positive.
+     */
+    public static List<File> splitByLines(final File source, final File directory,
+            final long linesPerPart) throws IOException
+    {
+        if (linesPerPart <= 0)
+        {
+            throw new IllegalArgumentException("linesPerPart must be positive: " + linesPerPart);
+        }
+        final FileChannel in = new FileInputStream(source).getChannel();
+        final DirectBufferPool pool = DirectBufferPool.defaultPool();
+        final ByteBuffer buffer = pool.acquire();
+        try
+        {
+            final List<Long> cuts = new ArrayList<Long>();
+            final long size = in.size();
+            long position = 0;
+            long lines = 0;
+            while (position < size)
+            {
+                buffer.clear();
+                final int n = in.read(buffer, position);
+                if (n <= 0)
+                {
+                    break;
+                }
+                for (int i = 0; i < n; i++)
+                {
+                    if (buffer.get(i) == '\n' && ++lines % linesPerPart == 0
+                            && position + i + 1 < size)
+                    {
+                        cuts.add(position + i + 1);
+                    }
+                }
+                position += n;
+            }
+            return writeParts(in, cuts, source.getName(), directory);
+        }
+        finally
+        {
+            pool.release(buffer);
+            in.close();
+        }
+    }
+
+    /**
+     * Finds the end of the last complete line in a range of a file.
+     * 
+     * @return The offset just after the last '\n' in [start, end), or -1 if
+     *         there is none.
+     */
+    private static long lastLineEnd(final FileChannel in, final long start, final long end)
+            throws IOException
+    {
+        final DirectBufferPool pool = DirectBufferPool.defaultPool();
+        final ByteBuffer buffer = pool.acquire();
+        try
+        {
+            long chunkEnd = end;
+            while (chunkEnd > start)
+            {
+                final long chunkStart = Math.max(start, chunkEnd - buffer.capacity());
+                buffer.clear();
+                buffer.limit((int) (chunkEnd - chunkStart));
+                while (buffer.hasRemaining()
+                        && in.read(buffer, chunkStart + buffer.position()) > 0)
+                {
+                    // Read the whole chunk.
+                }
+                for (int i = buffer.position() - 1; i >= 0; i--)
+                {
+                    if (buffer.get(i) == '\n')
+                    {
+                        return chunkStart + i + 1;
+                    }
+                }
+                chunkEnd = chunkStart;
+            }
+            return -1;
+        }
+        finally
+        {
+            pool.release(buffer);
+        }
+    }
+
+    /**
+     * Writes the parts of a file between cut points.
+     */
+    private static List<File> writeParts(final FileChannel in, final List<Long> cuts,
+            final String name, final File directory) throws IOException
+    {
+        final List<File> parts = new ArrayList<File>();
+        long start = 0;
+        for (int i = 0; i <= cuts.size(); i++)
+        {
+            final long end = i < cuts.size() ? cuts.get(i) : in.size();
+            final File part = new File(directory, String.format("%s.%05d", name, i));
+            final FileChannel out = new FileOutputStream(part).getChannel();
+            try
+            {
+                transfer(in, start, end - start, out);
+            }
+            finally
+            {
+                out.close();
+            }
+            parts.add(part);
+            start = end;
+        }
+        return parts;
+    }
+
+    /**
+     * Copies count bytes from position in one channel to the current position
+     * of another. FileChannel.transferTo() is used while it makes progress
+     * (it can transfer less than asked, or nothing at all on some platforms),
+     * and the rest is copied through a pooled direct buffer.
+     * 
+     * @return The number of bytes copied.
+     */
+    private static long transfer(final FileChannel in, final long position, final long count,
+            final FileChannel out) throws IOException
+    {
+        long done = 0;
+        while (done < count)
+        {
+            final long n = in.transferTo(position + done, count - done, out);
+            if (n <= 0)
+            {
+                break;
+            }
+            done += n;
+        }
+
+        if (done < count)
+        {
+            final DirectBufferPool pool = DirectBufferPool.defaultPool();
+            final ByteBuffer buffer = pool.acquire();
+            try
+            {
+                while (done < count)
+                {
+                    buffer.clear();
+                    buffer.limit((int) Math.min(buffer.capacity(), count - done));
+                    final int n = in.read(buffer, position + done);
+                    if (n <= 0)
+                    {
+                        break;
+                    }
+                    buffer.flip();
+                    while (buffer.hasRemaining())
+                    {
+                        out.write(buffer);
+                    }
+                    done += n;
+                }
+            }
+            finally
+            {
+                pool.release(buffer);
+            }
+        }
+        return done;
+    }
+
+    /**
+     * Renames a file, replacing the target if it exists. Used to make a file
+     * written under a temporary name visible all at once.
+     * 
+     * @param source
+     *            The file to rename.
+     * @param target
+     *            The new name.
+     * @throws IOException
+     *             When the file can't be renamed.
+     */
+    public static void replaceFile(final File source, final File target) throws IOException
+    {
+        // File.renameTo() won't replace an existing file on all platforms.
+        if (!source.renameTo(target))
+        {
+            target.delete();
+            if (!source.renameTo(target))
+            {
+                throw new IOException("Unable to rename " + source + " to " + target);
+            }
+        }
+    }
+
     public static String tmpDir()
     {
         String tmpdir = ProjectConfiguration.getProjectProperty("tmp.dir");
@@ -0,0 +1,24 @@
+package org.ncibi.commons.io;
+
+import java.io.IOException;
+
+/**
+ * Receives the rows produced by a DelimitedFileJoiner.
+ *
+ * @author gtarcea
+ *
+ */
+public interface JoinSink
+{
+    /**
+     * Called once for each pair of lines whose keys match.
+     *
+     * @param leftLine
+     *            The line from the left file.
+     * @param rightLine
+     *            The line from the right file.
+     * @throws IOException
+     *             When the row can't be written.
+     */
+    void join(String leftLine, String rightLine) throws IOException;
+}
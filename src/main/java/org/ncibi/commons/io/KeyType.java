@@ -0,0 +1,152 @@
+package org.ncibi.commons.io;
+
+import java.util.Comparator;
+
+/**
+ * How the keys of delimited lines are compared when sorting or joining files.
+ * Keys that aren't numbers sort before all numeric keys when a numeric key
+ * type is used, and are ordered as strings among themselves.
+ *
+ * @author gtarcea
+ *
+ */
+public enum KeyType implements Comparator<String>
+{
+    /**
+     * Keys are compared as strings (by UTF-16 code unit, like
+     * String.compareTo()).
+     */
+    STRING
+    {
+        @Override
+        public int compare(final String a, final String b)
+        {
+            return a.compareTo(b);
+        }
+    },
+
+    /**
+     * Keys are whole numbers that fit in a long.
+     */
+    INTEGER
+    {
+        @Override
+        Long parseOrNull(final String key)
+        {
+            final String number = key.trim();
+            // Short lines have empty keys; don't throw and catch for each one.
+            if (number.length() == 0)
+            {
+                return null;
+            }
+            try
+            {
+                return Long.parseLong(number);
+            }
+            catch (NumberFormatException e)
+            {
+                return null;
+            }
+        }
+    },
+
+    /**
+     * Keys are floating point numbers.
+     */
+    DOUBLE
+    {
+        @Override
+        Long parseOrNull(final String key)
+        {
+            final String number = key.trim();
+            if (number.length() == 0)
+            {
+                return null;
+            }
+            final long bits;
+            try
+            {
+                bits = Double.doubleToLongBits(Double.parseDouble(number));
+            }
+            catch (NumberFormatException e)
+            {
+                return null;
+            }
+            // Flipping the bits of negative numbers makes the longs order the
+            // way Double.compareTo() orders the doubles, -0.0 and NaN included.
+            return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+        }
+    };
+
+    /**
+     * Compares two keys as numbers. Both keys are parsed on every call, so
+     * code comparing the same key many times, such as a sort, should parse
+     * each key once with parseOrNull() and compare with compareParsed().
+     */
+    public int compare(final String a, final String b)
+    {
+        final Long x = parseOrNull(a);
+        final Long y = parseOrNull(b);
+        return compareParsed(a, x != null, x == null ? 0 : x, b, y != null, y == null ? 0 : y);
+    }
+
+    /**
+     * Parses a numeric key for compareParsed() into a long that orders the way
+     * the numbers do.
+     *
+     * @param key
+     *            The key.
+     * @return The parsed key, or null if it isn't a number of this type;
+     *         always null for STRING.
+     */
+    Long parseOrNull(final String key)
+    {
+        return null;
+    }
+
+    /**
+     * Returns the key type whose keys can be parsed once and compared with
+     * compareParsed().
+     *
+     * @param comparator
+     *            A key comparator.
+     * @return The comparator if it is INTEGER or DOUBLE, otherwise null.
+     */
+    static KeyType numericType(final Comparator<String> comparator)
+    {
+        return comparator == INTEGER || comparator == DOUBLE ? (KeyType) comparator : null;
+    }
+
+    /**
+     * Compares two keys parsed with parseOrNull(), in the order compare()
+     * puts them. Keys that aren't numbers come first, ordered as strings.
+     *
+     * @param a
+     *            The first key.
+     * @param aParsed
+     *            Is the first key a number?
+     * @param x
+     *            The first key parsed, if it is a number.
+     * @param b
+     *            The second key.
+     * @param bParsed
+     *            Is the second key a number?
+     * @param y
+     *            The second key parsed, if it is a number.
+     * @return A negative number, zero or a positive number as the first key
+     *         is less than, equal to or greater than the second.
+     */
+    static int compareParsed(final String a, final boolean aParsed, final long x,
+            final String b, final boolean bParsed, final long y)
+    {
+        if (aParsed && bParsed)
+        {
+            return x < y ? -1 : (x == y ? 0 : 1);
+        }
+        if (!aParsed && !bParsed)
+        {
+            return a.compareTo(b);
+        }
+        return aParsed ? 1 : -1;
+    }
+}
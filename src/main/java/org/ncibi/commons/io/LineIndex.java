@@ -0,0 +1,471 @@
+package org.ncibi.commons.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.ncibi.commons.io.stream.FileChannelInputStream;
+
+/**
+ * Random access to the lines of a large, static text file through a sparse
+ * index kept in a sidecar file (the file name + ".lidx"). The index holds the
+ * offset of every K'th line, so fetching line N seeks to the nearest sampled
+ * line before it and reads forward at most K - 1 lines. It can also hold a
+ * sorted table of the values of one column, so lines can be found by key with
+ * a binary search.
+ *
+ * The index is rebuilt automatically when the file's size or modification time
+ * has changed since it was built, or when it was built with different
+ * settings. Lines are numbered from 0 and header lines are counted like any
+ * other line.
+ *
+ * A LineIndex can be shared between threads; all reads are positional reads
+ * on the file's channel.
+ *
+ * @author gtarcea
+ *
+ */
+public class LineIndex
+{
+    /**
+     * Buffer size used when reading lines from a sampled offset.
+     */
+    private static final int READ_BUFFER_SIZE = 8 * 1024;
+
+    /**
+     * The indexed file.
+     */
+    private final String filename;
+
+    /**
+     * The index.
+     */
+    private final Data data;
+
+    /**
+     * The charset of the file.
+     */
+    private final Charset charset;
+
+    /**
+     * The open file.
+     */
+    private final RandomAccessFile file;
+
+    /**
+     * Opens the index for a file, building it with the default settings if
+     * there isn't an up to date one.
+     *
+     * @param filename
+     *            The indexed file.
+     * @return The index.
+     * @throws IOException
+     *             When the file or index can't be read or the index can't be
+     *             built.
+     */
+    public static LineIndex open(final String filename) throws IOException
+    {
+        return open(filename, new LineIndexBuilder());
+    }
+
+    /**
+     * Opens the index for a file, building it with the given builder if there
+     * isn't an up to date one built with the same settings.
+     *
+     * @param filename
+     *            The indexed file.
+     * @param builder
+     *            The builder used to (re)build the index.
+     * @return The index.
+     * @throws IOException
+     *             When the file or index can't be read or the index can't be
+     *             built.
+     */
+    public static LineIndex open(final String filename, final LineIndexBuilder builder)
+            throws IOException
+    {
+        Data data;
+        try
+        {
+            data = Data.load(indexFile(filename));
+        }
+        catch (IOException e)
+        {
+            // A damaged index is rebuilt.
+            data = null;
+        }
+
+        if (data == null || !data.matches(new File(filename)) || !builder.matches(data))
+        {
+            return builder.build(filename);
+        }
+        return new LineIndex(filename, data, builder.getCharset());
+    }
+
+    /**
+     * Returns the sidecar file a file's index is kept in.
+     *
+     * @param filename
+     *            The indexed file.
+     * @return The index file.
+     */
+    public static File indexFile(final String filename)
+    {
+        return new File(filename + ".lidx");
+    }
+
+    /**
+     * Constructor used by LineIndexBuilder and open().
+     *
+     * @param filename
+     *            The indexed file.
+     * @param data
+     *            The index.
+     * @param charset
+     *            The charset of the file.
+     * @throws IOException
+     *             When the file can't be opened.
+     */
+    LineIndex(final String filename, final Data data, final Charset charset) throws IOException
+    {
+        this.filename = filename;
+        this.data = data;
+        this.charset = charset;
+        this.file = new RandomAccessFile(filename, "r");
+    }
+
+    /**
+     * @return The indexed file.
+     */
+    public String getFilename()
+    {
+        return filename;
+    }
+
+    /**
+     * @return The number of lines in the file.
+     */
+    public long getLineCount()
+    {
+        return data.lineCount;
+    }
+
+    /**
+     * @return True if the index has a key table.
+     */
+    public boolean hasKeys()
+    {
+        return data.keyColumn >= 0;
+    }
+
+    /**
+     * Fetches a line.
+     *
+     * @param lineNumber
+     *            The line to fetch, starting at 0.
+     * @return The line.
+     * @throws IOException
+     *             When the file can't be read.
+     */
+    public String getLine(final long lineNumber) throws IOException
+    {
+        return getLines(lineNumber, 1).get(0);
+    }
+
+    /**
+     * Fetches a range of consecutive lines.
+     *
+     * @param firstLine
+     *            The first line to fetch, starting at 0.
+     * @param count
+     *            The number of lines to fetch.
+     * @return The lines. Fewer than count lines are returned when the range
+     *         runs past the end of the file.
+     * @throws IOException
+     *             When the file can't be read.
+     */
+    public List<String> getLines(final long firstLine, final int count) throws IOException
+    {
+        if (firstLine < 0 || firstLine >= data.lineCount)
+        {
+            throw new IndexOutOfBoundsException("Line " + firstLine + " of " + data.lineCount
+                    + " in " + filename);
+        }
+
+        final int sample = (int) (firstLine / data.sampleInterval);
+        final LineReader in = reader(data.samples[sample]);
+        for (long skip = firstLine - (long) sample * data.sampleInterval; skip > 0; skip--)
+        {
+            in.readLine();
+        }
+
+        final List<String> lines = new ArrayList<String>(count);
+        String line;
+        while (lines.size() < count && (line = in.readLine()) != null)
+        {
+            lines.add(line);
+        }
+        return lines;
+    }
+
+    /**
+     * Finds the lines whose key column equals a key.
+     *
+     * @param key
+     *            The key to look up.
+     * @return The matching lines in file order; empty if there are none.
+     * @throws IOException
+     *             When the file can't be read.
+     * @throws IllegalStateException
+     *             When the index has no key table.
+     */
+    public List<String> findByKey(final String key) throws IOException
+    {
+        if (!hasKeys())
+        {
+            throw new IllegalStateException("No key column indexed for " + filename);
+        }
+
+        final byte[] wanted = key.getBytes(Charset.forName("UTF-8"));
+        final int entryCount = data.keyOffsets.length;
+
+        // Lower bound: first entry >= key.
+        int low = 0;
+        int high = entryCount;
+        while (low < high)
+        {
+            final int mid = (low + high) >>> 1;
+            if (compareKey(mid, wanted) < 0)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+
+        final List<String> lines = new ArrayList<String>();
+        for (int i = low; i < entryCount && compareKey(i, wanted) == 0; i++)
+        {
+            lines.add(reader(data.keyOffsets[i]).readLine());
+        }
+        return lines;
+    }
+
+    /**
+     * Closes the file.
+     *
+     * @throws IOException
+     *             When the file can't be closed.
+     */
+    public void close() throws IOException
+    {
+        file.close();
+    }
+
+    /**
+     * Returns a line reader positioned at an offset. The reader doesn't need
+     * to be closed since it doesn't own the channel.
+     */
+    private LineReader reader(final long offset)
+    {
+        final FileChannel channel = file.getChannel();
+        return new LineReader(new FileChannelInputStream(channel, offset), charset, offset,
+                READ_BUFFER_SIZE);
+    }
+
+    /**
+     * Compares a key table entry with a UTF-8 encoded key.
+     */
+    private int compareKey(final int entry, final byte[] key)
+    {
+        return compareBytes(data.keyBytes, data.keyStarts[entry], data.keyStarts[entry + 1],
+                key, 0, key.length);
+    }
+
+    /**
+     * Compares two byte ranges as unsigned bytes. For UTF-8 this is the same
+     * as comparing code points.
+     */
+    static int compareBytes(final byte[] a, final int aStart, final int aEnd, final byte[] b,
+            final int bStart, final int bEnd)
+    {
+        final int length = Math.min(aEnd - aStart, bEnd - bStart);
+        for (int i = 0; i < length; i++)
+        {
+            final int diff = (a[aStart + i] & 0xff) - (b[bStart + i] & 0xff);
+            if (diff != 0)
+            {
+                return diff;
+            }
+        }
+        return (aEnd - aStart) - (bEnd - bStart);
+    }
+
+    /**
+     * The contents of an index file.
+     */
+    static final class Data
+    {
+        /**
+         * Identifies an index file ("NLIX").
+         */
+        private static final int MAGIC = 0x4e4c4958;
+
+        /**
+         * Version of the index file format.
+         */
+        private static final int VERSION = 1;
+
+        long fileLength;
+        long fileLastModified;
+        int sampleInterval;
+        int keyColumn;
+        char delimiter;
+        long lineCount;
+
+        /**
+         * Offsets of lines 0, K, 2K, ...
+         */
+        long[] samples;
+
+        /**
+         * Sorted UTF-8 keys, back to back.
+         */
+        byte[] keyBytes;
+
+        /**
+         * Start of each key in keyBytes, plus the end of the last key.
+         */
+        int[] keyStarts;
+
+        /**
+         * Offset of the line each key came from.
+         */
+        long[] keyOffsets;
+
+        /**
+         * Checks that the indexed file hasn't changed since the index was
+         * built.
+         */
+        boolean matches(final File file)
+        {
+            return file.length() == fileLength && file.lastModified() == fileLastModified;
+        }
+
+        /**
+         * Saves the index to a temporary file that is then renamed, so readers
+         * never see a partly written index.
+         */
+        void save(final File indexFile) throws IOException
+        {
+            final File tmp = new File(indexFile.getPath() + ".tmp");
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(tmp)));
+            try
+            {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(fileLength);
+                out.writeLong(fileLastModified);
+                out.writeInt(sampleInterval);
+                out.writeInt(keyColumn);
+                out.writeChar(delimiter);
+                out.writeLong(lineCount);
+                out.writeInt(samples.length);
+                for (final long sample : samples)
+                {
+                    out.writeLong(sample);
+                }
+                if (keyColumn >= 0)
+                {
+                    out.writeInt(keyOffsets.length);
+                    out.writeInt(keyBytes.length);
+                    out.write(keyBytes);
+                    for (final int start : keyStarts)
+                    {
+                        out.writeInt(start);
+                    }
+                    for (final long offset : keyOffsets)
+                    {
+                        out.writeLong(offset);
+                    }
+                }
+            }
+            finally
+            {
+                out.close();
+            }
+
+            FileUtilities.replaceFile(tmp, indexFile);
+        }
+
+        /**
+         * Loads an index.
+         *
+         * @return The index, or null if there is no index file.
+         */
+        static Data load(final File indexFile) throws IOException
+        {
+            if (!indexFile.exists())
+            {
+                return null;
+            }
+
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(indexFile)));
+            try
+            {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                {
+                    throw new IOException("Not a line index file: " + indexFile);
+                }
+
+                final Data data = new Data();
+                data.fileLength = in.readLong();
+                data.fileLastModified = in.readLong();
+                data.sampleInterval = in.readInt();
+                data.keyColumn = in.readInt();
+                data.delimiter = in.readChar();
+                data.lineCount = in.readLong();
+                data.samples = new long[in.readInt()];
+                for (int i = 0; i < data.samples.length; i++)
+                {
+                    data.samples[i] = in.readLong();
+                }
+                if (data.keyColumn >= 0)
+                {
+                    final int entryCount = in.readInt();
+                    data.keyBytes = new byte[in.readInt()];
+                    in.readFully(data.keyBytes);
+                    data.keyStarts = new int[entryCount + 1];
+                    for (int i = 0; i <= entryCount; i++)
+                    {
+                        data.keyStarts[i] = in.readInt();
+                    }
+                    data.keyOffsets = new long[entryCount];
+                    for (int i = 0; i < entryCount; i++)
+                    {
+                        data.keyOffsets[i] = in.readLong();
+                    }
+                }
+                return data;
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package org.ncibi.commons.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.ncibi.commons.io.stream.Compression;
+import org.ncibi.commons.io.stream.DecompressingInputStreams;
+import org.ncibi.commons.lang.FieldSplitter;
+
+/**
+ * Builds the sidecar index used by LineIndex. The file is scanned once and the
+ * offset of every K'th line is recorded. Optionally the value of one column of
+ * every line is recorded along with the line's offset, and the resulting table
+ * sorted by key, so that lines can be looked up by key.
+ *
+ * Only uncompressed files can be indexed since a compressed file can't be
+ * read from an arbitrary offset.
+ *
+ * @author gtarcea
+ *
+ */
+public class LineIndexBuilder
+{
+    /**
+     * The default number of lines between sampled offsets.
+     */
+    public static final int DEFAULT_SAMPLE_INTERVAL = 1024;
+
+    /**
+     * Number of lines between sampled offsets.
+     */
+    private final int sampleInterval;
+
+    /**
+     * The column to index by key, or -1.
+     */
+    private int keyColumn = -1;
+
+    /**
+     * The column delimiter.
+     */
+    private char delimiter = '\t';
+
+    /**
+     * The charset of the file.
+     */
+    private Charset charset = Charset.defaultCharset();
+
+    /**
+     * Constructor using the default sample interval.
+     */
+    public LineIndexBuilder()
+    {
+        this(DEFAULT_SAMPLE_INTERVAL);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param sampleInterval
+     *            Number of lines between sampled offsets. Fetching a line reads
+     *            on average half this many lines.
+     */
+    public LineIndexBuilder(final int sampleInterval)
+    {
+        if (sampleInterval < 1)
+        {
+            throw new IllegalArgumentException("sampleInterval must be at least 1: "
+                    + sampleInterval);
+        }
+        this.sampleInterval = sampleInterval;
+    }
+
+    /**
+     * Sets the column to build a key table for.
+     *
+     * @param column
+     *            The column (starting at 0) to index, or -1 for no key table.
+     * @param delimiter
+     *            The column delimiter.
+     */
+    public void setKeyColumn(final int column, final char delimiter)
+    {
+        this.keyColumn = column;
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * Sets the charset of the file. The default is the platform charset.
+     *
+     * @param charset
+     *            The charset.
+     */
+    public void setCharset(final Charset charset)
+    {
+        this.charset = charset;
+    }
+
+    /**
+     * @return The number of lines between sampled offsets.
+     */
+    public int getSampleInterval()
+    {
+        return sampleInterval;
+    }
+
+    /**
+     * @return The column the key table is built for, or -1.
+     */
+    public int getKeyColumn()
+    {
+        return keyColumn;
+    }
+
+    /**
+     * @return The column delimiter.
+     */
+    public char getDelimiter()
+    {
+        return delimiter;
+    }
+
+    /**
+     * @return The charset of the file.
+     */
+    public Charset getCharset()
+    {
+        return charset;
+    }
+
+    /**
+     * Checks whether an index was built with the same settings as this
+     * builder.
+     *
+     * @param index
+     *            The index to check.
+     * @return True if the index matches this builder's settings.
+     */
+    boolean matches(final LineIndex.Data index)
+    {
+        return index.sampleInterval == sampleInterval && index.keyColumn == keyColumn
+                && (keyColumn < 0 || index.delimiter == delimiter);
+    }
+
+    /**
+     * Scans a file and writes its index to the sidecar file (the file name +
+     * ".lidx").
+     *
+     * @param filename
+     *            The file to index.
+     * @return The index.
+     * @throws IOException
+     *             When the file can't be read, is compressed, or the index
+     *             can't be written.
+     */
+    public LineIndex build(final String filename) throws IOException
+    {
+        final File file = new File(filename);
+        final LineIndex.Data data = scan(file);
+        data.save(LineIndex.indexFile(filename));
+        return new LineIndex(filename, data, charset);
+    }
+
+    /**
+     * Scans a file building its index.
+     *
+     * @param file
+     *            The file to index.
+     * @return The index data.
+     * @throws IOException
+     *             When the file can't be read or is compressed.
+     */
+    private LineIndex.Data scan(final File file) throws IOException
+    {
+        final LineIndex.Data data = new LineIndex.Data();
+        data.sampleInterval = sampleInterval;
+        data.keyColumn = keyColumn;
+        data.delimiter = delimiter;
+
+        final FileInputStream input = new FileInputStream(file);
+        try
+        {
+            // Taken before reading so that a file changed during the scan
+            // makes the index stale rather than wrong.
+            data.fileLength = file.length();
+            data.fileLastModified = file.lastModified();
+            if (DecompressingInputStreams.detect(input.getChannel()) != Compression.NONE)
+            {
+                throw new IOException("Can't index a compressed file: " + file);
+            }
+
+            final LineReader in = new LineReader(input, charset);
+            long[] samples = new long[16];
+            int sampleCount = 0;
+            final KeyTable keys = keyColumn < 0 ? null : new KeyTable();
+            final FieldSplitter splitter = new FieldSplitter(delimiter);
+            long lineCount = 0;
+            long offset = 0;
+            String line;
+            while ((line = in.readLine()) != null)
+            {
+                if (lineCount % sampleInterval == 0)
+                {
+                    if (sampleCount == samples.length)
+                    {
+                        samples = Arrays.copyOf(samples, sampleCount * 2);
+                    }
+                    samples[sampleCount++] = offset;
+                }
+                if (keys != null)
+                {
+                    final String key = splitter.field(line, keyColumn);
+                    if (key != null)
+                    {
+                        keys.add(key, offset);
+                    }
+                }
+                lineCount++;
+                offset = in.getPosition();
+            }
+
+            data.lineCount = lineCount;
+            data.samples = Arrays.copyOf(samples, sampleCount);
+            if (keys != null)
+            {
+                keys.sortInto(data);
+            }
+        }
+        finally
+        {
+            input.close();
+        }
+        return data;
+    }
+
+    /**
+     * Accumulates UTF-8 encoded keys and their line offsets.
+     */
+    private static final class KeyTable
+    {
+        private static final Charset UTF8 = Charset.forName("UTF-8");
+
+        /**
+         * Largest array the JVM reliably allocates, which bounds the key bytes
+         * and the number of keys.
+         */
+        private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+        /**
+         * Ranges at most this long are insertion sorted.
+         */
+        private static final int INSERTION_SORT_THRESHOLD = 16;
+
+        private byte[] bytes = new byte[1024];
+        private int byteCount = 0;
+        private int[] starts = new int[64];
+        private long[] offsets = new long[64];
+        private int count = 0;
+
+        void add(final String key, final long offset) throws IOException
+        {
+            final byte[] encoded = key.getBytes(UTF8);
+            final long needed = (long) byteCount + encoded.length;
+            if (needed > MAX_ARRAY_SIZE || count == MAX_ARRAY_SIZE)
+            {
+                throw new IOException("Too many keys to index: the keys of an index are limited to "
+                        + MAX_ARRAY_SIZE + " bytes and entries");
+            }
+            if (needed > bytes.length)
+            {
+                bytes = Arrays.copyOf(bytes, (int) Math.min(MAX_ARRAY_SIZE, Math.max(
+                        2L * bytes.length, needed)));
+            }
+            System.arraycopy(encoded, 0, bytes, byteCount, encoded.length);
+
+            if (count == starts.length)
+            {
+                final int capacity = (int) Math.min(MAX_ARRAY_SIZE, 2L * count);
+                starts = Arrays.copyOf(starts, capacity);
+                offsets = Arrays.copyOf(offsets, capacity);
+            }
+            starts[count] = byteCount;
+            offsets[count] = offset;
+            count++;
+            byteCount += encoded.length;
+        }
+
+        /**
+         * Sorts the keys (stably, so lines with the same key stay in file
+         * order) and stores the sorted table in the index data.
+         */
+        void sortInto(final LineIndex.Data data)
+        {
+            final int[] order = new int[count];
+            for (int i = 0; i < count; i++)
+            {
+                order[i] = i;
+            }
+            sort(order, order.clone(), 0, count);
+
+            final byte[] sortedBytes = new byte[byteCount];
+            final int[] sortedStarts = new int[count + 1];
+            final long[] sortedOffsets = new long[count];
+            int position = 0;
+            for (int i = 0; i < count; i++)
+            {
+                final int k = order[i];
+                final int length = end(k) - starts[k];
+                System.arraycopy(bytes, starts[k], sortedBytes, position, length);
+                sortedStarts[i] = position;
+                sortedOffsets[i] = offsets[k];
+                position += length;
+            }
+            sortedStarts[count] = position;
+
+            data.keyBytes = sortedBytes;
+            data.keyStarts = sortedStarts;
+            data.keyOffsets = sortedOffsets;
+        }
+
+        /**
+         * Merge sorts order[from, to) by key, using scratch, which holds the
+         * same entries on entry, as the other half of each merge. Keeping the
+         * entry numbers in an int[] avoids boxing one Integer per line.
+         */
+        private void sort(final int[] order, final int[] scratch, final int from, final int to)
+        {
+            if (to - from <= INSERTION_SORT_THRESHOLD)
+            {
+                for (int i = from + 1; i < to; i++)
+                {
+                    final int k = order[i];
+                    int j = i;
+                    for (; j > from && compare(order[j - 1], k) > 0; j--)
+                    {
+                        order[j] = order[j - 1];
+                    }
+                    order[j] = k;
+                }
+                return;
+            }
+
+            // Sort each half of scratch using order as its scratch, then merge
+            // the halves back into order.
+            final int middle = (from + to) >>> 1;
+            sort(scratch, order, from, middle);
+            sort(scratch, order, middle, to);
+            int left = from;
+            int right = middle;
+            for (int i = from; i < to; i++)
+            {
+                if (right >= to || (left < middle && compare(scratch[left], scratch[right]) <= 0))
+                {
+                    order[i] = scratch[left++];
+                }
+                else
+                {
+                    order[i] = scratch[right++];
+                }
+            }
+        }
+
+        private int compare(final int a, final int b)
+        {
+            return LineIndex.compareBytes(bytes, starts[a], end(a), bytes, starts[b], end(b));
+        }
+
+        private int end(final int k)
+        {
+            return k + 1 < count ? starts[k + 1] : byteCount;
+        }
+    }
+}
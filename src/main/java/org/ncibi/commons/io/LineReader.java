@@ -0,0 +1,302 @@
+package org.ncibi.commons.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Reads lines from a byte stream while keeping track of the byte position of
+ * each line. A line is terminated by '\n', '\r' or "\r\n", the same as
+ * BufferedReader.readLine(), and the terminator is not included in the line.
+ *
+ * Lines are split on the raw bytes and then decoded, so the charset must be
+ * one in which '\n' and '\r' are always single bytes (ASCII, ISO-8859-x,
+ * UTF-8 and the other ASCII compatible charsets). Knowing the byte position of
+ * lines is what allows checkpointing, indexing and tailing files.
+ *
+ * @author gtarcea
+ *
+ */
+public class LineReader
+{
+    /**
+     * Default buffer size.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The stream to read.
+     */
+    private final InputStream in;
+
+    /**
+     * The charset used to decode lines.
+     */
+    private final Charset charset;
+
+    /**
+     * Buffered bytes. Grows to hold lines longer than the buffer.
+     */
+    private byte[] buffer;
+
+    /**
+     * Start of the unread bytes in the buffer.
+     */
+    private int start = 0;
+
+    /**
+     * End of the valid bytes in the buffer.
+     */
+    private int end = 0;
+
+    /**
+     * Set when the stream has returned -1.
+     */
+    private boolean eof = false;
+
+    /**
+     * Bytes consumed, up to the end of the last line returned.
+     */
+    private long position;
+
+    /**
+     * Constructor using the platform default charset, like InputStreamReader.
+     *
+     * @param in
+     *            The stream to read.
+     */
+    public LineReader(final InputStream in)
+    {
+        this(in, Charset.defaultCharset());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param in
+     *            The stream to read.
+     * @param charset
+     *            The charset used to decode lines.
+     */
+    public LineReader(final InputStream in, final Charset charset)
+    {
+        this(in, charset, 0, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructor for a stream that is not at the start of its data, for
+     * example a file that has been positioned at an offset.
+     *
+     * @param in
+     *            The stream to read.
+     * @param charset
+     *            The charset used to decode lines.
+     * @param startPosition
+     *            The position of the first byte of the stream, used as the
+     *            base of getPosition().
+     * @param bufferSize
+     *            The initial size of the buffer, at least 1.
+     * @throws IllegalArgumentException
+     *             When the buffer size is less than 1.
+     */
+    public LineReader(final InputStream in, final Charset charset, final long startPosition,
+            final int bufferSize)
+    {
+        if (bufferSize < 1)
+        {
+            throw new IllegalArgumentException("Buffer size must be at least 1: " + bufferSize);
+        }
+        checkCharset(charset);
+        this.in = in;
+        this.charset = charset;
+        this.position = startPosition;
+        this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * Checks that a charset can be read by a LineReader: ASCII, and so '\n'
+     * and '\r', must encode as the same single bytes. UTF-16, UTF-32 and
+     * EBCDIC don't.
+     *
+     * @param charset
+     *            The charset.
+     * @throws IllegalArgumentException
+     *             When the charset isn't ASCII compatible.
+     */
+    public static void checkCharset(final Charset charset)
+    {
+        final String ascii = "\n\r\t ,09AZaz";
+        final byte[] encoded = ascii.getBytes(charset);
+        boolean compatible = encoded.length == ascii.length();
+        for (int i = 0; compatible && i < encoded.length; i++)
+        {
+            compatible = encoded[i] == ascii.charAt(i);
+        }
+        if (!compatible)
+        {
+            throw new IllegalArgumentException(
+                    "Lines can only be read in an ASCII compatible charset: " + charset);
+        }
+    }
+
+    /**
+     * Reads the next line. A final line without a terminator is returned as a
+     * line.
+     *
+     * @return The line without its terminator, or null at the end of the
+     *         stream.
+     * @throws IOException
+     *             When the stream can't be read.
+     */
+    public String readLine() throws IOException
+    {
+        return readLine(true);
+    }
+
+    /**
+     * Reads the next line only if it is complete, that is followed by a line
+     * terminator. A partial last line is left unread, so that it can be read
+     * once the rest of it has been written to a growing file.
+     *
+     * @return The line without its terminator, or null if there is no complete
+     *         line left in the stream.
+     * @throws IOException
+     *             When the stream can't be read.
+     */
+    public String readCompleteLine() throws IOException
+    {
+        return readLine(false);
+    }
+
+    /**
+     * Reads the next line.
+     *
+     * @param allowPartial
+     *            If true a final line without a terminator is returned.
+     * @return The line, or null.
+     * @throws IOException
+     *             When the stream can't be read.
+     */
+    private String readLine(final boolean allowPartial) throws IOException
+    {
+        // Bytes after start already known not to contain a terminator.
+        int scanned = 0;
+        while (true)
+        {
+            int i = start + scanned;
+            while (i < end && buffer[i] != '\n' && buffer[i] != '\r')
+            {
+                i++;
+            }
+            scanned = i - start;
+
+            if (i < end)
+            {
+                int next = i + 1;
+                if (buffer[i] == '\r')
+                {
+                    if (next == end)
+                    {
+                        // Need the next byte to know if this is "\r\n".
+                        if (!eof)
+                        {
+                            fill();
+                            continue;
+                        }
+                        if (!allowPartial)
+                        {
+                            return null;
+                        }
+                    }
+                    else if (buffer[next] == '\n')
+                    {
+                        next++;
+                    }
+                }
+                return consume(i, next);
+            }
+
+            if (eof)
+            {
+                if (start == end || !allowPartial)
+                {
+                    return null;
+                }
+                return consume(end, end);
+            }
+            fill();
+        }
+    }
+
+    /**
+     * Decodes the line ending at lineEnd and moves past its terminator.
+     *
+     * @param lineEnd
+     *            Index of the first byte after the line.
+     * @param next
+     *            Index of the first byte after the terminator.
+     * @return The decoded line.
+     */
+    private String consume(final int lineEnd, final int next)
+    {
+        final String line = new String(buffer, start, lineEnd - start, charset);
+        position += next - start;
+        start = next;
+        return line;
+    }
+
+    /**
+     * Moves the unread bytes to the front of the buffer (growing it if it is
+     * full) and reads more bytes from the stream.
+     *
+     * @throws IOException
+     *             When the stream can't be read.
+     */
+    private void fill() throws IOException
+    {
+        if (start > 0)
+        {
+            System.arraycopy(buffer, start, buffer, 0, end - start);
+            end -= start;
+            start = 0;
+        }
+        else if (end == buffer.length)
+        {
+            final byte[] larger = new byte[buffer.length * 2];
+            System.arraycopy(buffer, 0, larger, 0, end);
+            buffer = larger;
+        }
+
+        final int n = in.read(buffer, end, buffer.length - end);
+        if (n == -1)
+        {
+            eof = true;
+        }
+        else
+        {
+            end += n;
+        }
+    }
+
+    /**
+     * Returns the position just after the last line returned (including its
+     * terminator). This is where the next line starts.
+     *
+     * @return The byte position.
+     */
+    public long getPosition()
+    {
+        return position;
+    }
+
+    /**
+     * Closes the underlying stream.
+     *
+     * @throws IOException
+     *             When the stream can't be closed.
+     */
+    public void close() throws IOException
+    {
+        in.close();
+    }
+}
@@ -0,0 +1,41 @@
+package org.ncibi.commons.io;
+
+import java.io.PrintStream;
+
+/**
+ * A ProgressListener that prints each report on a line of a PrintStream.
+ *
+ * @author gtarcea
+ *
+ */
+public class PrintStreamProgressListener implements ProgressListener
+{
+    /**
+     * The stream to print to.
+     */
+    private final PrintStream out;
+
+    /**
+     * Constructor that prints to System.err.
+     */
+    public PrintStreamProgressListener()
+    {
+        this(System.err);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param out
+     *            The stream to print to.
+     */
+    public PrintStreamProgressListener(final PrintStream out)
+    {
+        this.out = out;
+    }
+
+    public void progress(final ProgressReport report)
+    {
+        out.println(report);
+    }
+}
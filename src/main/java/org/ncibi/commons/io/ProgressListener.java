@@ -0,0 +1,22 @@
+package org.ncibi.commons.io;
+
+/**
+ * Receives progress reports from long running file processing jobs. Reports
+ * are delivered on the thread doing the processing, so implementations should
+ * return quickly.
+ *
+ * @author gtarcea
+ *
+ * @see FileInputLineProcessor#setProgressListener(ProgressListener, long)
+ */
+public interface ProgressListener
+{
+    /**
+     * Called at the reporting interval and once more when processing
+     * finishes.
+     *
+     * @param report
+     *            The progress so far.
+     */
+    public void progress(ProgressReport report);
+}
@@ -0,0 +1,138 @@
+package org.ncibi.commons.io;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accumulates line counts and timings for a processing job and sends a
+ * ProgressReport to a listener at a fixed interval. The caller supplies the
+ * timestamps so that each line costs a couple of additions and a compare.
+ *
+ * @author gtarcea
+ *
+ */
+final class ProgressMeter
+{
+    /**
+     * The listener to report to.
+     */
+    private final ProgressListener listener;
+
+    /**
+     * The processor reading the file, used for the file position.
+     */
+    private final FileInputProcessor source;
+
+    /**
+     * The file being processed.
+     */
+    private final String filename;
+
+    /**
+     * The file position processing started from.
+     */
+    private final long startOffset;
+
+    /**
+     * The size of the file.
+     */
+    private final long totalBytes;
+
+    /**
+     * Nanoseconds between reports.
+     */
+    private final long intervalNanos;
+
+    /**
+     * When processing started.
+     */
+    private final long startNanos;
+
+    /**
+     * When the next report is due.
+     */
+    private long nextReportNanos;
+
+    /**
+     * Lines processed.
+     */
+    private long lines = 0;
+
+    /**
+     * Nanoseconds spent reading lines.
+     */
+    private long readNanos = 0;
+
+    /**
+     * Nanoseconds spent processing lines.
+     */
+    private long processNanos = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param listener
+     *            The listener to report to.
+     * @param intervalMillis
+     *            Milliseconds between reports.
+     * @param source
+     *            The processor reading the file.
+     * @param filename
+     *            The file being processed.
+     * @param startOffset
+     *            The file position processing started from.
+     * @param totalBytes
+     *            The size of the file.
+     */
+    ProgressMeter(final ProgressListener listener, final long intervalMillis,
+            final FileInputProcessor source, final String filename, final long startOffset,
+            final long totalBytes)
+    {
+        this.listener = listener;
+        this.source = source;
+        this.filename = filename;
+        this.startOffset = startOffset;
+        this.totalBytes = totalBytes;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.startNanos = System.nanoTime();
+        this.nextReportNanos = startNanos + intervalNanos;
+    }
+
+    /**
+     * Records a processed line, reporting if the interval has passed.
+     *
+     * @param lineReadNanos
+     *            Time spent reading the line.
+     * @param lineProcessNanos
+     *            Time spent processing the line.
+     * @param now
+     *            The current System.nanoTime().
+     */
+    void lineProcessed(final long lineReadNanos, final long lineProcessNanos, final long now)
+    {
+        lines++;
+        readNanos += lineReadNanos;
+        processNanos += lineProcessNanos;
+        if (now - nextReportNanos >= 0)
+        {
+            nextReportNanos = now + intervalNanos;
+            report(now, false);
+        }
+    }
+
+    /**
+     * Sends the final report.
+     */
+    void finish()
+    {
+        report(System.nanoTime(), true);
+    }
+
+    /**
+     * Builds and sends a report.
+     */
+    private void report(final long now, final boolean finished)
+    {
+        listener.progress(new ProgressReport(filename, source.getPosition(), startOffset,
+                totalBytes, lines, now - startNanos, readNanos, processNanos, finished));
+    }
+}
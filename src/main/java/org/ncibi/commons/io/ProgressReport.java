@@ -0,0 +1,305 @@
+package org.ncibi.commons.io;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A snapshot of the progress of a file processing job. Reports are created by
+ * the line processors and passed to a ProgressListener.
+ *
+ * The time split between reading and processing tells where a job spends its
+ * time: read time is time spent waiting on I/O (and decompressing and decoding
+ * lines), process time is time spent in the processLine() callback.
+ *
+ * @author gtarcea
+ *
+ */
+public final class ProgressReport
+{
+    /**
+     * The file being processed.
+     */
+    private final String filename;
+
+    /**
+     * Bytes read from the file so far.
+     */
+    private final long bytesRead;
+
+    /**
+     * The file position processing started from, non-zero when resuming
+     * from a checkpoint.
+     */
+    private final long startOffset;
+
+    /**
+     * The size of the file, or -1 if unknown.
+     */
+    private final long totalBytes;
+
+    /**
+     * Lines processed so far.
+     */
+    private final long linesProcessed;
+
+    /**
+     * Nanoseconds since processing started.
+     */
+    private final long elapsedNanos;
+
+    /**
+     * Nanoseconds spent reading lines.
+     */
+    private final long readNanos;
+
+    /**
+     * Nanoseconds spent in processLine().
+     */
+    private final long processNanos;
+
+    /**
+     * True for the last report of a job.
+     */
+    private final boolean finished;
+
+    /**
+     * Constructor.
+     *
+     * @param filename
+     *            The file being processed.
+     * @param bytesRead
+     *            Bytes read from the file so far.
+     * @param totalBytes
+     *            The size of the file, or -1 if unknown.
+     * @param linesProcessed
+     *            Lines processed so far.
+     * @param elapsedNanos
+     *            Nanoseconds since processing started.
+     * @param readNanos
+     *            Nanoseconds spent reading lines.
+     * @param processNanos
+     *            Nanoseconds spent processing lines.
+     * @param finished
+     *            True if this is the last report for the job.
+     */
+    public ProgressReport(final String filename, final long bytesRead, final long totalBytes,
+            final long linesProcessed, final long elapsedNanos, final long readNanos,
+            final long processNanos, final boolean finished)
+    {
+        this(filename, bytesRead, 0, totalBytes, linesProcessed, elapsedNanos, readNanos,
+                processNanos, finished);
+    }
+
+    /**
+     * Constructor for a job that started part way into the file.
+     *
+     * @param filename
+     *            The file being processed.
+     * @param bytesRead
+     *            The file position reached so far.
+     * @param startOffset
+     *            The file position processing started from.
+     * @param totalBytes
+     *            The size of the file, or -1 if unknown.
+     * @param linesProcessed
+     *            Lines processed so far.
+     * @param elapsedNanos
+     *            Nanoseconds since processing started.
+     * @param readNanos
+     *            Nanoseconds spent reading lines.
+     * @param processNanos
+     *            Nanoseconds spent processing lines.
+     * @param finished
+     *            True if this is the last report for the job.
+     */
+    public ProgressReport(final String filename, final long bytesRead, final long startOffset,
+            final long totalBytes, final long linesProcessed, final long elapsedNanos,
+            final long readNanos, final long processNanos, final boolean finished)
+    {
+        this.filename = filename;
+        this.bytesRead = bytesRead;
+        this.startOffset = startOffset;
+        this.totalBytes = totalBytes;
+        this.linesProcessed = linesProcessed;
+        this.elapsedNanos = elapsedNanos;
+        this.readNanos = readNanos;
+        this.processNanos = processNanos;
+        this.finished = finished;
+    }
+
+    /**
+     * @return The file being processed.
+     */
+    public String getFilename()
+    {
+        return filename;
+    }
+
+    /**
+     * @return Bytes read from the file so far. For compressed files this is
+     *         the number of compressed bytes.
+     */
+    public long getBytesRead()
+    {
+        return bytesRead;
+    }
+
+    /**
+     * @return The file position processing started from, non-zero when the
+     *         job resumed from a checkpoint.
+     */
+    public long getStartOffset()
+    {
+        return startOffset;
+    }
+
+    /**
+     * @return The size of the file, or -1 if unknown.
+     */
+    public long getTotalBytes()
+    {
+        return totalBytes;
+    }
+
+    /**
+     * @return Lines processed so far.
+     */
+    public long getLinesProcessed()
+    {
+        return linesProcessed;
+    }
+
+    /**
+     * @return True if this is the last report for the job.
+     */
+    public boolean isFinished()
+    {
+        return finished;
+    }
+
+    /**
+     * @param unit
+     *            The unit to return the time in.
+     * @return Time since processing started.
+     */
+    public long getElapsedTime(final TimeUnit unit)
+    {
+        return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param unit
+     *            The unit to return the time in.
+     * @return Time spent reading lines.
+     */
+    public long getReadTime(final TimeUnit unit)
+    {
+        return unit.convert(readNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param unit
+     *            The unit to return the time in.
+     * @return Time spent in processLine().
+     */
+    public long getProcessTime(final TimeUnit unit)
+    {
+        return unit.convert(processNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return The average number of lines processed per second.
+     */
+    public double getLinesPerSecond()
+    {
+        return elapsedNanos == 0 ? 0 : linesProcessed * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @return The average number of bytes read per second by this job. Bytes
+     *         before the start offset were read by an earlier run and don't
+     *         count.
+     */
+    public double getBytesPerSecond()
+    {
+        return elapsedNanos == 0 ? 0 : getBytesReadThisRun() * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @return Bytes read since processing started from the start offset.
+     */
+    private long getBytesReadThisRun()
+    {
+        return Math.max(0, bytesRead - startOffset);
+    }
+
+    /**
+     * @return The fraction of the file read so far (0 to 1), or -1 if the file
+     *         size is unknown.
+     */
+    public double getFractionComplete()
+    {
+        if (totalBytes <= 0)
+        {
+            return -1;
+        }
+        return Math.min(1.0, (double) bytesRead / totalBytes);
+    }
+
+    /**
+     * Estimates the time to completion by assuming the rest of the file is
+     * read at the average rate of this job so far.
+     *
+     * @param unit
+     *            The unit to return the time in.
+     * @return The estimated time remaining, or -1 if it can't be estimated.
+     */
+    public long getEstimatedTimeRemaining(final TimeUnit unit)
+    {
+        if (finished)
+        {
+            return 0;
+        }
+        final long bytesThisRun = getBytesReadThisRun();
+        if (totalBytes <= 0 || bytesThisRun <= 0)
+        {
+            return -1;
+        }
+
+        final long remainingBytes = Math.max(0, totalBytes - bytesRead);
+        final long remainingNanos = (long) ((double) elapsedNanos * remainingBytes / bytesThisRun);
+        return unit.convert(remainingNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString()
+    {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(filename).append(": ").append(linesProcessed).append(" lines, ");
+        sb.append(bytesRead);
+        if (totalBytes > 0)
+        {
+            sb.append('/').append(totalBytes).append(" bytes (");
+            sb.append(Math.round(getFractionComplete() * 100)).append("%)");
+        }
+        else
+        {
+            sb.append(" bytes");
+        }
+        sb.append(", ").append(Math.round(getLinesPerSecond())).append(" lines/s");
+        sb.append(", read ").append(getReadTime(TimeUnit.MILLISECONDS)).append(" ms");
+        sb.append(", process ").append(getProcessTime(TimeUnit.MILLISECONDS)).append(" ms");
+        if (finished)
+        {
+            sb.append(", done");
+        }
+        else
+        {
+            final long eta = getEstimatedTimeRemaining(TimeUnit.SECONDS);
+            if (eta >= 0)
+            {
+                sb.append(", ").append(eta).append(" s remaining");
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,660 @@
+package org.ncibi.commons.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes delimited records to a channel through a large character buffer.
+ * Fields are appended to the buffer and the separators are added
+ * automatically, so writing a field costs no more than appending to a
+ * StringBuilder. Only full buffers are encoded and written to the channel.
+ *
+ * In background mode full buffers are handed to a writer thread through a
+ * bounded queue, so encoding and channel writes overlap with producing the
+ * records. A failure on the writer thread is thrown from the next call on the
+ * RecordWriter.
+ *
+ * A RecordWriter isn't thread safe.
+ *
+ * @author gtarcea
+ *
+ */
+public class RecordWriter
+{
+    /**
+     * Default size of the character buffer.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * The channel written to.
+     */
+    private final WritableByteChannel channel;
+
+    /**
+     * Encodes characters for the channel.
+     */
+    private final CharsetEncoder encoder;
+
+    /**
+     * Written between the fields of a record.
+     */
+    private final String fieldDelimiter;
+
+    /**
+     * Written at the end of each record.
+     */
+    private final String recordSeparator;
+
+    /**
+     * Encoded bytes waiting to be written. Only used by the thread doing the
+     * encoding.
+     */
+    private final ByteBuffer bytes;
+
+    /**
+     * Characters waiting to be encoded.
+     */
+    private char[] buffer;
+
+    /**
+     * Number of characters in the buffer.
+     */
+    private int length = 0;
+
+    /**
+     * True when the next field is the first of its record.
+     */
+    private boolean startOfRecord = true;
+
+    /**
+     * Full buffers waiting for the writer thread, or null if there is no
+     * writer thread. A chunk with a null buffer marks the end of the output.
+     */
+    private final BlockingQueue<Chunk> fullBuffers;
+
+    /**
+     * Buffers the writer thread is done with.
+     */
+    private final BlockingQueue<char[]> emptyBuffers;
+
+    /**
+     * The writer thread, or null.
+     */
+    private final Thread writerThread;
+
+    /**
+     * Number of buffers handed to the writer thread and not yet written.
+     * Guarded by this.
+     */
+    private int pendingBuffers = 0;
+
+    /**
+     * The first failure of the writer thread.
+     */
+    private volatile Throwable writerFailure;
+
+    /**
+     * Bytes written to the channel.
+     */
+    private volatile long bytesWritten = 0;
+
+    /**
+     * When the writer was created.
+     */
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * When the writer was finished, or 0.
+     */
+    private long endNanos = 0;
+
+    /**
+     * Set by finish(); the encoder has been flushed.
+     */
+    private boolean finished = false;
+
+    /**
+     * Set by close().
+     */
+    private boolean closed = false;
+
+    /**
+     * Constructor.
+     *
+     * @param channel
+     *            The channel to write to. It is closed by close().
+     * @param encoder
+     *            Encodes characters for the channel.
+     * @param fieldDelimiter
+     *            Written between the fields of a record.
+     * @param recordSeparator
+     *            Written at the end of each record.
+     * @param bufferSize
+     *            Size of the character buffer, at least 2 so that a surrogate
+     *            pair fits.
+     * @param queueCapacity
+     *            Number of full buffers that can wait for a writer thread, or 0
+     *            to encode and write on the calling thread.
+     */
+    public RecordWriter(final WritableByteChannel channel, final CharsetEncoder encoder,
+            final String fieldDelimiter, final String recordSeparator, final int bufferSize,
+            final int queueCapacity)
+    {
+        if (bufferSize < 2)
+        {
+            throw new IllegalArgumentException("bufferSize must be at least 2: " + bufferSize);
+        }
+        this.channel = channel;
+        this.encoder = encoder;
+        this.fieldDelimiter = fieldDelimiter;
+        this.recordSeparator = recordSeparator;
+        this.buffer = new char[bufferSize];
+        this.bytes = ByteBuffer.allocateDirect((int) Math.ceil(bufferSize
+                * (double) encoder.maxBytesPerChar()));
+
+        if (queueCapacity > 0)
+        {
+            fullBuffers = new ArrayBlockingQueue<Chunk>(queueCapacity + 1);
+            emptyBuffers = new ArrayBlockingQueue<char[]>(queueCapacity + 2);
+            writerThread = new Thread(new Runnable()
+            {
+                public void run()
+                {
+                    writeQueuedBuffers();
+                }
+            }, "RecordWriter");
+            writerThread.setDaemon(true);
+            writerThread.start();
+        }
+        else
+        {
+            fullBuffers = null;
+            emptyBuffers = null;
+            writerThread = null;
+        }
+    }
+
+    /**
+     * Writes a field.
+     *
+     * @param value
+     *            The field value. Null is written as an empty field.
+     * @return this
+     * @throws IOException
+     *             When the output can't be written.
+     */
+    public RecordWriter field(final CharSequence value) throws IOException
+    {
+        startField();
+        if (value != null)
+        {
+            append(value);
+        }
+        return this;
+    }
+
+    /**
+     * Writes a numeric field.
+     *
+     * @param value
+     *            The field value.
+     * @return this
+     * @throws IOException
+     *             When the output can't be written.
+     */
+    public RecordWriter field(final long value) throws IOException
+    {
+        return field(Long.toString(value));
+    }
+
+    /**
+     * Writes a numeric field.
+     *
+     * @param value
+     *            The field value.
+     * @return this
+     * @throws IOException
+     *             When the output can't be written.
+     */
+    public RecordWriter field(final double value) throws IOException
+    {
+        return field(Double.toString(value));
+    }
+
+    /**
+     * Ends the current record.
+     *
+     * @return this
+     * @throws IOException
+     *             When the output can't be written.
+     */
+    public RecordWriter endRecord() throws IOException
+    {
+        append(recordSeparator);
+        startOfRecord = true;
+        return this;
+    }
+
+    /**
+     * Writes a whole record.
+     *
+     * @param fields
+     *            The fields of the record.
+     * @return this
+     * @throws IOException
+     *             When the output can't be written.
+     */
+    public RecordWriter record(final Object... fields) throws IOException
+    {
+        for (final Object value : fields)
+        {
+            field(value == null ? null : value.toString());
+        }
+        return endRecord();
+    }
+
+    /**
+     * Writes text as is, without any separators.
+     *
+     * @param text
+     *            The text to write.
+     * @return this
+     * @throws IOException
+     *             When the output can't be written.
+     */
+    public RecordWriter write(final CharSequence text) throws IOException
+    {
+        append(text);
+        return this;
+    }
+
+    /**
+     * @return The number of bytes written to the channel so far. Buffered
+     *         output isn't counted until it has been written.
+     */
+    public long getBytesWritten()
+    {
+        return bytesWritten;
+    }
+
+    /**
+     * @return The rate bytes were written at, from creation to finish() or
+     *         close() (or until now if the writer is still open).
+     */
+    public double getBytesPerSecond()
+    {
+        final long end = endNanos == 0 ? System.nanoTime() : endNanos;
+        final double seconds = (end - startNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+        return seconds <= 0 ? 0 : bytesWritten / seconds;
+    }
+
+    /**
+     * Writes everything buffered so far to the channel. In background mode
+     * this waits for the writer thread to catch up.
+     *
+     * @throws IOException
+     *             When the output can't be written.
+     */
+    public void flush() throws IOException
+    {
+        passOn();
+        if (writerThread != null)
+        {
+            waitForWriter();
+        }
+        checkWriter();
+    }
+
+    /**
+     * Writes everything buffered, including any final bytes of the encoder,
+     * without closing the channel, so the channel can be forced to disk
+     * before it is closed. Nothing may be written afterwards. Calling it again
+     * has no effect.
+     *
+     * @throws IOException
+     *             When the output can't be written.
+     */
+    public void finish() throws IOException
+    {
+        if (finished)
+        {
+            return;
+        }
+        finished = true;
+        try
+        {
+            if (writerThread == null)
+            {
+                encodeAndWrite(buffer, length, true);
+                length = 0;
+            }
+            else
+            {
+                checkWriter();
+                handOff(length);
+                put(new Chunk(null, 0));
+                joinWriter();
+            }
+            checkWriter();
+        }
+        finally
+        {
+            endNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Writes everything buffered and closes the channel. Calling it again has
+     * no effect.
+     *
+     * @throws IOException
+     *             When the output can't be written or the channel can't be
+     *             closed.
+     */
+    public void close() throws IOException
+    {
+        if (closed)
+        {
+            return;
+        }
+        closed = true;
+        try
+        {
+            finish();
+        }
+        finally
+        {
+            channel.close();
+        }
+    }
+
+    /**
+     * Adds the field delimiter before every field but the first of a record.
+     */
+    private void startField() throws IOException
+    {
+        if (!startOfRecord)
+        {
+            append(fieldDelimiter);
+        }
+        startOfRecord = false;
+    }
+
+    /**
+     * Appends characters to the buffer, passing on full buffers.
+     */
+    private void append(final CharSequence text) throws IOException
+    {
+        final int textLength = text.length();
+        int copied = 0;
+        while (copied < textLength)
+        {
+            if (length == buffer.length)
+            {
+                passOn();
+            }
+            final int n = Math.min(textLength - copied, buffer.length - length);
+            if (text instanceof String)
+            {
+                ((String) text).getChars(copied, copied + n, buffer, length);
+            }
+            else
+            {
+                for (int i = 0; i < n; i++)
+                {
+                    buffer[length + i] = text.charAt(copied + i);
+                }
+            }
+            length += n;
+            copied += n;
+        }
+    }
+
+    /**
+     * Encodes and writes, or hands off to the writer thread, the buffered
+     * characters. A trailing high surrogate is kept back so that a surrogate
+     * pair is never split between two buffers.
+     */
+    private void passOn() throws IOException
+    {
+        int count = length;
+        if (count > 0 && Character.isHighSurrogate(buffer[count - 1]))
+        {
+            count--;
+        }
+
+        if (writerThread == null)
+        {
+            encodeAndWrite(buffer, count, false);
+            System.arraycopy(buffer, count, buffer, 0, length - count);
+            length -= count;
+        }
+        else
+        {
+            checkWriter();
+            handOff(count);
+        }
+    }
+
+    /**
+     * Gives the first count characters of the buffer to the writer thread and
+     * takes an empty buffer, carrying over any characters left.
+     */
+    private void handOff(final int count) throws IOException
+    {
+        if (count == 0)
+        {
+            return;
+        }
+
+        synchronized (this)
+        {
+            pendingBuffers++;
+        }
+        put(new Chunk(buffer, count));
+        final char[] full = buffer;
+        final char[] empty = emptyBuffers.poll();
+        buffer = empty != null ? empty : new char[full.length];
+        System.arraycopy(full, count, buffer, 0, length - count);
+        length -= count;
+    }
+
+    /**
+     * Waits until the writer thread has written every buffer handed to it.
+     */
+    private void waitForWriter() throws IOException
+    {
+        synchronized (this)
+        {
+            while (pendingBuffers > 0 && writerFailure == null)
+            {
+                try
+                {
+                    wait();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while flushing");
+                }
+            }
+        }
+    }
+
+    /**
+     * Body of the writer thread.
+     */
+    private void writeQueuedBuffers()
+    {
+        try
+        {
+            while (true)
+            {
+                final Chunk chunk = fullBuffers.take();
+                if (chunk.chars == null)
+                {
+                    encodeAndWrite(new char[0], 0, true);
+                    return;
+                }
+
+                encodeAndWrite(chunk.chars, chunk.length, false);
+                emptyBuffers.offer(chunk.chars);
+                synchronized (this)
+                {
+                    pendingBuffers--;
+                    notifyAll();
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            writerFailure = e;
+        }
+        catch (InterruptedException e)
+        {
+            writerFailure = new IOException("RecordWriter thread interrupted");
+        }
+        catch (RuntimeException e)
+        {
+            // From the channel or encoder; recorded so that flush() and
+            // put() fail rather than wait for a thread that has died.
+            writerFailure = e;
+        }
+        catch (Error e)
+        {
+            writerFailure = e;
+            throw e;
+        }
+        finally
+        {
+            synchronized (this)
+            {
+                notifyAll();
+            }
+            // Unblock a producer waiting on a full queue.
+            fullBuffers.clear();
+        }
+    }
+
+    /**
+     * Encodes characters and writes the bytes to the channel.
+     *
+     * @param endOfInput
+     *            If true the encoder is flushed.
+     */
+    private void encodeAndWrite(final char[] chars, final int charCount, final boolean endOfInput)
+            throws IOException
+    {
+        final CharBuffer in = CharBuffer.wrap(chars, 0, charCount);
+        while (true)
+        {
+            final CoderResult result = encoder.encode(in, bytes, endOfInput);
+            if (result.isError())
+            {
+                result.throwException();
+            }
+            writeBytes();
+            if (result.isUnderflow())
+            {
+                break;
+            }
+        }
+
+        if (endOfInput)
+        {
+            while (encoder.flush(bytes).isOverflow())
+            {
+                writeBytes();
+            }
+            writeBytes();
+        }
+    }
+
+    /**
+     * Writes the encoded bytes to the channel.
+     */
+    private void writeBytes() throws IOException
+    {
+        bytes.flip();
+        while (bytes.hasRemaining())
+        {
+            bytesWritten += channel.write(bytes);
+        }
+        bytes.clear();
+    }
+
+    /**
+     * Throws the writer thread's failure, if it has failed.
+     */
+    private void checkWriter() throws IOException
+    {
+        final Throwable failure = writerFailure;
+        if (failure != null)
+        {
+            final IOException e = new IOException("Background write failed: "
+                    + failure.getMessage());
+            e.initCause(failure);
+            throw e;
+        }
+    }
+
+    /**
+     * Waits for the writer thread to finish.
+     */
+    private void joinWriter() throws IOException
+    {
+        try
+        {
+            writerThread.join();
+        }
+        catch (InterruptedException e)
+        {
+            writerThread.interrupt();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while closing");
+        }
+    }
+
+    /**
+     * Puts an item on a queue, failing if the writer thread has failed rather
+     * than blocking forever.
+     */
+    private void put(final Chunk chunk) throws IOException
+    {
+        try
+        {
+            while (!fullBuffers.offer(chunk, 100, TimeUnit.MILLISECONDS))
+            {
+                checkWriter();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing");
+        }
+    }
+
+    /**
+     * A buffer and the number of characters in it.
+     */
+    private static final class Chunk
+    {
+        final char[] chars;
+        final int length;
+
+        Chunk(final char[] chars, final int length)
+        {
+            this.chars = chars;
+            this.length = length;
+        }
+    }
+}
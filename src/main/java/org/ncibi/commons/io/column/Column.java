@@ -0,0 +1,140 @@
+package org.ncibi.commons.io.column;
+
+import java.util.BitSet;
+
+/**
+ * A column of values loaded by a ColumnarParser. Subclasses hold the values in
+ * a primitive array that grows as rows are added; fields that couldn't be
+ * parsed under the ErrorPolicy.MISSING policy are marked as missing.
+ *
+ * @author gtarcea
+ *
+ */
+public abstract class Column
+{
+    /**
+     * The column's name.
+     */
+    private final String name;
+
+    /**
+     * Rows whose value is missing, or null if none are.
+     */
+    private BitSet missing = null;
+
+    /**
+     * Number of fields that couldn't be parsed.
+     */
+    private int errorCount = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param name
+     *            The column's name.
+     */
+    Column(final String name)
+    {
+        this.name = name;
+    }
+
+    /**
+     * @return The column's name.
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * @return The column's type.
+     */
+    public abstract ColumnType getType();
+
+    /**
+     * @return The number of rows in the column.
+     */
+    public abstract int size();
+
+    /**
+     * Checks whether a row's value is missing.
+     *
+     * @param row
+     *            The row.
+     * @return True if the field was missing or couldn't be parsed.
+     */
+    public boolean isMissing(final int row)
+    {
+        return missing != null && missing.get(row);
+    }
+
+    /**
+     * @return The number of fields that couldn't be parsed, whatever the
+     *         error policy did with them.
+     */
+    public int getErrorCount()
+    {
+        return errorCount;
+    }
+
+    /**
+     * Parses a field and appends its value.
+     *
+     * @return False, without appending, if the field can't be parsed.
+     */
+    abstract boolean parse(char[] chars, int start, int end, NumberParser numbers);
+
+    /**
+     * Appends the column's missing value.
+     */
+    abstract void appendDefault();
+
+    /**
+     * Drops rows from the end of the column.
+     *
+     * @param size
+     *            The new number of rows.
+     */
+    abstract void truncate(int size);
+
+    /**
+     * Appends a missing value.
+     */
+    final void appendMissing()
+    {
+        if (missing == null)
+        {
+            missing = new BitSet();
+        }
+        missing.set(size());
+        appendDefault();
+    }
+
+    /**
+     * Counts a field that couldn't be parsed.
+     */
+    final void countError()
+    {
+        errorCount++;
+    }
+
+    /**
+     * Clears the missing marks of dropped rows.
+     */
+    final void truncateMissing(final int size)
+    {
+        if (missing != null)
+        {
+            missing.clear(size, Math.max(size, missing.length()));
+        }
+    }
+
+    /**
+     * Returns the capacity to grow an array to so it holds at least one more
+     * element.
+     */
+    static int grow(final int capacity)
+    {
+        return Math.max(16, capacity + (capacity >> 1));
+    }
+}
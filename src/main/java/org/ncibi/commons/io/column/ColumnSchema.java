@@ -0,0 +1,168 @@
+package org.ncibi.commons.io.column;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.ncibi.commons.lang.StringPool;
+
+/**
+ * Declares the columns of a delimited file, in file order: the name, type and
+ * error policy of each. Fields past the last declared column are ignored.
+ *
+ * <pre>
+ * ColumnSchema schema = new ColumnSchema().add(&quot;gene&quot;, ColumnType.DICTIONARY).skip()
+ *         .add(&quot;score&quot;, ColumnType.DOUBLE, ErrorPolicy.MISSING);
+ * </pre>
+ *
+ * @author gtarcea
+ *
+ */
+public class ColumnSchema
+{
+    /**
+     * The declaration of one column.
+     */
+    public static final class Definition
+    {
+        private final String name;
+        private final ColumnType type;
+        private final ErrorPolicy errorPolicy;
+
+        Definition(final String name, final ColumnType type, final ErrorPolicy errorPolicy)
+        {
+            this.name = name;
+            this.type = type;
+            this.errorPolicy = errorPolicy;
+        }
+
+        /**
+         * @return The column's name, or null for a skipped column.
+         */
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * @return The column's type.
+         */
+        public ColumnType getType()
+        {
+            return type;
+        }
+
+        /**
+         * @return What is done with fields that can't be parsed.
+         */
+        public ErrorPolicy getErrorPolicy()
+        {
+            return errorPolicy;
+        }
+    }
+
+    /**
+     * The columns, in file order.
+     */
+    private final List<Definition> definitions = new ArrayList<Definition>();
+
+    /**
+     * Adds a column that fails the parse when a field can't be parsed.
+     *
+     * @param name
+     *            The column's name.
+     * @param type
+     *            The column's type.
+     * @return this
+     */
+    public ColumnSchema add(final String name, final ColumnType type)
+    {
+        return add(name, type, ErrorPolicy.FAIL);
+    }
+
+    /**
+     * Adds a column.
+     *
+     * @param name
+     *            The column's name.
+     * @param type
+     *            The column's type.
+     * @param errorPolicy
+     *            What to do with fields that can't be parsed.
+     * @return this
+     */
+    public ColumnSchema add(final String name, final ColumnType type,
+            final ErrorPolicy errorPolicy)
+    {
+        if (type == ColumnType.SKIP)
+        {
+            return skip();
+        }
+        for (final Definition definition : definitions)
+        {
+            if (name.equals(definition.name))
+            {
+                throw new IllegalArgumentException("Duplicate column name: " + name);
+            }
+        }
+        definitions.add(new Definition(name, type, errorPolicy));
+        return this;
+    }
+
+    /**
+     * Adds a column that isn't loaded.
+     *
+     * @return this
+     */
+    public ColumnSchema skip()
+    {
+        definitions.add(new Definition(null, ColumnType.SKIP, ErrorPolicy.MISSING));
+        return this;
+    }
+
+    /**
+     * @return The columns, in file order.
+     */
+    public List<Definition> getDefinitions()
+    {
+        return Collections.unmodifiableList(definitions);
+    }
+
+    /**
+     * Creates empty columns for a parse.
+     *
+     * @param pool
+     *            Deduplicates the values of STRING columns, or null.
+     * @return One column per definition, null for skipped columns.
+     */
+    Column[] newColumns(final StringPool pool)
+    {
+        final Column[] columns = new Column[definitions.size()];
+        for (int i = 0; i < columns.length; i++)
+        {
+            final Definition definition = definitions.get(i);
+            switch (definition.type)
+            {
+            case INT:
+                columns[i] = new IntColumn(definition.name);
+                break;
+            case LONG:
+                columns[i] = new LongColumn(definition.name);
+                break;
+            case DOUBLE:
+                columns[i] = new DoubleColumn(definition.name);
+                break;
+            case DICTIONARY:
+                columns[i] = new DictionaryColumn(definition.name);
+                break;
+            case STRING:
+                columns[i] = new StringColumn(definition.name, pool);
+                break;
+            default:
+                columns[i] = null;
+                break;
+            }
+        }
+        return columns;
+    }
+}
@@ -0,0 +1,152 @@
+package org.ncibi.commons.io.column;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The columns loaded by a ColumnarParser. All columns have the same number of
+ * rows.
+ *
+ * @author gtarcea
+ *
+ */
+public class ColumnTable
+{
+    /**
+     * The columns by name, in file order.
+     */
+    private final Map<String, Column> columns = new LinkedHashMap<String, Column>();
+
+    /**
+     * The number of rows.
+     */
+    private final int rowCount;
+
+    /**
+     * The number of lines dropped by ErrorPolicy.SKIP_ROW.
+     */
+    private final int skippedRowCount;
+
+    /**
+     * Constructor.
+     *
+     * @param columns
+     *            The parsed columns, null for skipped columns.
+     * @param rowCount
+     *            The number of rows.
+     * @param skippedRowCount
+     *            The number of lines dropped.
+     */
+    ColumnTable(final Column[] columns, final int rowCount, final int skippedRowCount)
+    {
+        for (final Column column : columns)
+        {
+            if (column != null)
+            {
+                this.columns.put(column.getName(), column);
+            }
+        }
+        this.rowCount = rowCount;
+        this.skippedRowCount = skippedRowCount;
+    }
+
+    /**
+     * @return The number of rows.
+     */
+    public int getRowCount()
+    {
+        return rowCount;
+    }
+
+    /**
+     * @return The number of lines dropped because a field couldn't be parsed.
+     */
+    public int getSkippedRowCount()
+    {
+        return skippedRowCount;
+    }
+
+    /**
+     * @return The loaded columns, in file order.
+     */
+    public List<Column> getColumns()
+    {
+        return Collections.unmodifiableList(new ArrayList<Column>(columns.values()));
+    }
+
+    /**
+     * Returns a column by name.
+     *
+     * @param name
+     *            The column's name.
+     * @return The column.
+     * @throws IllegalArgumentException
+     *             When there is no such column.
+     */
+    public Column getColumn(final String name)
+    {
+        final Column column = columns.get(name);
+        if (column == null)
+        {
+            throw new IllegalArgumentException("No column named " + name);
+        }
+        return column;
+    }
+
+    /**
+     * @return The INT column with the given name.
+     */
+    public IntColumn getIntColumn(final String name)
+    {
+        return (IntColumn) getColumn(name, ColumnType.INT);
+    }
+
+    /**
+     * @return The LONG column with the given name.
+     */
+    public LongColumn getLongColumn(final String name)
+    {
+        return (LongColumn) getColumn(name, ColumnType.LONG);
+    }
+
+    /**
+     * @return The DOUBLE column with the given name.
+     */
+    public DoubleColumn getDoubleColumn(final String name)
+    {
+        return (DoubleColumn) getColumn(name, ColumnType.DOUBLE);
+    }
+
+    /**
+     * @return The DICTIONARY column with the given name.
+     */
+    public DictionaryColumn getDictionaryColumn(final String name)
+    {
+        return (DictionaryColumn) getColumn(name, ColumnType.DICTIONARY);
+    }
+
+    /**
+     * @return The STRING column with the given name.
+     */
+    public StringColumn getStringColumn(final String name)
+    {
+        return (StringColumn) getColumn(name, ColumnType.STRING);
+    }
+
+    /**
+     * Returns a column by name, checking its type.
+     */
+    private Column getColumn(final String name, final ColumnType type)
+    {
+        final Column column = getColumn(name);
+        if (column.getType() != type)
+        {
+            throw new IllegalArgumentException("Column " + name + " is " + column.getType()
+                    + ", not " + type);
+        }
+        return column;
+    }
+}
@@ -0,0 +1,41 @@
+package org.ncibi.commons.io.column;
+
+/**
+ * The types a column of delimited text can be parsed as.
+ *
+ * @author gtarcea
+ *
+ */
+public enum ColumnType
+{
+    /**
+     * 32 bit integers, stored in an IntColumn.
+     */
+    INT,
+
+    /**
+     * 64 bit integers, stored in a LongColumn.
+     */
+    LONG,
+
+    /**
+     * Doubles, stored in a DoubleColumn.
+     */
+    DOUBLE,
+
+    /**
+     * Strings with few distinct values, stored once each in a
+     * DictionaryColumn with an int code per row.
+     */
+    DICTIONARY,
+
+    /**
+     * Strings, stored in a StringColumn.
+     */
+    STRING,
+
+    /**
+     * A column that isn't loaded.
+     */
+    SKIP
+}
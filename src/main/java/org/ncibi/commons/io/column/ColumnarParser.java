@@ -0,0 +1,298 @@
+package org.ncibi.commons.io.column;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import org.ncibi.commons.io.FileInputProcessor;
+import org.ncibi.commons.lang.StringPool;
+
+/**
+ * Loads delimited text into typed columns. The columns are declared up front
+ * in a ColumnSchema, and each field is parsed straight from the character
+ * buffer into its column's primitive array: no String is created for numeric
+ * fields, or for dictionary fields whose value has been seen before. Compared
+ * with splitting each line into a list of strings and parsing those, this
+ * makes loading numeric data several times faster and the result a fraction
+ * of the size.
+ *
+ * Lines end with "\n" or "\r\n"; fields are separated by a single delimiter
+ * character and are not quoted. Empty lines are ignored. A parser can be
+ * reused but not shared between threads.
+ *
+ * @author gtarcea
+ *
+ */
+public class ColumnarParser
+{
+    /**
+     * Initial size of the character buffer. It grows to hold longer lines.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The columns to load.
+     */
+    private final ColumnSchema schema;
+
+    /**
+     * Separates fields.
+     */
+    private final char delimiter;
+
+    /**
+     * Should headers be skipped?
+     */
+    private boolean skipHeader = false;
+
+    /**
+     * The number of header lines.
+     */
+    private int headerLineCount = 1;
+
+    /**
+     * The charset of files given to parse(String).
+     */
+    private Charset charset = Charset.defaultCharset();
+
+    /**
+     * Deduplicates the values of STRING columns, or null.
+     */
+    private StringPool pool = null;
+
+    /**
+     * Constructor.
+     *
+     * @param schema
+     *            The columns to load.
+     * @param delimiter
+     *            Separates fields.
+     */
+    public ColumnarParser(final ColumnSchema schema, final char delimiter)
+    {
+        this.schema = schema;
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * Sets whether header lines are skipped. The default is false.
+     *
+     * @param skipHeader
+     *            True if header lines should be skipped.
+     */
+    public void setSkipHeader(final boolean skipHeader)
+    {
+        this.skipHeader = skipHeader;
+    }
+
+    /**
+     * Sets the number of header lines to skip. The default is 1.
+     *
+     * @param count
+     *            The number of header lines.
+     */
+    public void setHeaderLineCount(final int count)
+    {
+        this.headerLineCount = count;
+    }
+
+    /**
+     * Sets the charset of files given to parse(String). The default is the
+     * platform charset.
+     *
+     * @param charset
+     *            The charset.
+     */
+    public void setCharset(final Charset charset)
+    {
+        this.charset = charset;
+    }
+
+    /**
+     * Sets a pool to deduplicate the values of STRING columns through. Values
+     * the pool has seen before are then loaded without creating a String.
+     *
+     * @param pool
+     *            The pool, or null to create a new String for every value.
+     */
+    public void setStringPool(final StringPool pool)
+    {
+        this.pool = pool;
+    }
+
+    /**
+     * Loads a file, which may be compressed. Errors are reported the same
+     * way as FileInputProcessor reports them.
+     *
+     * @param filename
+     *            The file to load.
+     * @return The loaded columns.
+     */
+    public ColumnTable parse(final String filename)
+    {
+        final ColumnTable[] table = new ColumnTable[1];
+        new FileInputProcessor()
+        {
+            @Override
+            public void doProcess(final InputStream input) throws IOException
+            {
+                table[0] = parse(new InputStreamReader(input, charset));
+            }
+        }.process(filename);
+        return table[0];
+    }
+
+    /**
+     * Loads the text read from a reader. The reader isn't closed.
+     *
+     * @param reader
+     *            The text to load.
+     * @return The loaded columns.
+     * @throws IOException
+     *             When the reader fails, or a field can't be parsed in a
+     *             column with ErrorPolicy.FAIL.
+     */
+    public ColumnTable parse(final Reader reader) throws IOException
+    {
+        final List<ColumnSchema.Definition> definitions = schema.getDefinitions();
+        final Column[] columns = schema.newColumns(pool);
+        final ErrorPolicy[] policies = new ErrorPolicy[columns.length];
+        for (int i = 0; i < policies.length; i++)
+        {
+            policies[i] = definitions.get(i).getErrorPolicy();
+        }
+        final NumberParser numbers = new NumberParser();
+
+        char[] buffer = new char[BUFFER_SIZE];
+        int start = 0;
+        int end = 0;
+        int scanned = 0;
+        boolean eof = false;
+        long lineNumber = 0;
+        int headerLines = skipHeader ? headerLineCount : 0;
+        int rowCount = 0;
+        int skippedRowCount = 0;
+
+        while (true)
+        {
+            int lineEnd = scanned;
+            while (lineEnd < end && buffer[lineEnd] != '\n')
+            {
+                lineEnd++;
+            }
+            if (lineEnd == end && !eof)
+            {
+                // No complete line in the buffer: make room and read more.
+                if (start > 0)
+                {
+                    System.arraycopy(buffer, start, buffer, 0, end - start);
+                    end -= start;
+                    start = 0;
+                }
+                else if (end == buffer.length)
+                {
+                    final char[] larger = new char[buffer.length * 2];
+                    System.arraycopy(buffer, 0, larger, 0, end);
+                    buffer = larger;
+                }
+                scanned = end;
+                final int n = reader.read(buffer, end, buffer.length - end);
+                if (n == -1)
+                {
+                    eof = true;
+                }
+                else
+                {
+                    end += n;
+                }
+                continue;
+            }
+            if (lineEnd == end && start == end)
+            {
+                break;
+            }
+
+            lineNumber++;
+            final int contentEnd = lineEnd > start && buffer[lineEnd - 1] == '\r' ? lineEnd - 1
+                    : lineEnd;
+            if (headerLines > 0)
+            {
+                headerLines--;
+            }
+            else if (contentEnd > start)
+            {
+                if (parseRow(buffer, start, contentEnd, columns, policies, numbers, rowCount,
+                        lineNumber))
+                {
+                    rowCount++;
+                }
+                else
+                {
+                    skippedRowCount++;
+                }
+            }
+            start = lineEnd < end ? lineEnd + 1 : end;
+            scanned = start;
+        }
+
+        return new ColumnTable(columns, rowCount, skippedRowCount);
+    }
+
+    /**
+     * Parses the fields of a line into the columns.
+     *
+     * @return False if the row was dropped by ErrorPolicy.SKIP_ROW.
+     */
+    private boolean parseRow(final char[] chars, final int start, final int end,
+            final Column[] columns, final ErrorPolicy[] policies, final NumberParser numbers,
+            final int row, final long lineNumber) throws IOException
+    {
+        int fieldStart = start;
+        for (int i = 0; i < columns.length; i++)
+        {
+            // -1 when the line has run out of fields.
+            int fieldEnd = -1;
+            if (fieldStart <= end)
+            {
+                fieldEnd = fieldStart;
+                while (fieldEnd < end && chars[fieldEnd] != delimiter)
+                {
+                    fieldEnd++;
+                }
+            }
+
+            final Column column = columns[i];
+            if (column != null
+                    && (fieldEnd < 0 || !column.parse(chars, fieldStart, fieldEnd, numbers)))
+            {
+                column.countError();
+                switch (policies[i])
+                {
+                case MISSING:
+                    column.appendMissing();
+                    break;
+                case SKIP_ROW:
+                    for (final Column c : columns)
+                    {
+                        if (c != null)
+                        {
+                            c.truncate(row);
+                        }
+                    }
+                    return false;
+                default:
+                    throw new IOException("Line " + lineNumber + ", column "
+                            + column.getName() + ": "
+                            + (fieldEnd < 0 ? "missing field" : "can't parse '"
+                                    + new String(chars, fieldStart, fieldEnd - fieldStart)
+                                    + "' as " + column.getType()));
+                }
+            }
+            fieldStart = fieldEnd < 0 ? end + 1 : fieldEnd + 1;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,221 @@
+package org.ncibi.commons.io.column;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.ncibi.commons.collections.primitive.IntArrayList;
+import org.ncibi.commons.lang.HashUtils;
+
+/**
+ * A column of strings with few distinct values, such as gene symbols,
+ * species or categories. Each distinct value is stored once, in a dictionary,
+ * and each row holds the int code of its value. Fields are looked up in the
+ * dictionary straight from the parser's character buffer, so a value that has
+ * been seen before costs no allocation.
+ *
+ * @author gtarcea
+ *
+ */
+public class DictionaryColumn extends Column
+{
+    /**
+     * The code of a missing value.
+     */
+    public static final int MISSING_CODE = -1;
+
+    /**
+     * The codes.
+     */
+    private final IntArrayList codes = new IntArrayList();
+
+    /**
+     * The distinct values, indexed by code.
+     */
+    private final List<String> dictionary = new ArrayList<String>();
+
+    /**
+     * Hash of each dictionary entry, indexed by code.
+     */
+    private int[] hashes = new int[16];
+
+    /**
+     * Open addressing hash table of code + 1; 0 marks an empty slot.
+     */
+    private int[] table = new int[64];
+
+    /**
+     * Constructor.
+     *
+     * @param name
+     *            The column's name.
+     */
+    DictionaryColumn(final String name)
+    {
+        super(name);
+    }
+
+    @Override
+    public ColumnType getType()
+    {
+        return ColumnType.DICTIONARY;
+    }
+
+    @Override
+    public int size()
+    {
+        return codes.size();
+    }
+
+    /**
+     * Returns a row's code.
+     *
+     * @param row
+     *            The row.
+     * @return The code of the row's value, or MISSING_CODE if it is missing.
+     */
+    public int getCode(final int row)
+    {
+        if (row >= codes.size())
+        {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + codes.size());
+        }
+        return codes.get(row);
+    }
+
+    /**
+     * Returns a row's value.
+     *
+     * @param row
+     *            The row.
+     * @return The value, or null if it is missing.
+     */
+    public String get(final int row)
+    {
+        final int code = getCode(row);
+        return code == MISSING_CODE ? null : dictionary.get(code);
+    }
+
+    /**
+     * @return The distinct values, indexed by code.
+     */
+    public List<String> getDictionary()
+    {
+        return Collections.unmodifiableList(dictionary);
+    }
+
+    /**
+     * @return A copy of the codes.
+     */
+    public int[] toCodeArray()
+    {
+        return codes.toArray();
+    }
+
+    @Override
+    boolean parse(final char[] chars, final int start, final int end, final NumberParser numbers)
+    {
+        codes.add(lookup(chars, start, end));
+        return true;
+    }
+
+    @Override
+    void appendDefault()
+    {
+        codes.add(MISSING_CODE);
+    }
+
+    @Override
+    void truncate(final int newSize)
+    {
+        // Values only used by dropped rows stay in the dictionary.
+        truncateMissing(newSize);
+        codes.truncate(newSize);
+    }
+
+    /**
+     * Returns the code of a value, adding it to the dictionary if it is new.
+     */
+    private int lookup(final char[] chars, final int start, final int end)
+    {
+        int hash = 0;
+        for (int i = start; i < end; i++)
+        {
+            hash = 31 * hash + chars[i];
+        }
+
+        final int mask = table.length - 1;
+        for (int slot = HashUtils.spread(hash) & mask;; slot = (slot + 1) & mask)
+        {
+            final int code = table[slot] - 1;
+            if (code < 0)
+            {
+                return add(new String(chars, start, end - start), hash, slot);
+            }
+            if (hashes[code] == hash && matches(dictionary.get(code), chars, start, end))
+            {
+                return code;
+            }
+        }
+    }
+
+    /**
+     * Adds a value to the dictionary at an empty slot of the table.
+     */
+    private int add(final String value, final int hash, final int slot)
+    {
+        final int code = dictionary.size();
+        dictionary.add(value);
+        if (code == hashes.length)
+        {
+            hashes = Arrays.copyOf(hashes, grow(code));
+        }
+        hashes[code] = hash;
+        table[slot] = code + 1;
+
+        if (dictionary.size() * 2 > table.length)
+        {
+            rehash();
+        }
+        return code;
+    }
+
+    /**
+     * Doubles the table.
+     */
+    private void rehash()
+    {
+        table = new int[table.length * 2];
+        final int mask = table.length - 1;
+        for (int code = 0; code < dictionary.size(); code++)
+        {
+            int slot = HashUtils.spread(hashes[code]) & mask;
+            while (table[slot] != 0)
+            {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = code + 1;
+        }
+    }
+
+    /**
+     * Compares a string with a range of characters.
+     */
+    private static boolean matches(final String value, final char[] chars, final int start,
+            final int end)
+    {
+        if (value.length() != end - start)
+        {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++)
+        {
+            if (value.charAt(i) != chars[start + i])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,105 @@
+package org.ncibi.commons.io.column;
+
+import java.util.Arrays;
+
+/**
+ * A column of doubles.
+ *
+ * @author gtarcea
+ *
+ */
+public class DoubleColumn extends Column
+{
+    /**
+     * The values; only the first size are used.
+     */
+    private double[] values = new double[16];
+
+    /**
+     * The number of rows.
+     */
+    private int size = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param name
+     *            The column's name.
+     */
+    DoubleColumn(final String name)
+    {
+        super(name);
+    }
+
+    @Override
+    public ColumnType getType()
+    {
+        return ColumnType.DOUBLE;
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns a row's value.
+     *
+     * @param row
+     *            The row.
+     * @return The value, or Double.NaN if it is missing.
+     */
+    public double get(final int row)
+    {
+        if (row >= size)
+        {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        }
+        return values[row];
+    }
+
+    /**
+     * @return A copy of the values.
+     */
+    public double[] toArray()
+    {
+        return Arrays.copyOf(values, size);
+    }
+
+    @Override
+    boolean parse(final char[] chars, final int start, final int end, final NumberParser numbers)
+    {
+        if (!numbers.parseDouble(chars, start, end))
+        {
+            return false;
+        }
+        append(numbers.doubleValue);
+        return true;
+    }
+
+    @Override
+    void appendDefault()
+    {
+        append(Double.NaN);
+    }
+
+    @Override
+    void truncate(final int newSize)
+    {
+        truncateMissing(newSize);
+        size = newSize;
+    }
+
+    /**
+     * Appends a value, growing the array if it is full.
+     */
+    private void append(final double value)
+    {
+        if (size == values.length)
+        {
+            values = Arrays.copyOf(values, grow(size));
+        }
+        values[size++] = value;
+    }
+}
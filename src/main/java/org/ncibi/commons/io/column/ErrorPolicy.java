@@ -0,0 +1,27 @@
+package org.ncibi.commons.io.column;
+
+/**
+ * What a ColumnarParser does with a field that can't be parsed as its
+ * column's type, or that is missing because the line has too few fields.
+ *
+ * @author gtarcea
+ *
+ */
+public enum ErrorPolicy
+{
+    /**
+     * Stop parsing and throw an IOException.
+     */
+    FAIL,
+
+    /**
+     * Drop the whole line.
+     */
+    SKIP_ROW,
+
+    /**
+     * Keep the line and mark the field as missing. Missing numbers read as 0
+     * (NaN for doubles) and missing strings as null.
+     */
+    MISSING
+}
@@ -0,0 +1,89 @@
+package org.ncibi.commons.io.column;
+
+import org.ncibi.commons.collections.primitive.IntArrayList;
+
+/**
+ * A column of ints.
+ *
+ * @author gtarcea
+ *
+ */
+public class IntColumn extends Column
+{
+    /**
+     * The values.
+     */
+    private final IntArrayList values = new IntArrayList();
+
+    /**
+     * Constructor.
+     *
+     * @param name
+     *            The column's name.
+     */
+    IntColumn(final String name)
+    {
+        super(name);
+    }
+
+    @Override
+    public ColumnType getType()
+    {
+        return ColumnType.INT;
+    }
+
+    @Override
+    public int size()
+    {
+        return values.size();
+    }
+
+    /**
+     * Returns a row's value.
+     *
+     * @param row
+     *            The row.
+     * @return The value, or 0 if it is missing.
+     */
+    public int get(final int row)
+    {
+        if (row >= values.size())
+        {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + values.size());
+        }
+        return values.get(row);
+    }
+
+    /**
+     * @return A copy of the values.
+     */
+    public int[] toArray()
+    {
+        return values.toArray();
+    }
+
+    @Override
+    boolean parse(final char[] chars, final int start, final int end, final NumberParser numbers)
+    {
+        if (!numbers.parseLong(chars, start, end) || numbers.longValue < Integer.MIN_VALUE
+                || numbers.longValue > Integer.MAX_VALUE)
+        {
+            return false;
+        }
+        values.add((int) numbers.longValue);
+        return true;
+    }
+
+    @Override
+    void appendDefault()
+    {
+        values.add(0);
+    }
+
+    @Override
+    void truncate(final int newSize)
+    {
+        truncateMissing(newSize);
+        values.truncate(newSize);
+    }
+}
@@ -0,0 +1,88 @@
+package org.ncibi.commons.io.column;
+
+import org.ncibi.commons.collections.primitive.LongArrayList;
+
+/**
+ * A column of longs.
+ *
+ * @author gtarcea
+ *
+ */
+public class LongColumn extends Column
+{
+    /**
+     * The values.
+     */
+    private final LongArrayList values = new LongArrayList();
+
+    /**
+     * Constructor.
+     *
+     * @param name
+     *            The column's name.
+     */
+    LongColumn(final String name)
+    {
+        super(name);
+    }
+
+    @Override
+    public ColumnType getType()
+    {
+        return ColumnType.LONG;
+    }
+
+    @Override
+    public int size()
+    {
+        return values.size();
+    }
+
+    /**
+     * Returns a row's value.
+     *
+     * @param row
+     *            The row.
+     * @return The value, or 0 if it is missing.
+     */
+    public long get(final int row)
+    {
+        if (row >= values.size())
+        {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + values.size());
+        }
+        return values.get(row);
+    }
+
+    /**
+     * @return A copy of the values.
+     */
+    public long[] toArray()
+    {
+        return values.toArray();
+    }
+
+    @Override
+    boolean parse(final char[] chars, final int start, final int end, final NumberParser numbers)
+    {
+        if (!numbers.parseLong(chars, start, end))
+        {
+            return false;
+        }
+        values.add(numbers.longValue);
+        return true;
+    }
+
+    @Override
+    void appendDefault()
+    {
+        values.add(0);
+    }
+
+    @Override
+    void truncate(final int newSize)
+    {
+        truncateMissing(newSize);
+        values.truncate(newSize);
+    }
+}
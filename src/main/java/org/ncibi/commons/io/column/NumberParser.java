@@ -0,0 +1,221 @@
+package org.ncibi.commons.io.column;
+
+/**
+ * Parses numbers directly from a range of a character buffer, without
+ * creating a String. The result of a successful parse is left in longValue or
+ * doubleValue, so a failed parse costs no more than a successful one and
+ * doesn't throw.
+ *
+ * Doubles are parsed exactly with Clinger's fast path when the digits fit in
+ * 53 bits and the power of ten is at most 22 (both are then exact doubles and
+ * one multiplication or division rounds correctly), which covers nearly all
+ * values written by programs. Anything else falls back to
+ * Double.parseDouble().
+ *
+ * @author gtarcea
+ *
+ */
+final class NumberParser
+{
+    /**
+     * The powers of ten that are exact doubles.
+     */
+    private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7,
+            1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21,
+            1e22 };
+
+    /**
+     * Largest integer below which all integers are exact doubles.
+     */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    /**
+     * Long.MIN_VALUE / 10, the most negative value that can take another
+     * digit.
+     */
+    private static final long MIN_BEFORE_DIGIT = Long.MIN_VALUE / 10;
+
+    /**
+     * The value of the last successful parseLong().
+     */
+    long longValue;
+
+    /**
+     * The value of the last successful parseDouble().
+     */
+    double doubleValue;
+
+    /**
+     * Parses a decimal integer with an optional sign.
+     *
+     * @return True if the range holds a long, which is then in longValue.
+     */
+    boolean parseLong(final char[] chars, final int start, final int end)
+    {
+        int i = start;
+        if (i == end)
+        {
+            return false;
+        }
+        final char first = chars[i];
+        final boolean negative = first == '-';
+        if (negative || first == '+')
+        {
+            if (++i == end)
+            {
+                return false;
+            }
+        }
+
+        // Accumulate negatively so Long.MIN_VALUE can be parsed.
+        long value = 0;
+        for (; i < end; i++)
+        {
+            final int digit = chars[i] - '0';
+            if (digit < 0 || digit > 9)
+            {
+                return false;
+            }
+            if (value < MIN_BEFORE_DIGIT || (value == MIN_BEFORE_DIGIT && digit > 8))
+            {
+                return false;
+            }
+            value = value * 10 - digit;
+        }
+
+        if (!negative)
+        {
+            if (value == Long.MIN_VALUE)
+            {
+                return false;
+            }
+            value = -value;
+        }
+        longValue = value;
+        return true;
+    }
+
+    /**
+     * Parses a double in any format Double.parseDouble() accepts.
+     *
+     * @return True if the range holds a double, which is then in doubleValue.
+     */
+    boolean parseDouble(final char[] chars, final int start, final int end)
+    {
+        int i = start;
+        if (i == end)
+        {
+            return false;
+        }
+        final char first = chars[i];
+        final boolean negative = first == '-';
+        if (negative || first == '+')
+        {
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean anyDigit = false;
+        for (; i < end; i++)
+        {
+            final int digit = chars[i] - '0';
+            if (digit < 0 || digit > 9)
+            {
+                break;
+            }
+            anyDigit = true;
+            if (mantissa != 0 || digit != 0)
+            {
+                mantissa = mantissa * 10 + digit;
+                digits++;
+            }
+            if (digits > 18)
+            {
+                return parseSlowly(chars, start, end);
+            }
+        }
+        if (i < end && chars[i] == '.')
+        {
+            for (i++; i < end; i++)
+            {
+                final int digit = chars[i] - '0';
+                if (digit < 0 || digit > 9)
+                {
+                    break;
+                }
+                anyDigit = true;
+                if (mantissa != 0 || digit != 0)
+                {
+                    mantissa = mantissa * 10 + digit;
+                    digits++;
+                }
+                exponent--;
+                if (digits > 18)
+                {
+                    return parseSlowly(chars, start, end);
+                }
+            }
+        }
+        if (!anyDigit)
+        {
+            // NaN, Infinity or not a number.
+            return parseSlowly(chars, start, end);
+        }
+        if (i < end && (chars[i] == 'e' || chars[i] == 'E'))
+        {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (chars[i] == '-' || chars[i] == '+'))
+            {
+                negativeExponent = chars[i] == '-';
+                i++;
+            }
+            if (i == end)
+            {
+                return false;
+            }
+            int explicit = 0;
+            for (; i < end; i++)
+            {
+                final int digit = chars[i] - '0';
+                if (digit < 0 || digit > 9)
+                {
+                    return parseSlowly(chars, start, end);
+                }
+                if (explicit < 10000)
+                {
+                    explicit = explicit * 10 + digit;
+                }
+            }
+            exponent += negativeExponent ? -explicit : explicit;
+        }
+        if (i != end || mantissa > MAX_EXACT_MANTISSA || exponent < -22 || exponent > 22)
+        {
+            return parseSlowly(chars, start, end);
+        }
+
+        double value = mantissa;
+        value = exponent < 0 ? value / POWERS_OF_TEN[-exponent] : value
+                * POWERS_OF_TEN[exponent];
+        doubleValue = negative ? -value : value;
+        return true;
+    }
+
+    /**
+     * Parses a double with Double.parseDouble().
+     */
+    private boolean parseSlowly(final char[] chars, final int start, final int end)
+    {
+        try
+        {
+            doubleValue = Double.parseDouble(new String(chars, start, end - start));
+            return true;
+        }
+        catch (final NumberFormatException e)
+        {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.ncibi.commons.io.column;
+
+import java.util.Arrays;
+
+import org.ncibi.commons.lang.StringPool;
+
+/**
+ * A column of strings, optionally deduplicated through a StringPool.
+ *
+ * @author gtarcea
+ *
+ */
+public class StringColumn extends Column
+{
+    /**
+     * The values; only the first size are used.
+     */
+    private String[] values = new String[16];
+
+    /**
+     * The number of rows.
+     */
+    private int size = 0;
+
+    /**
+     * Deduplicates values, or null.
+     */
+    private final StringPool pool;
+
+    /**
+     * Constructor.
+     *
+     * @param name
+     *            The column's name.
+     * @param pool
+     *            Deduplicates values, or null.
+     */
+    StringColumn(final String name, final StringPool pool)
+    {
+        super(name);
+        this.pool = pool;
+    }
+
+    @Override
+    public ColumnType getType()
+    {
+        return ColumnType.STRING;
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns a row's value.
+     *
+     * @param row
+     *            The row.
+     * @return The value, or null if it is missing.
+     */
+    public String get(final int row)
+    {
+        if (row >= size)
+        {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        }
+        return values[row];
+    }
+
+    /**
+     * @return A copy of the values.
+     */
+    public String[] toArray()
+    {
+        return Arrays.copyOf(values, size);
+    }
+
+    @Override
+    boolean parse(final char[] chars, final int start, final int end, final NumberParser numbers)
+    {
+        append(pool == null ? new String(chars, start, end - start) : pool.intern(chars, start,
+                end));
+        return true;
+    }
+
+    @Override
+    void appendDefault()
+    {
+        append(null);
+    }
+
+    @Override
+    void truncate(final int newSize)
+    {
+        truncateMissing(newSize);
+        Arrays.fill(values, newSize, size, null);
+        size = newSize;
+    }
+
+    /**
+     * Appends a value, growing the array if it is full.
+     */
+    private void append(final String value)
+    {
+        if (size == values.length)
+        {
+            values = Arrays.copyOf(values, grow(size));
+        }
+        values[size++] = value;
+    }
+}
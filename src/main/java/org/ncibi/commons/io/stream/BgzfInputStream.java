@@ -0,0 +1,432 @@
+package org.ncibi.commons.io.stream;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Decompresses a BGZF (blocked gzip) stream, inflating blocks in parallel. The
+ * compressed blocks are read on the calling thread, which is cheap because
+ * each block header carries the size of the block, and handed to a pool of
+ * worker threads. The inflated blocks are returned in order. A window of
+ * blocks is kept in flight so that inflating overlaps with whatever the
+ * caller does with the data.
+ *
+ * @author gtarcea
+ *
+ */
+public class BgzfInputStream extends InputStream
+{
+    /**
+     * Length of the fixed part of a gzip member header (up to and including
+     * XLEN).
+     */
+    private static final int FIXED_HEADER_LENGTH = 12;
+
+    /**
+     * Length of the gzip member trailer (CRC32 and ISIZE).
+     */
+    private static final int TRAILER_LENGTH = 8;
+
+    /**
+     * Largest inflated size of a BGZF block.
+     */
+    private static final int MAX_BLOCK_SIZE = 65536;
+
+    /**
+     * Number of blocks kept in flight per worker thread.
+     */
+    private static final int BLOCKS_PER_THREAD = 4;
+
+    /**
+     * The compressed stream.
+     */
+    private final InputStream in;
+
+    /**
+     * The pool inflating blocks.
+     */
+    private final ExecutorService inflaters;
+
+    /**
+     * Maximum number of blocks in flight.
+     */
+    private final int window;
+
+    /**
+     * Blocks submitted for inflating, in stream order.
+     */
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<Future<byte[]>>();
+
+    /**
+     * The block currently being read.
+     */
+    private byte[] current = new byte[0];
+
+    /**
+     * Read position in the current block.
+     */
+    private int position = 0;
+
+    /**
+     * Set when the last compressed block has been read from the stream.
+     */
+    private boolean endOfBlocks = false;
+
+    /**
+     * Constructor.
+     *
+     * @param in
+     *            The BGZF stream.
+     * @param threads
+     *            The number of threads inflating blocks.
+     */
+    public BgzfInputStream(final InputStream in, final int threads)
+    {
+        if (threads <= 0)
+        {
+            throw new IllegalArgumentException("threads must be greater than 0.");
+        }
+
+        this.in = in;
+        this.window = threads * BLOCKS_PER_THREAD;
+        this.inflaters = Executors.newFixedThreadPool(threads, new ThreadFactory()
+        {
+            public Thread newThread(final Runnable r)
+            {
+                final Thread t = new Thread(r, "bgzf-inflater");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Constructor that uses one inflater thread per available processor.
+     *
+     * @param in
+     *            The BGZF stream.
+     */
+    public BgzfInputStream(final InputStream in)
+    {
+        this(in, Runtime.getRuntime().availableProcessors());
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        if (!ensureData())
+        {
+            return -1;
+        }
+        return current[position++] & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException
+    {
+        if (len == 0)
+        {
+            return 0;
+        }
+        if (!ensureData())
+        {
+            return -1;
+        }
+
+        final int n = Math.min(len, current.length - position);
+        System.arraycopy(current, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() throws IOException
+    {
+        return current.length - position;
+    }
+
+    /**
+     * Stops the inflater threads and closes the compressed stream.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        inflaters.shutdownNow();
+        pending.clear();
+        in.close();
+    }
+
+    /**
+     * Makes sure there is unread data in the current block, moving on to the
+     * next inflated block if needed.
+     *
+     * @return False at the end of the stream.
+     * @throws IOException
+     *             When a block cannot be read or inflated.
+     */
+    private boolean ensureData() throws IOException
+    {
+        while (position == current.length)
+        {
+            fillWindow();
+            if (pending.isEmpty())
+            {
+                return false;
+            }
+            current = nextInflatedBlock();
+            position = 0;
+        }
+        return true;
+    }
+
+    /**
+     * Reads compressed blocks and submits them for inflating until the window
+     * is full or the stream ends.
+     *
+     * @throws IOException
+     *             When a block cannot be read.
+     */
+    private void fillWindow() throws IOException
+    {
+        while (!endOfBlocks && pending.size() < window)
+        {
+            final Callable<byte[]> block = readBlock();
+            if (block == null)
+            {
+                endOfBlocks = true;
+            }
+            else
+            {
+                pending.add(inflaters.submit(block));
+            }
+        }
+    }
+
+    /**
+     * Waits for the oldest block in flight.
+     *
+     * @return The inflated block.
+     * @throws IOException
+     *             When the block could not be inflated.
+     */
+    private byte[] nextInflatedBlock() throws IOException
+    {
+        try
+        {
+            return pending.removeFirst().get();
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for BGZF block.");
+        }
+        catch (final ExecutionException e)
+        {
+            if (e.getCause() instanceof IOException)
+            {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Error inflating BGZF block.", e.getCause());
+        }
+    }
+
+    /**
+     * Reads the next compressed block.
+     *
+     * @return A task that inflates the block, or null at the end of the
+     *         stream.
+     * @throws IOException
+     *             When the stream is not valid BGZF.
+     */
+    private Callable<byte[]> readBlock() throws IOException
+    {
+        final byte[] header = new byte[FIXED_HEADER_LENGTH];
+        final int headerRead = readFully(header, 0, header.length);
+        if (headerRead == 0)
+        {
+            return null;
+        }
+        if (headerRead < header.length)
+        {
+            throw new EOFException("Truncated BGZF block header.");
+        }
+        if ((header[0] & 0xff) != 0x1f || (header[1] & 0xff) != 0x8b || header[2] != 8
+                || header[3] != 4)
+        {
+            throw new IOException("Not a BGZF block header.");
+        }
+
+        final int extraLength = uint16(header, 10);
+        final byte[] extra = new byte[extraLength];
+        readBlockBytes(extra);
+
+        final int blockSize = blockSize(extra);
+        final int remaining = blockSize - FIXED_HEADER_LENGTH - extraLength;
+        if (remaining < TRAILER_LENGTH)
+        {
+            throw new IOException("Invalid BGZF block size: " + blockSize);
+        }
+
+        final byte[] compressed = new byte[remaining];
+        readBlockBytes(compressed);
+
+        return new BlockInflater(compressed);
+    }
+
+    /**
+     * Finds the total block size in the 'BC' subfield of the extra field.
+     *
+     * @param extra
+     *            The gzip extra field.
+     * @return The total size of the block, header and trailer included.
+     * @throws IOException
+     *             When there is no 'BC' subfield.
+     */
+    private static int blockSize(final byte[] extra) throws IOException
+    {
+        int i = 0;
+        while (i + 4 <= extra.length)
+        {
+            final int subfieldLength = uint16(extra, i + 2);
+            if (extra[i] == 'B' && extra[i + 1] == 'C' && subfieldLength == 2
+                    && i + 6 <= extra.length)
+            {
+                return uint16(extra, i + 4) + 1;
+            }
+            i += 4 + subfieldLength;
+        }
+        throw new IOException("gzip member has no BGZF block size.");
+    }
+
+    /**
+     * Reads exactly b.length bytes of a block.
+     *
+     * @param b
+     *            The buffer to fill.
+     * @throws IOException
+     *             When the stream ends in the middle of the block.
+     */
+    private void readBlockBytes(final byte[] b) throws IOException
+    {
+        if (readFully(b, 0, b.length) < b.length)
+        {
+            throw new EOFException("Truncated BGZF block.");
+        }
+    }
+
+    /**
+     * Reads until len bytes have been read or the stream ends.
+     *
+     * @return The number of bytes read.
+     */
+    private int readFully(final byte[] b, final int off, final int len) throws IOException
+    {
+        int total = 0;
+        while (total < len)
+        {
+            final int n = in.read(b, off + total, len - total);
+            if (n == -1)
+            {
+                break;
+            }
+            total += n;
+        }
+        return total;
+    }
+
+    /**
+     * Reads an unsigned little endian 16 bit value.
+     */
+    private static int uint16(final byte[] b, final int off)
+    {
+        return (b[off] & 0xff) | ((b[off + 1] & 0xff) << 8);
+    }
+
+    /**
+     * Reads an unsigned little endian 32 bit value.
+     */
+    private static long uint32(final byte[] b, final int off)
+    {
+        return uint16(b, off) | ((long) uint16(b, off + 2) << 16);
+    }
+
+    /**
+     * Inflates a single block and checks its CRC.
+     */
+    private static final class BlockInflater implements Callable<byte[]>
+    {
+        /**
+         * The deflated data followed by the gzip trailer.
+         */
+        private final byte[] compressed;
+
+        BlockInflater(final byte[] compressed)
+        {
+            this.compressed = compressed;
+        }
+
+        public byte[] call() throws IOException
+        {
+            final int dataLength = compressed.length - TRAILER_LENGTH;
+            final long expectedCrc = uint32(compressed, dataLength);
+            final long inflatedSize = uint32(compressed, dataLength + 4);
+            if (inflatedSize > MAX_BLOCK_SIZE)
+            {
+                throw new IOException("Corrupt BGZF block: inflated size " + inflatedSize
+                        + " is over " + MAX_BLOCK_SIZE);
+            }
+            final byte[] inflated = new byte[(int) inflatedSize];
+
+            final Inflater inflater = new Inflater(true);
+            try
+            {
+                inflater.setInput(compressed, 0, dataLength);
+                int n = 0;
+                while (n < inflated.length && !inflater.finished())
+                {
+                    final int count = inflater.inflate(inflated, n, inflated.length - n);
+                    if (count == 0 && inflater.needsInput())
+                    {
+                        break;
+                    }
+                    n += count;
+                }
+                if (n != inflated.length)
+                {
+                    throw new IOException("BGZF block inflated to " + n + " bytes, expected "
+                            + inflated.length);
+                }
+            }
+            catch (final DataFormatException e)
+            {
+                throw new IOException("Corrupt BGZF block.", e);
+            }
+            finally
+            {
+                inflater.end();
+            }
+
+            final CRC32 crc = new CRC32();
+            crc.update(inflated);
+            if (crc.getValue() != expectedCrc)
+            {
+                throw new IOException("BGZF block CRC mismatch.");
+            }
+
+            return inflated;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package org.ncibi.commons.io.stream;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+/**
+ * The checksums and digests a ChecksumInputStream can compute. The CRCs and
+ * Adler-32 are fast and catch accidental corruption; MD5 and the SHAs are
+ * slower but are what provenance records and download sites usually list.
+ * Every algorithm is used through a MessageDigest, with 32 bit checksums
+ * giving a four byte, big endian digest, so they all print the same way.
+ *
+ * @author gtarcea
+ *
+ */
+public enum ChecksumAlgorithm
+{
+    CRC32(null), ADLER32(null), CRC32C(null), MD5("MD5"), SHA1("SHA-1"), SHA256("SHA-256");
+
+    /**
+     * The JCA name of a digest, or null for a 32 bit checksum.
+     */
+    private final String digestName;
+
+    private ChecksumAlgorithm(final String digestName)
+    {
+        this.digestName = digestName;
+    }
+
+    /**
+     * Creates a digest that computes this checksum.
+     *
+     * @return A new digest.
+     */
+    public MessageDigest newDigest()
+    {
+        switch (this)
+        {
+        case CRC32:
+            return new ChecksumDigest(name(), new CRC32());
+        case ADLER32:
+            return new ChecksumDigest(name(), new Adler32());
+        case CRC32C:
+            return new ChecksumDigest(name(), new Crc32c());
+        default:
+            try
+            {
+                return MessageDigest.getInstance(digestName);
+            }
+            catch (final NoSuchAlgorithmException e)
+            {
+                // Every Java platform is required to have these.
+                throw new IllegalStateException("Missing digest " + digestName, e);
+            }
+        }
+    }
+
+    /**
+     * Formats a digest as lower case hex.
+     *
+     * @param digest
+     *            The digest bytes.
+     * @return The hex string.
+     */
+    public static String toHex(final byte[] digest)
+    {
+        final char[] digits = "0123456789abcdef".toCharArray();
+        final char[] hex = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++)
+        {
+            hex[2 * i] = digits[(digest[i] >> 4) & 0xf];
+            hex[2 * i + 1] = digits[digest[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Adapts a 32 bit Checksum to MessageDigest.
+     */
+    private static final class ChecksumDigest extends MessageDigest
+    {
+        private final Checksum checksum;
+
+        ChecksumDigest(final String name, final Checksum checksum)
+        {
+            super(name);
+            this.checksum = checksum;
+        }
+
+        @Override
+        protected int engineGetDigestLength()
+        {
+            return 4;
+        }
+
+        @Override
+        protected void engineUpdate(final byte input)
+        {
+            checksum.update(input);
+        }
+
+        @Override
+        protected void engineUpdate(final byte[] input, final int offset, final int len)
+        {
+            checksum.update(input, offset, len);
+        }
+
+        @Override
+        protected byte[] engineDigest()
+        {
+            final long value = checksum.getValue();
+            checksum.reset();
+            return new byte[] { (byte) (value >>> 24), (byte) (value >>> 16),
+                    (byte) (value >>> 8), (byte) value };
+        }
+
+        @Override
+        protected void engineReset()
+        {
+            checksum.reset();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package org.ncibi.commons.io.stream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+
+/**
+ * An input stream that computes a checksum of the bytes read through it, so a
+ * file can be verified while it is being processed instead of in a separate
+ * pass. Skipped bytes are read and included in the checksum. Mark and reset
+ * aren't supported since re-read bytes would be counted twice.
+ *
+ * The checksum is final once the stream has been read to the end; reading
+ * can't continue after getChecksum() has been called.
+ *
+ * @author gtarcea
+ *
+ */
+public class ChecksumInputStream extends ReadThroughInputStream
+{
+    /**
+     * The algorithm being computed.
+     */
+    private final ChecksumAlgorithm algorithm;
+
+    /**
+     * The digest being updated.
+     */
+    private final MessageDigest digest;
+
+    /**
+     * The finished checksum, null until getChecksum() is called.
+     */
+    private byte[] checksum = null;
+
+    /**
+     * Number of bytes read.
+     */
+    private long bytesRead = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param in
+     *            The stream to checksum.
+     * @param algorithm
+     *            The checksum to compute.
+     */
+    public ChecksumInputStream(final InputStream in, final ChecksumAlgorithm algorithm)
+    {
+        super(in);
+        this.algorithm = algorithm;
+        this.digest = algorithm.newDigest();
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        checkNotFinished();
+        final int b = super.read();
+        if (b != -1)
+        {
+            digest.update((byte) b);
+            bytesRead++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException
+    {
+        checkNotFinished();
+        final int n = super.read(b, off, len);
+        if (n > 0)
+        {
+            digest.update(b, off, n);
+            bytesRead += n;
+        }
+        return n;
+    }
+
+    /**
+     * @return The algorithm being computed.
+     */
+    public ChecksumAlgorithm getAlgorithm()
+    {
+        return algorithm;
+    }
+
+    /**
+     * @return The number of bytes read through the stream.
+     */
+    public long getBytesRead()
+    {
+        return bytesRead;
+    }
+
+    /**
+     * Finishes the checksum of the bytes read so far.
+     *
+     * @return The checksum bytes.
+     */
+    public byte[] getChecksumBytes()
+    {
+        if (checksum == null)
+        {
+            checksum = digest.digest();
+        }
+        return checksum.clone();
+    }
+
+    /**
+     * Finishes the checksum of the bytes read so far.
+     *
+     * @return The checksum in lower case hex.
+     */
+    public String getChecksum()
+    {
+        return ChecksumAlgorithm.toHex(getChecksumBytes());
+    }
+
+    /**
+     * Rejects reads after the checksum has been finished.
+     */
+    private void checkNotFinished() throws IOException
+    {
+        if (checksum != null)
+        {
+            throw new IOException("The checksum has already been computed.");
+        }
+    }
+}
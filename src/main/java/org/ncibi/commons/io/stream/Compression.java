@@ -0,0 +1,181 @@
+package org.ncibi.commons.io.stream;
+
+import java.util.Arrays;
+
+/**
+ * The compression formats that can be recognized from the magic bytes at the
+ * start of a stream. BGZF is the blocked gzip format used by bioinformatics
+ * tools (bgzip, samtools, tabix). It is a valid multi-member gzip file whose
+ * members carry their compressed size in a 'BC' extra subfield, which allows
+ * the members to be inflated independently.
+ *
+ * @author gtarcea
+ *
+ */
+public enum Compression
+{
+    /**
+     * Not compressed (or not a recognized format).
+     */
+    NONE,
+
+    /**
+     * Plain gzip, possibly with multiple members.
+     */
+    GZIP,
+
+    /**
+     * Blocked gzip (bgzip).
+     */
+    BGZF,
+
+    /**
+     * bzip2.
+     */
+    BZIP2,
+
+    /**
+     * xz.
+     */
+    XZ,
+
+    /**
+     * Zstandard.
+     */
+    ZSTD;
+
+    /**
+     * The number of leading bytes needed by detect() to recognize every
+     * format, including the BGZF extra subfield.
+     */
+    public static final int MAGIC_LENGTH = 18;
+
+    /**
+     * Starts a bzip2 block (the BCD digits of pi).
+     */
+    private static final byte[] BZIP2_BLOCK_MAGIC = { 0x31, 0x41, 0x59, 0x26, 0x53, 0x59 };
+
+    /**
+     * Ends a bzip2 stream (the BCD digits of the square root of pi); follows
+     * the header directly in an empty stream.
+     */
+    private static final byte[] BZIP2_END_OF_STREAM_MAGIC = { 0x17, 0x72, 0x45, 0x38, 0x50,
+            (byte) 0x90 };
+
+    /**
+     * Determines the compression format from the leading bytes of a stream.
+     *
+     * @param header
+     *            The leading bytes of the stream.
+     * @param length
+     *            The number of valid bytes in header (may be less than
+     *            MAGIC_LENGTH for short streams).
+     * @return The compression format, or NONE if it isn't recognized.
+     */
+    public static Compression detect(final byte[] header, final int length)
+    {
+        if (startsWith(header, length, 0x1f, 0x8b))
+        {
+            return isBgzf(header, length) ? BGZF : GZIP;
+        }
+        else if (isBzip2(header, length))
+        {
+            return BZIP2;
+        }
+        else if (startsWith(header, length, 0xfd, '7', 'z', 'X', 'Z', 0x00))
+        {
+            return XZ;
+        }
+        else if (startsWith(header, length, 0x28, 0xb5, 0x2f, 0xfd))
+        {
+            return ZSTD;
+        }
+
+        return NONE;
+    }
+
+    /**
+     * Checks for the bzip2 header ("BZh" and a block size of 1 to 9) followed
+     * by the magic of a block or of the end of an empty stream, so that text
+     * that happens to start with "BZh1" isn't taken for bzip2.
+     *
+     * @param header
+     *            The leading bytes of the stream.
+     * @param length
+     *            The number of valid bytes in header.
+     * @return True if the header is the header of a bzip2 stream.
+     */
+    private static boolean isBzip2(final byte[] header, final int length)
+    {
+        if (length < 10 || !startsWith(header, length, 'B', 'Z', 'h') || header[3] < '1'
+                || header[3] > '9')
+        {
+            return false;
+        }
+        final byte[] block = Arrays.copyOfRange(header, 4, 10);
+        return Arrays.equals(block, BZIP2_BLOCK_MAGIC)
+                || Arrays.equals(block, BZIP2_END_OF_STREAM_MAGIC);
+    }
+
+    /**
+     * Checks for a gzip header with the FEXTRA flag set and a 'BC' subfield in
+     * the extra field.
+     *
+     * @param header
+     *            The leading bytes of the stream.
+     * @param length
+     *            The number of valid bytes in header.
+     * @return True if the header is the header of a BGZF block.
+     */
+    private static boolean isBgzf(final byte[] header, final int length)
+    {
+        if (length < 12 || header[2] != 8 || (header[3] & 0x04) == 0)
+        {
+            return false;
+        }
+
+        final int extraLength = (header[10] & 0xff) | ((header[11] & 0xff) << 8);
+        final int extraEnd = Math.min(length, 12 + extraLength);
+        int i = 12;
+        while (i + 4 <= extraEnd)
+        {
+            final int subfieldLength = (header[i + 2] & 0xff) | ((header[i + 3] & 0xff) << 8);
+            if (header[i] == 'B' && header[i + 1] == 'C' && subfieldLength == 2)
+            {
+                return true;
+            }
+            i += 4 + subfieldLength;
+        }
+
+        return false;
+    }
+
+    /**
+     * Checks if the header starts with the given magic bytes.
+     *
+     * @param header
+     *            The leading bytes of the stream.
+     * @param length
+     *            The number of valid bytes in header.
+     * @param magic
+     *            The magic bytes (as unsigned values).
+     * @return True if the header starts with magic.
+     */
+    private static boolean startsWith(final byte[] header, final int length, final int... magic)
+    {
+        if (length < magic.length)
+        {
+            return false;
+        }
+
+        for (int i = 0; i < magic.length; i++)
+        {
+            if ((header[i] & 0xff) != magic[i])
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
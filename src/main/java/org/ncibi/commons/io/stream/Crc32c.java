@@ -0,0 +1,105 @@
+package org.ncibi.commons.io.stream;
+
+import java.util.zip.Checksum;
+
+/**
+ * CRC-32C (Castagnoli), the checksum used by iSCSI, ext4, Btrfs and many
+ * storage systems. The JDK only has it from Java 9, so this is a pure Java,
+ * table driven version that processes eight bytes per step (slicing-by-8).
+ *
+ * @author gtarcea
+ *
+ */
+public class Crc32c implements Checksum
+{
+    /**
+     * The reversed Castagnoli polynomial.
+     */
+    private static final int POLYNOMIAL = 0x82F63B78;
+
+    /**
+     * TABLE[k][b] is the CRC of byte b followed by k zero bytes.
+     */
+    private static final int[][] TABLE = new int[8][256];
+
+    static
+    {
+        for (int b = 0; b < 256; b++)
+        {
+            int crc = b;
+            for (int bit = 0; bit < 8; bit++)
+            {
+                crc = (crc >>> 1) ^ ((crc & 1) != 0 ? POLYNOMIAL : 0);
+            }
+            TABLE[0][b] = crc;
+        }
+        for (int b = 0; b < 256; b++)
+        {
+            for (int k = 1; k < 8; k++)
+            {
+                final int previous = TABLE[k - 1][b];
+                TABLE[k][b] = (previous >>> 8) ^ TABLE[0][previous & 0xff];
+            }
+        }
+    }
+
+    /**
+     * The running CRC, inverted.
+     */
+    private int crc = 0xffffffff;
+
+    public void update(final int b)
+    {
+        crc = (crc >>> 8) ^ TABLE[0][(crc ^ b) & 0xff];
+    }
+
+    public void update(final byte[] b, final int off, final int len)
+    {
+        final int[] t0 = TABLE[0];
+        final int[] t1 = TABLE[1];
+        final int[] t2 = TABLE[2];
+        final int[] t3 = TABLE[3];
+        final int[] t4 = TABLE[4];
+        final int[] t5 = TABLE[5];
+        final int[] t6 = TABLE[6];
+        final int[] t7 = TABLE[7];
+
+        int c = crc;
+        int i = off;
+        final int end = off + len;
+        for (; i + 8 <= end; i += 8)
+        {
+            c ^= (b[i] & 0xff) | (b[i + 1] & 0xff) << 8 | (b[i + 2] & 0xff) << 16
+                    | (b[i + 3] & 0xff) << 24;
+            c = t7[c & 0xff] ^ t6[(c >>> 8) & 0xff] ^ t5[(c >>> 16) & 0xff] ^ t4[c >>> 24]
+                    ^ t3[b[i + 4] & 0xff] ^ t2[b[i + 5] & 0xff] ^ t1[b[i + 6] & 0xff]
+                    ^ t0[b[i + 7] & 0xff];
+        }
+        for (; i < end; i++)
+        {
+            c = (c >>> 8) ^ t0[(c ^ b[i]) & 0xff];
+        }
+        crc = c;
+    }
+
+    /**
+     * Updates the checksum with an array of bytes.
+     *
+     * @param b
+     *            The bytes.
+     */
+    public void update(final byte[] b)
+    {
+        update(b, 0, b.length);
+    }
+
+    public long getValue()
+    {
+        return ~crc & 0xffffffffL;
+    }
+
+    public void reset()
+    {
+        crc = 0xffffffff;
+    }
+}
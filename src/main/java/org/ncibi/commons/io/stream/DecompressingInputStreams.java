@@ -0,0 +1,175 @@
+package org.ncibi.commons.io.stream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+
+import org.ncibi.commons.exception.ConstructorCalledError;
+
+/**
+ * Static factory for streams that transparently decompress their input. The
+ * compression format is detected from the magic bytes at the start of the
+ * stream, so callers don't have to rely on file extensions. Uncompressed input
+ * is passed through untouched.
+ *
+ * Gzip input is inflated on a read ahead thread (see ReadAheadInputStream) so
+ * that inflating overlaps with the caller parsing the data. BGZF input has its blocks inflated in
+ * parallel (see BgzfInputStream). Other formats require a DecompressorFactory
+ * to be registered, as the JDK has no support for them.
+ *
+ * @author gtarcea
+ *
+ */
+public final class DecompressingInputStreams
+{
+    /**
+     * Size of the buffer used by GZIPInputStream.
+     */
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Registered factories for formats the JDK can't handle (or to replace
+     * the built in gzip handling).
+     */
+    private static final Map<Compression, DecompressorFactory> FACTORIES = new ConcurrentHashMap<Compression, DecompressorFactory>();
+
+    /**
+     * Utility class - can't be instantiated.
+     */
+    private DecompressingInputStreams()
+    {
+        throw new ConstructorCalledError(this.getClass());
+    }
+
+    /**
+     * Registers a factory for a compression format. A registered factory is
+     * used in place of the built in handling for that format.
+     *
+     * @param compression
+     *            The format the factory handles.
+     * @param factory
+     *            The factory.
+     */
+    public static void registerDecompressor(final Compression compression,
+            final DecompressorFactory factory)
+    {
+        FACTORIES.put(compression, factory);
+    }
+
+    /**
+     * Wraps a stream so that compressed input is decompressed as it is read.
+     * BGZF blocks are inflated using one thread per available processor.
+     *
+     * @param in
+     *            The stream to wrap.
+     * @return A stream returning the decompressed bytes, or the original
+     *         bytes if the input isn't compressed.
+     * @throws IOException
+     *             When the stream can't be read, or is compressed in a format
+     *             that has no registered decompressor.
+     */
+    public static InputStream open(final InputStream in) throws IOException
+    {
+        return open(in, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Wraps a stream so that compressed input is decompressed as it is read.
+     *
+     * @param in
+     *            The stream to wrap.
+     * @param threads
+     *            The number of threads used to inflate BGZF blocks.
+     * @return A stream returning the decompressed bytes, or the original
+     *         bytes if the input isn't compressed.
+     * @throws IOException
+     *             When the stream can't be read, or is compressed in a format
+     *             that has no registered decompressor.
+     */
+    public static InputStream open(final InputStream in, final int threads) throws IOException
+    {
+        final PushbackInputStream input = new PushbackInputStream(in, Compression.MAGIC_LENGTH);
+        final Compression compression = detect(input);
+
+        final DecompressorFactory factory = FACTORIES.get(compression);
+        if (factory != null)
+        {
+            return factory.newInputStream(input);
+        }
+
+        switch (compression)
+        {
+        case NONE:
+            return input;
+        case BGZF:
+            if (threads > 1)
+            {
+                return new BgzfInputStream(input, threads);
+            }
+            return new ReadAheadInputStream(new GZIPInputStream(input, GZIP_BUFFER_SIZE));
+        case GZIP:
+            return new ReadAheadInputStream(new GZIPInputStream(input, GZIP_BUFFER_SIZE));
+        default:
+            throw new IOException("No decompressor registered for " + compression
+                    + " input. See DecompressingInputStreams.registerDecompressor().");
+        }
+    }
+
+    /**
+     * Detects the compression format of a stream, leaving the stream
+     * positioned at its start.
+     *
+     * @param in
+     *            The stream to check. It must allow at least
+     *            Compression.MAGIC_LENGTH bytes to be pushed back.
+     * @return The compression format.
+     * @throws IOException
+     *             When the stream can't be read.
+     */
+    public static Compression detect(final PushbackInputStream in) throws IOException
+    {
+        final byte[] header = new byte[Compression.MAGIC_LENGTH];
+        int length = 0;
+        while (length < header.length)
+        {
+            final int n = in.read(header, length, header.length - length);
+            if (n == -1)
+            {
+                break;
+            }
+            length += n;
+        }
+
+        if (length > 0)
+        {
+            in.unread(header, 0, length);
+        }
+
+        return Compression.detect(header, length);
+    }
+
+    /**
+     * Detects the compression format of a file from its first bytes. The
+     * channel's position is not changed.
+     *
+     * @param channel
+     *            The channel of the file to check.
+     * @return The compression format.
+     * @throws IOException
+     *             When the file can't be read.
+     */
+    public static Compression detect(final FileChannel channel) throws IOException
+    {
+        final ByteBuffer header = ByteBuffer.allocate(Compression.MAGIC_LENGTH);
+        while (header.hasRemaining() && channel.read(header, header.position()) > 0)
+        {
+            // Positional reads don't change the channel position.
+        }
+        return Compression.detect(header.array(), header.position());
+    }
+}
@@ -0,0 +1,29 @@
+package org.ncibi.commons.io.stream;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Creates a decompressing stream over a compressed stream. Only the gzip
+ * formats are supported by the JDK, so factories for other formats (bzip2, xz,
+ * zstd) can be registered with DecompressingInputStreams by projects that have
+ * a library for them on their classpath.
+ *
+ * @author gtarcea
+ *
+ * @see DecompressingInputStreams#registerDecompressor(Compression,
+ *      DecompressorFactory)
+ */
+public interface DecompressorFactory
+{
+    /**
+     * Wraps a compressed stream in a decompressing stream.
+     *
+     * @param compressed
+     *            The compressed stream, positioned at the magic bytes.
+     * @return A stream returning the decompressed bytes.
+     * @throws IOException
+     *             When the stream cannot be opened.
+     */
+    public InputStream newInputStream(InputStream compressed) throws IOException;
+}
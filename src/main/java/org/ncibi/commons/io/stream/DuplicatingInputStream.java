@@ -0,0 +1,92 @@
+package org.ncibi.commons.io.stream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * An input stream that writes every byte read through it to a second output
+ * stream, for example to keep an archive copy of a file while it is being
+ * processed. Unlike commons-io's TeeInputStream, skipped bytes are read and
+ * copied too, so the copy is always a prefix of the input. Mark and reset
+ * aren't supported since re-read bytes would be copied twice.
+ *
+ * @author gtarcea
+ *
+ */
+public class DuplicatingInputStream extends ReadThroughInputStream
+{
+    /**
+     * Where the bytes read are copied.
+     */
+    private final OutputStream copy;
+
+    /**
+     * Should the copy be closed with this stream?
+     */
+    private final boolean closeCopy;
+
+    /**
+     * Constructor.
+     *
+     * @param in
+     *            The stream to read.
+     * @param copy
+     *            The stream the bytes read are copied to.
+     * @param closeCopy
+     *            If true the copy is closed when this stream is closed.
+     */
+    public DuplicatingInputStream(final InputStream in, final OutputStream copy,
+            final boolean closeCopy)
+    {
+        super(in);
+        this.copy = copy;
+        this.closeCopy = closeCopy;
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        final int b = super.read();
+        if (b != -1)
+        {
+            copy.write(b);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException
+    {
+        final int n = super.read(b, off, len);
+        if (n > 0)
+        {
+            copy.write(b, off, n);
+        }
+        return n;
+    }
+
+    /**
+     * Closes the stream and, if requested, the copy. The copy is closed even
+     * if closing the input fails.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            super.close();
+        }
+        finally
+        {
+            if (closeCopy)
+            {
+                copy.close();
+            }
+            else
+            {
+                copy.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package org.ncibi.commons.io.stream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a file channel from a given position using positional reads. The
+ * channel's own position is never changed, so any number of these streams can
+ * read different parts of the same channel from different threads. Closing the
+ * stream does not close the channel.
+ *
+ * @author gtarcea
+ *
+ */
+public class FileChannelInputStream extends InputStream
+{
+    /**
+     * The channel to read.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The position of the next read.
+     */
+    private long position;
+
+    /**
+     * Constructor.
+     *
+     * @param channel
+     *            The channel to read.
+     * @param position
+     *            The position to start reading at.
+     */
+    public FileChannelInputStream(final FileChannel channel, final long position)
+    {
+        this.channel = channel;
+        this.position = position;
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        final byte[] b = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException
+    {
+        if (len == 0)
+        {
+            return 0;
+        }
+
+        final int n = channel.read(ByteBuffer.wrap(b, off, len), position);
+        if (n > 0)
+        {
+            position += n;
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException
+    {
+        final long skipped = Math.max(0, Math.min(n, channel.size() - position));
+        position += skipped;
+        return skipped;
+    }
+
+    /**
+     * @return The position of the next read.
+     */
+    public long getPosition()
+    {
+        return position;
+    }
+}
@@ -0,0 +1,135 @@
+package org.ncibi.commons.io.stream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An input stream that limits the rate it can be read at with a TokenBucket.
+ * Bytes are paid for after they are read, and no read asks the underlying
+ * stream for more than the bucket's burst size, so the wait after a read is
+ * never longer than the time it takes to refill the bucket. Streams that share
+ * a bucket share its rate.
+ *
+ * @author gtarcea
+ *
+ */
+public class RateLimitedInputStream extends CheckableInputStream
+{
+    /**
+     * The bucket the bytes read are taken from.
+     */
+    private final TokenBucket bucket;
+
+    /**
+     * Nanoseconds this stream spent waiting on the bucket.
+     */
+    private long throttledNanos = 0;
+
+    /**
+     * Constructor for a stream with its own bucket.
+     *
+     * @param in
+     *            The stream to limit.
+     * @param bytesPerSecond
+     *            The rate the stream can be read at.
+     */
+    public RateLimitedInputStream(final InputStream in, final long bytesPerSecond)
+    {
+        this(in, new TokenBucket(bytesPerSecond));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param in
+     *            The stream to limit.
+     * @param bucket
+     *            The bucket to take bytes from, which may be shared with other
+     *            streams.
+     */
+    public RateLimitedInputStream(final InputStream in, final TokenBucket bucket)
+    {
+        super(in);
+        this.bucket = bucket;
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        final int b = super.read();
+        if (b != -1)
+        {
+            throttle(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(final byte[] b) throws IOException
+    {
+        return read(b, 0, b.length);
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException
+    {
+        final int n = super.read(b, off, (int) Math.min(len, bucket.getBurstBytes()));
+        throttle(n);
+        return n;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException
+    {
+        final long skipped = super.skip(Math.min(n, bucket.getBurstBytes()));
+        throttle(skipped);
+        return skipped;
+    }
+
+    /**
+     * Pays for bytes read.
+     */
+    private void throttle(final long bytes) throws InterruptedIOException
+    {
+        if (bytes <= 0)
+        {
+            return;
+        }
+        final long start = System.nanoTime();
+        try
+        {
+            bucket.acquire(bytes);
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while throttled.");
+        }
+        finally
+        {
+            throttledNanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * @return The bucket the stream takes bytes from.
+     */
+    public TokenBucket getBucket()
+    {
+        return bucket;
+    }
+
+    /**
+     * Returns the time this stream spent waiting for the rate limit.
+     *
+     * @param unit
+     *            The unit to return the time in.
+     * @return The time spent throttled.
+     */
+    public long getThrottledTime(final TimeUnit unit)
+    {
+        return unit.convert(throttledNanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,126 @@
+package org.ncibi.commons.io.stream;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.output.ProxyOutputStream;
+
+/**
+ * An output stream that limits the rate it can be written at with a
+ * TokenBucket. Bytes are paid for before they are written, and large writes
+ * are passed on in pieces no bigger than the bucket's burst size so the
+ * output is spread evenly over time. Streams that share a bucket share its
+ * rate.
+ *
+ * @author gtarcea
+ *
+ */
+public class RateLimitedOutputStream extends ProxyOutputStream
+{
+    /**
+     * The bucket the bytes written are taken from.
+     */
+    private final TokenBucket bucket;
+
+    /**
+     * Nanoseconds this stream spent waiting on the bucket.
+     */
+    private long throttledNanos = 0;
+
+    /**
+     * Constructor for a stream with its own bucket.
+     *
+     * @param out
+     *            The stream to limit.
+     * @param bytesPerSecond
+     *            The rate the stream can be written at.
+     */
+    public RateLimitedOutputStream(final OutputStream out, final long bytesPerSecond)
+    {
+        this(out, new TokenBucket(bytesPerSecond));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param out
+     *            The stream to limit.
+     * @param bucket
+     *            The bucket to take bytes from, which may be shared with other
+     *            streams.
+     */
+    public RateLimitedOutputStream(final OutputStream out, final TokenBucket bucket)
+    {
+        super(out);
+        this.bucket = bucket;
+    }
+
+    @Override
+    public void write(final int b) throws IOException
+    {
+        throttle(1);
+        super.write(b);
+    }
+
+    @Override
+    public void write(final byte[] b) throws IOException
+    {
+        write(b, 0, b.length);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException
+    {
+        int written = 0;
+        while (written < len)
+        {
+            final int n = (int) Math.min(len - written, bucket.getBurstBytes());
+            throttle(n);
+            super.write(b, off + written, n);
+            written += n;
+        }
+    }
+
+    /**
+     * Pays for bytes about to be written.
+     */
+    private void throttle(final long bytes) throws InterruptedIOException
+    {
+        final long start = System.nanoTime();
+        try
+        {
+            bucket.acquire(bytes);
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while throttled.");
+        }
+        finally
+        {
+            throttledNanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * @return The bucket the stream takes bytes from.
+     */
+    public TokenBucket getBucket()
+    {
+        return bucket;
+    }
+
+    /**
+     * Returns the time this stream spent waiting for the rate limit.
+     *
+     * @param unit
+     *            The unit to return the time in.
+     * @return The time spent throttled.
+     */
+    public long getThrottledTime(final TimeUnit unit)
+    {
+        return unit.convert(throttledNanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,447 @@
+package org.ncibi.commons.io.stream;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.ncibi.commons.io.DirectBufferPool;
+
+/**
+ * An input stream that reads ahead of its reader on a background thread. The
+ * background thread fills a ring of direct buffers from the underlying stream
+ * while the reader drains the buffers that are already full, so disk I/O (or
+ * decompression) overlaps with whatever the reader does with the data.
+ *
+ * The stream keeps track of how long each side spent waiting on the other.
+ * If the reader spends most of its time waiting for data the job is I/O bound;
+ * if the read ahead thread spends most of its time waiting for a free buffer
+ * the job is CPU bound.
+ *
+ * Buffers are borrowed from a DirectBufferPool and returned when the stream is
+ * closed. The stream is not thread safe; it should be read by a single thread.
+ *
+ * @author gtarcea
+ *
+ */
+public class ReadAheadInputStream extends CheckableInputStream
+{
+    /**
+     * Default number of buffers in the ring.
+     */
+    public static final int DEFAULT_BUFFER_COUNT = 4;
+
+    /**
+     * Marks the end of the stream in the queue of full buffers.
+     */
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    /**
+     * How long close() waits for the read ahead thread to stop.
+     */
+    private static final long CLOSE_WAIT_MILLIS = 1000;
+
+    /**
+     * The channel the read ahead thread reads from.
+     */
+    private final ReadableByteChannel channel;
+
+    /**
+     * The pool the buffers are borrowed from.
+     */
+    private final DirectBufferPool pool;
+
+    /**
+     * Buffers waiting to be filled.
+     */
+    private final BlockingQueue<ByteBuffer> free;
+
+    /**
+     * Buffers waiting to be read.
+     */
+    private final BlockingQueue<ByteBuffer> full;
+
+    /**
+     * The read ahead thread.
+     */
+    private final Thread readAhead;
+
+    /**
+     * The error that stopped the read ahead thread, if any.
+     */
+    private volatile IOException readError;
+
+    /**
+     * Set once close() is called.
+     */
+    private volatile boolean closed = false;
+
+    /**
+     * Nanoseconds the reader spent waiting for a full buffer.
+     */
+    private volatile long readerWaitNanos = 0;
+
+    /**
+     * Nanoseconds the read ahead thread spent waiting for a free buffer.
+     */
+    private volatile long readAheadWaitNanos = 0;
+
+    /**
+     * The buffer being read, null before the first read.
+     */
+    private ByteBuffer current = null;
+
+    /**
+     * Constructor using DEFAULT_BUFFER_COUNT buffers from the default pool.
+     *
+     * @param in
+     *            The stream to read ahead of.
+     */
+    public ReadAheadInputStream(final InputStream in)
+    {
+        this(in, DEFAULT_BUFFER_COUNT, DirectBufferPool.defaultPool());
+    }
+
+    /**
+     * Constructor using a private pool of buffers.
+     *
+     * @param in
+     *            The stream to read ahead of.
+     * @param bufferCount
+     *            The number of buffers in the ring.
+     * @param bufferSize
+     *            The size of each buffer.
+     */
+    public ReadAheadInputStream(final InputStream in, final int bufferCount, final int bufferSize)
+    {
+        this(in, bufferCount, new DirectBufferPool(bufferSize, bufferCount));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param in
+     *            The stream to read ahead of.
+     * @param bufferCount
+     *            The number of buffers in the ring.
+     * @param pool
+     *            The pool to borrow buffers from.
+     */
+    public ReadAheadInputStream(final InputStream in, final int bufferCount,
+            final DirectBufferPool pool)
+    {
+        super(in);
+
+        if (bufferCount < 2)
+        {
+            throw new IllegalArgumentException("bufferCount must be at least 2.");
+        }
+
+        this.pool = pool;
+        this.channel = in instanceof FileInputStream ? ((FileInputStream) in).getChannel()
+                : Channels.newChannel(in);
+        this.free = new ArrayBlockingQueue<ByteBuffer>(bufferCount);
+        this.full = new ArrayBlockingQueue<ByteBuffer>(bufferCount + 1);
+        for (int i = 0; i < bufferCount; i++)
+        {
+            free.add(pool.acquire());
+        }
+
+        readAhead = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                fill();
+            }
+        }, "read-ahead");
+        readAhead.setDaemon(true);
+        readAhead.start();
+    }
+
+    /**
+     * Body of the read ahead thread. Fills free buffers until the end of the
+     * stream, an error or close().
+     */
+    private void fill()
+    {
+        ByteBuffer buffer = null;
+        try
+        {
+            int n = 0;
+            while (n != -1 && !closed)
+            {
+                final long start = System.nanoTime();
+                buffer = free.take();
+                readAheadWaitNanos += System.nanoTime() - start;
+
+                buffer.clear();
+                while (buffer.hasRemaining() && (n = channel.read(buffer)) != -1)
+                {
+                    // Keep reading until the buffer is full or the stream ends.
+                }
+                buffer.flip();
+
+                if (buffer.hasRemaining())
+                {
+                    full.put(buffer);
+                }
+                else
+                {
+                    free.put(buffer);
+                }
+                buffer = null;
+            }
+        }
+        catch (final IOException e)
+        {
+            if (!closed)
+            {
+                readError = e;
+            }
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            if (buffer != null)
+            {
+                free.offer(buffer);
+            }
+            full.offer(END);
+        }
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        if (!ensureData())
+        {
+            return -1;
+        }
+        return current.get() & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] b) throws IOException
+    {
+        return read(b, 0, b.length);
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException
+    {
+        if (len == 0)
+        {
+            return 0;
+        }
+        if (!ensureData())
+        {
+            return -1;
+        }
+
+        final int n = Math.min(len, current.remaining());
+        current.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException
+    {
+        long skipped = 0;
+        while (skipped < n && ensureData())
+        {
+            final int count = (int) Math.min(n - skipped, current.remaining());
+            current.position(current.position() + count);
+            skipped += count;
+        }
+        return skipped;
+    }
+
+    /**
+     * Returns the number of bytes that can be read without waiting on the
+     * read ahead thread.
+     */
+    @Override
+    public int available() throws IOException
+    {
+        return current == null || current == END ? 0 : current.remaining();
+    }
+
+    @Override
+    public boolean markSupported()
+    {
+        return false;
+    }
+
+    @Override
+    public void mark(final int readlimit)
+    {
+        // Not supported.
+    }
+
+    @Override
+    public void reset() throws IOException
+    {
+        throw new IOException("mark/reset not supported");
+    }
+
+    /**
+     * Stops the read ahead thread, closes the underlying stream and returns
+     * the buffers to the pool.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if (closed)
+        {
+            return;
+        }
+
+        closed = true;
+        readAhead.interrupt();
+        try
+        {
+            channel.close();
+            super.close();
+        }
+        finally
+        {
+            releaseBuffers();
+        }
+    }
+
+    /**
+     * Returns the buffers to the pool once the read ahead thread has stopped.
+     * If it doesn't stop (blocked in a read that can't be interrupted) the
+     * buffers are left to the garbage collector.
+     */
+    private void releaseBuffers()
+    {
+        try
+        {
+            readAhead.join(CLOSE_WAIT_MILLIS);
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        if (readAhead.isAlive())
+        {
+            return;
+        }
+
+        if (current != null && current != END)
+        {
+            pool.release(current);
+        }
+        current = END;
+        releaseAll(free);
+        releaseAll(full);
+    }
+
+    /**
+     * Returns the buffers in a queue to the pool.
+     */
+    private void releaseAll(final BlockingQueue<ByteBuffer> buffers)
+    {
+        ByteBuffer buffer;
+        while ((buffer = buffers.poll()) != null)
+        {
+            if (buffer != END)
+            {
+                pool.release(buffer);
+            }
+        }
+    }
+
+    /**
+     * Moves on to the next full buffer when the current one has been read,
+     * handing the current one back to the read ahead thread.
+     *
+     * @return False at the end of the stream.
+     * @throws IOException
+     *             When the read ahead thread failed, or the stream is closed.
+     */
+    private boolean ensureData() throws IOException
+    {
+        if (closed)
+        {
+            throw new IOException("Stream closed");
+        }
+        if (current == END)
+        {
+            return false;
+        }
+        if (current != null && current.hasRemaining())
+        {
+            return true;
+        }
+
+        if (current != null)
+        {
+            free.offer(current);
+        }
+
+        final long start = System.nanoTime();
+        try
+        {
+            current = full.take();
+        }
+        catch (final InterruptedException e)
+        {
+            current = null;
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for read ahead.");
+        }
+        finally
+        {
+            readerWaitNanos += System.nanoTime() - start;
+        }
+
+        if (current == END)
+        {
+            if (readError != null)
+            {
+                throw new IOException("Error reading ahead.", readError);
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the time the reader spent waiting for the read ahead thread. A
+     * large value relative to the elapsed time means the job is I/O bound.
+     *
+     * @param unit
+     *            The unit to return the time in.
+     * @return The time the reader was blocked.
+     */
+    public long getReaderWaitTime(final TimeUnit unit)
+    {
+        return unit.convert(readerWaitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the time the read ahead thread spent waiting for the reader to
+     * free a buffer. A large value relative to the elapsed time means the job
+     * is CPU bound.
+     *
+     * @param unit
+     *            The unit to return the time in.
+     * @return The time the read ahead thread was blocked.
+     */
+    public long getReadAheadWaitTime(final TimeUnit unit)
+    {
+        return unit.convert(readAheadWaitNanos, TimeUnit.NANOSECONDS);
+    }
+}
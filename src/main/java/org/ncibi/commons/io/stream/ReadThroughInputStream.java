@@ -0,0 +1,78 @@
+package org.ncibi.commons.io.stream;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Base for streams that must see every byte of their input, such as a
+ * checksum or a copy. skip() reads the skipped bytes through read() rather
+ * than skipping them, and mark and reset aren't supported since re-read
+ * bytes would be seen twice.
+ *
+ * @author gtarcea
+ *
+ */
+abstract class ReadThroughInputStream extends CheckableInputStream
+{
+    /**
+     * Size of the buffer skipped bytes are read into.
+     */
+    private static final int SKIP_BUFFER_SIZE = 8 * 1024;
+
+    /**
+     * Constructor.
+     *
+     * @param in
+     *            The stream to read.
+     */
+    ReadThroughInputStream(final InputStream in)
+    {
+        super(in);
+    }
+
+    @Override
+    public int read(final byte[] b) throws IOException
+    {
+        return read(b, 0, b.length);
+    }
+
+    @Override
+    public long skip(final long n) throws IOException
+    {
+        if (n <= 0)
+        {
+            return 0;
+        }
+
+        final byte[] buffer = new byte[(int) Math.min(n, SKIP_BUFFER_SIZE)];
+        long skipped = 0;
+        while (skipped < n)
+        {
+            final int count = read(buffer, 0, (int) Math.min(n - skipped, buffer.length));
+            if (count == -1)
+            {
+                break;
+            }
+            skipped += count;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported()
+    {
+        return false;
+    }
+
+    @Override
+    public void mark(final int readlimit)
+    {
+        // Not supported.
+    }
+
+    @Override
+    public void reset() throws IOException
+    {
+        throw new IOException("mark/reset not supported");
+    }
+}
@@ -0,0 +1,222 @@
+package org.ncibi.commons.io.stream;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A token bucket that limits the rate bytes are read or written at. Tokens
+ * (bytes) are added to the bucket at the configured rate up to its capacity,
+ * the burst size; a caller that wants more bytes than the bucket holds waits
+ * until enough have been added.
+ *
+ * A bucket can be shared by any number of streams and threads, so the total
+ * I/O of a job can be capped by giving all its streams the same bucket. Waits
+ * are reserved in arrival order: each caller takes its bytes immediately,
+ * possibly driving the bucket into debt, and then sleeps until the debt it
+ * added has been paid back. The rate can be changed at any time and applies to
+ * the next call to acquire().
+ *
+ * @author gtarcea
+ *
+ */
+public class TokenBucket
+{
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Bytes added per second.
+     */
+    private long bytesPerSecond;
+
+    /**
+     * Most bytes the bucket holds.
+     */
+    private long burstBytes;
+
+    /**
+     * Bytes available now; negative when callers are waiting.
+     */
+    private double tokens;
+
+    /**
+     * When tokens was last brought up to date.
+     */
+    private long lastRefill;
+
+    /**
+     * Total bytes acquired.
+     */
+    private final AtomicLong bytesAcquired = new AtomicLong();
+
+    /**
+     * Total nanoseconds callers spent waiting.
+     */
+    private final AtomicLong throttledNanos = new AtomicLong();
+
+    /**
+     * Number of calls to acquire() that had to wait.
+     */
+    private final AtomicLong throttleCount = new AtomicLong();
+
+    /**
+     * Constructor for a bucket that holds one second's worth of bytes.
+     *
+     * @param bytesPerSecond
+     *            The rate bytes are allowed at.
+     */
+    public TokenBucket(final long bytesPerSecond)
+    {
+        this(bytesPerSecond, bytesPerSecond);
+    }
+
+    /**
+     * Constructor. The bucket starts full.
+     *
+     * @param bytesPerSecond
+     *            The rate bytes are allowed at.
+     * @param burstBytes
+     *            The most bytes allowed at once after a quiet period.
+     */
+    public TokenBucket(final long bytesPerSecond, final long burstBytes)
+    {
+        checkRate(bytesPerSecond, burstBytes);
+        this.bytesPerSecond = bytesPerSecond;
+        this.burstBytes = burstBytes;
+        this.tokens = burstBytes;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Changes the rate, keeping the burst size.
+     *
+     * @param bytesPerSecond
+     *            The new rate.
+     */
+    public synchronized void setRate(final long bytesPerSecond)
+    {
+        setRate(bytesPerSecond, burstBytes);
+    }
+
+    /**
+     * Changes the rate and burst size.
+     *
+     * @param bytesPerSecond
+     *            The new rate.
+     * @param burstBytes
+     *            The new burst size.
+     */
+    public synchronized void setRate(final long bytesPerSecond, final long burstBytes)
+    {
+        checkRate(bytesPerSecond, burstBytes);
+        refill(System.nanoTime());
+        this.bytesPerSecond = bytesPerSecond;
+        this.burstBytes = burstBytes;
+        this.tokens = Math.min(tokens, burstBytes);
+    }
+
+    /**
+     * Rejects a rate or burst size that isn't positive.
+     */
+    private static void checkRate(final long bytesPerSecond, final long burstBytes)
+    {
+        if (bytesPerSecond <= 0 || burstBytes <= 0)
+        {
+            throw new IllegalArgumentException("bytesPerSecond and burstBytes must be positive.");
+        }
+    }
+
+    /**
+     * @return The rate bytes are allowed at.
+     */
+    public synchronized long getRate()
+    {
+        return bytesPerSecond;
+    }
+
+    /**
+     * @return The most bytes allowed at once.
+     */
+    public synchronized long getBurstBytes()
+    {
+        return burstBytes;
+    }
+
+    /**
+     * Takes bytes from the bucket, waiting until the rate allows them.
+     *
+     * @param bytes
+     *            The number of bytes to take.
+     * @throws InterruptedException
+     *             When the thread is interrupted while waiting. The bytes
+     *             are still counted against the bucket.
+     */
+    public void acquire(final long bytes) throws InterruptedException
+    {
+        if (bytes <= 0)
+        {
+            return;
+        }
+
+        final long waitNanos;
+        synchronized (this)
+        {
+            refill(System.nanoTime());
+            tokens -= bytes;
+            waitNanos = tokens < 0 ? (long) (-tokens * NANOS_PER_SECOND / bytesPerSecond) : 0;
+        }
+        bytesAcquired.addAndGet(bytes);
+
+        if (waitNanos > 0)
+        {
+            throttleCount.incrementAndGet();
+            final long start = System.nanoTime();
+            try
+            {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            }
+            finally
+            {
+                throttledNanos.addAndGet(System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Adds the tokens earned since the last refill.
+     */
+    private void refill(final long now)
+    {
+        tokens = Math.min(burstBytes, tokens + (double) (now - lastRefill) * bytesPerSecond
+                / NANOS_PER_SECOND);
+        lastRefill = now;
+    }
+
+    /**
+     * @return The total number of bytes acquired.
+     */
+    public long getBytesAcquired()
+    {
+        return bytesAcquired.get();
+    }
+
+    /**
+     * Returns the total time callers of acquire() spent waiting. With several
+     * threads sharing the bucket this can be more than the elapsed time.
+     *
+     * @param unit
+     *            The unit to return the time in.
+     * @return The time spent throttled.
+     */
+    public long getThrottledTime(final TimeUnit unit)
+    {
+        return unit.convert(throttledNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return The number of calls to acquire() that had to wait.
+     */
+    public long getThrottleCount()
+    {
+        return throttleCount.get();
+    }
+}
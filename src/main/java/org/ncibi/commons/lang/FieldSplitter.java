@@ -0,0 +1,291 @@
+package org.ncibi.commons.lang;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits delimited lines into fields by scanning for the delimiter with
+ * String.indexOf(), with no tokenizer or intermediate list. The fields are
+ * exactly those StrUtils.split() has always returned: a null or empty line
+ * has no fields, otherwise every delimiter ends a field, so empty fields are
+ * kept, including a trailing one. A string delimiter is matched as a whole
+ * string, scanning left to right, and a null or empty delimiter never
+ * matches.
+ *
+ * Besides returning a new array or list, a line can be split into a caller's
+ * reusable String[] or into an array of field offsets, which creates no
+ * objects at all, and a single field can be fetched without scanning past
+ * it. Fields can be deduplicated through a StringPool, which only creates a
+ * String for a field the pool hasn't seen. A FieldSplitter has no mutable
+ * state and can be shared between threads.
+ *
+ * @author gtarcea
+ *
+ */
+public final class FieldSplitter
+{
+    /**
+     * Initial capacity of the lists returned by splitToList(), enough for
+     * typical lines without a pass to count the fields.
+     */
+    private static final int DEFAULT_LIST_CAPACITY = 16;
+
+    /**
+     * The delimiter when it is a single character.
+     */
+    private final char delimiterChar;
+
+    /**
+     * The delimiter when it is longer than one character, otherwise null.
+     */
+    private final String delimiterString;
+
+    /**
+     * The length of the delimiter; 0 if it never matches.
+     */
+    private final int delimiterLength;
+
+    /**
+     * Deduplicates fields, or null.
+     */
+    private final StringPool pool;
+
+    /**
+     * Constructor for a single character delimiter.
+     *
+     * @param delimiter
+     *            The delimiter.
+     */
+    public FieldSplitter(final char delimiter)
+    {
+        this(delimiter, null);
+    }
+
+    /**
+     * Constructor for a single character delimiter with fields taken from a
+     * pool.
+     *
+     * @param delimiter
+     *            The delimiter.
+     * @param pool
+     *            Deduplicates fields, or null.
+     */
+    public FieldSplitter(final char delimiter, final StringPool pool)
+    {
+        this.delimiterChar = delimiter;
+        this.delimiterString = null;
+        this.delimiterLength = 1;
+        this.pool = pool;
+    }
+
+    /**
+     * Constructor for a string delimiter.
+     *
+     * @param delimiter
+     *            The delimiter. If it is null or empty lines aren't split.
+     */
+    public FieldSplitter(final String delimiter)
+    {
+        this(delimiter, null);
+    }
+
+    /**
+     * Constructor for a string delimiter with fields taken from a pool.
+     *
+     * @param delimiter
+     *            The delimiter. If it is null or empty lines aren't split.
+     * @param pool
+     *            Deduplicates fields, or null.
+     */
+    public FieldSplitter(final String delimiter, final StringPool pool)
+    {
+        this.delimiterLength = delimiter == null ? 0 : delimiter.length();
+        this.delimiterChar = delimiterLength == 1 ? delimiter.charAt(0) : 0;
+        this.delimiterString = delimiterLength > 1 ? delimiter : null;
+        this.pool = pool;
+    }
+
+    /**
+     * Returns a field, from the pool if there is one.
+     */
+    private String substring(final String line, final int start, final int end)
+    {
+        return pool == null ? line.substring(start, end) : pool.intern(line, start, end);
+    }
+
+    /**
+     * Finds the next delimiter.
+     *
+     * @return Its index, or -1 if there isn't one.
+     */
+    private int next(final String line, final int from)
+    {
+        if (delimiterString != null)
+        {
+            return line.indexOf(delimiterString, from);
+        }
+        return delimiterLength == 0 ? -1 : line.indexOf(delimiterChar, from);
+    }
+
+    /**
+     * Counts the fields of a line.
+     *
+     * @param line
+     *            The line.
+     * @return The number of fields.
+     */
+    public int count(final String line)
+    {
+        if (line == null || line.length() == 0)
+        {
+            return 0;
+        }
+        int count = 1;
+        for (int at = next(line, 0); at != -1; at = next(line, at + delimiterLength))
+        {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Splits a line into a new array.
+     *
+     * @param line
+     *            The line.
+     * @return The fields.
+     */
+    public String[] splitToArray(final String line)
+    {
+        final String[] fields = new String[count(line)];
+        split(line, fields);
+        return fields;
+    }
+
+    /**
+     * Splits a line into a new list.
+     *
+     * @param line
+     *            The line.
+     * @return The fields, in a list that can be modified.
+     */
+    public List<String> splitToList(final String line)
+    {
+        final List<String> fields = new ArrayList<String>(DEFAULT_LIST_CAPACITY);
+        if (line == null || line.length() == 0)
+        {
+            return fields;
+        }
+        int start = 0;
+        for (int at = next(line, 0); at != -1; at = next(line, start))
+        {
+            fields.add(substring(line, start, at));
+            start = at + delimiterLength;
+        }
+        fields.add(substring(line, start, line.length()));
+        return fields;
+    }
+
+    /**
+     * Splits a line into a caller's array, so the array can be reused from
+     * line to line. Fields that don't fit are counted but not stored.
+     *
+     * @param line
+     *            The line.
+     * @param fields
+     *            Receives the fields.
+     * @return The number of fields in the line, which may be more than
+     *         fields.length.
+     */
+    public int split(final String line, final String[] fields)
+    {
+        if (line == null || line.length() == 0)
+        {
+            return 0;
+        }
+        int count = 0;
+        int start = 0;
+        for (int at = next(line, 0); at != -1; at = next(line, start))
+        {
+            if (count < fields.length)
+            {
+                fields[count] = substring(line, start, at);
+            }
+            count++;
+            start = at + delimiterLength;
+        }
+        if (count < fields.length)
+        {
+            fields[count] = substring(line, start, line.length());
+        }
+        return count + 1;
+    }
+
+    /**
+     * Finds the fields of a line without creating any strings. Field i runs
+     * from bounds[2 * i] (inclusive) to bounds[2 * i + 1] (exclusive). Fields
+     * that don't fit are counted but not stored.
+     *
+     * @param line
+     *            The line.
+     * @param bounds
+     *            Receives the start and end of each field.
+     * @return The number of fields in the line, which may be more than
+     *         bounds.length / 2.
+     */
+    public int split(final String line, final int[] bounds)
+    {
+        if (line == null || line.length() == 0)
+        {
+            return 0;
+        }
+        final int capacity = bounds.length / 2;
+        int count = 0;
+        int start = 0;
+        for (int at = next(line, 0); at != -1; at = next(line, start))
+        {
+            if (count < capacity)
+            {
+                bounds[2 * count] = start;
+                bounds[2 * count + 1] = at;
+            }
+            count++;
+            start = at + delimiterLength;
+        }
+        if (count < capacity)
+        {
+            bounds[2 * count] = start;
+            bounds[2 * count + 1] = line.length();
+        }
+        return count + 1;
+    }
+
+    /**
+     * Fetches one field of a line, scanning only as far as its end.
+     *
+     * @param line
+     *            The line.
+     * @param n
+     *            The field to fetch, starting at 0.
+     * @return The field, or null if the line has too few fields.
+     */
+    public String field(final String line, final int n)
+    {
+        if (line == null || line.length() == 0)
+        {
+            return null;
+        }
+        int start = 0;
+        for (int i = 0; i < n; i++)
+        {
+            final int at = next(line, start);
+            if (at == -1)
+            {
+                return null;
+            }
+            start = at + delimiterLength;
+        }
+        final int end = next(line, start);
+        return end == -1 ? substring(line, start, line.length()) : substring(line, start, end);
+    }
+}
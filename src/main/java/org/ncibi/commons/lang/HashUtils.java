@@ -0,0 +1,75 @@
+package org.ncibi.commons.lang;
+
+import org.ncibi.commons.exception.ConstructorCalledError;
+
+/**
+ * Hash functions shared by the hash tables, filters and pools. They are for
+ * spreading keys over slots and bits, not for security.
+ *
+ * @author gtarcea
+ *
+ */
+public final class HashUtils
+{
+    /**
+     * Utility class, make constructor private.
+     */
+    private HashUtils()
+    {
+        throw new ConstructorCalledError(this.getClass());
+    }
+
+    /**
+     * Mixes a 64 bit value with the murmur3 finalizer so every input bit
+     * affects every output bit. Distinct values have distinct results.
+     *
+     * @param value
+     *            The value.
+     * @return The mixed value.
+     */
+    public static long mix(final long value)
+    {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Hashes characters to 64 bits FNV-1a style, one char at a time so
+     * nothing is allocated, then mixes the result. Unlike String.hashCode()
+     * strings only collide when all 64 bits do.
+     *
+     * @param chars
+     *            The characters.
+     * @return The hash.
+     */
+    public static long hashChars(final CharSequence chars)
+    {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < chars.length(); i++)
+        {
+            h = (h ^ chars.charAt(i)) * 0x100000001b3L;
+        }
+        return mix(h ^ chars.length());
+    }
+
+    /**
+     * Spreads a 32 bit hash with a golden ratio multiply and mixes the high
+     * bits into the low bits, so a hash masked down to a power of two table
+     * size still depends on all of its bits. Sequential keys spread over the
+     * table.
+     *
+     * @param hash
+     *            The hash.
+     * @return The spread hash.
+     */
+    public static int spread(final int hash)
+    {
+        final int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -1,14 +1,9 @@
 package org.ncibi.commons.lang;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
-import org.apache.commons.lang.StringUtils;
-import org.apache.commons.lang.text.StrTokenizer;
-import org.ncibi.commons.bean.BeanUtils;
-import org.ncibi.commons.closure.ChangerFieldGetter;
 import org.ncibi.commons.closure.FieldGetter;
 import org.ncibi.commons.exception.ConstructorCalledError;
 
@@ -64,8 +59,8 @@ public final class StrUtils
 
     /**
      * This function takes a collection of objects (beans), pulls a field from the collection,
-     * quotes the fields, and joins the resulting list of quoted fields. See StringUtils.join() for
-     * details on joining a set of strings.
+     * quotes the fields, and joins the quoted fields in one pass. See FieldJoiner for joining into
+     * a StringBuilder or Writer, or with quotes escaped.
      * 
      * @param <T>
      *            The type of object in the collection.
@@ -85,25 +80,14 @@ public final class StrUtils
     public static <T> String quoteFieldJoin(final Collection<T> collection, final Quote quoteType,
                 final String separator, final FieldGetter<String, T> fieldGetter)
     {
-        // Declare as final so changeField can see it.
-        final String quote = quoteType == Quote.SINGLE_QUOTE ? "'" : "\"";
-
-        final List<String> strList = BeanUtils.fieldToList(collection,
-                    new ChangerFieldGetter<String, T>(fieldGetter)
-                    {
-                        @Override
-                        public String changeField(final String field)
-                        {
-                            return quote + field + quote;
-                        }
-                    });
-
-        return StringUtils.join(strList, separator);
+        // Nulls have always been quoted as 'null'.
+        return FieldJoiner.on(separator).quoted(quoteType).useForNull("null").join(collection,
+                    fieldGetter);
     }
 
     /**
      * This function takes an array of objects (beans), pulls a field from the collection, quotes
-     * the fields, and joins the resulting list of quoted fields. See StringUtils.join() for details
+     * the fields, and joins the quoted fields in one pass. See FieldJoiner for details
      * on joining a set of strings.
      * 
      * @param <T>
@@ -145,8 +129,7 @@ public final class StrUtils
     public static <T> String fieldJoin(final Collection<T> collection, final String separator,
                 final FieldGetter<String, T> fieldGetter)
     {
-        final List<String> strList = BeanUtils.fieldToList(collection, fieldGetter);
-        return StringUtils.join(strList, separator);
+        return FieldJoiner.on(separator).join(collection, fieldGetter);
     }
 
     /**
@@ -181,17 +164,7 @@ public final class StrUtils
      */
     public static List<String> split(final String line, final String delimiter)
     {
-        final List<String> tokenList = new ArrayList<String>();
-        final StrTokenizer tokenizer = new StrTokenizer(line, delimiter);
-        tokenizer.setEmptyTokenAsNull(false);
-        tokenizer.setIgnoreEmptyTokens(false);
-
-        while (tokenizer.hasNext())
-        {
-            tokenList.add(tokenizer.nextToken());
-        }
-
-        return tokenList;
+        return new FieldSplitter(delimiter).splitToList(line);
     }
 
     /**
@@ -205,7 +178,7 @@ public final class StrUtils
      */
     public static List<String> split(final String line, final char delimiter)
     {
-        return split(line, Character.toString(delimiter));
+        return new FieldSplitter(delimiter).splitToList(line);
     }
 
     /**
@@ -219,10 +192,7 @@ public final class StrUtils
      */
     public static String[] splitAsArray(final String line, final String delimiter)
     {
-        final List<String> tokenList = split(line, delimiter);
-        final String[] tokenArray = new String[tokenList.size()];
-
-        return tokenList.toArray(tokenArray);
+        return new FieldSplitter(delimiter).splitToArray(line);
     }
 
     /**
@@ -236,7 +206,7 @@ public final class StrUtils
      */
     public static String[] splitAsArray(final String line, final char delimiter)
     {
-        return splitAsArray(line, Character.toString(delimiter));
+        return new FieldSplitter(delimiter).splitToArray(line);
     }
 
     /**
@@ -0,0 +1,416 @@
+package org.ncibi.commons.lang;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded pool of strings used to deduplicate the values of data files that
+ * repeat a small vocabulary (gene symbols, species, evidence codes) millions of
+ * times. Interning a value returns the pooled string equal to it, so a loaded
+ * data set holds one copy of each value instead of one per row. Values can be
+ * interned straight from a region of a line, a char[] or an ASCII byte[], in
+ * which case a String is only created the first time a value is seen.
+ *
+ * Unlike String.intern() the pool has a fixed size. It is a set associative
+ * cache: a value can only be stored in the eight slots of the set its hash
+ * selects. A hit moves the value one slot towards the front of its set and a
+ * miss inserts at the front, evicting the value in the last slot, so values
+ * that keep being used stay while one-off values are pushed out.
+ *
+ * The pool can be shared between threads without locking. Concurrent updates
+ * of a set can occasionally drop or duplicate an entry, which only costs a
+ * miss; interning always returns a string equal to its argument.
+ *
+ * @author gtarcea
+ *
+ */
+public final class StringPool
+{
+    /**
+     * Slots per set.
+     */
+    private static final int WAYS = 8;
+
+    /**
+     * Number of stripes the statistics are spread over to avoid contention.
+     */
+    private static final int STRIPES = 32;
+
+    /**
+     * Spacing between stripes, so each stripe is on its own cache line.
+     */
+    private static final int STRIPE_SPACING = 8;
+
+    /**
+     * Entries of the default pool.
+     */
+    private static final int DEFAULT_CAPACITY = 64 * 1024;
+
+    /**
+     * The pool returned by defaultPool().
+     */
+    private static final StringPool DEFAULT_POOL = new StringPool(DEFAULT_CAPACITY);
+
+    /**
+     * The slots, WAYS per set.
+     */
+    private final AtomicReferenceArray<String> table;
+
+    /**
+     * Selects a set from a hash.
+     */
+    private final int setMask;
+
+    /**
+     * Hit counts, striped.
+     */
+    private final AtomicLongArray hits = new AtomicLongArray(STRIPES * STRIPE_SPACING);
+
+    /**
+     * Miss counts, striped.
+     */
+    private final AtomicLongArray misses = new AtomicLongArray(STRIPES * STRIPE_SPACING);
+
+    /**
+     * Eviction counts, striped.
+     */
+    private final AtomicLongArray evictions = new AtomicLongArray(STRIPES * STRIPE_SPACING);
+
+    /**
+     * Returns a pool shared by the whole JVM.
+     *
+     * @return The default pool.
+     */
+    public static StringPool defaultPool()
+    {
+        return DEFAULT_POOL;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param capacity
+     *            The most strings the pool holds; rounded up to a power of two.
+     */
+    public StringPool(final int capacity)
+    {
+        int sets = 1;
+        while (sets * WAYS < capacity)
+        {
+            sets *= 2;
+        }
+        this.table = new AtomicReferenceArray<String>(sets * WAYS);
+        this.setMask = sets - 1;
+    }
+
+    /**
+     * @return The most strings the pool holds.
+     */
+    public int getCapacity()
+    {
+        return table.length();
+    }
+
+    /**
+     * Returns the pooled string equal to a string, pooling it if there isn't
+     * one.
+     *
+     * @param s
+     *            The string, or null.
+     * @return The pooled string, or null.
+     */
+    public String intern(final String s)
+    {
+        if (s == null)
+        {
+            return null;
+        }
+        final int hash = s.hashCode();
+        final int base = base(hash);
+        for (int way = 0; way < WAYS; way++)
+        {
+            final String candidate = table.get(base + way);
+            if (candidate == null)
+            {
+                break;
+            }
+            if (candidate.hashCode() == hash && candidate.equals(s))
+            {
+                return hit(hash, base, way, candidate);
+            }
+        }
+        return miss(hash, base, s);
+    }
+
+    /**
+     * Returns the pooled string equal to a region of a string, such as a
+     * field of a line. The region is only copied if it isn't pooled.
+     *
+     * @param source
+     *            The string holding the region.
+     * @param start
+     *            The start of the region.
+     * @param end
+     *            The end of the region (exclusive).
+     * @return The pooled string.
+     */
+    public String intern(final String source, final int start, final int end)
+    {
+        int hash = 0;
+        for (int i = start; i < end; i++)
+        {
+            hash = 31 * hash + source.charAt(i);
+        }
+        final int length = end - start;
+        final int base = base(hash);
+        for (int way = 0; way < WAYS; way++)
+        {
+            final String candidate = table.get(base + way);
+            if (candidate == null)
+            {
+                break;
+            }
+            if (candidate.hashCode() == hash && candidate.length() == length
+                    && candidate.regionMatches(0, source, start, length))
+            {
+                return hit(hash, base, way, candidate);
+            }
+        }
+        return miss(hash, base, source.substring(start, end));
+    }
+
+    /**
+     * Returns the pooled string equal to a region of a char array. The region
+     * is only copied if it isn't pooled.
+     *
+     * @param chars
+     *            The characters.
+     * @param start
+     *            The start of the region.
+     * @param end
+     *            The end of the region (exclusive).
+     * @return The pooled string.
+     */
+    public String intern(final char[] chars, final int start, final int end)
+    {
+        int hash = 0;
+        for (int i = start; i < end; i++)
+        {
+            hash = 31 * hash + chars[i];
+        }
+        final int length = end - start;
+        final int base = base(hash);
+        for (int way = 0; way < WAYS; way++)
+        {
+            final String candidate = table.get(base + way);
+            if (candidate == null)
+            {
+                break;
+            }
+            if (candidate.hashCode() == hash && matches(candidate, chars, start, length))
+            {
+                return hit(hash, base, way, candidate);
+            }
+        }
+        return miss(hash, base, new String(chars, start, length));
+    }
+
+    /**
+     * Returns the pooled string equal to a region of encoded bytes. ASCII
+     * regions are looked up without decoding; others are decoded first.
+     *
+     * @param bytes
+     *            The encoded characters.
+     * @param start
+     *            The start of the region.
+     * @param end
+     *            The end of the region (exclusive).
+     * @param charset
+     *            The charset of the bytes, which must encode ASCII as itself
+     *            (UTF-8, ISO-8859-1, ...).
+     * @return The pooled string.
+     */
+    public String intern(final byte[] bytes, final int start, final int end,
+            final Charset charset)
+    {
+        int hash = 0;
+        for (int i = start; i < end; i++)
+        {
+            final byte b = bytes[i];
+            if (b < 0)
+            {
+                return intern(new String(bytes, start, end - start, charset));
+            }
+            hash = 31 * hash + b;
+        }
+        final int length = end - start;
+        final int base = base(hash);
+        for (int way = 0; way < WAYS; way++)
+        {
+            final String candidate = table.get(base + way);
+            if (candidate == null)
+            {
+                break;
+            }
+            if (candidate.hashCode() == hash && matches(candidate, bytes, start, length))
+            {
+                return hit(hash, base, way, candidate);
+            }
+        }
+        final char[] chars = new char[length];
+        for (int i = 0; i < length; i++)
+        {
+            chars[i] = (char) bytes[start + i];
+        }
+        return miss(hash, base, new String(chars));
+    }
+
+    /**
+     * Empties the pool. The statistics are kept.
+     */
+    public void clear()
+    {
+        for (int i = 0; i < table.length(); i++)
+        {
+            table.set(i, null);
+        }
+    }
+
+    /**
+     * @return The number of interns that found a pooled string.
+     */
+    public long getHitCount()
+    {
+        return sum(hits);
+    }
+
+    /**
+     * @return The number of interns that pooled a new string.
+     */
+    public long getMissCount()
+    {
+        return sum(misses);
+    }
+
+    /**
+     * @return The number of strings pushed out of the pool by new ones.
+     */
+    public long getEvictionCount()
+    {
+        return sum(evictions);
+    }
+
+    /**
+     * @return The fraction of interns that found a pooled string, or 0 if
+     *         nothing has been interned.
+     */
+    public double getHitRate()
+    {
+        final long hitCount = getHitCount();
+        final long total = hitCount + getMissCount();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * Returns the first slot of the set a hash selects.
+     */
+    private int base(final int hash)
+    {
+        return (HashUtils.spread(hash) & setMask) * WAYS;
+    }
+
+    /**
+     * Records a hit and moves the string one slot towards the front of its
+     * set.
+     */
+    private String hit(final int hash, final int base, final int way, final String found)
+    {
+        if (way > 0)
+        {
+            table.set(base + way, table.get(base + way - 1));
+            table.set(base + way - 1, found);
+        }
+        hits.incrementAndGet(stripe(hash));
+        return found;
+    }
+
+    /**
+     * Records a miss and inserts the string at the front of its set.
+     */
+    private String miss(final int hash, final int base, final String s)
+    {
+        if (table.get(base + WAYS - 1) != null)
+        {
+            evictions.incrementAndGet(stripe(hash));
+        }
+        for (int way = WAYS - 1; way > 0; way--)
+        {
+            table.set(base + way, table.get(base + way - 1));
+        }
+        table.set(base, s);
+        misses.incrementAndGet(stripe(hash));
+        return s;
+    }
+
+    /**
+     * Returns the statistics slot of a hash.
+     */
+    private static int stripe(final int hash)
+    {
+        return (hash & (STRIPES - 1)) * STRIPE_SPACING;
+    }
+
+    /**
+     * Adds up striped statistics.
+     */
+    private static long sum(final AtomicLongArray counts)
+    {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i += STRIPE_SPACING)
+        {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Compares a string with a region of a char array.
+     */
+    private static boolean matches(final String s, final char[] chars, final int start,
+            final int length)
+    {
+        if (s.length() != length)
+        {
+            return false;
+        }
+        for (int i = 0; i < length; i++)
+        {
+            if (s.charAt(i) != chars[start + i])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compares a string with a region of ASCII bytes.
+     */
+    private static boolean matches(final String s, final byte[] bytes, final int start,
+            final int length)
+    {
+        if (s.length() != length)
+        {
+            return false;
+        }
+        for (int i = 0; i < length; i++)
+        {
+            if (s.charAt(i) != bytes[start + i])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,152 @@
+package org.ncibi.commons.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.ncibi.commons.closure.P1;
+
+public class BloomFilterTest
+{
+    private static List<String> ids(final String prefix, final int count)
+    {
+        final List<String> ids = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++)
+        {
+            ids.add(prefix + i);
+        }
+        return ids;
+    }
+
+    private static double falsePositiveRate(final BloomFilter filter, final List<String> absent)
+    {
+        int falsePositives = 0;
+        for (final String id : absent)
+        {
+            if (filter.mightContain(id))
+            {
+                falsePositives++;
+            }
+        }
+        return (double) falsePositives / absent.size();
+    }
+
+    @Test
+    public void testFalsePositiveRate()
+    {
+        final List<String> absent = ids("absent", 200000);
+        for (final double rate : new double[] { 0.1, 0.01, 0.001 })
+        {
+            final BloomFilter filter = new BloomFilter(100000, rate);
+            filter.addAll(ids("GeneID:", 100000));
+            for (final String id : ids("GeneID:", 100000))
+            {
+                assertTrue(filter.mightContain(id));
+            }
+            final double measured = falsePositiveRate(filter, absent);
+            assertTrue(rate + " measured " + measured, measured < rate * 1.3);
+            assertTrue(filter.getFalsePositiveRate() < rate * 1.3);
+        }
+    }
+
+    @Test
+    public void testLongIds()
+    {
+        final BloomFilter filter = new BloomFilter(10000, 0.01);
+        for (long id = 0; id < 10000; id++)
+        {
+            filter.add(id * 7);
+        }
+        assertFalse(filter.add(0L));
+        int falsePositives = 0;
+        for (long id = 0; id < 70000; id++)
+        {
+            if (id % 7 == 0)
+            {
+                assertTrue(filter.mightContain(id));
+            }
+            else if (filter.mightContain(id))
+            {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 60000 * 0.013);
+    }
+
+    @Test
+    public void testConcurrentAdd()
+    {
+        final BloomFilter filter = new BloomFilter(100000, 0.01);
+        final ChunkProcessor processor = new ChunkProcessor();
+        processor.setThreads(4);
+        processor.forEach(ids("id", 100000), 1000, new P1<List<String>>()
+        {
+            public void apply(final List<String> chunk)
+            {
+                filter.addAll(chunk);
+            }
+        });
+        for (final String id : ids("id", 100000))
+        {
+            assertTrue(filter.mightContain(id));
+        }
+        assertTrue(processor.getElapsedTime(TimeUnit.NANOSECONDS) > 0);
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException
+    {
+        final BloomFilter filter = new BloomFilter(5000, 0.01);
+        filter.addAll(ids("id", 5000));
+        final File file = File.createTempFile("filter", ".bloom");
+        file.deleteOnExit();
+        filter.save(file);
+
+        final BloomFilter loaded = BloomFilter.load(file);
+        assertEquals(filter.getBitCount(), loaded.getBitCount());
+        assertEquals(filter.getHashCount(), loaded.getHashCount());
+        for (final String id : ids("id", 5000))
+        {
+            assertTrue(loaded.mightContain(id));
+        }
+        final List<String> absent = ids("absent", 10000);
+        assertEquals(falsePositiveRate(filter, absent), falsePositiveRate(loaded, absent), 0);
+    }
+
+    @Test(expected = IOException.class)
+    public void testLoadRejectsOtherFiles() throws IOException
+    {
+        final File file = File.createTempFile("filter", ".bloom");
+        file.deleteOnExit();
+        final FileOutputStream out = new FileOutputStream(file);
+        out.write(new byte[64]);
+        out.close();
+        BloomFilter.load(file);
+    }
+
+    @Test
+    public void testInvalidArguments()
+    {
+        for (final double rate : new double[] { 0, 1, Double.NaN })
+        {
+            try
+            {
+                new BloomFilter(10, rate);
+                fail("Expected an IllegalArgumentException for " + rate);
+            }
+            catch (final IllegalArgumentException e)
+            {
+                // Expected.
+            }
+        }
+    }
+}
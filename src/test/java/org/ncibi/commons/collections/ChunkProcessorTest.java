@@ -0,0 +1,159 @@
+package org.ncibi.commons.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.ncibi.commons.closure.F1;
+import org.ncibi.commons.closure.P1;
+
+public class ChunkProcessorTest
+{
+    private static final F1<Integer, List<Integer>> SUM = new F1<Integer, List<Integer>>()
+    {
+        public Integer apply(final List<Integer> chunk)
+        {
+            int sum = 0;
+            for (final Integer i : chunk)
+            {
+                sum += i;
+            }
+            return sum;
+        }
+    };
+
+    private static List<Integer> numbers(final int count)
+    {
+        final List<Integer> numbers = new ArrayList<Integer>(count);
+        for (int i = 0; i < count; i++)
+        {
+            numbers.add(i);
+        }
+        return numbers;
+    }
+
+    /**
+     * The sums of each chunk of 10 of numbers(1000).
+     */
+    private static List<Integer> expectedSums()
+    {
+        final List<Integer> sums = new ArrayList<Integer>();
+        for (int chunk = 0; chunk < 100; chunk++)
+        {
+            sums.add(100 * chunk + 45);
+        }
+        return sums;
+    }
+
+    @Test
+    public void testOrdered()
+    {
+        final ChunkProcessor processor = new ChunkProcessor();
+        processor.setThreads(4);
+        assertEquals(expectedSums(), processor.map(numbers(1000), 10, SUM));
+        assertEquals(100, processor.getChunkTimes(TimeUnit.NANOSECONDS).length);
+        assertTrue(processor.getTotalChunkTime(TimeUnit.NANOSECONDS) > 0);
+        assertTrue(processor.getElapsedTime(TimeUnit.NANOSECONDS) > 0);
+        assertEquals(0, processor.map(new ArrayList<Integer>(), 10, SUM).size());
+        assertEquals(0, processor.getChunkTimes(TimeUnit.NANOSECONDS).length);
+    }
+
+    @Test
+    public void testUnordered()
+    {
+        final ChunkProcessor processor = new ChunkProcessor();
+        processor.setThreads(4);
+        processor.setOrdered(false);
+        final List<Integer> sums = processor.map(numbers(1000), 10, SUM);
+        Collections.sort(sums);
+        assertEquals(expectedSums(), sums);
+    }
+
+    @Test
+    public void testMaxChunksInFlight()
+    {
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final ChunkProcessor processor = new ChunkProcessor();
+        processor.setThreads(4);
+        processor.setMaxChunksInFlight(3);
+        final List<Integer> sums = new ArrayList<Integer>();
+        processor.map(numbers(1000), 10, new F1<Integer, List<Integer>>()
+        {
+            public Integer apply(final List<Integer> chunk)
+            {
+                final int count = inFlight.incrementAndGet();
+                synchronized (maxInFlight)
+                {
+                    maxInFlight.set(Math.max(maxInFlight.get(), count));
+                }
+                return SUM.apply(chunk);
+            }
+        }, new P1<Integer>()
+        {
+            public void apply(final Integer sum)
+            {
+                inFlight.decrementAndGet();
+                sums.add(sum);
+            }
+        });
+        assertEquals(expectedSums(), sums);
+        assertTrue(maxInFlight.get() <= 3);
+    }
+
+    @Test
+    public void testForEach()
+    {
+        final AtomicInteger total = new AtomicInteger();
+        final ChunkProcessor processor = new ChunkProcessor();
+        processor.forEach(numbers(1000), 7, new P1<List<Integer>>()
+        {
+            public void apply(final List<Integer> chunk)
+            {
+                total.addAndGet(SUM.apply(chunk));
+            }
+        });
+        assertEquals(499500, total.get());
+    }
+
+    @Test
+    public void testFailure()
+    {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try
+        {
+            final ChunkProcessor processor = new ChunkProcessor(executor);
+            processor.map(numbers(100), 10, new F1<Integer, List<Integer>>()
+            {
+                public Integer apply(final List<Integer> chunk)
+                {
+                    if (chunk.contains(55))
+                    {
+                        throw new IllegalStateException("Bad chunk");
+                    }
+                    return SUM.apply(chunk);
+                }
+            });
+            fail("Expected an IllegalStateException");
+        }
+        catch (final IllegalStateException e)
+        {
+            assertEquals("Bad chunk", e.getMessage());
+            assertFalse(executor.isShutdown());
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+}
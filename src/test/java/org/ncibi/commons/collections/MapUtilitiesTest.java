@@ -0,0 +1,105 @@
+package org.ncibi.commons.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.ncibi.commons.closure.F2;
+
+public class MapUtilitiesTest
+{
+    /**
+     * Maps "key=value" strings.
+     */
+    private static final Mapper<String, Integer, String> PAIR_MAPPER = new Mapper<String, Integer, String>()
+    {
+        public String getKey(final String item)
+        {
+            return item.substring(0, item.indexOf('='));
+        }
+
+        public Integer getValue(final String item)
+        {
+            return Integer.valueOf(item.substring(item.indexOf('=') + 1));
+        }
+    };
+
+    private static final F2<Integer, Integer, Integer> SUM = new F2<Integer, Integer, Integer>()
+    {
+        public Integer apply(final Integer a, final Integer b)
+        {
+            return a + b;
+        }
+    };
+
+    private static List<String> pairs(final int count, final int keys)
+    {
+        final List<String> pairs = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++)
+        {
+            pairs.add("k" + (i % keys) + "=" + i);
+        }
+        return pairs;
+    }
+
+    @Test
+    public void testCollisionPolicies()
+    {
+        final List<String> items = Arrays.asList("a=1", "b=2", "a=3");
+        assertEquals(Integer.valueOf(1), MapUtilities.toHashMap(items, PAIR_MAPPER,
+                CollisionPolicy.FIRST_WINS).get("a"));
+        assertEquals(Integer.valueOf(3), MapUtilities.toHashMap(items, PAIR_MAPPER,
+                CollisionPolicy.LAST_WINS).get("a"));
+        assertEquals(Integer.valueOf(3), MapUtilities.toHashMap(items, PAIR_MAPPER).get("a"));
+        assertEquals(Integer.valueOf(4), MapUtilities.toHashMap(items, PAIR_MAPPER, SUM).get("a"));
+        try
+        {
+            MapUtilities.toHashMap(items, PAIR_MAPPER, CollisionPolicy.FAIL);
+            fail("Expected an IllegalArgumentException");
+        }
+        catch (final IllegalArgumentException e)
+        {
+            assertEquals("Duplicate key: a", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testParallelMatchesSerial()
+    {
+        final List<String> items = pairs(10000, 777);
+        for (final CollisionPolicy policy : new CollisionPolicy[] { CollisionPolicy.FIRST_WINS,
+                CollisionPolicy.LAST_WINS })
+        {
+            for (final int threads : new int[] { 1, 3, 8 })
+            {
+                assertEquals(MapUtilities.toHashMap(items, PAIR_MAPPER, policy), MapUtilities
+                        .toParallelHashMap(items, PAIR_MAPPER, policy, threads));
+            }
+        }
+        assertEquals(MapUtilities.toHashMap(items, PAIR_MAPPER, SUM), MapUtilities
+                .toParallelHashMap(items, PAIR_MAPPER, SUM, 4));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParallelFail()
+    {
+        MapUtilities.toParallelHashMap(pairs(100, 99), PAIR_MAPPER, CollisionPolicy.FAIL, 4);
+    }
+
+    @Test
+    public void testGroupBy()
+    {
+        final List<String> items = pairs(1000, 7);
+        final Map<String, List<Integer>> groups = MapUtilities.groupBy(items, PAIR_MAPPER);
+        assertEquals(7, groups.size());
+        assertEquals(Arrays.asList(0, 7, 14), groups.get("k0").subList(0, 3));
+        assertEquals(143, groups.get("k0").size());
+        assertEquals(groups, MapUtilities.groupBy(items, PAIR_MAPPER, 4));
+        assertEquals(0, MapUtilities.groupBy(new ArrayList<String>(), PAIR_MAPPER, 4).size());
+    }
+}
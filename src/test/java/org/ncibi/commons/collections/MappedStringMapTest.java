@@ -0,0 +1,168 @@
+package org.ncibi.commons.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+public class MappedStringMapTest
+{
+    private static final Mapper<String, String, String[]> PAIR_MAPPER = new Mapper<String, String, String[]>()
+    {
+        public String getKey(final String[] item)
+        {
+            return item[0];
+        }
+
+        public String getValue(final String[] item)
+        {
+            return item[1];
+        }
+    };
+
+    private static File tempFile() throws IOException
+    {
+        final File file = File.createTempFile("map", ".smap");
+        file.deleteOnExit();
+        return file;
+    }
+
+    @Test
+    public void testBuildAndOpen() throws IOException
+    {
+        final List<String[]> items = new ArrayList<String[]>();
+        final Map<String, String> expected = new TreeMap<String, String>();
+        for (int i = 0; i < 5000; i++)
+        {
+            final String key = "gene" + i;
+            items.add(new String[] { key, "name of " + i });
+            expected.put(key, "name of " + i);
+        }
+        items.add(new String[] { "é𝄞", "" });
+        expected.put("é𝄞", "");
+        Collections.shuffle(items);
+
+        final File file = tempFile();
+        final MappedStringMap map = MapUtilities.toMappedMap(items, PAIR_MAPPER, file);
+        assertEquals(expected.size(), map.size());
+        assertEquals("name of 4321", map.get("gene4321"));
+        assertEquals("", map.get("é𝄞"));
+        assertTrue(map.containsKey("gene0"));
+        assertFalse(map.containsKey("gene5000"));
+        assertNull(map.get("gene"));
+        assertNull(map.get(42));
+        assertEquals(expected, map);
+
+        // Iteration is in key (code point) order.
+        assertEquals(new ArrayList<String>(expected.keySet()), new ArrayList<String>(map
+                .keySet()));
+
+        final MappedStringMap reopened = MappedStringMap.open(file);
+        assertEquals(map, reopened);
+    }
+
+    @Test
+    public void testEmpty() throws IOException
+    {
+        final MappedStringMap map = MappedStringMap.build(tempFile(), new ArrayList<String[]>(),
+                PAIR_MAPPER);
+        assertTrue(map.isEmpty());
+        assertNull(map.get("a"));
+    }
+
+    @Test
+    public void testDuplicateKeysRejected() throws IOException
+    {
+        try
+        {
+            MappedStringMap.build(tempFile(), Arrays.asList(new String[] { "a", "1" },
+                    new String[] { "b", "2" }, new String[] { "a", "3" }), PAIR_MAPPER);
+            fail("Expected an IllegalArgumentException");
+        }
+        catch (final IllegalArgumentException e)
+        {
+            assertEquals("Duplicate key: a", e.getMessage());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testOpenRejectsOtherFiles() throws IOException
+    {
+        MappedStringMap.open(new File(getClass().getResource("MappedStringMapTest.class")
+                .getFile()));
+    }
+
+    @Test
+    public void testOpenRejectsCorruptCount() throws IOException
+    {
+        final File file = tempFile();
+        MappedStringMap.build(file, Arrays.asList(new String[] { "a", "1" },
+                new String[] { "b", "2" }), PAIR_MAPPER);
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try
+        {
+            raf.seek(8);
+            raf.writeInt(Integer.MAX_VALUE / 4);
+        }
+        finally
+        {
+            raf.close();
+        }
+
+        try
+        {
+            MappedStringMap.open(file);
+            fail("Expected an IOException");
+        }
+        catch (final IOException e)
+        {
+            assertTrue(e.getMessage().startsWith("Map file is truncated"));
+        }
+    }
+
+    @Test
+    public void testFailedBuildRemovesTemporaryFile() throws IOException
+    {
+        // A non-empty directory can't be replaced, so the rename fails.
+        final File dir = tempFile();
+        dir.delete();
+        dir.mkdir();
+        final File child = new File(dir, "child");
+        child.createNewFile();
+        child.deleteOnExit();
+        dir.deleteOnExit();
+
+        try
+        {
+            MappedStringMap.build(dir, Arrays.asList(new String[][] { { "a", "1" } }),
+                    PAIR_MAPPER);
+            fail("Expected an IOException");
+        }
+        catch (final IOException e)
+        {
+            // Expected.
+        }
+        assertFalse(new File(dir.getPath() + ".tmp").exists());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testImmutable() throws IOException
+    {
+        final MappedStringMap map = MappedStringMap.build(tempFile(), Collections
+                .singletonList(new String[] { "a", "1" }), PAIR_MAPPER);
+        map.put("b", "2");
+    }
+}
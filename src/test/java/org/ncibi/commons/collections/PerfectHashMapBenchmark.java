@@ -0,0 +1,140 @@
+package org.ncibi.commons.collections;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compares lookup latency of PerfectHashMap and IntPerfectHashMap with
+ * HashMap and Guava's ImmutableMap, and reports build times. Not a unit test;
+ * run it by hand:
+ *
+ * java -cp target/classes:target/test-classes:... org.ncibi.commons.collections.PerfectHashMapBenchmark [keys]
+ *
+ * @author gtarcea
+ *
+ */
+public final class PerfectHashMapBenchmark
+{
+    private static final int LOOKUPS = 2000000;
+
+    private static final int ROUNDS = 10;
+
+    /**
+     * Defeats dead code elimination.
+     */
+    private static int sink;
+
+    private PerfectHashMapBenchmark()
+    {
+    }
+
+    private static void report(final String name, final long nanos, final int operations)
+    {
+        System.out.printf("%-30s %10.1f ns/op%n", name, (double) nanos / operations);
+    }
+
+    private static long lookup(final Map<String, String> map, final String[] probes)
+    {
+        final long start = System.nanoTime();
+        for (final String probe : probes)
+        {
+            sink += map.get(probe).length();
+        }
+        return System.nanoTime() - start;
+    }
+
+    public static void main(final String[] args)
+    {
+        final int keyCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        final Random random = new Random(1);
+        final List<String> keys = new ArrayList<String>(keyCount);
+        final List<Integer> ids = new ArrayList<Integer>(keyCount);
+        for (int i = 0; i < keyCount; i++)
+        {
+            keys.add("GENE" + Long.toString(random.nextLong() & Long.MAX_VALUE, 36));
+            // Multiplying by an odd constant gives distinct IDs.
+            ids.add(i * 0x9E3779B1);
+        }
+        Collections.shuffle(keys, random);
+        final String[] probes = new String[LOOKUPS];
+        final int[] idProbes = new int[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++)
+        {
+            // Fresh copies, as if parsed from a file, so each lookup hashes
+            // the key instead of using a cached hashCode.
+            probes[i] = new String(keys.get(random.nextInt(keyCount)).toCharArray());
+            idProbes[i] = ids.get(random.nextInt(keyCount));
+        }
+
+        final IdentityMapper<String, String> stringMapper = new IdentityMapper<String, String>()
+        {
+            @Override
+            public String getKey(final String item)
+            {
+                return item;
+            }
+        };
+        final IdentityMapper<Integer, Integer> intMapper = new IdentityMapper<Integer, Integer>()
+        {
+            @Override
+            public Integer getKey(final Integer item)
+            {
+                return item;
+            }
+        };
+
+        long start = System.nanoTime();
+        final Map<String, String> hashMap = MapUtilities.toHashMap(keys, stringMapper);
+        report("build HashMap", System.nanoTime() - start, keyCount);
+        start = System.nanoTime();
+        final Map<String, String> immutableMap = MapUtilities.toImmutableMap(keys, stringMapper);
+        report("build ImmutableMap", System.nanoTime() - start, keyCount);
+        start = System.nanoTime();
+        MapUtilities.toPerfectHashMap(keys, stringMapper, 1);
+        report("build PerfectHashMap, 1 thread", System.nanoTime() - start, keyCount);
+        start = System.nanoTime();
+        final PerfectHashMap<String, String> perfectMap = MapUtilities.toPerfectHashMap(keys,
+                stringMapper, Runtime.getRuntime().availableProcessors());
+        report("build PerfectHashMap", System.nanoTime() - start, keyCount);
+        final Map<Integer, Integer> intHashMap = MapUtilities.toHashMap(ids, intMapper);
+        final IntPerfectHashMap<Integer> intPerfectMap = MapUtilities.toIntPerfectHashMap(ids,
+                intMapper);
+        System.out.printf("PerfectHashMap: %.2f bits/key, %d in fallback%n", perfectMap
+                .getBitsPerKey(), perfectMap.getFallbackSize());
+
+        for (int round = 0; round < ROUNDS; round++)
+        {
+            final boolean last = round == ROUNDS - 1;
+            final long hashTime = lookup(hashMap, probes);
+            final long immutableTime = lookup(immutableMap, probes);
+            final long perfectTime = lookup(perfectMap, probes);
+
+            start = System.nanoTime();
+            for (final int id : idProbes)
+            {
+                sink += intHashMap.get(id);
+            }
+            final long intHashTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (final int id : idProbes)
+            {
+                sink += intPerfectMap.get(id);
+            }
+            final long intPerfectTime = System.nanoTime() - start;
+
+            if (last)
+            {
+                report("HashMap<String>", hashTime, LOOKUPS);
+                report("ImmutableMap<String>", immutableTime, LOOKUPS);
+                report("PerfectHashMap<String>", perfectTime, LOOKUPS);
+                report("HashMap<Integer>", intHashTime, LOOKUPS);
+                report("IntPerfectHashMap", intPerfectTime, LOOKUPS);
+            }
+        }
+        System.out.println(sink == 42 ? "" : "done");
+    }
+}
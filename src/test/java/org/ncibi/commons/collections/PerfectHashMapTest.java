@@ -0,0 +1,205 @@
+package org.ncibi.commons.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PerfectHashMapTest
+{
+    private static final IdentityMapper<String, String> STRING_MAPPER = new IdentityMapper<String, String>()
+    {
+        @Override
+        public String getKey(final String item)
+        {
+            return item;
+        }
+    };
+
+    private static final IdentityMapper<Integer, Integer> INT_MAPPER = new IdentityMapper<Integer, Integer>()
+    {
+        @Override
+        public Integer getKey(final Integer item)
+        {
+            return item;
+        }
+    };
+
+    private static List<String> randomKeys(final int count)
+    {
+        final Random random = new Random(count);
+        final List<String> keys = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++)
+        {
+            keys.add(Long.toString(random.nextLong(), 36) + i);
+        }
+        return keys;
+    }
+
+    @Test
+    public void testStringKeys()
+    {
+        final List<String> keys = randomKeys(300000);
+        for (final int threads : new int[] { 1, 4 })
+        {
+            final PerfectHashMap<String, String> map = MapUtilities.toPerfectHashMap(keys,
+                    STRING_MAPPER, threads);
+            assertEquals(keys.size(), map.size());
+            for (final String key : keys)
+            {
+                assertEquals(key, map.get(key));
+            }
+            assertNull(map.get("not a key"));
+            assertNull(map.get(42));
+            assertFalse(map.containsKey(null));
+            assertEquals(MapUtilities.toHashMap(keys, STRING_MAPPER), map);
+            assertTrue("bits per key " + map.getBitsPerKey(), map.getBitsPerKey() < 5);
+        }
+    }
+
+    @Test
+    public void testSmallAndEmpty()
+    {
+        assertTrue(MapUtilities.toPerfectHashMap(new ArrayList<String>(), STRING_MAPPER)
+                .isEmpty());
+        final Map<String, String> map = MapUtilities.toPerfectHashMap(Arrays.asList("a"),
+                STRING_MAPPER);
+        assertEquals("a", map.get("a"));
+        assertNull(map.get("b"));
+    }
+
+    @Test
+    public void testCollidingHashCodesUseFallback()
+    {
+        // Long.hashCode() is the same for 0 and 0x100000001.
+        final List<Long> keys = Arrays.asList(0L, 0x100000001L, 5L);
+        final PerfectHashMap<Long, String> map = MapUtilities.toPerfectHashMap(keys,
+                new Mapper<Long, String, Long>()
+                {
+                    public Long getKey(final Long item)
+                    {
+                        return item;
+                    }
+
+                    public String getValue(final Long item)
+                    {
+                        return "v" + item;
+                    }
+                });
+        assertEquals(2, map.getFallbackSize());
+        assertEquals("v0", map.get(0L));
+        assertEquals("v4294967297", map.get(0x100000001L));
+        assertEquals("v5", map.get(5L));
+        assertEquals(3, new HashMap<Long, String>(map).size());
+    }
+
+    @Test
+    public void testStringKeysHashedFromChars()
+    {
+        // "Aa" and "BB" have the same hashCode(), so every string made of ten
+        // of them does too.
+        final List<String> keys = new ArrayList<String>();
+        for (int bits = 0; bits < 1024; bits++)
+        {
+            final StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 10; i++)
+            {
+                sb.append((bits & (1 << i)) == 0 ? "Aa" : "BB");
+            }
+            keys.add(sb.toString());
+        }
+        keys.addAll(randomKeys(10000));
+
+        assertEquals(1024, MapUtilities.toPerfectHashMap(keys, STRING_MAPPER)
+                .getFallbackSize());
+        for (final int threads : new int[] { 1, 4 })
+        {
+            final PerfectHashMap<String, String> map = MapUtilities.toStringPerfectHashMap(keys,
+                    STRING_MAPPER, threads);
+            assertEquals(0, map.getFallbackSize());
+            assertEquals(keys.size(), map.size());
+            for (final String key : keys)
+            {
+                assertEquals(key, map.get(key));
+            }
+            assertNull(map.get("AaAaAaAaAaAaAaAaAa"));
+            assertNull(map.get(42));
+            assertEquals(MapUtilities.toHashMap(keys, STRING_MAPPER), map);
+        }
+
+        try
+        {
+            MapUtilities.toStringPerfectHashMap(Arrays.asList("a", "b", "a"), STRING_MAPPER);
+            fail("Expected an IllegalArgumentException");
+        }
+        catch (final IllegalArgumentException e)
+        {
+            assertEquals("Duplicate key: a", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testDuplicateKeysRejected()
+    {
+        try
+        {
+            MapUtilities.toPerfectHashMap(Arrays.asList("a", "b", "a"), STRING_MAPPER);
+            fail("Expected an IllegalArgumentException");
+        }
+        catch (final IllegalArgumentException e)
+        {
+            assertEquals("Duplicate key: a", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testIntKeys()
+    {
+        final Random random = new Random(3);
+        final List<Integer> keys = new ArrayList<Integer>();
+        final Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+        while (expected.size() < 50000)
+        {
+            final int key = random.nextInt();
+            if (expected.put(key, key) == null)
+            {
+                keys.add(key);
+            }
+        }
+        keys.add(0);
+        expected.put(0, 0);
+
+        final IntPerfectHashMap<Integer> map = MapUtilities.toIntPerfectHashMap(keys, INT_MAPPER);
+        assertEquals(expected.size(), map.size());
+        for (final int key : keys)
+        {
+            assertEquals(Integer.valueOf(key), map.get(key));
+        }
+        for (int i = 0; i < 1000; i++)
+        {
+            final int key = random.nextInt();
+            assertEquals(expected.get(key), map.get(key));
+        }
+        assertEquals(keys.size(), map.keys().length);
+
+        try
+        {
+            MapUtilities.toIntPerfectHashMap(Arrays.asList(7, 7), INT_MAPPER);
+            fail("Expected an IllegalArgumentException");
+        }
+        catch (final IllegalArgumentException e)
+        {
+            assertEquals("Duplicate key: 7", e.getMessage());
+        }
+    }
+}
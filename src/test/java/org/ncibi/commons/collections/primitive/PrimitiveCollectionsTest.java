@@ -0,0 +1,230 @@
+package org.ncibi.commons.collections.primitive;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Test;
+import org.ncibi.commons.collections.ListUtilities;
+
+public class PrimitiveCollectionsTest
+{
+    @Test
+    public void testIntArrayList()
+    {
+        final IntArrayList list = new IntArrayList(0);
+        for (int i = 0; i < 1000; i++)
+        {
+            list.add(i % 7);
+        }
+        list.addAll(new int[] { 9, 8 });
+        assertEquals(1002, list.size());
+        assertEquals(8, list.get(1001));
+        assertEquals(6, list.indexOf(6));
+        assertEquals(9, list.removeAt(1000));
+        assertEquals(1001, list.size());
+
+        list.sortUnique();
+        assertArrayEquals(new int[] { 0, 1, 2, 3, 4, 5, 6, 8 }, list.toArray());
+        assertEquals(7, list.binarySearch(8));
+        assertTrue(list.binarySearch(7) < 0);
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 8), list.asList());
+        assertEquals(list, IntArrayList.copyOf(list.asList()));
+
+        list.truncate(2);
+        assertEquals("[0, 1]", list.toString());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testIntArrayListBounds()
+    {
+        final IntArrayList list = new IntArrayList(new int[] { 1, 2 });
+        list.get(2);
+    }
+
+    @Test
+    public void testLongArrayList()
+    {
+        final LongArrayList list = new LongArrayList();
+        list.addAll(new long[] { 3L << 40, 1, 3L << 40, -5 });
+        list.sortUnique();
+        assertArrayEquals(new long[] { -5, 1, 3L << 40 }, list.toArray());
+        assertEquals(Long.valueOf(3L << 40), list.asList().get(2));
+    }
+
+    @Test
+    public void testIntHashSetMatchesHashSet()
+    {
+        final Random random = new Random(42);
+        final IntHashSet set = new IntHashSet(4);
+        final Set<Integer> expected = new HashSet<Integer>();
+        for (int i = 0; i < 100000; i++)
+        {
+            final int value = random.nextInt(2000) - 1000;
+            if (random.nextInt(3) == 0)
+            {
+                assertEquals(expected.remove(value), set.remove(value));
+            }
+            else
+            {
+                assertEquals(expected.add(value), set.add(value));
+            }
+            assertEquals(expected.size(), set.size());
+        }
+        for (int value = -1000; value < 1000; value++)
+        {
+            assertEquals(expected.contains(value), set.contains(value));
+        }
+        assertEquals(IntArrayList.copyOf(new TreeSet<Integer>(expected)), set.toSortedList());
+    }
+
+    @Test
+    public void testInt2IntMapMatchesHashMap()
+    {
+        final Random random = new Random(7);
+        final Int2IntMap map = new Int2IntMap(4, -1);
+        final Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+        for (int i = 0; i < 100000; i++)
+        {
+            final int key = random.nextInt(1000) - 500;
+            switch (random.nextInt(3))
+            {
+            case 0:
+                assertEquals(value(expected.remove(key)), map.remove(key));
+                break;
+            case 1:
+                assertEquals(value(expected.put(key, i)), map.put(key, i));
+                break;
+            default:
+                expected.put(key, value(expected.get(key)) + 2);
+                assertEquals(expected.get(key).intValue(), map.addTo(key, 2));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (int key = -500; key < 500; key++)
+        {
+            assertEquals(value(expected.get(key)), map.get(key));
+            assertEquals(expected.containsKey(key), map.containsKey(key));
+        }
+
+        final Int2IntMap copy = new Int2IntMap();
+        copy.putAll(map);
+        assertEquals(map.size(), copy.size());
+    }
+
+    private static int value(final Integer boxed)
+    {
+        return boxed == null ? -1 : boxed;
+    }
+
+    @Test
+    public void testInt2ObjectMap()
+    {
+        final Int2ObjectMap<String> map = new Int2ObjectMap<String>(2);
+        for (int key = 0; key < 100; key++)
+        {
+            assertNull(map.put(key, "v" + key));
+        }
+        assertEquals("v0", map.put(0, "zero"));
+        assertEquals("zero", map.get(0));
+        assertEquals("v99", map.get(99));
+        assertNull(map.get(100));
+        for (int key = 0; key < 100; key += 2)
+        {
+            assertEquals(key == 0 ? "zero" : "v" + key, map.remove(key));
+        }
+        assertEquals(50, map.size());
+        assertFalse(map.containsKey(50));
+        assertEquals("v51", map.get(51));
+
+        final int[] keys = map.keys();
+        for (int i = 0; i < keys.length; i++)
+        {
+            assertEquals(map.get(keys[i]), map.values().get(i));
+        }
+    }
+
+    @Test
+    public void testEliasFanoIntSetMatchesTreeSet()
+    {
+        final Random random = new Random(42);
+        for (final int range : new int[] { 100, 100000, Integer.MAX_VALUE })
+        {
+            final TreeSet<Integer> expected = new TreeSet<Integer>();
+            final IntArrayList values = new IntArrayList();
+            for (int i = 0; i < 5000; i++)
+            {
+                final int value = range == Integer.MAX_VALUE ? random.nextInt() : random
+                        .nextInt(range);
+                expected.add(value);
+                values.add(value);
+            }
+            values.add(Integer.MIN_VALUE);
+            values.add(Integer.MAX_VALUE);
+            expected.add(Integer.MIN_VALUE);
+            expected.add(Integer.MAX_VALUE);
+
+            final EliasFanoIntSet set = EliasFanoIntSet.of(values);
+            assertEquals(expected.size(), set.size());
+            int index = 0;
+            for (final Integer value : expected)
+            {
+                assertEquals(value.intValue(), set.get(index));
+                assertEquals(index, set.indexOf(value));
+                index++;
+            }
+            for (int i = 0; i < 5000; i++)
+            {
+                final int value = random.nextInt(range) - 3;
+                assertEquals(expected.contains(value), set.contains(value));
+            }
+            final int[] sorted = new int[expected.size()];
+            index = 0;
+            for (final Integer value : expected)
+            {
+                sorted[index++] = value;
+            }
+            assertArrayEquals(sorted, set.toArray());
+        }
+
+        final EliasFanoIntSet empty = EliasFanoIntSet.of(new int[0]);
+        assertTrue(empty.isEmpty());
+        assertFalse(empty.contains(0));
+        assertEquals(0, empty.toArray().length);
+    }
+
+    @Test
+    public void testEliasFanoIntSetIsCompact()
+    {
+        final IntArrayList ids = new IntArrayList();
+        for (int i = 0; i < 1000000; i += 3)
+        {
+            ids.add(i);
+        }
+        final EliasFanoIntSet set = EliasFanoIntSet.of(ids);
+        assertTrue(set.contains(999999));
+        assertFalse(set.contains(1000000));
+        assertTrue((double) set.getBitCount() / set.size() < 5);
+    }
+
+    @Test
+    public void testListUtilitiesAdapters()
+    {
+        final IntArrayList ids = ListUtilities.csv2IntArrayList("10, 20,x,,30");
+        assertArrayEquals(new int[] { 10, 20, 30 }, ids.toArray());
+        assertEquals("10,20,30", ListUtilities.createCommaJoinedString(ids));
+        assertEquals(ListUtilities.createCommaJoinedStringFromIntegers(ids.asList()),
+                ListUtilities.createCommaJoinedString(ids));
+        assertEquals(ids.asList(), ListUtilities.csv2IntegersList("10, 20,x,,30"));
+    }
+}
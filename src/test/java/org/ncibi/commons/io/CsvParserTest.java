@@ -0,0 +1,160 @@
+package org.ncibi.commons.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class CsvParserTest
+{
+    private static final String TEXT = "id,name,notes\r\n"
+            + "1,\"Smith, J\",\"said \"\"hi\"\"\"\r\n" + "\r\n" + "2,plain,\"two\nlines\"\n"
+            + "3,,\n" + "4,\"\",x\"y\"\r" + "5,\"a\"b,last";
+
+    private static final String[][] EXPECTED = { { "id", "name", "notes" },
+            { "1", "Smith, J", "said \"hi\"" }, { "2", "plain", "two\nlines" }, { "3", "", "" },
+            { "4", "", "x\"y\"" }, { "5", "ab", "last" } };
+
+    private static List<String[]> parseAll(final CsvParser parser) throws IOException
+    {
+        final List<String[]> records = new ArrayList<String[]>();
+        for (CsvRecord record = parser.next(); record != null; record = parser.next())
+        {
+            records.add(record.toArray());
+        }
+        return records;
+    }
+
+    private static void assertRecords(final String[][] expected, final List<String[]> actual)
+    {
+        assertEquals(expected.length, actual.size());
+        for (int i = 0; i < expected.length; i++)
+        {
+            assertArrayEquals(Arrays.toString(actual.get(i)), expected[i], actual.get(i));
+        }
+    }
+
+    /**
+     * Returns one character per read, so every buffer boundary is exercised.
+     */
+    private static Reader trickle(final String text)
+    {
+        return new StringReader(text)
+        {
+            @Override
+            public int read(final char[] cbuf, final int off, final int len) throws IOException
+            {
+                return super.read(cbuf, off, Math.min(len, 1));
+            }
+        };
+    }
+
+    @Test
+    public void testParse() throws IOException
+    {
+        assertRecords(EXPECTED, parseAll(new CsvParser(new StringReader(TEXT), CsvFormat.CSV)));
+        assertRecords(EXPECTED, parseAll(new CsvParser(trickle(TEXT), CsvFormat.CSV)));
+    }
+
+    @Test
+    public void testLineNumbers() throws IOException
+    {
+        final CsvParser parser = new CsvParser(new StringReader(TEXT), CsvFormat.CSV);
+        final List<Long> lines = new ArrayList<Long>();
+        for (CsvRecord record = parser.next(); record != null; record = parser.next())
+        {
+            lines.add(record.getLineNumber());
+        }
+        assertEquals(Arrays.asList(1L, 2L, 4L, 6L, 7L, 8L), lines);
+    }
+
+    @Test
+    public void testByteBufferAndTsv() throws IOException
+    {
+        final Charset utf8 = Charset.forName("UTF-8");
+        final ByteBuffer bytes = ByteBuffer.wrap("gène\t\"α\tβ\"\nx\ty\n".getBytes(utf8));
+        assertRecords(new String[][] { { "gène", "α\tβ" }, { "x", "y" } }, parseAll(
+                new CsvParser(bytes, utf8, CsvFormat.TSV)));
+    }
+
+    @Test
+    public void testEscape() throws IOException
+    {
+        final CsvFormat format = new CsvFormat(',', '"', '\\');
+        assertRecords(new String[][] { { "a\"b", "c\\d", "e\\f" } }, parseAll(new CsvParser(
+                trickle("\"a\\\"b\",\"c\\\\d\",e\\f"), format)));
+    }
+
+    @Test
+    public void testLongFields() throws IOException
+    {
+        final char[] wide = new char[200000];
+        Arrays.fill(wide, 'w');
+        wide[100000] = ',';
+        final String field = new String(wide);
+        final CsvRecord record = new CsvParser(new StringReader("\"" + field + "\"," + field),
+                CsvFormat.CSV).next();
+        assertEquals(3, record.size());
+        assertEquals(field, record.get(0));
+        assertEquals(100000, record.get(1).length());
+    }
+
+    @Test
+    public void testUnterminatedQuote()
+    {
+        try
+        {
+            parseAll(new CsvParser(new StringReader("a\n\"b\nc"), CsvFormat.CSV));
+            fail("Expected an IOException");
+        }
+        catch (final IOException e)
+        {
+            assertEquals("Unterminated quoted field starting on line 2", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testParseRecord()
+    {
+        assertArrayEquals(new String[] { "a,b", "c" }, CsvParser.parseRecord("\"a,b\",c",
+                CsvFormat.CSV));
+        assertEquals(0, CsvParser.parseRecord("", CsvFormat.CSV).length);
+    }
+
+    @Test
+    public void testCsvDataLoader() throws IOException
+    {
+        final File file = File.createTempFile("loader", ".csv");
+        file.deleteOnExit();
+        final Writer out = new OutputStreamWriter(new FileOutputStream(file));
+        out.write(TEXT);
+        out.close();
+
+        final CsvDataLoader<String> loader = new CsvDataLoader<String>(file.getPath(),
+                CsvFormat.CSV)
+        {
+            @Override
+            protected String parseFields(final String[] fields)
+            {
+                return fields[2];
+            }
+        };
+        loader.loadData();
+        assertEquals(Arrays.asList("said \"hi\"", "two\nlines", "", "x\"y\"", "last"), loader
+                .getDataItems());
+    }
+}
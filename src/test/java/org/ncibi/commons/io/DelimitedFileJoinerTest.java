@@ -0,0 +1,150 @@
+package org.ncibi.commons.io;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class DelimitedFileJoinerTest
+{
+    private static File writeFile(final String header, final List<String> lines)
+            throws IOException
+    {
+        final List<String> all = new ArrayList<String>();
+        all.add(header);
+        all.addAll(lines);
+        return TestFiles.writeLines("join", ".tsv", all);
+    }
+
+    /**
+     * Genes 0..99, sorted by id.
+     */
+    private static File genes() throws IOException
+    {
+        final List<String> lines = new ArrayList<String>();
+        for (int i = 0; i < 100; i++)
+        {
+            lines.add(String.format("G%03d\tgene%d", i, i));
+        }
+        return writeFile("id\tname", lines);
+    }
+
+    /**
+     * Interactions: every gene with an even id has two partners, sorted by the
+     * gene id in column 1.
+     */
+    private static File interactions() throws IOException
+    {
+        final List<String> lines = new ArrayList<String>();
+        for (int i = 0; i < 120; i += 2)
+        {
+            lines.add(String.format("I%d\tG%03d\tP1", i, i));
+            lines.add(String.format("I%d\tG%03d\tP2", i, i));
+        }
+        return writeFile("interaction\tgene\tpartner", lines);
+    }
+
+    private static List<String> expected()
+    {
+        final List<String> rows = new ArrayList<String>();
+        for (int i = 0; i < 100; i += 2)
+        {
+            rows.add(String.format("G%03d\tgene%d|I%d\tG%03d\tP1", i, i, i, i));
+            rows.add(String.format("G%03d\tgene%d|I%d\tG%03d\tP2", i, i, i, i));
+        }
+        return rows;
+    }
+
+    private static JoinSink collect(final List<String> rows)
+    {
+        return new JoinSink()
+        {
+            public void join(final String leftLine, final String rightLine)
+            {
+                rows.add(leftLine + "|" + rightLine);
+            }
+        };
+    }
+
+    @Test
+    public void testHashJoinInMemory() throws IOException
+    {
+        final List<String> rows = new ArrayList<String>();
+        final DelimitedFileJoiner joiner = new DelimitedFileJoiner(0, 1, '\t');
+        joiner.setSkipHeader(true);
+        joiner.hashJoin(genes().getPath(), interactions().getPath(), collect(rows));
+
+        Collections.sort(rows);
+        assertEquals(expected(), rows);
+    }
+
+    @Test
+    public void testHashJoinPartitioned() throws IOException
+    {
+        final List<String> rows = new ArrayList<String>();
+        final DelimitedFileJoiner joiner = new DelimitedFileJoiner(0, 1, '\t');
+        joiner.setSkipHeader(true);
+        joiner.setMemoryLimit(2 * 1024);
+        joiner.setPartitionCount(4);
+        joiner.hashJoin(genes().getPath(), interactions().getPath(), collect(rows));
+
+        Collections.sort(rows);
+        assertEquals(expected(), rows);
+    }
+
+    @Test
+    public void testMergeJoin() throws IOException
+    {
+        final List<String> rows = new ArrayList<String>();
+        final DelimitedFileJoiner joiner = new DelimitedFileJoiner(0, 1, '\t');
+        joiner.setSkipHeader(true);
+        joiner.mergeJoin(genes().getPath(), interactions().getPath(), collect(rows));
+
+        assertEquals(expected(), rows);
+    }
+
+    @Test
+    public void testMergeJoinIntegerKeys() throws IOException
+    {
+        // Numerically sorted, so "10" follows "9" although it sorts before it
+        // as a string.
+        final List<String> left = new ArrayList<String>();
+        final List<String> right = new ArrayList<String>();
+        for (int i = 1; i <= 12; i++)
+        {
+            left.add(i + "\tleft" + i);
+            if (i % 3 == 0)
+            {
+                right.add("r" + i + "a\t" + i);
+                right.add("r" + i + "b\t" + i);
+            }
+        }
+        final List<String> rows = new ArrayList<String>();
+        final DelimitedFileJoiner joiner = new DelimitedFileJoiner(0, 1, '\t');
+        joiner.setSkipHeader(true);
+        joiner.setKeyComparator(KeyType.INTEGER);
+        joiner.mergeJoin(writeFile("id\tname", left).getPath(), writeFile("id\tgene", right)
+                .getPath(), collect(rows));
+
+        assertEquals(8, rows.size());
+        assertEquals("3\tleft3|r3a\t3", rows.get(0));
+        assertEquals("12\tleft12|r12b\t12", rows.get(7));
+    }
+
+    @Test(expected = IOException.class)
+    public void testMergeJoinUnsorted() throws IOException
+    {
+        final List<String> genes = new ArrayList<String>();
+        genes.add("G002\tb");
+        genes.add("G001\ta");
+        final DelimitedFileJoiner joiner = new DelimitedFileJoiner(0, 1, '\t');
+        joiner.setSkipHeader(true);
+        joiner.mergeJoin(writeFile("id\tname", genes).getPath(), interactions().getPath(),
+                collect(new ArrayList<String>()));
+    }
+}
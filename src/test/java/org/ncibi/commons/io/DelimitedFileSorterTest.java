@@ -0,0 +1,153 @@
+package org.ncibi.commons.io;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class DelimitedFileSorterTest
+{
+    private static List<String> readFile(final File file) throws IOException
+    {
+        final List<String> lines = new ArrayList<String>();
+        final FileInputLineProcessor reader = new FileInputLineProcessor()
+        {
+            @Override
+            public void processLine(final String line)
+            {
+                lines.add(line);
+            }
+        };
+        reader.process(file.getPath());
+        return lines;
+    }
+
+    private static List<String> numberedLines(final int count)
+    {
+        final List<String> lines = new ArrayList<String>();
+        for (int i = 0; i < count; i++)
+        {
+            // Keys repeat so stability can be checked: key (i * 7) % 50.
+            lines.add("row" + i + "\t" + ((i * 7) % 50));
+        }
+        return lines;
+    }
+
+    @Test
+    public void testSortSpillsAndMergesRuns() throws IOException
+    {
+        final List<String> input = numberedLines(5000);
+        input.add(0, "name\tkey");
+        final File in = TestFiles.writeLines("unsorted", ".tsv", input);
+        final File out = File.createTempFile("sorted", ".tsv");
+        out.deleteOnExit();
+
+        final DelimitedFileSorter sorter = new DelimitedFileSorter(1, '\t');
+        sorter.setKeyComparator(KeyType.INTEGER);
+        sorter.setSkipHeader(true);
+        sorter.setMemoryLimit(20 * 1024);
+        sorter.setThreads(3);
+        sorter.setMergeFanIn(4);
+        sorter.setCompressRuns(true);
+        sorter.sort(in.getPath(), out.getPath());
+
+        final List<String> sorted = readFile(out);
+        assertEquals(5001, sorted.size());
+        assertEquals("name\tkey", sorted.get(0));
+        int lastKey = -1;
+        int lastRow = -1;
+        for (final String line : sorted.subList(1, sorted.size()))
+        {
+            final String[] fields = line.split("\t");
+            final int key = Integer.parseInt(fields[1]);
+            final int row = Integer.parseInt(fields[0].substring(3));
+            if (key == lastKey)
+            {
+                assertEquals(true, row > lastRow);
+            }
+            else
+            {
+                assertEquals(true, key > lastKey);
+            }
+            lastKey = key;
+            lastRow = row;
+        }
+    }
+
+    @Test
+    public void testUniqueReverse() throws IOException
+    {
+        final File in = TestFiles.writeLines("unsorted", ".tsv", numberedLines(1000));
+        final DelimitedFileSorter sorter = new DelimitedFileSorter(1, '\t');
+        sorter.setKeyComparator(KeyType.INTEGER);
+        sorter.setReverse(true);
+        sorter.setUnique(true);
+        sorter.setMemoryLimit(4 * 1024);
+        sorter.sort(in.getPath(), in.getPath());
+
+        final List<String> sorted = readFile(in);
+        assertEquals(50, sorted.size());
+        assertEquals("row7\t49", sorted.get(0));
+        assertEquals("row0\t0", sorted.get(49));
+    }
+
+    @Test
+    public void testKeyTypes()
+    {
+        assertEquals(true, KeyType.STRING.compare("10", "9") < 0);
+        assertEquals(true, KeyType.INTEGER.compare("10", "9") > 0);
+        assertEquals(true, KeyType.DOUBLE.compare("1e3", "999.5") > 0);
+        assertEquals(true, KeyType.INTEGER.compare("abc", "-5") < 0);
+        assertEquals(true, KeyType.DOUBLE.compare("-0.0", "0.0") < 0);
+        assertEquals(true, KeyType.DOUBLE.compare("-2.5", "-1") < 0);
+        assertEquals(true, KeyType.DOUBLE.compare("NaN", "Infinity") > 0);
+        assertEquals(0, KeyType.INTEGER.compare(" 7", "7"));
+        assertEquals(null, KeyType.STRING.parseOrNull("7"));
+        assertEquals(null, KeyType.INTEGER.parseOrNull(" "));
+        assertEquals(Long.valueOf(7), KeyType.INTEGER.parseOrNull(" 7"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testMissingInputThrowsIOException() throws IOException
+    {
+        final File missing = File.createTempFile("sort", ".tsv");
+        missing.delete();
+        new DelimitedFileSorter(0, '\t').sort(missing.getPath(), missing.getPath() + ".out");
+    }
+
+    @Test
+    public void testDoubleKeysWithShortLines() throws IOException
+    {
+        final List<String> input = new ArrayList<String>();
+        final double[] keys = { 3.5, -1e3, 0.25, -0.5, 12, 0, -7.75, 1e-3 };
+        for (int i = 0; i < 400; i++)
+        {
+            input.add("row" + i + "\t" + keys[i % keys.length]);
+        }
+        input.add("short");
+        input.add("bad\tx");
+
+        final File in = TestFiles.writeLines("unsorted", ".tsv", input);
+        final DelimitedFileSorter sorter = new DelimitedFileSorter(1, '\t');
+        sorter.setKeyComparator(KeyType.DOUBLE);
+        sorter.setMemoryLimit(4 * 1024);
+        sorter.sort(in.getPath(), in.getPath());
+
+        final List<String> sorted = readFile(in);
+        assertEquals(input.size(), sorted.size());
+        // Keys that aren't numbers come first, ordered as strings.
+        assertEquals("short", sorted.get(0));
+        assertEquals("bad\tx", sorted.get(1));
+        double last = Double.NEGATIVE_INFINITY;
+        for (final String line : sorted.subList(2, sorted.size()))
+        {
+            final double key = Double.parseDouble(line.split("\t")[1]);
+            assertEquals(true, key >= last);
+            last = key;
+        }
+    }
+}
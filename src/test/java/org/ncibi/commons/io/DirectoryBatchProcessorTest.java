@@ -0,0 +1,112 @@
+package org.ncibi.commons.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.ncibi.commons.closure.F2;
+import org.ncibi.commons.exception.ExceptionHandler;
+
+public class DirectoryBatchProcessorTest
+{
+    private static final F2<Integer, Integer, Integer> SUM = new F2<Integer, Integer, Integer>()
+    {
+        public Integer apply(final Integer a, final Integer b)
+        {
+            return a + b;
+        }
+    };
+
+    private static File makeDirectory(final int fileCount) throws IOException
+    {
+        final File dir = File.createTempFile("batch", "");
+        dir.delete();
+        dir.mkdir();
+        dir.deleteOnExit();
+        for (int i = 0; i < fileCount; i++)
+        {
+            final File file = new File(dir, "file" + i + ".txt");
+            file.deleteOnExit();
+            final FileWriter out = new FileWriter(file);
+            for (int line = 0; line < i * 10; line++)
+            {
+                out.write("line " + line + "\n");
+            }
+            out.close();
+        }
+        final File other = new File(dir, "ignored.dat");
+        other.deleteOnExit();
+        other.createNewFile();
+        return dir;
+    }
+
+    private static class LineCounter extends DirectoryBatchProcessor<Integer>
+    {
+        LineCounter(final ExceptionHandler handler)
+        {
+            super(SUM, handler);
+        }
+
+        @Override
+        public Integer processFile(final File file) throws IOException
+        {
+            if (file.getName().equals("file3.txt"))
+            {
+                throw new IOException("bad file");
+            }
+
+            final int[] count = { 0 };
+            new FileInputLineProcessor()
+            {
+                @Override
+                public void processLine(final String line)
+                {
+                    count[0]++;
+                }
+            }.process(file.getPath());
+            return count[0];
+        }
+    }
+
+    @Test
+    public void testProcessDirectory() throws IOException
+    {
+        final File dir = makeDirectory(20);
+        final List<String> messages = new ArrayList<String>();
+        final LineCounter counter = new LineCounter(new ExceptionHandler()
+        {
+            public void handle(final Throwable t, final String message)
+            {
+                messages.add(message);
+            }
+
+            public void raise(final String message)
+            {
+                messages.add(message);
+            }
+        });
+        counter.setThreads(4);
+
+        // Lines in files 0..19 less file 3: 10 * (0 + ... + 19) - 30.
+        assertEquals(Integer.valueOf(1870), counter.process(dir.getPath(), "*.txt"));
+        assertEquals(1, counter.getFailures().size());
+        assertEquals("file3.txt", counter.getFailures().get(0).getName());
+        assertEquals(1, messages.size());
+        assertEquals(20, counter.getFileTimes().size());
+    }
+
+    @Test
+    public void testEmptyBatch() throws IOException
+    {
+        final File dir = makeDirectory(0);
+        final LineCounter counter = new LineCounter(null);
+        assertNull(counter.process(dir.getPath(), "*.txt"));
+        assertEquals(0, counter.getFileTimes().size());
+    }
+}
@@ -0,0 +1,82 @@
+package org.ncibi.commons.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+/**
+ * Compares FileUtilities.copy() with copying through a byte array and
+ * streams. Not a unit test; run it by hand:
+ * 
+ * java -cp target/classes:target/test-classes org.ncibi.commons.io.FileCopyBenchmark [megabytes]
+ * 
+ * @author gtarcea
+ * 
+ */
+public final class FileCopyBenchmark
+{
+    private FileCopyBenchmark()
+    {
+    }
+
+    private static long streamCopy(final File source, final File target) throws IOException
+    {
+        final InputStream in = new FileInputStream(source);
+        final OutputStream out = new FileOutputStream(target);
+        try
+        {
+            final byte[] buffer = new byte[8192];
+            long total = 0;
+            int n;
+            while ((n = in.read(buffer)) != -1)
+            {
+                out.write(buffer, 0, n);
+                total += n;
+            }
+            return total;
+        }
+        finally
+        {
+            in.close();
+            out.close();
+        }
+    }
+
+    private static void report(final String name, final long bytes, final long nanos)
+    {
+        System.out.printf("%-12s %8.1f MB/s%n", name, bytes / (nanos / 1e9) / (1024 * 1024));
+    }
+
+    public static void main(final String[] args) throws IOException
+    {
+        final int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+        final File source = File.createTempFile("bench", ".dat");
+        final File target = File.createTempFile("bench", ".copy");
+        source.deleteOnExit();
+        target.deleteOnExit();
+
+        final OutputStream out = new FileOutputStream(source);
+        final byte[] block = new byte[1024 * 1024];
+        new Random(1).nextBytes(block);
+        for (int i = 0; i < megabytes; i++)
+        {
+            out.write(block);
+        }
+        out.close();
+
+        for (int round = 0; round < 3; round++)
+        {
+            long start = System.nanoTime();
+            final long streamed = streamCopy(source, target);
+            report("stream", streamed, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            final long copied = FileUtilities.copy(source, target);
+            report("transferTo", copied, System.nanoTime() - start);
+        }
+    }
+}
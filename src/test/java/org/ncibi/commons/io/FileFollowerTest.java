@@ -0,0 +1,158 @@
+package org.ncibi.commons.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class FileFollowerTest
+{
+    private static void append(final File file, final String text) throws IOException
+    {
+        final FileWriter out = new FileWriter(file, true);
+        out.write(text);
+        out.close();
+    }
+
+    private static class Collector extends FileFollower
+    {
+        final List<String> lines = new ArrayList<String>();
+
+        Collector(final File file)
+        {
+            super(file.getPath());
+        }
+
+        @Override
+        public void processLine(final String line)
+        {
+            lines.add(line);
+        }
+    }
+
+    @Test
+    public void testFollowAppendsAndRotation() throws IOException
+    {
+        final File file = File.createTempFile("follow", ".log");
+        file.deleteOnExit();
+        final Collector follower = new Collector(file);
+
+        append(file, "first line\nsecond");
+        assertEquals(1, follower.poll());
+        assertEquals(0, follower.poll());
+
+        append(file, " line\nthird line\n");
+        assertEquals(2, follower.poll());
+        assertEquals(Arrays.asList("first line", "second line", "third line"), follower.lines);
+
+        // Rotate: the old file gets a last partial line after being renamed.
+        final File rotated = new File(file.getPath() + ".1");
+        rotated.deleteOnExit();
+        assertTrue(file.renameTo(rotated));
+        append(rotated, "last old line");
+        append(file, "new file line\n");
+
+        assertEquals(2, follower.poll());
+        assertEquals("last old line", follower.lines.get(3));
+        assertEquals("new file line", follower.lines.get(4));
+        follower.close();
+    }
+
+    @Test
+    public void testRotationToFileWithSameHeader() throws IOException
+    {
+        final File file = File.createTempFile("follow", ".log");
+        file.deleteOnExit();
+        final String header = "timestamp\tlevel\tthread\tlogger\tmessage\tcontext\tsession"
+                + "\trequest\tstatus";
+        final Collector follower = new Collector(file);
+
+        append(file, header + "\nold 1\n");
+        assertEquals(2, follower.poll());
+
+        // The new file has the same first 64 bytes and is already longer than
+        // the offset reached in the old one.
+        final File rotated = new File(file.getPath() + ".1");
+        rotated.deleteOnExit();
+        assertTrue(file.renameTo(rotated));
+        append(file, header + "\nnew 1\nnew 2\n");
+
+        assertEquals(3, follower.poll());
+        assertEquals(Arrays.asList(header, "old 1", header, "new 1", "new 2"), follower.lines);
+        follower.close();
+    }
+
+    @Test
+    public void testCopyTruncateRotation() throws IOException
+    {
+        final File file = File.createTempFile("follow", ".log");
+        file.deleteOnExit();
+        final StringBuilder header = new StringBuilder();
+        while (header.length() < 100)
+        {
+            header.append("column").append(header.length()).append('\t');
+        }
+        final Collector follower = new Collector(file);
+
+        final StringBuilder old = new StringBuilder(header).append('\n');
+        for (int i = 0; i < 10; i++)
+        {
+            old.append("old").append(i).append('\n');
+        }
+        append(file, old.toString());
+        assertEquals(11, follower.poll());
+
+        // Copied elsewhere, then truncated in place and written again with
+        // more than the offset reached.
+        new FileWriter(file).close();
+        final StringBuilder rewritten = new StringBuilder(header).append('\n');
+        for (int i = 0; i < 20; i++)
+        {
+            rewritten.append("new").append(i).append('\n');
+        }
+        append(file, rewritten.toString());
+
+        assertEquals(21, follower.poll());
+        assertEquals(header.toString(), follower.lines.get(11));
+        assertEquals("new0", follower.lines.get(12));
+        assertEquals("new19", follower.lines.get(31));
+        assertEquals(0, follower.poll());
+        follower.close();
+    }
+
+    @Test
+    public void testTruncationAndCheckpoint() throws IOException
+    {
+        final File file = File.createTempFile("follow", ".log");
+        file.deleteOnExit();
+        new File(file.getPath() + ".checkpoint").deleteOnExit();
+
+        append(file, "a\nb\nc\n");
+        Collector follower = new Collector(file);
+        follower.setCheckpointing(true);
+        assertEquals(3, follower.poll());
+        follower.close();
+
+        // A restarted follower picks up after the last line processed.
+        append(file, "d\n");
+        follower = new Collector(file);
+        follower.setCheckpointing(true);
+        assertEquals(1, follower.poll());
+        assertEquals(Arrays.asList("d"), follower.lines);
+
+        // Truncated in place: follow from the start again.
+        new FileWriter(file).close();
+        append(file, "x\n");
+        assertEquals(1, follower.poll());
+        assertEquals(Arrays.asList("d", "x"), follower.lines);
+        assertEquals(2, follower.getOffset());
+        follower.close();
+    }
+}
@@ -0,0 +1,150 @@
+package org.ncibi.commons.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class FileInputLineProcessorTest
+{
+    private static File writeLines(final int count) throws IOException
+    {
+        final List<String> lines = new ArrayList<String>();
+        lines.add("header");
+        for (int i = 0; i < count; i++)
+        {
+            lines.add("line" + i);
+        }
+        return TestFiles.writeLines("lines", ".txt", lines);
+    }
+
+    @Test
+    public void testProgressReports() throws IOException
+    {
+        final File file = writeLines(10000);
+        final List<ProgressReport> reports = new ArrayList<ProgressReport>();
+
+        final FileInputLineProcessor processor = new FileInputLineProcessor()
+        {
+            @Override
+            public void processLine(final String line) throws IOException
+            {
+                // Nothing to do.
+            }
+        };
+        processor.setSkipHeader(true);
+        processor.setProgressListener(new ProgressListener()
+        {
+            public void progress(final ProgressReport report)
+            {
+                reports.add(report);
+            }
+        }, 0);
+        processor.process(file.getPath());
+
+        assertTrue(reports.size() > 1);
+        final ProgressReport last = reports.get(reports.size() - 1);
+        assertTrue(last.isFinished());
+        assertFalse(reports.get(0).isFinished());
+        assertEquals(10000, last.getLinesProcessed());
+        assertEquals(file.length(), last.getTotalBytes());
+        assertEquals(file.length(), last.getBytesRead());
+        assertEquals(0, last.getEstimatedTimeRemaining(TimeUnit.SECONDS));
+        assertTrue(last.getElapsedTime(TimeUnit.NANOSECONDS) >= last
+                .getProcessTime(TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    public void testResumedReportRateExcludesStartOffset()
+    {
+        // Resumed at 900 of 1000 bytes, read 50 more in one second.
+        final ProgressReport report = new ProgressReport("f", 950, 900, 1000, 10,
+                TimeUnit.SECONDS.toNanos(1), 0, 0, false);
+
+        assertEquals(50.0, report.getBytesPerSecond(), 0.001);
+        assertEquals(1, report.getEstimatedTimeRemaining(TimeUnit.SECONDS));
+        assertEquals(0.95, report.getFractionComplete(), 0.001);
+    }
+
+    @Test
+    public void testResumeFromCheckpoint() throws IOException
+    {
+        final File file = writeLines(1000);
+        final List<String> seen = new ArrayList<String>();
+        final boolean[] fail = { true };
+
+        final CountedFileInputLineProcessor processor = new CountedFileInputLineProcessor()
+        {
+            @Override
+            public void processLineNumber(final String line, final int lineNumber)
+            {
+                if (fail[0] && lineNumber == 600)
+                {
+                    throw new IllegalStateException("job died");
+                }
+                seen.add(lineNumber + ":" + line);
+            }
+        };
+        processor.setSkipHeader(true);
+        processor.setCheckpointing(true);
+        processor.setCheckpointInterval(0);
+
+        try
+        {
+            processor.process(file.getPath());
+        }
+        catch (final IllegalStateException e)
+        {
+            // Expected, the job died.
+        }
+
+        final File checkpointFile = new File(file.getPath() + ".checkpoint");
+        checkpointFile.deleteOnExit();
+        assertTrue(checkpointFile.exists());
+        assertEquals(598, seen.size());
+        assertEquals("599:line597", seen.get(597));
+
+        fail[0] = false;
+        processor.process(file.getPath());
+
+        assertEquals(1000, seen.size());
+        assertEquals("600:line598", seen.get(598));
+        assertEquals("1001:line999", seen.get(999));
+        assertFalse(checkpointFile.exists());
+    }
+
+    @Test
+    public void testCharsetMustBeAsciiCompatible()
+    {
+        final CountedFileInputLineProcessor processor = new CountedFileInputLineProcessor()
+        {
+            @Override
+            public void processLineNumber(final String line, final int lineNumber)
+            {
+            }
+        };
+        processor.setCharset(Charset.forName("UTF-8"));
+        processor.setCharset(Charset.forName("ISO-8859-1"));
+        for (final String name : new String[] { "UTF-16", "UTF-16LE", "UTF-16BE" })
+        {
+            try
+            {
+                processor.setCharset(Charset.forName(name));
+                fail("Expected an IllegalArgumentException for " + name);
+            }
+            catch (final IllegalArgumentException e)
+            {
+                // Expected, '\n' isn't a single byte.
+            }
+        }
+    }
+}
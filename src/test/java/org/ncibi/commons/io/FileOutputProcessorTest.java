@@ -0,0 +1,244 @@
+package org.ncibi.commons.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+
+public class FileOutputProcessorTest
+{
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Includes a character outside the BMP (a surrogate pair) so buffer
+     * boundaries fall inside it.
+     */
+    private static final String TEXT = "geneé𝄞";
+
+    private static String expected(final int records)
+    {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < records; i++)
+        {
+            sb.append(i).append(',').append(TEXT).append(',').append(1.5).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String read(final File file) throws IOException
+    {
+        return FileUtilities.convertStreamToString(new FileInputStream(file));
+    }
+
+    private static class Writer extends FileOutputProcessor
+    {
+        private final int records;
+
+        Writer(final int records)
+        {
+            this.records = records;
+            setCharset(UTF8);
+            setFieldDelimiter(",");
+        }
+
+        @Override
+        public void processRecords(final RecordWriter out) throws IOException
+        {
+            for (int i = 0; i < records; i++)
+            {
+                out.field(i).field(TEXT).field(1.5).endRecord();
+            }
+        }
+    }
+
+    @Test
+    public void testWrite() throws IOException
+    {
+        final File file = File.createTempFile("records", ".csv");
+        file.deleteOnExit();
+
+        for (final int queueCapacity : new int[] { 0, 2 })
+        {
+            final Writer writer = new Writer(5000);
+            writer.setBufferSize(7);
+            writer.setBackgroundWriting(queueCapacity);
+            writer.process(file.getPath());
+
+            final String expected = expected(5000);
+            assertEquals(expected, read(file));
+            assertEquals(expected.getBytes(UTF8).length, writer.getBytesWritten());
+            assertTrue(writer.getBytesPerSecond() > 0);
+        }
+    }
+
+    @Test
+    public void testAtomicWriteLeavesTargetOnFailure() throws IOException
+    {
+        final File file = File.createTempFile("records", ".csv");
+        file.deleteOnExit();
+
+        final Writer good = new Writer(10);
+        good.setAtomic(true);
+        good.process(file.getPath());
+        assertEquals(expected(10), read(file));
+
+        final FileOutputProcessor bad = new FileOutputProcessor()
+        {
+            @Override
+            public void processRecords(final RecordWriter out) throws IOException
+            {
+                out.record("partial", "record");
+                throw new IOException("failed");
+            }
+        };
+        bad.setAtomic(true);
+        try
+        {
+            bad.process(file.getPath());
+            fail("Expected a RuntimeException");
+        }
+        catch (final RuntimeException e)
+        {
+            assertEquals("failed", e.getCause().getMessage());
+        }
+        assertEquals(expected(10), read(file));
+        assertEquals(0, file.getParentFile().listFiles(new FilenameFilter()
+        {
+            public boolean accept(final File dir, final String name)
+            {
+                return name.startsWith(file.getName() + ".") && name.endsWith(".tmp");
+            }
+        }).length);
+    }
+
+    @Test
+    public void testAtomicWriteCleansUpWhenWriterCantBeCreated() throws IOException
+    {
+        final File file = File.createTempFile("records", ".csv");
+        file.deleteOnExit();
+
+        final Writer writer = new Writer(10);
+        writer.setAtomic(true);
+        writer.setBufferSize(-1);
+        try
+        {
+            writer.process(file.getPath());
+            fail("Expected a RuntimeException");
+        }
+        catch (final RuntimeException e)
+        {
+            // Expected, the buffer can't be allocated.
+        }
+        assertEquals(0, file.getParentFile().listFiles(new FilenameFilter()
+        {
+            public boolean accept(final File dir, final String name)
+            {
+                return name.startsWith(file.getName() + ".") && name.endsWith(".tmp");
+            }
+        }).length);
+    }
+
+    @Test
+    public void testRecordWriterCloseTwice() throws IOException
+    {
+        final File file = File.createTempFile("records", ".csv");
+        file.deleteOnExit();
+        for (final int queueCapacity : new int[] { 0, 2 })
+        {
+            final RecordWriter writer = new RecordWriter(new FileOutputStream(file).getChannel(),
+                    UTF8.newEncoder(), ",", "\n", 16, queueCapacity);
+            writer.record(0, TEXT, 1.5);
+            writer.finish();
+            writer.close();
+            writer.close();
+            assertEquals(expected(1), read(file));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRecordWriterBufferTooSmallForSurrogatePair() throws IOException
+    {
+        final File file = File.createTempFile("records", ".csv");
+        file.deleteOnExit();
+        final FileOutputStream out = new FileOutputStream(file);
+        try
+        {
+            new RecordWriter(out.getChannel(), UTF8.newEncoder(), ",", "\n", 1, 0);
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testWriterThreadRuntimeExceptionIsReported() throws IOException
+    {
+        final WritableByteChannel broken = new WritableByteChannel()
+        {
+            public int write(final ByteBuffer src)
+            {
+                throw new IllegalStateException("channel broke");
+            }
+
+            public boolean isOpen()
+            {
+                return true;
+            }
+
+            public void close()
+            {
+            }
+        };
+        final RecordWriter writer = new RecordWriter(broken, UTF8.newEncoder(), ",", "\n", 64,
+                1);
+        try
+        {
+            for (int i = 0; i < 1000; i++)
+            {
+                writer.record(i, TEXT);
+            }
+            writer.flush();
+            fail("Expected an IOException");
+        }
+        catch (final IOException e)
+        {
+            assertEquals(IllegalStateException.class, e.getCause().getClass());
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testFileStreamProcessorReportsErrors()
+    {
+        new FileStreamProcessor<String>()
+        {
+            @Override
+            public String openFileStream(final String filename) throws IOException
+            {
+                throw new IOException("can't open " + filename);
+            }
+
+            @Override
+            public void processFileStream(final String stream)
+            {
+                // Never called.
+            }
+
+            @Override
+            public void closeFileStream(final String stream)
+            {
+                // Never called.
+            }
+        }.process("missing");
+    }
+}
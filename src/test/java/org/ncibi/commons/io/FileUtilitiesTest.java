@@ -0,0 +1,188 @@
+package org.ncibi.commons.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class FileUtilitiesTest
+{
+    private static File writeLines(final int count) throws IOException
+    {
+        final List<String> lines = new ArrayList<String>();
+        for (int i = 0; i < count; i++)
+        {
+            lines.add("line " + i);
+        }
+        return TestFiles.writeLines("lines", ".txt", lines);
+    }
+
+    private static File tmpDirectory() throws IOException
+    {
+        final File dir = File.createTempFile("parts", "");
+        dir.delete();
+        dir.mkdir();
+        dir.deleteOnExit();
+        return dir;
+    }
+
+    private static String read(final File file) throws IOException
+    {
+        file.deleteOnExit();
+        return FileUtilities.convertStreamToString(new FileInputStream(file));
+    }
+
+    private static String readAll(final List<File> files) throws IOException
+    {
+        final StringBuilder sb = new StringBuilder();
+        for (final File file : files)
+        {
+            sb.append(read(file));
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testCopyAndConcat() throws IOException
+    {
+        final File a = writeLines(10000);
+        final File b = writeLines(3);
+        final File copy = File.createTempFile("copy", ".txt");
+
+        assertEquals(a.length(), FileUtilities.copy(a, copy));
+        assertEquals(read(a), read(copy));
+
+        assertEquals(a.length() + b.length(), FileUtilities.concat(Arrays.asList(a, b), copy));
+        assertEquals(read(a) + read(b), read(copy));
+    }
+
+    @Test
+    public void testCopyOntoSourceRejected() throws IOException
+    {
+        final File a = writeLines(10);
+        final String contents = read(a);
+        try
+        {
+            FileUtilities.copy(a, new File(a.getParentFile(), ".." + File.separator
+                    + a.getParentFile().getName() + File.separator + a.getName()));
+            fail("Expected an IllegalArgumentException");
+        }
+        catch (final IllegalArgumentException e)
+        {
+            // Expected.
+        }
+        try
+        {
+            FileUtilities.concat(Arrays.asList(writeLines(3), a), a);
+            fail("Expected an IllegalArgumentException");
+        }
+        catch (final IllegalArgumentException e)
+        {
+            // Expected.
+        }
+        assertEquals(contents, read(a));
+    }
+
+    @Test
+    public void testSplitByLines() throws IOException
+    {
+        final File file = writeLines(1000);
+        final List<File> parts = FileUtilities.splitByLines(file, tmpDirectory(), 300);
+
+        assertEquals(4, parts.size());
+        assertEquals(file.getName() + ".00003", parts.get(3).getName());
+        assertEquals("line 900\n", read(parts.get(3)).substring(0, 9));
+        assertEquals(read(file), readAll(parts));
+    }
+
+    @Test
+    public void testSplitBySize() throws IOException
+    {
+        final File file = writeLines(1000);
+        final List<File> parts = FileUtilities.splitBySize(file, tmpDirectory(), 1000);
+
+        for (final File part : parts)
+        {
+            final String text = read(part);
+            assertEquals(true, part.length() <= 1000);
+            assertEquals('\n', text.charAt(text.length() - 1));
+        }
+        assertEquals(read(file), readAll(parts));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSplitByLinesRejectsNonPositive() throws IOException
+    {
+        FileUtilities.splitByLines(writeLines(10), tmpDirectory(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSplitBySizeRejectsNonPositive() throws IOException
+    {
+        FileUtilities.splitBySize(writeLines(10), tmpDirectory(), 0);
+    }
+
+    @Test
+    public void testReadAll() throws IOException
+    {
+        final File file = writeLines(5000);
+        final String expected = read(file);
+        final Charset utf8 = Charset.forName("UTF-8");
+
+        assertEquals(expected, FileUtilities.readString(file, utf8));
+        assertEquals(file.length(), FileUtilities.readAllBytes(file).length);
+
+        final InputStream in = new FileInputStream(file);
+        try
+        {
+            assertEquals(expected, FileUtilities.readString(in, utf8));
+        }
+        finally
+        {
+            in.close();
+        }
+
+        final List<String> lines = FileUtilities.readLines(file, utf8);
+        assertEquals(5000, lines.size());
+        assertEquals("line 4999", lines.get(4999));
+    }
+
+    @Test
+    public void testReadLinesTerminators() throws IOException
+    {
+        final byte[] bytes = "a\r\nb\rc\n\nd".getBytes("UTF-8");
+        assertEquals(Arrays.asList("a", "b", "c", "", "d"), FileUtilities.readLines(
+                new ByteArrayInputStream(bytes), Charset.forName("UTF-8")));
+        assertEquals("", FileUtilities.convertStreamToString(null));
+    }
+
+    @Test
+    public void testReadAllBytesUnknownLength() throws IOException
+    {
+        final byte[] bytes = new byte[100000];
+        for (int i = 0; i < bytes.length; i++)
+        {
+            bytes[i] = (byte) i;
+        }
+        // available() understates the length.
+        final InputStream in = new ByteArrayInputStream(bytes)
+        {
+            @Override
+            public synchronized int available()
+            {
+                return 10;
+            }
+        };
+        assertEquals(true, Arrays.equals(bytes, FileUtilities.readAllBytes(in)));
+    }
+}
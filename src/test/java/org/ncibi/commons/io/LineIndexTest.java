@@ -0,0 +1,110 @@
+package org.ncibi.commons.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class LineIndexTest
+{
+    private static File writeTsv(final int count) throws IOException
+    {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++)
+        {
+            sb.append("key" + (i % 100) + "\tvalue" + i + (i % 2 == 0 ? "\n" : "\r\n"));
+        }
+        final File file = TestFiles.writeText("index", ".tsv", sb.toString());
+        LineIndex.indexFile(file.getPath()).deleteOnExit();
+        return file;
+    }
+
+    @Test
+    public void testGetLine() throws IOException
+    {
+        final File file = writeTsv(1000);
+        final LineIndex index = LineIndex.open(file.getPath(), new LineIndexBuilder(64));
+        try
+        {
+            assertEquals(1000, index.getLineCount());
+            assertEquals("key0\tvalue0", index.getLine(0));
+            assertEquals("key63\tvalue63", index.getLine(63));
+            assertEquals("key64\tvalue64", index.getLine(64));
+            assertEquals("key99\tvalue999", index.getLine(999));
+            assertEquals(Arrays.asList("key98\tvalue998", "key99\tvalue999"), index.getLines(
+                    998, 5));
+        }
+        finally
+        {
+            index.close();
+        }
+        assertTrue(LineIndex.indexFile(file.getPath()).exists());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetLinePastEnd() throws IOException
+    {
+        final File file = writeTsv(10);
+        final LineIndex index = LineIndex.open(file.getPath());
+        try
+        {
+            index.getLine(10);
+        }
+        finally
+        {
+            index.close();
+        }
+    }
+
+    @Test
+    public void testFindByKey() throws IOException
+    {
+        final File file = writeTsv(1000);
+        final LineIndexBuilder builder = new LineIndexBuilder(64);
+        builder.setKeyColumn(0, '\t');
+        final LineIndex index = LineIndex.open(file.getPath(), builder);
+        try
+        {
+            final List<String> lines = index.findByKey("key42");
+            assertEquals(10, lines.size());
+            // Lines with the same key stay in file order.
+            for (int i = 0; i < 10; i++)
+            {
+                assertEquals("key42\tvalue" + (42 + 100 * i), lines.get(i));
+            }
+            assertTrue(index.findByKey("key100").isEmpty());
+            assertTrue(index.findByKey("zzz").isEmpty());
+        }
+        finally
+        {
+            index.close();
+        }
+    }
+
+    @Test
+    public void testRebuiltWhenFileChanges() throws IOException
+    {
+        final File file = writeTsv(100);
+        LineIndex index = LineIndex.open(file.getPath());
+        assertEquals(100, index.getLineCount());
+        index.close();
+
+        TestFiles.append(file, "extra\tline\n");
+
+        index = LineIndex.open(file.getPath());
+        try
+        {
+            assertEquals(101, index.getLineCount());
+            assertEquals("extra\tline", index.getLine(100));
+        }
+        finally
+        {
+            index.close();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package org.ncibi.commons.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class LineReaderTest
+{
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static List<String> bufferedReaderLines(final String text) throws IOException
+    {
+        final List<String> lines = new ArrayList<String>();
+        final BufferedReader in = new BufferedReader(new StringReader(text));
+        String line;
+        while ((line = in.readLine()) != null)
+        {
+            lines.add(line);
+        }
+        return lines;
+    }
+
+    private static List<String> lineReaderLines(final String text, final int bufferSize)
+            throws IOException
+    {
+        final List<String> lines = new ArrayList<String>();
+        final LineReader in = new LineReader(new ByteArrayInputStream(text.getBytes(UTF8)), UTF8,
+                0, bufferSize);
+        String line;
+        while ((line = in.readLine()) != null)
+        {
+            lines.add(line);
+        }
+        assertEquals(text.getBytes(UTF8).length, in.getPosition());
+        return lines;
+    }
+
+    @Test
+    public void testSameLinesAsBufferedReader() throws IOException
+    {
+        final String[] texts = { "", "a", "a\n", "a\nb", "a\r\nb\r\n", "a\rb\r", "\n\n\r\r\n",
+                "a\r\n\r\nb", "café\tgrüß\né\r", "long line of text\r\nx" };
+        for (final String text : texts)
+        {
+            for (int bufferSize = 1; bufferSize <= 8; bufferSize++)
+            {
+                assertEquals(text, bufferedReaderLines(text), lineReaderLines(text, bufferSize));
+            }
+        }
+    }
+
+    @Test
+    public void testBufferSize() throws IOException
+    {
+        final LineReader in = new LineReader(new ByteArrayInputStream("ab\ncd".getBytes(UTF8)), UTF8,
+                0, 1);
+        assertEquals("ab", in.readLine());
+        assertEquals("cd", in.readLine());
+        assertNull(in.readLine());
+
+        try
+        {
+            new LineReader(new ByteArrayInputStream(new byte[0]), UTF8, 0, 0);
+            fail("Expected an IllegalArgumentException");
+        }
+        catch (final IllegalArgumentException e)
+        {
+            // Expected, an empty buffer can never be filled.
+        }
+    }
+
+    @Test
+    public void testPositions() throws IOException
+    {
+        final LineReader in = new LineReader(new ByteArrayInputStream("ab\r\ncd\ne"
+                .getBytes(UTF8)), UTF8, 100, 2);
+        assertEquals("ab", in.readLine());
+        assertEquals(104, in.getPosition());
+        assertEquals("cd", in.readLine());
+        assertEquals(107, in.getPosition());
+        assertEquals("e", in.readLine());
+        assertEquals(108, in.getPosition());
+        assertNull(in.readLine());
+    }
+
+    @Test
+    public void testReadCompleteLine() throws IOException
+    {
+        final LineReader in = new LineReader(new ByteArrayInputStream("ab\ncd\rpartial"
+                .getBytes(UTF8)), UTF8);
+        assertEquals("ab", in.readCompleteLine());
+        assertEquals(3, in.getPosition());
+        assertEquals("cd", in.readCompleteLine());
+        assertNull(in.readCompleteLine());
+        assertEquals(6, in.getPosition());
+
+        final LineReader trailingReturn = new LineReader(new ByteArrayInputStream("ab\r"
+                .getBytes(UTF8)), UTF8);
+        assertNull(trailingReturn.readCompleteLine());
+        assertEquals(0, trailingReturn.getPosition());
+    }
+}
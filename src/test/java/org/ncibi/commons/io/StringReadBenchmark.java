@@ -0,0 +1,92 @@
+package org.ncibi.commons.io;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+/**
+ * Compares FileUtilities.readString() with the char buffer and StringWriter
+ * loop convertStreamToString() used before it delegated to readString(). Not
+ * a unit test; run it by hand:
+ * 
+ * java -cp target/classes:target/test-classes org.ncibi.commons.io.StringReadBenchmark [megabytes]
+ * 
+ * @author gtarcea
+ * 
+ */
+public final class StringReadBenchmark
+{
+    private StringReadBenchmark()
+    {
+    }
+
+    private static String readWithStringWriter(final InputStream is) throws IOException
+    {
+        final Writer writer = new StringWriter();
+        final char[] buffer = new char[1024];
+        try
+        {
+            final Reader reader = new BufferedReader(new InputStreamReader(is, "UTF-8"));
+            int n;
+            while ((n = reader.read(buffer)) != -1)
+            {
+                writer.write(buffer, 0, n);
+            }
+        }
+        finally
+        {
+            is.close();
+        }
+        return writer.toString();
+    }
+
+    private static void report(final String name, final long chars, final long nanos)
+    {
+        System.out.printf("%-14s %8.1f MB/s%n", name, chars / (nanos / 1e9) / (1024 * 1024));
+    }
+
+    public static void main(final String[] args) throws IOException
+    {
+        final int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        final File file = File.createTempFile("bench", ".txt");
+        file.deleteOnExit();
+        final FileWriter out = new FileWriter(file);
+        final StringBuilder line = new StringBuilder();
+        for (int i = 0; i < 99; i++)
+        {
+            line.append((char) ('a' + i % 26));
+        }
+        line.append('\n');
+        for (int i = 0; i < megabytes * 1024 * 1024 / line.length(); i++)
+        {
+            out.write(line.toString());
+        }
+        out.close();
+
+        final Charset utf8 = Charset.forName("UTF-8");
+        for (int round = 0; round < 5; round++)
+        {
+            long start = System.nanoTime();
+            final int legacy = readWithStringWriter(new FileInputStream(file)).length();
+            report("StringWriter", legacy, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            final InputStream in = new FileInputStream(file);
+            final int stream = FileUtilities.readString(in, utf8).length();
+            in.close();
+            report("stream", stream, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            final int channel = FileUtilities.readString(file, utf8).length();
+            report("FileChannel", channel, System.nanoTime() - start);
+        }
+    }
+}
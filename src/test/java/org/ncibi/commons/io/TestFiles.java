@@ -0,0 +1,99 @@
+package org.ncibi.commons.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+/**
+ * Writes temporary text files for the io tests. Files are written in UTF-8 so
+ * tests don't depend on the platform charset, and are deleted on exit.
+ *
+ * @author gtarcea
+ *
+ */
+final class TestFiles
+{
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private TestFiles()
+    {
+    }
+
+    /**
+     * Writes lines to a new temporary file, each followed by '\n'.
+     *
+     * @param prefix
+     *            The temporary file name prefix.
+     * @param suffix
+     *            The temporary file name suffix.
+     * @param lines
+     *            The lines to write.
+     * @return The file.
+     * @throws IOException
+     *             When the file can't be written.
+     */
+    static File writeLines(final String prefix, final String suffix,
+            final Iterable<String> lines) throws IOException
+    {
+        final StringBuilder sb = new StringBuilder();
+        for (final String line : lines)
+        {
+            sb.append(line).append('\n');
+        }
+        return writeText(prefix, suffix, sb.toString());
+    }
+
+    /**
+     * Writes text to a new temporary file as is.
+     *
+     * @param prefix
+     *            The temporary file name prefix.
+     * @param suffix
+     *            The temporary file name suffix.
+     * @param text
+     *            The text to write.
+     * @return The file.
+     * @throws IOException
+     *             When the file can't be written.
+     */
+    static File writeText(final String prefix, final String suffix, final String text)
+            throws IOException
+    {
+        final File file = File.createTempFile(prefix, suffix);
+        file.deleteOnExit();
+        write(file, text, false);
+        return file;
+    }
+
+    /**
+     * Appends text to a file.
+     *
+     * @param file
+     *            The file.
+     * @param text
+     *            The text to append.
+     * @throws IOException
+     *             When the file can't be written.
+     */
+    static void append(final File file, final String text) throws IOException
+    {
+        write(file, text, true);
+    }
+
+    private static void write(final File file, final String text, final boolean append)
+            throws IOException
+    {
+        final Writer out = new OutputStreamWriter(new FileOutputStream(file, append), UTF8);
+        try
+        {
+            out.write(text);
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package org.ncibi.commons.io.column;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+
+public class ColumnarParserTest
+{
+    private static ColumnSchema schema(final ErrorPolicy policy)
+    {
+        return new ColumnSchema().add("id", ColumnType.INT, policy).add("gene",
+                ColumnType.DICTIONARY, policy).skip().add("score", ColumnType.DOUBLE, policy).add(
+                "count", ColumnType.LONG, policy).add("note", ColumnType.STRING, policy);
+    }
+
+    @Test
+    public void testParse() throws IOException
+    {
+        final String text = "id\tgene\tignored\tscore\tcount\tnote\r\n"
+                + "1\tTP53\tx\t0.5\t9223372036854775807\tfirst\r\n" + "\n"
+                + "2\tBRCA1\tx\t-1e-3\t-9223372036854775808\t\r\n"
+                + "3\tTP53\tx\t12\t0\tlast\textra";
+        final ColumnarParser parser = new ColumnarParser(schema(ErrorPolicy.FAIL), '\t');
+        parser.setSkipHeader(true);
+        final ColumnTable table = parser.parse(new StringReader(text));
+
+        assertEquals(3, table.getRowCount());
+        assertEquals(5, table.getColumns().size());
+        assertTrue(Arrays.equals(new int[] { 1, 2, 3 }, table.getIntColumn("id").toArray()));
+        assertTrue(Arrays.equals(new double[] { 0.5, -0.001, 12 }, table.getDoubleColumn(
+                "score").toArray()));
+        assertTrue(Arrays.equals(new long[] { Long.MAX_VALUE, Long.MIN_VALUE, 0 }, table
+                .getLongColumn("count").toArray()));
+        assertEquals("", table.getStringColumn("note").get(1));
+        assertEquals("last", table.getStringColumn("note").get(2));
+
+        final DictionaryColumn genes = table.getDictionaryColumn("gene");
+        assertEquals(Arrays.asList("TP53", "BRCA1"), genes.getDictionary());
+        assertTrue(Arrays.equals(new int[] { 0, 1, 0 }, genes.toCodeArray()));
+        assertEquals("BRCA1", genes.get(1));
+    }
+
+    @Test
+    public void testMissingPolicy() throws IOException
+    {
+        final String text = "x\tTP53\t\tNA\t99999999999999999999\n" + "2147483648\n";
+        final ColumnTable table = new ColumnarParser(schema(ErrorPolicy.MISSING), '\t')
+                .parse(new StringReader(text));
+
+        assertEquals(2, table.getRowCount());
+        final IntColumn ids = table.getIntColumn("id");
+        assertTrue(ids.isMissing(0));
+        assertTrue(ids.isMissing(1));
+        assertEquals(2, ids.getErrorCount());
+        assertFalse(table.getDictionaryColumn("gene").isMissing(0));
+        assertEquals(DictionaryColumn.MISSING_CODE, table.getDictionaryColumn("gene").getCode(1));
+        assertTrue(Double.isNaN(table.getDoubleColumn("score").get(0)));
+        assertTrue(table.getLongColumn("count").isMissing(0));
+        assertNull(table.getStringColumn("note").get(0));
+    }
+
+    @Test
+    public void testSkipRowPolicy() throws IOException
+    {
+        final ColumnSchema schema = new ColumnSchema().add("name", ColumnType.STRING).add(
+                "value", ColumnType.INT, ErrorPolicy.SKIP_ROW);
+        final ColumnTable table = new ColumnarParser(schema, ',').parse(new StringReader(
+                "a,1\nb,oops\nc\nd,4\n"));
+
+        assertEquals(2, table.getRowCount());
+        assertEquals(2, table.getSkippedRowCount());
+        assertEquals("d", table.getStringColumn("name").get(1));
+        assertEquals(4, table.getIntColumn("value").get(1));
+    }
+
+    @Test
+    public void testFailPolicy()
+    {
+        try
+        {
+            new ColumnarParser(schema(ErrorPolicy.FAIL), '\t').parse(new StringReader(
+                    "1\tA\tx\t1.0\t1\tok\n2\tB\tx\tbad\t2\tok\n"));
+            fail("Expected an IOException");
+        }
+        catch (final IOException e)
+        {
+            assertEquals("Line 2, column score: can't parse 'bad' as DOUBLE", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testDoublesMatchParseDouble() throws IOException
+    {
+        final Random random = new Random(17);
+        final StringBuilder text = new StringBuilder();
+        final double[] expected = new double[20000];
+        for (int i = 0; i < expected.length; i++)
+        {
+            final String value;
+            switch (i % 5)
+            {
+            case 0:
+                value = Double.toString(random.nextDouble() * 1000);
+                break;
+            case 1:
+                value = Double.toString(random.nextGaussian() * 1e-30);
+                break;
+            case 2:
+                value = String.format("%.4f", random.nextDouble() - 0.5);
+                break;
+            case 3:
+                value = Long.toString(random.nextLong());
+                break;
+            default:
+                value = i % 2 == 0 ? "NaN" : "-Infinity";
+                break;
+            }
+            expected[i] = Double.parseDouble(value);
+            text.append(value).append('\n');
+        }
+
+        final ColumnTable table = new ColumnarParser(new ColumnSchema().add("v",
+                ColumnType.DOUBLE), ',').parse(new StringReader(text.toString()));
+        assertTrue(Arrays.equals(expected, table.getDoubleColumn("v").toArray()));
+    }
+
+    @Test
+    public void testFileWithLongLines() throws IOException
+    {
+        final File file = File.createTempFile("columns", ".gz");
+        file.deleteOnExit();
+        final char[] wide = new char[100000];
+        Arrays.fill(wide, 'w');
+        final Writer out = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(
+                file)), "UTF-8");
+        for (int i = 0; i < 1000; i++)
+        {
+            out.write(i + ",é" + (i % 3) + "," + (i % 100 == 0 ? new String(wide) : "") + "\n");
+        }
+        out.close();
+
+        final ColumnarParser parser = new ColumnarParser(new ColumnSchema().add("i",
+                ColumnType.INT).add("group", ColumnType.DICTIONARY).add("text",
+                ColumnType.STRING), ',');
+        parser.setCharset(Charset.forName("UTF-8"));
+        final ColumnTable table = parser.parse(file.getPath());
+
+        assertEquals(1000, table.getRowCount());
+        assertEquals(999, table.getIntColumn("i").get(999));
+        assertEquals(Arrays.asList("é0", "é1", "é2"), table.getDictionaryColumn("group")
+                .getDictionary());
+        assertEquals(100000, table.getStringColumn("text").get(500).length());
+        assertEquals("", table.getStringColumn("text").get(501));
+    }
+}
@@ -0,0 +1,210 @@
+package org.ncibi.commons.io.stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+import org.ncibi.commons.io.FileInputProcessor;
+
+public class ChecksumInputStreamTest
+{
+    private static String checksum(final ChecksumAlgorithm algorithm, final byte[] data)
+            throws IOException
+    {
+        final ChecksumInputStream in = new ChecksumInputStream(new ByteArrayInputStream(data),
+                algorithm);
+        final byte[] buffer = new byte[7];
+        while (in.read(buffer) != -1)
+        {
+            // Read in small pieces.
+        }
+        in.close();
+        assertEquals(data.length, in.getBytesRead());
+        return in.getChecksum();
+    }
+
+    @Test
+    public void testKnownValues() throws IOException
+    {
+        final byte[] digits = "123456789".getBytes("US-ASCII");
+        final byte[] abc = "abc".getBytes("US-ASCII");
+        assertEquals("cbf43926", checksum(ChecksumAlgorithm.CRC32, digits));
+        assertEquals("e3069283", checksum(ChecksumAlgorithm.CRC32C, digits));
+        assertEquals("11e60398", checksum(ChecksumAlgorithm.ADLER32, "Wikipedia"
+                .getBytes("US-ASCII")));
+        assertEquals("900150983cd24fb0d6963f7d28e17f72", checksum(ChecksumAlgorithm.MD5, abc));
+        assertEquals("a9993e364706816aba3e25717850c26c9cd0d89d", checksum(
+                ChecksumAlgorithm.SHA1, abc));
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+                checksum(ChecksumAlgorithm.SHA256, abc));
+    }
+
+    @Test
+    public void testCrc32cBlocksMatchSingleBytes()
+    {
+        final byte[] data = new byte[10007];
+        new Random(42).nextBytes(data);
+
+        final Crc32c blocks = new Crc32c();
+        blocks.update(data, 3, data.length - 3);
+        final Crc32c single = new Crc32c();
+        for (int i = 3; i < data.length; i++)
+        {
+            single.update(data[i]);
+        }
+        assertEquals(single.getValue(), blocks.getValue());
+    }
+
+    @Test
+    public void testSkipIsChecksummed() throws IOException
+    {
+        final byte[] data = new byte[20000];
+        new Random(7).nextBytes(data);
+        final ChecksumInputStream in = new ChecksumInputStream(new ByteArrayInputStream(data),
+                ChecksumAlgorithm.MD5);
+        assertEquals(15000, in.skip(15000));
+        while (in.read() != -1)
+        {
+            // Read the rest a byte at a time.
+        }
+        assertEquals(checksum(ChecksumAlgorithm.MD5, data), in.getChecksum());
+    }
+
+    @Test
+    public void testNonPositiveSkip() throws IOException
+    {
+        final byte[] data = "abc".getBytes("US-ASCII");
+        final ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        final InputStream[] streams = {
+                new ChecksumInputStream(new ByteArrayInputStream(data), ChecksumAlgorithm.MD5),
+                new DuplicatingInputStream(new ByteArrayInputStream(data), copy, false) };
+        for (final InputStream in : streams)
+        {
+            assertEquals(0, in.skip(-1));
+            assertEquals(0, in.skip(0));
+            assertEquals('a', in.read());
+        }
+        assertEquals(1, copy.size());
+    }
+
+    @Test
+    public void testDuplicatingInputStream() throws IOException
+    {
+        final byte[] data = new byte[20000];
+        new Random(3).nextBytes(data);
+        final ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        final InputStream in = new DuplicatingInputStream(new ByteArrayInputStream(data), copy,
+                true);
+        in.read(new byte[100]);
+        in.skip(5000);
+        while (in.read(new byte[333]) != -1)
+        {
+            // Read the rest.
+        }
+        in.close();
+        assertArrayEquals(data, copy.toByteArray());
+    }
+
+    private static class Counter extends FileInputProcessor
+    {
+        int bytes = 0;
+
+        @Override
+        public void doProcess(final InputStream input) throws IOException
+        {
+            // Only read part of the file; the rest is read for the checksum.
+            bytes = input.read(new byte[10]);
+        }
+    }
+
+    @Test
+    public void testFileInputProcessorChecksum() throws IOException
+    {
+        final byte[] data = new byte[100000];
+        new Random(11).nextBytes(data);
+        final File file = File.createTempFile("checksum", ".gz");
+        file.deleteOnExit();
+        final GZIPOutputStream out = new GZIPOutputStream(new FileOutputStream(file));
+        out.write(data);
+        out.close();
+
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        final InputStream raw = new DuplicatingInputStream(new FileInputStream(file),
+                compressed, true);
+        while (raw.read(new byte[4096]) != -1)
+        {
+            // Copy the compressed file.
+        }
+        raw.close();
+        final String expected = checksum(ChecksumAlgorithm.SHA1, compressed.toByteArray());
+
+        final Counter counter = new Counter();
+        counter.setReadAhead(true);
+        counter.setChecksum(ChecksumAlgorithm.SHA1);
+        counter.setExpectedChecksum(expected.toUpperCase());
+        counter.process(file.getPath());
+        assertEquals(10, counter.bytes);
+        assertEquals(expected, counter.getChecksum());
+
+        counter.setExpectedChecksum("0000");
+        try
+        {
+            counter.process(file.getPath());
+            fail("Expected a checksum mismatch");
+        }
+        catch (final RuntimeException e)
+        {
+            assertTrue(e.getCause().getMessage().contains("expected 0000"));
+        }
+    }
+
+    @Test
+    public void testFileInputProcessorChecksumCoversPadding() throws IOException
+    {
+        final byte[] data = new byte[50000];
+        new Random(13).nextBytes(data);
+        final File file = File.createTempFile("padded", ".gz");
+        file.deleteOnExit();
+        final FileOutputStream fileOut = new FileOutputStream(file);
+        final GZIPOutputStream out = new GZIPOutputStream(fileOut);
+        out.write(data);
+        out.finish();
+        // Zero padding after the last gzip member isn't decompressed but is
+        // part of the file.
+        fileOut.write(new byte[100 * 1024]);
+        out.close();
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final InputStream raw = new FileInputStream(file);
+        final byte[] buffer = new byte[4096];
+        int n;
+        while ((n = raw.read(buffer)) != -1)
+        {
+            bytes.write(buffer, 0, n);
+        }
+        raw.close();
+        final String expected = checksum(ChecksumAlgorithm.MD5, bytes.toByteArray());
+
+        for (final boolean readAhead : new boolean[] { false, true })
+        {
+            final Counter counter = new Counter();
+            counter.setReadAhead(readAhead);
+            counter.setChecksum(ChecksumAlgorithm.MD5);
+            counter.setExpectedChecksum(expected);
+            counter.process(file.getPath());
+            assertEquals(expected, counter.getChecksum());
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package org.ncibi.commons.io.stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.ncibi.commons.io.FileInputLineProcessor;
+
+public class DecompressingInputStreamsTest
+{
+    private static byte[] testData(final int lines)
+    {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < lines; i++)
+        {
+            sb.append("gene").append(i).append('\t').append(i * 7).append('\n');
+        }
+        return sb.toString().getBytes();
+    }
+
+    private static byte[] gzip(final byte[] data) throws IOException
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final GZIPOutputStream gz = new GZIPOutputStream(out);
+        gz.write(data);
+        gz.close();
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes data as BGZF blocks of at most blockSize bytes followed by the
+     * empty end of file block.
+     */
+    private static byte[] bgzf(final byte[] data, final int blockSize)
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int off = 0; off < data.length; off += blockSize)
+        {
+            writeBgzfBlock(out, data, off, Math.min(blockSize, data.length - off));
+        }
+        writeBgzfBlock(out, data, 0, 0);
+        return out.toByteArray();
+    }
+
+    private static void writeBgzfBlock(final ByteArrayOutputStream out, final byte[] data,
+            final int off, final int len)
+    {
+        final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(data, off, len);
+        deflater.finish();
+        final byte[] buffer = new byte[len + 1024];
+        final int compressedLength = deflater.deflate(buffer);
+        deflater.end();
+
+        final int blockSize = 18 + compressedLength + 8;
+        out.write(new byte[] { 0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, (byte) 0xff, 6, 0, 'B',
+                'C', 2, 0, (byte) ((blockSize - 1) & 0xff), (byte) ((blockSize - 1) >> 8) }, 0, 18);
+        out.write(buffer, 0, compressedLength);
+
+        final CRC32 crc = new CRC32();
+        crc.update(data, off, len);
+        writeInt(out, crc.getValue());
+        writeInt(out, len);
+    }
+
+    private static void writeInt(final ByteArrayOutputStream out, final long value)
+    {
+        for (int i = 0; i < 4; i++)
+        {
+            out.write((int) (value >> (8 * i)) & 0xff);
+        }
+    }
+
+    private static byte[] readAll(final InputStream in) throws IOException
+    {
+        try
+        {
+            return IOUtils.toByteArray(in);
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    @Test
+    public void testDetect() throws IOException
+    {
+        final byte[] data = testData(10);
+        assertEquals(Compression.NONE, Compression.detect(data, data.length));
+        assertEquals(Compression.NONE, Compression.detect(new byte[0], 0));
+
+        final byte[] gz = bgzf(data, 100);
+        assertEquals(Compression.BGZF, Compression.detect(gz, Compression.MAGIC_LENGTH));
+
+        final byte[] bz = "BZh91AY&SY".getBytes();
+        assertEquals(Compression.BZIP2, Compression.detect(bz, bz.length));
+        final byte[] text = "BZh1 is not bzip2\n".getBytes();
+        assertEquals(Compression.NONE, Compression.detect(text, text.length));
+        assertArrayEquals(text, readAll(DecompressingInputStreams.open(new ByteArrayInputStream(
+                text))));
+    }
+
+    @Test
+    public void testBgzfCorruptInflatedSize() throws IOException
+    {
+        final byte[] compressed = bgzf(testData(1000), 100);
+        // ISIZE is the last 4 bytes of the first block, BSIZE + 1 bytes long.
+        final int blockEnd = ((compressed[16] & 0xff) | ((compressed[17] & 0xff) << 8)) + 1;
+        for (int i = blockEnd - 4; i < blockEnd; i++)
+        {
+            compressed[i] = (byte) 0xff;
+        }
+        try
+        {
+            readAll(DecompressingInputStreams.open(new ByteArrayInputStream(compressed), 2));
+            fail("Expected an IOException");
+        }
+        catch (final IOException e)
+        {
+            Throwable cause = e;
+            while (cause.getCause() != null)
+            {
+                cause = cause.getCause();
+            }
+            assertTrue(cause.getMessage(), cause.getMessage().startsWith("Corrupt BGZF block"));
+        }
+    }
+
+    @Test
+    public void testUncompressedPassesThrough() throws IOException
+    {
+        final byte[] data = testData(1000);
+        assertArrayEquals(data, readAll(DecompressingInputStreams.open(new ByteArrayInputStream(
+                data))));
+
+        final byte[] tiny = "a".getBytes();
+        assertArrayEquals(tiny, readAll(DecompressingInputStreams.open(new ByteArrayInputStream(
+                tiny))));
+    }
+
+    @Test
+    public void testGzip() throws IOException
+    {
+        final byte[] data = testData(50000);
+        assertArrayEquals(data, readAll(DecompressingInputStreams.open(new ByteArrayInputStream(
+                gzip(data)))));
+    }
+
+    @Test
+    public void testBgzfParallel() throws IOException
+    {
+        final byte[] data = testData(50000);
+        final byte[] compressed = bgzf(data, 65280);
+        assertArrayEquals(data, readAll(DecompressingInputStreams.open(new ByteArrayInputStream(
+                compressed), 4)));
+        assertArrayEquals(data, readAll(DecompressingInputStreams.open(new ByteArrayInputStream(
+                compressed), 1)));
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnsupportedFormat() throws IOException
+    {
+        DecompressingInputStreams.open(new ByteArrayInputStream("BZh91AY&SY".getBytes()));
+    }
+
+    @Test
+    public void testFileInputLineProcessorReadsGzip() throws IOException
+    {
+        final File file = File.createTempFile("decompress", ".gz");
+        file.deleteOnExit();
+        final FileOutputStream out = new FileOutputStream(file);
+        out.write(gzip(testData(1000)));
+        out.close();
+
+        final List<String> lines = new ArrayList<String>();
+        new FileInputLineProcessor()
+        {
+            @Override
+            public void processLine(final String line) throws IOException
+            {
+                lines.add(line);
+            }
+        }.process(file.getPath());
+
+        assertEquals(1000, lines.size());
+        assertEquals("gene999\t6993", lines.get(999));
+    }
+}
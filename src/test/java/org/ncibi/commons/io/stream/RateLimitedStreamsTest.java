@@ -0,0 +1,133 @@
+package org.ncibi.commons.io.stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class RateLimitedStreamsTest
+{
+    private static byte[] testData(final int size)
+    {
+        final byte[] data = new byte[size];
+        for (int i = 0; i < size; i++)
+        {
+            data[i] = (byte) (i * 31);
+        }
+        return data;
+    }
+
+    private static byte[] readAll(final RateLimitedInputStream in) throws IOException
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[10000];
+        int n;
+        while ((n = in.read(buffer)) != -1)
+        {
+            out.write(buffer, 0, n);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testInputRate() throws IOException
+    {
+        // 4KB burst, then 36KB at 90KB/s: about 0.4 seconds.
+        final byte[] data = testData(40 * 1024);
+        final RateLimitedInputStream in = new RateLimitedInputStream(new ByteArrayInputStream(
+                data), new TokenBucket(90 * 1024, 4 * 1024));
+
+        final long start = System.nanoTime();
+        assertArrayEquals(data, readAll(in));
+        final long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue("took " + millis + "ms", millis >= 350);
+        assertTrue(in.getThrottledTime(TimeUnit.MILLISECONDS) >= 300);
+        assertEquals(data.length, in.getBucket().getBytesAcquired());
+        assertTrue(in.getBucket().getThrottleCount() > 0);
+    }
+
+    @Test
+    public void testOutputRate() throws IOException
+    {
+        final byte[] data = testData(40 * 1024);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final RateLimitedOutputStream out = new RateLimitedOutputStream(bytes, new TokenBucket(
+                90 * 1024, 4 * 1024));
+
+        final long start = System.nanoTime();
+        out.write(data);
+        out.close();
+        final long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertArrayEquals(data, bytes.toByteArray());
+        assertTrue("took " + millis + "ms", millis >= 350);
+        assertTrue(out.getThrottledTime(TimeUnit.MILLISECONDS) >= 300);
+    }
+
+    @Test
+    public void testSharedBucket() throws Exception
+    {
+        // Two readers of 20KB each share 90KB/s, so together they take as
+        // long as one reader of 40KB.
+        final TokenBucket bucket = new TokenBucket(90 * 1024, 4 * 1024);
+        final byte[] data = testData(20 * 1024);
+        final Thread[] threads = new Thread[2];
+        final long start = System.nanoTime();
+        for (int i = 0; i < threads.length; i++)
+        {
+            threads[i] = new Thread(new Runnable()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        readAll(new RateLimitedInputStream(new ByteArrayInputStream(data), bucket));
+                    }
+                    catch (final IOException e)
+                    {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (final Thread thread : threads)
+        {
+            thread.join();
+        }
+        final long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue("took " + millis + "ms", millis >= 350);
+        assertEquals(2 * data.length, bucket.getBytesAcquired());
+    }
+
+    @Test
+    public void testRateChange() throws IOException
+    {
+        final TokenBucket bucket = new TokenBucket(1024, 1024);
+        bucket.setRate(10 * 1024 * 1024);
+        assertEquals(10 * 1024 * 1024, bucket.getRate());
+        assertEquals(1024, bucket.getBurstBytes());
+
+        // At the original 1KB/s this would take about 100 seconds.
+        final byte[] data = testData(100 * 1024);
+        final long start = System.nanoTime();
+        assertArrayEquals(data, readAll(new RateLimitedInputStream(new ByteArrayInputStream(
+                data), bucket)));
+        assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRateMustBePositive()
+    {
+        new TokenBucket(0);
+    }
+}
@@ -0,0 +1,121 @@
+package org.ncibi.commons.io.stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ReadAheadInputStreamTest
+{
+    private static byte[] testData(final int size)
+    {
+        final byte[] data = new byte[size];
+        for (int i = 0; i < size; i++)
+        {
+            data[i] = (byte) (i * 31);
+        }
+        return data;
+    }
+
+    @Test
+    public void testReadInOddSizedPieces() throws IOException
+    {
+        final byte[] data = testData(100000);
+        final ReadAheadInputStream in = new ReadAheadInputStream(new ByteArrayInputStream(data),
+                3, 1024);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[777];
+        out.write(in.read());
+        int n;
+        while ((n = in.read(buffer)) != -1)
+        {
+            out.write(buffer, 0, n);
+        }
+        assertEquals(-1, in.read());
+        assertTrue(in.isOpen());
+        in.close();
+        assertFalse(in.isOpen());
+
+        assertArrayEquals(data, out.toByteArray());
+        assertTrue(in.getReaderWaitTime(TimeUnit.NANOSECONDS) >= 0);
+        assertTrue(in.getReadAheadWaitTime(TimeUnit.NANOSECONDS) >= 0);
+    }
+
+    @Test
+    public void testFileChannelAndSkip() throws IOException
+    {
+        final byte[] data = testData(300000);
+        final File file = File.createTempFile("readahead", ".dat");
+        file.deleteOnExit();
+        final FileOutputStream out = new FileOutputStream(file);
+        out.write(data);
+        out.close();
+
+        final ReadAheadInputStream in = new ReadAheadInputStream(new FileInputStream(file));
+        assertEquals(200000, in.skip(200000));
+        assertEquals(data[200000] & 0xff, in.read());
+        assertEquals(99999, in.skip(200000));
+        assertEquals(-1, in.read());
+        in.close();
+    }
+
+    @Test
+    public void testErrorIsPassedToReader() throws IOException
+    {
+        final InputStream failing = new InputStream()
+        {
+            private int count = 0;
+
+            @Override
+            public int read() throws IOException
+            {
+                if (count++ >= 5000)
+                {
+                    throw new IOException("disk on fire");
+                }
+                return 'x';
+            }
+        };
+
+        final ReadAheadInputStream in = new ReadAheadInputStream(failing, 2, 1024);
+        try
+        {
+            while (in.read() != -1)
+            {
+                // drain
+            }
+            fail("Expected IOException");
+        }
+        catch (final IOException e)
+        {
+            assertEquals("disk on fire", e.getCause().getMessage());
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    @Test
+    public void testCloseBeforeEnd() throws IOException
+    {
+        final ReadAheadInputStream in = new ReadAheadInputStream(new ByteArrayInputStream(
+                testData(1000000)), 2, 4096);
+        in.read();
+        in.close();
+        assertFalse(in.isOpen());
+    }
+}
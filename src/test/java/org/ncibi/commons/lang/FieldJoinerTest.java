@@ -0,0 +1,81 @@
+package org.ncibi.commons.lang;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang.StringUtils;
+import org.junit.Test;
+import org.ncibi.commons.closure.FieldGetter;
+import org.ncibi.commons.collections.ListUtilities;
+
+public class FieldJoinerTest
+{
+    private static final List<String> VALUES = Arrays.asList("TP53", "O'Brien", null, "", "''");
+
+    @Test
+    public void testMatchesStringUtilsJoin()
+    {
+        for (final String separator : new String[] { ",", "::", "", null })
+        {
+            assertEquals(StringUtils.join(VALUES, separator), FieldJoiner.on(separator).join(
+                    VALUES));
+        }
+        assertEquals("", FieldJoiner.on(",").join(Collections.emptyList()));
+        assertEquals("1;2.5", FieldJoiner.on(";").join(Arrays.<Object> asList(1, 2.5)));
+    }
+
+    @Test
+    public void testQuoting()
+    {
+        final FieldJoiner quoted = FieldJoiner.on(",").quoted(StrUtils.Quote.DOUBLE_QUOTE);
+        assertEquals("\"TP53\",\"O'Brien\",\"\",\"\",\"''\"", quoted.join(VALUES));
+        assertEquals("\"TP53\",\"O'Brien\",\"null\",\"\",\"''\"", quoted.useForNull("null").join(
+                VALUES));
+        assertEquals("'TP53','O''Brien','','',''''''", FieldJoiner.SQL_IN_LIST.join(VALUES));
+        assertEquals("'a''''b'''", FieldJoiner.SQL_IN_LIST.join(Arrays.asList("a''b'")));
+    }
+
+    @Test
+    public void testAppendTo() throws IOException
+    {
+        final StringBuilder sb = new StringBuilder("IN (");
+        FieldJoiner.SQL_IN_LIST.appendTo(sb, Arrays.asList("a", "b")).append(')');
+        assertEquals("IN ('a','b')", sb.toString());
+
+        final StringWriter writer = new StringWriter();
+        FieldJoiner.on("\t").appendTo(writer, Arrays.asList("x", "y", "z"));
+        assertEquals("x\ty\tz", writer.toString());
+    }
+
+    @Test
+    public void testFieldGetter()
+    {
+        final FieldGetter<String, Integer> hex = new FieldGetter<String, Integer>()
+        {
+            public String getField(final Integer object)
+            {
+                return Integer.toHexString(object);
+            }
+        };
+        final List<Integer> numbers = Arrays.asList(10, 255);
+        assertEquals("a|ff", FieldJoiner.on("|").join(numbers, hex));
+        assertEquals("a|ff", StrUtils.fieldJoin(numbers, "|", hex));
+        assertEquals("'a','ff'", StrUtils.quoteFieldJoin(numbers, StrUtils.Quote.SINGLE_QUOTE,
+                ",", hex));
+    }
+
+    @Test
+    public void testQuotedCommaJoinedString()
+    {
+        final List<String> items = new ArrayList<String>(Arrays.asList("a", null, "c"));
+        assertEquals("'a','null','c'", ListUtilities.createQuotedCommaJoinedString(items));
+        assertEquals(StrUtils.COMMA_JOINER.join(ListUtilities.quoteStringsToQuotedStrings(items)),
+                ListUtilities.createQuotedCommaJoinedString(items));
+    }
+}
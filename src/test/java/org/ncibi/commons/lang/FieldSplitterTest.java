@@ -0,0 +1,111 @@
+package org.ncibi.commons.lang;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.lang.text.StrTokenizer;
+import org.junit.Test;
+
+public class FieldSplitterTest
+{
+    /**
+     * What StrUtils.split() returned before it used FieldSplitter.
+     */
+    private static List<String> tokenize(final String line, final String delimiter)
+    {
+        final StrTokenizer tokenizer = new StrTokenizer(line, delimiter);
+        tokenizer.setEmptyTokenAsNull(false);
+        tokenizer.setIgnoreEmptyTokens(false);
+        @SuppressWarnings("unchecked")
+        final List<String> tokens = tokenizer.getTokenList();
+        return tokens;
+    }
+
+    private static void check(final String line, final String delimiter)
+    {
+        final List<String> expected = tokenize(line, delimiter);
+        final FieldSplitter splitter = new FieldSplitter(delimiter);
+        final String message = "'" + line + "' split on '" + delimiter + "'";
+
+        assertEquals(message, expected, splitter.splitToList(line));
+        assertEquals(message, expected, Arrays.asList(splitter.splitToArray(line)));
+        assertEquals(message, expected.size(), splitter.count(line));
+        for (int i = 0; i < expected.size(); i++)
+        {
+            assertEquals(message, expected.get(i), splitter.field(line, i));
+        }
+        assertNull(message, splitter.field(line, expected.size()));
+
+        final String[] fields = new String[2];
+        assertEquals(message, expected.size(), splitter.split(line, fields));
+        for (int i = 0; i < Math.min(2, expected.size()); i++)
+        {
+            assertEquals(message, expected.get(i), fields[i]);
+        }
+
+        final int[] bounds = new int[2 * expected.size()];
+        assertEquals(message, expected.size(), splitter.split(line, bounds));
+        for (int i = 0; i < expected.size(); i++)
+        {
+            assertEquals(message, expected.get(i), line.substring(bounds[2 * i],
+                    bounds[2 * i + 1]));
+        }
+
+        if (delimiter != null && delimiter.length() == 1)
+        {
+            assertEquals(message, expected, new FieldSplitter(delimiter.charAt(0))
+                    .splitToList(line));
+        }
+    }
+
+    @Test
+    public void testEdgeCases()
+    {
+        final String[] lines = { null, "", "a", ",", ",,", "a,", ",a", "a,,b", "::", ":::",
+                "a:::b", "a::b:", "abab" };
+        final String[] delimiters = { ",", "::", ":::", "ab", "", null };
+        for (final String line : lines)
+        {
+            for (final String delimiter : delimiters)
+            {
+                check(line, delimiter);
+            }
+        }
+    }
+
+    @Test
+    public void testRandomLines()
+    {
+        final Random random = new Random(5);
+        final String alphabet = "ab:,\t";
+        for (int n = 0; n < 2000; n++)
+        {
+            final StringBuilder line = new StringBuilder();
+            for (int i = random.nextInt(20); i > 0; i--)
+            {
+                line.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            check(line.toString(), ",");
+            check(line.toString(), "\t");
+            check(line.toString(), "::");
+            check(line.toString(), "a:");
+        }
+    }
+
+    @Test
+    public void testReusedArrays()
+    {
+        final FieldSplitter splitter = new FieldSplitter('\t');
+        final String[] fields = new String[4];
+        assertEquals(3, splitter.split("a\tb\tc", fields));
+        assertEquals(2, splitter.split("d\te", fields));
+        assertArrayEquals(new String[] { "d", "e", "c", null }, fields);
+        assertEquals(6, splitter.split("1\t2\t3\t4\t5\t6", fields));
+        assertArrayEquals(new String[] { "1", "2", "3", "4" }, fields);
+    }
+}
@@ -0,0 +1,39 @@
+package org.ncibi.commons.lang;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class HashUtilsTest
+{
+    @Test
+    public void testHashChars()
+    {
+        assertEquals(HashUtils.hashChars("gene42"), HashUtils.hashChars(new StringBuilder(
+                "gene42")));
+        // "Aa" and "BB" share a String hash code but not a 64 bit hash.
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        assertFalse(HashUtils.hashChars("Aa") == HashUtils.hashChars("BB"));
+    }
+
+    @Test
+    public void testSequentialKeysSpread()
+    {
+        final int mask = 1023;
+        final Set<Integer> slots = new HashSet<Integer>();
+        final Set<Long> mixed = new HashSet<Long>();
+        for (int i = 0; i < 4096; i++)
+        {
+            slots.add(HashUtils.spread(i << 10) & mask);
+            mixed.add(HashUtils.mix(i));
+        }
+        // Keys differing only in high bits still reach most slots.
+        assertTrue(slots.size() > 900);
+        assertEquals(4096, mixed.size());
+    }
+}
@@ -0,0 +1,132 @@
+package org.ncibi.commons.lang;
+
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.lang.text.StrTokenizer;
+
+/**
+ * Compares FieldSplitter with the StrTokenizer loop StrUtils.split() used
+ * before. Not a unit test; run it by hand:
+ * 
+ * java -cp target/classes:target/test-classes:... org.ncibi.commons.lang.SplitBenchmark
+ * 
+ * @author gtarcea
+ * 
+ */
+public final class SplitBenchmark
+{
+    private static final int LINES = 200000;
+
+    private static final int ROUNDS = 10;
+
+    /**
+     * Defeats dead code elimination.
+     */
+    private static int sink;
+
+    private SplitBenchmark()
+    {
+    }
+
+    private static List<String> tokenize(final String line, final String delimiter)
+    {
+        final StrTokenizer tokenizer = new StrTokenizer(line, delimiter);
+        tokenizer.setEmptyTokenAsNull(false);
+        tokenizer.setIgnoreEmptyTokens(false);
+        @SuppressWarnings("unchecked")
+        final List<String> tokens = tokenizer.getTokenList();
+        return tokens;
+    }
+
+    private static void report(final String name, final long nanos)
+    {
+        System.out.printf("%-22s %8.1f ns/line%n", name, (double) nanos / LINES);
+    }
+
+    public static void main(final String[] args)
+    {
+        final Random random = new Random(1);
+        final String[] lines = new String[LINES];
+        for (int i = 0; i < LINES; i++)
+        {
+            final StringBuilder line = new StringBuilder();
+            for (int field = 0; field < 12; field++)
+            {
+                if (field > 0)
+                {
+                    line.append('\t');
+                }
+                if (random.nextInt(10) > 0)
+                {
+                    line.append(random.nextInt(1000000));
+                }
+            }
+            lines[i] = line.toString();
+        }
+
+        final FieldSplitter splitter = new FieldSplitter('\t');
+        final String[] fields = new String[12];
+        final int[] bounds = new int[24];
+        for (int round = 0; round < ROUNDS; round++)
+        {
+            final boolean last = round == ROUNDS - 1;
+            long start = System.nanoTime();
+            for (final String line : lines)
+            {
+                sink += tokenize(line, "\t").size();
+            }
+            long elapsed = System.nanoTime() - start;
+            if (last)
+            {
+                report("StrTokenizer", elapsed);
+            }
+
+            start = System.nanoTime();
+            for (final String line : lines)
+            {
+                sink += StrUtils.split(line, '\t').size();
+            }
+            elapsed = System.nanoTime() - start;
+            if (last)
+            {
+                report("StrUtils.split", elapsed);
+            }
+
+            start = System.nanoTime();
+            for (final String line : lines)
+            {
+                sink += splitter.split(line, fields);
+            }
+            elapsed = System.nanoTime() - start;
+            if (last)
+            {
+                report("reused String[]", elapsed);
+            }
+
+            start = System.nanoTime();
+            for (final String line : lines)
+            {
+                sink += splitter.split(line, bounds);
+            }
+            elapsed = System.nanoTime() - start;
+            if (last)
+            {
+                report("offsets", elapsed);
+            }
+
+            start = System.nanoTime();
+            for (final String line : lines)
+            {
+                final String field = splitter.field(line, 2);
+                sink += field == null ? 0 : field.length();
+            }
+            elapsed = System.nanoTime() - start;
+            if (last)
+            {
+                report("field(2)", elapsed);
+            }
+        }
+        System.out.println(sink == 42 ? "" : "done");
+    }
+}
@@ -0,0 +1,106 @@
+package org.ncibi.commons.lang;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.ncibi.commons.io.CsvFormat;
+import org.ncibi.commons.io.CsvParser;
+import org.ncibi.commons.io.CsvRecord;
+
+public class StringPoolTest
+{
+    @Test
+    public void testInternFromSlices()
+    {
+        final StringPool pool = new StringPool(1024);
+        final String tp53 = pool.intern(new String("TP53"));
+        final Charset utf8 = Charset.forName("UTF-8");
+
+        assertSame(tp53, pool.intern(new String("TP53")));
+        assertSame(tp53, pool.intern("xTP53x", 1, 5));
+        assertSame(tp53, pool.intern("xxTP53".toCharArray(), 2, 6));
+        assertSame(tp53, pool.intern("TP53\t".getBytes(), 0, 4, utf8));
+
+        final String gene = pool.intern("gène\t".getBytes(utf8), 0, 5, utf8);
+        assertEquals("gène", gene);
+        assertSame(gene, pool.intern("gène"));
+        assertNull(pool.intern(null));
+
+        assertEquals(5, pool.getHitCount());
+        assertEquals(2, pool.getMissCount());
+        assertEquals(5.0 / 7, pool.getHitRate(), 1e-9);
+    }
+
+    @Test
+    public void testBoundedWithEviction()
+    {
+        final StringPool pool = new StringPool(64);
+        assertEquals(64, pool.getCapacity());
+        final String frequent = pool.intern(new String("frequent"));
+        for (int i = 0; i < 10000; i++)
+        {
+            pool.intern("once" + i);
+            assertSame(frequent, pool.intern(new String("frequent")));
+        }
+        assertTrue(pool.getEvictionCount() > 9000);
+    }
+
+    @Test
+    public void testSplitterAndParsers() throws IOException
+    {
+        final StringPool pool = new StringPool(1024);
+        final List<String> first = new FieldSplitter('\t', pool).splitToList("TP53\thuman");
+        final List<String> second = new FieldSplitter('\t', pool).splitToList("BRCA1\thuman");
+        assertSame(first.get(1), second.get(1));
+
+        final CsvParser parser = new CsvParser(new StringReader("\"human\",1\n"), CsvFormat.CSV);
+        parser.setStringPool(pool);
+        final CsvRecord record = parser.next();
+        assertSame(first.get(1), record.get(0));
+    }
+
+    @Test
+    public void testConcurrentInterns() throws Exception
+    {
+        final StringPool pool = new StringPool(256);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+        for (int t = 0; t < 4; t++)
+        {
+            results.add(executor.submit(new Callable<Boolean>()
+            {
+                public Boolean call()
+                {
+                    for (int i = 0; i < 100000; i++)
+                    {
+                        final String value = "v" + (i % 500);
+                        if (!value.equals(pool.intern(value)))
+                        {
+                            return false;
+                        }
+                    }
+                    return true;
+                }
+            }));
+        }
+        for (final Future<Boolean> result : results)
+        {
+            assertTrue(result.get());
+        }
+        executor.shutdown();
+        assertEquals(400000, pool.getHitCount() + pool.getMissCount());
+    }
+}